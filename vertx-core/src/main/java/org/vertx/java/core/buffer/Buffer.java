@@ -17,11 +17,16 @@ package org.vertx.java.core.buffer;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.CompositeChannelBuffer;
 import org.jboss.netty.buffer.DynamicChannelBuffer;
 import org.jboss.netty.util.CharsetUtil;
+import org.vertx.java.core.buffer.impl.BufferPool;
+import org.vertx.java.core.buffer.impl.Utf8;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.util.List;
 
 /**
  * A Buffer represents a sequence of zero or more bytes that can be written to or read from, and which expands as
@@ -37,13 +42,18 @@ import java.nio.charset.Charset;
  * Data can be read from a buffer by invoking methods which take the form {@code getXXX}. These methods take a parameter
  * representing the position in the Buffer from where to read data.<p>
  * Once a buffer has been written to a socket or other write stream, the same buffer instance can't be written again to another WriteStream.<p>
+ * A Buffer created with {@link #direct} holds its bytes in pooled memory outside the heap, which should be given
+ * back with {@link #release} once the Buffer is no longer needed.<p>
  *
  * @author <a href="http://tfox.org">Tim Fox</a>
  */
 public class Buffer {
 
-  // vert.x buffers are always dynamic
-  private DynamicChannelBuffer buffer;
+  // A buffer passed to the constructor is used as it is, and only copied into a dynamic buffer when it's first
+  // written to
+  private ChannelBuffer buffer;
+  private boolean frozen;
+  private boolean direct;
 
   /**
    * Create an empty buffer
@@ -63,39 +73,58 @@ public class Buffer {
     this(ChannelBuffers.dynamicBuffer(initialSizeHint));
   }
 
+  /**
+   * Creates a new empty Buffer in direct memory taken from a pool, which is expected to have a size of
+   * {@code initialSizeHint} after data has been written to it.<p>
+   * The Buffer expands as necessary like any other. Writing a direct Buffer to a socket saves copying it, and
+   * releasing it with {@link #release} once it's been written saves allocating the memory again for the next one.
+   * Buffers too large for the pool are held on the heap instead.
+   */
+  public static Buffer direct(int initialSizeHint) {
+    Buffer buff = new Buffer(BufferPool.allocate(initialSizeHint));
+    buff.direct = true;
+    return buff;
+  }
+
   /**
    * Create a new Buffer that contains the contents of a {@code byte[]}
    */
   public Buffer(byte[] bytes) {
-    this(ChannelBuffers.wrappedBuffer(bytes));
+    this(ChannelBuffers.dynamicBuffer(bytes.length));
+    buffer.writeBytes(bytes);
   }
 
   /**
    * Create a new Buffer that contains the contents of a {@code String str} encoded according to the encoding {@code enc}
    */
   public Buffer(String str, String enc) {
-    this(ChannelBuffers.copiedBuffer(str, Charset.forName(enc)));
+    this(encoded(str, Utf8.charset(enc)));
   }
 
   /**
    * Create a new Buffer that contains the contents of {@code String str} encoded with UTF-8 encoding
    */
   public Buffer(String str) {
-    this(str, "UTF-8");
+    this(encoded(str, CharsetUtil.UTF_8));
   }
 
   /**
-   * Create a new Buffer from a Netty {@code ChannelBuffer} instance.
+   * Create a new Buffer from a Netty {@code ChannelBuffer} instance, which holds the readable bytes of the
+   * {@code ChannelBuffer}.<p>
+   * The {@code ChannelBuffer} is wrapped, not copied, until the Buffer is first written to, so it mustn't be changed
+   * while the Buffer is in use.<p>
    * This method is meant for internal use only.
    */
   public Buffer(ChannelBuffer buffer) {
-    if (buffer instanceof DynamicChannelBuffer) {
-      this.buffer = (DynamicChannelBuffer) buffer;
+    if (buffer.order() != ByteOrder.BIG_ENDIAN) {
+      // We'd read numbers the wrong way round
+      this.buffer = ChannelBuffers.dynamicBuffer(buffer.readableBytes());
+      this.buffer.writeBytes(buffer, buffer.readerIndex(), buffer.readableBytes());
+    } else if (buffer.readerIndex() == 0) {
+      this.buffer = buffer;
     } else {
-      //TODO - if Netty could provide a DynamicChannelBuffer constructor which took a HeapBuffer this would
-      //save an extra copy
-      this.buffer = (DynamicChannelBuffer) ChannelBuffers.dynamicBuffer(buffer.readableBytes());
-      this.buffer.writeBytes(buffer, 0, buffer.readableBytes());
+      // Our positions start at the reader index
+      this.buffer = buffer.slice();
     }
   }
 
@@ -103,14 +132,15 @@ public class Buffer {
    * Returns a {@code String} represention of the Buffer assuming it contains a {@code String} encoding in UTF-8
    */
   public String toString() {
-    return buffer.toString(Charset.forName("UTF-8"));
+    return Utf8.decode(buffer, buffer.readerIndex(), buffer.readableBytes());
   }
 
   /**
    * Returns a {@code String} represention of the Buffer with the encoding specified by {@code enc}
    */
   public String toString(String enc) {
-    return buffer.toString(Charset.forName(enc));
+    Charset charset = Utf8.charset(enc);
+    return Utf8.isUtf8(charset) ? toString() : buffer.toString(charset);
   }
 
   /**
@@ -193,14 +223,34 @@ public class Buffer {
     return new Buffer(getBytes(start, end));
   }
 
+  /**
+   * Returns a sub-sequence of the Buffer as a {@link Buffer} starting at position {@code start} and ending at
+   * position {@code end - 1}, which shares its bytes with this Buffer instead of copying them.<p>
+   * Writing to the slice copies it first, so it never changes this Buffer. Changes to this Buffer may or may not be
+   * seen by the slice, so bytes that are already in this Buffer mustn't be changed while the slice is in use.
+   * Appending to this Buffer is fine.
+   */
+  public Buffer slice(int start, int end) {
+    if (start < 0 || end < start || end > length()) {
+      throw new IndexOutOfBoundsException("Can't slice " + start + " to " + end + " from a buffer of length " +
+                                          length());
+    }
+    Buffer slice = new Buffer(view(buffer, start, end - start));
+    slice.frozen = frozen;
+    return slice;
+  }
+
   /**
    * Returns a copy of a sub-sequence the Buffer as a {@code String} starting at position {@code start}
    * and ending at position {@code end - 1} interpreted as a String in the specified encoding
    */
   public String getString(int start, int end, String enc) {
-    byte[] bytes = getBytes(start, end);
-    Charset cs = Charset.forName(enc);
-    return new String(bytes, cs);
+    Charset charset = Utf8.charset(enc);
+    if (Utf8.isUtf8(charset)) {
+      return getString(start, end);
+    }
+    checkRange(start, end);
+    return buffer.toString(start, end - start, charset);
   }
 
   /**
@@ -208,9 +258,8 @@ public class Buffer {
    * and ending at position {@code end - 1} interpreted as a String in UTF-8 encoding
    */
   public String getString(int start, int end) {
-    byte[] bytes = getBytes(start, end);
-    Charset cs = Charset.forName("UTF-8");
-    return new String(bytes, cs);
+    checkRange(start, end);
+    return Utf8.decode(buffer, start, end - start);
   }
 
   /**
@@ -219,9 +268,27 @@ public class Buffer {
    * Returns a reference to {@code this} so multiple operations can be appended together.
    */
   public Buffer appendBuffer(Buffer buff) {
-    ChannelBuffer cb = buff.getChannelBuffer();
-    buffer.writeBytes(buff.getChannelBuffer());
-    cb.readerIndex(0); // Need to reset readerindex since Netty write modifies readerIndex of source!
+    // Write by index - writeBytes(ChannelBuffer) would move the reader index of the source, which may be shared
+    writable(buff.length()).writeBytes(buff.getChannelBuffer(), 0, buff.length());
+    return this;
+  }
+
+  /**
+   * Appends the specified {@code Buffer} to the end of this Buffer by linking to its bytes instead of copying them,
+   * so {@code buff} mustn't be changed while this Buffer is in use. Any number of buffers can be linked together
+   * this way, and the result read from or written to a socket as one Buffer. The first time the Buffer is appended to
+   * or set in any other way, it is copied into a single buffer again.<p>
+   * Returns a reference to {@code this} so multiple operations can be appended together.
+   */
+  public Buffer linkBuffer(Buffer buff) {
+    checkNotFrozen();
+    int len = length();
+    int otherLen = buff.length();
+    if (otherLen == 0) {
+      return this;
+    }
+    ChannelBuffer other = view(buff.getChannelBuffer(), 0, otherLen);
+    buffer = len == 0 ? other : ChannelBuffers.wrappedBuffer(view(buffer, 0, len), other);
     return this;
   }
 
@@ -230,7 +297,17 @@ public class Buffer {
    * Returns a reference to {@code this} so multiple operations can be appended together.
    */
   public Buffer appendBytes(byte[] bytes) {
-    buffer.writeBytes(bytes);
+    writable(bytes.length).writeBytes(bytes);
+    return this;
+  }
+
+  /**
+   * Appends {@code len} bytes of the specified {@code byte[]}, starting at {@code offset}, to the end of the Buffer.
+   * The buffer will expand as necessary to accomodate any bytes written.<p>
+   * Returns a reference to {@code this} so multiple operations can be appended together.
+   */
+  public Buffer appendBytes(byte[] bytes, int offset, int len) {
+    writable(len).writeBytes(bytes, offset, len);
     return this;
   }
 
@@ -239,7 +316,7 @@ public class Buffer {
    * Returns a reference to {@code this} so multiple operations can be appended together.
    */
   public Buffer appendByte(byte b) {
-    buffer.writeByte(b);
+    writable(1).writeByte(b);
     return this;
   }
 
@@ -248,7 +325,7 @@ public class Buffer {
    * Returns a reference to {@code this} so multiple operations can be appended together.
    */
   public Buffer appendInt(int i) {
-    buffer.writeInt(i);
+    writable(4).writeInt(i);
     return this;
   }
 
@@ -257,7 +334,7 @@ public class Buffer {
    * Returns a reference to {@code this} so multiple operations can be appended together.
    */
   public Buffer appendLong(long l) {
-    buffer.writeLong(l);
+    writable(8).writeLong(l);
     return this;
   }
 
@@ -266,7 +343,7 @@ public class Buffer {
    * Returns a reference to {@code this} so multiple operations can be appended together.
    */
   public Buffer appendShort(short s) {
-    buffer.writeShort(s);
+    writable(2).writeShort(s);
     return this;
   }
 
@@ -275,7 +352,7 @@ public class Buffer {
    * Returns a reference to {@code this} so multiple operations can be appended together.
    */
   public Buffer appendFloat(float f) {
-    buffer.writeFloat(f);
+    writable(4).writeFloat(f);
     return this;
   }
 
@@ -284,7 +361,7 @@ public class Buffer {
    * Returns a reference to {@code this} so multiple operations can be appended together.
    */
   public Buffer appendDouble(double d) {
-    buffer.writeDouble(d);
+    writable(8).writeDouble(d);
     return this;
   }
 
@@ -294,7 +371,7 @@ public class Buffer {
    * Returns a reference to {@code this} so multiple operations can be appended together.<p>
    */
   public Buffer appendString(String str, String enc) {
-    return append(str, Charset.forName(enc));
+    return append(str, Utf8.charset(enc));
   }
 
   /**
@@ -372,7 +449,7 @@ public class Buffer {
    */
   public Buffer setBuffer(int pos, Buffer b) {
     ensureWritable(pos, b.length());
-    buffer.setBytes(pos, b.getChannelBuffer());
+    buffer.setBytes(pos, b.getChannelBuffer(), 0, b.length());
     return this;
   }
 
@@ -409,7 +486,7 @@ public class Buffer {
    * The buffer will expand as necessary to accomodate any value written.
    */
   public Buffer setString(int pos, String str, String enc) {
-    return setBytes(pos, str, Charset.forName(enc));
+    return setBytes(pos, str, Utf8.charset(enc));
   }
 
   /**
@@ -421,12 +498,57 @@ public class Buffer {
   }
 
   /**
-   * Returns a copy of the entire Buffer.
+   * Returns a copy of the entire Buffer. The copy of a direct Buffer is an ordinary one.
    */
   public Buffer copy() {
+    if (direct) {
+      ChannelBuffer copy = ChannelBuffers.buffer(buffer.writerIndex());
+      copy.writeBytes(buffer, 0, buffer.writerIndex());
+      return new Buffer(copy);
+    }
     return new Buffer(buffer.copy());
   }
 
+  /**
+   * Returns true if the Buffer was created with {@link #direct} and hasn't been released
+   */
+  public boolean isDirect() {
+    return direct;
+  }
+
+  /**
+   * Gives the memory of a direct Buffer back to the pool, and leaves the Buffer empty. Nothing read from the Buffer
+   * without copying it, such as a slice, may be used after this. If the Buffer has been written to a socket or other
+   * write stream, it mustn't be released until the write has completed.<p>
+   * Releasing a Buffer that isn't direct does nothing.
+   */
+  public void release() {
+    if (direct) {
+      BufferPool.release(buffer);
+      buffer = ChannelBuffers.EMPTY_BUFFER;
+      direct = false;
+    }
+  }
+
+  /**
+   * Returns a frozen copy of the Buffer, which can't be modified. Any attempt to append to it or set bytes in it
+   * throws {@code IllegalStateException}.<p>
+   * A frozen Buffer is safe to share between contexts, so the event bus passes frozen bodies to each handler as they
+   * are instead of copying them. {@link #copy} still returns an ordinary, modifiable copy.
+   */
+  public Buffer freeze() {
+    if (frozen) {
+      return this;
+    }
+    Buffer copy = copy();
+    copy.frozen = true;
+    return copy;
+  }
+
+  public boolean isFrozen() {
+    return frozen;
+  }
+
   /**
    * Returns the Buffer as a Netty {@code ChannelBuffer}.<p>
    * This method is meant for internal use only.
@@ -436,22 +558,53 @@ public class Buffer {
   }
 
   private Buffer append(String str, Charset charset) {
-    byte[] bytes = str.getBytes(charset);
-    buffer.writeBytes(bytes);
+    if (Utf8.isUtf8(charset)) {
+      int len = Utf8.encodedLength(str);
+      ChannelBuffer buff = writable(len);
+      buff.ensureWritableBytes(len);
+      int index = buff.writerIndex();
+      buff.writerIndex(index + Utf8.encode(str, buff, index));
+    } else {
+      byte[] bytes = str.getBytes(charset);
+      writable(bytes.length).writeBytes(bytes);
+    }
     return this;
   }
 
   private Buffer setBytes(int pos, String str, Charset charset) {
-    byte[] bytes = str.getBytes(charset);
-    ensureWritable(pos, bytes.length);
-    buffer.setBytes(pos, bytes);
+    if (Utf8.isUtf8(charset)) {
+      ensureWritable(pos, Utf8.encodedLength(str));
+      Utf8.encode(str, buffer, pos);
+    } else {
+      byte[] bytes = str.getBytes(charset);
+      ensureWritable(pos, bytes.length);
+      buffer.setBytes(pos, bytes);
+    }
     return this;
   }
 
+  private static ChannelBuffer encoded(String str, Charset charset) {
+    if (Utf8.isUtf8(charset)) {
+      int len = Utf8.encodedLength(str);
+      ChannelBuffer buff = ChannelBuffers.buffer(len);
+      buff.writerIndex(Utf8.encode(str, buff, 0));
+      return buff;
+    }
+    return ChannelBuffers.copiedBuffer(str, charset);
+  }
+
+  private void checkRange(int start, int end) {
+    if (start < 0 || end < start || end > buffer.capacity()) {
+      throw new IndexOutOfBoundsException("Can't read " + start + " to " + end + " from a buffer of length " +
+                                          length());
+    }
+  }
+
   //TODO this is all a bit of a pain - if we can just throw exceptions if people set stuff outside of the buffer
   //like Netty that would be preferable
   private void ensureWritable(int pos, int len) {
     int ni = pos + len;
+    writable(ni - buffer.writerIndex());
     int cap = buffer.capacity();
     int over = ni - cap;
     if (over > 0) {
@@ -464,6 +617,41 @@ public class Buffer {
     }
   }
 
+  // A view of part of a buffer that starts at reader index 0. The parts of a composite buffer are sliced separately,
+  // so a composite made from views is never nested, however many times it is sliced and linked
+  private static ChannelBuffer view(ChannelBuffer buff, int index, int length) {
+    if (buff instanceof CompositeChannelBuffer) {
+      List<ChannelBuffer> components = ((CompositeChannelBuffer)buff).decompose(index, length);
+      return components.size() == 1 ? components.get(0) :
+          ChannelBuffers.wrappedBuffer(components.toArray(new ChannelBuffer[components.size()]));
+    }
+    return buff.slice(index, length);
+  }
+
+  private ChannelBuffer writable(int needed) {
+    checkNotFrozen();
+    if (direct) {
+      if (needed > buffer.writableBytes()) {
+        // We don't release the memory we're moving out of, as slices of it may still be in use
+        ChannelBuffer bigger = BufferPool.allocate(Math.max(buffer.capacity() << 1, buffer.writerIndex() + needed));
+        bigger.writeBytes(buffer, 0, buffer.writerIndex());
+        buffer = bigger;
+      }
+    } else if (!(buffer instanceof DynamicChannelBuffer)) {
+      int len = buffer.writerIndex();
+      ChannelBuffer dynamic = ChannelBuffers.dynamicBuffer(len);
+      dynamic.writeBytes(buffer, 0, len);
+      buffer = dynamic;
+    }
+    return buffer;
+  }
+
+  private void checkNotFrozen() {
+    if (frozen) {
+      throw new IllegalStateException("Buffer is frozen");
+    }
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.vertx.java.core.buffer.impl;
+
+import org.jboss.netty.buffer.ByteBufferBackedChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hands out direct memory for short-lived buffers, such as the ones the framework writes to sockets, and takes it
+ * back when it's released so it can be used again instead of being garbage collected.<p>
+ * Sizes are rounded up to a power of two between {@code 256} bytes and {@code 64KB}. Each thread has its own
+ * arena of free buffers, so every event loop allocates from and releases to its own arena without locking. An arena
+ * keeps at most {@code 256KB} of free buffers of each size. Larger buffers aren't pooled, and are allocated on the
+ * heap, as direct memory is slow to allocate and is only freed once the garbage collector gets round to it.<p>
+ * Releasing a buffer is optional - one that is never released is garbage collected like any other. A buffer mustn't
+ * be used after it's been released, and nor must any slice of it.<p>
+ * The framework only uses the pool for its own writes if the {@code vertx.pooledBuffers} system property is
+ * {@code true}. It's off by default, as each thread's arena can keep up to 2.25MB of direct memory that nothing else
+ * can use.
+ */
+public class BufferPool {
+
+  private static final boolean ENABLED = Boolean.getBoolean("vertx.pooledBuffers");
+
+  private static final int MIN_SHIFT = 8;
+  private static final int MAX_SHIFT = 16;
+  private static final int MAX_POOLED = 1 << MAX_SHIFT;
+  private static final int ARENA_BYTES_PER_SIZE = 256 * 1024;
+
+  private static final ThreadLocal<Arena> arenas = new ThreadLocal<Arena>() {
+    protected Arena initialValue() {
+      return new Arena();
+    }
+  };
+
+  /**
+   * @return true if the framework should allocate the buffers it writes from the pool
+   */
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /**
+   * Allocate a buffer that can hold at least {@code capacity} bytes. Its capacity is fixed. It's a direct buffer
+   * unless it's too large to be pooled.
+   */
+  public static ChannelBuffer allocate(int capacity) {
+    if (capacity > MAX_POOLED) {
+      return ChannelBuffers.buffer(capacity);
+    }
+    int sizeClass = sizeClass(capacity);
+    ByteBuffer memory = arenas.get().take(sizeClass);
+    if (memory == null) {
+      memory = ByteBuffer.allocateDirect(1 << (sizeClass + MIN_SHIFT));
+    }
+    return new PooledChannelBuffer(memory);
+  }
+
+  /**
+   * Return a buffer to the pool. Buffers that weren't allocated from the pool, or have already been released, are
+   * ignored.
+   */
+  public static void release(ChannelBuffer buffer) {
+    if (buffer instanceof PooledChannelBuffer) {
+      PooledChannelBuffer pooled = (PooledChannelBuffer)buffer;
+      if (pooled.released.compareAndSet(false, true)) {
+        arenas.get().give(sizeClass(pooled.memory.capacity()), pooled.memory);
+      }
+    }
+  }
+
+  /**
+   * Release a buffer once the write it was passed to has completed, whether it succeeded or not
+   */
+  public static void releaseWhenWritten(ChannelFuture future, final ChannelBuffer buffer) {
+    if (buffer instanceof PooledChannelBuffer) {
+      future.addListener(new ChannelFutureListener() {
+        public void operationComplete(ChannelFuture future) {
+          release(buffer);
+        }
+      });
+    }
+  }
+
+  private static int sizeClass(int capacity) {
+    int size = Math.max(capacity, 1 << MIN_SHIFT);
+    return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+  }
+
+  private static class PooledChannelBuffer extends ByteBufferBackedChannelBuffer {
+
+    final ByteBuffer memory;
+    final AtomicBoolean released = new AtomicBoolean();
+
+    PooledChannelBuffer(ByteBuffer memory) {
+      super(memory);
+      this.memory = memory;
+      // A wrapped ByteBuffer starts out full
+      clear();
+    }
+  }
+
+  private static class Arena {
+
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<ByteBuffer>[] free = new ArrayDeque[MAX_SHIFT - MIN_SHIFT + 1];
+
+    ByteBuffer take(int sizeClass) {
+      ArrayDeque<ByteBuffer> buffers = free[sizeClass];
+      return buffers == null ? null : buffers.poll();
+    }
+
+    void give(int sizeClass, ByteBuffer memory) {
+      ArrayDeque<ByteBuffer> buffers = free[sizeClass];
+      if (buffers == null) {
+        buffers = free[sizeClass] = new ArrayDeque<>();
+      }
+      if (buffers.size() < ARENA_BYTES_PER_SIZE >> (sizeClass + MIN_SHIFT)) {
+        memory.clear();
+        buffers.push(memory);
+      }
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.vertx.java.core.buffer.impl;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.util.CharsetUtil;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Encodes strings to UTF-8 straight into a buffer, and decodes them straight out of one, without going through a
+ * temporary {@code byte[]}.<p>
+ * The results are the same as {@code String.getBytes} and {@code new String} with the UTF-8 charset, including the
+ * way unpaired surrogates and malformed input are replaced.
+ */
+public class Utf8 {
+
+  private static final ConcurrentMap<String, Charset> charsets = new ConcurrentHashMap<>();
+
+  static {
+    charsets.put("UTF-8", CharsetUtil.UTF_8);
+    charsets.put("utf-8", CharsetUtil.UTF_8);
+  }
+
+  /**
+   * Look up a charset by name. Unlike {@code Charset.forName}, charsets that have been looked up before are found
+   * without a search.
+   */
+  public static Charset charset(String enc) {
+    Charset charset = charsets.get(enc);
+    if (charset == null) {
+      // Only valid names get this far, so the cache can't grow beyond the charsets the JVM supports
+      charset = Charset.forName(enc);
+      charsets.putIfAbsent(enc, charset);
+    }
+    return charset;
+  }
+
+  public static boolean isUtf8(Charset charset) {
+    return charset == CharsetUtil.UTF_8 || charset.equals(CharsetUtil.UTF_8);
+  }
+
+  /**
+   * @return the number of bytes {@code str} takes up in UTF-8
+   */
+  public static int encodedLength(String str) {
+    int len = str.length();
+    int bytes = len;
+    for (int i = 0; i < len; i++) {
+      char c = str.charAt(i);
+      if (c >= 0x80) {
+        if (c < 0x800) {
+          bytes++;
+        } else if (!Character.isSurrogate(c)) {
+          bytes += 2;
+        } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+          // Two chars, four bytes
+          bytes += 2;
+          i++;
+        }
+        // An unpaired surrogate is replaced by a single '?'
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Encode {@code str} into {@code buff} at {@code index}, which must have room for {@link #encodedLength} bytes.
+   * The writer index isn't changed.
+   * @return the number of bytes written
+   */
+  public static int encode(String str, ChannelBuffer buff, int index) {
+    if (buff.hasArray()) {
+      // The caller has made room, so we don't check each byte against the capacity
+      int start = buff.arrayOffset() + index;
+      return encode(str, buff.array(), start) - start;
+    } else {
+      byte[] bytes = str.getBytes(CharsetUtil.UTF_8);
+      buff.setBytes(index, bytes);
+      return bytes.length;
+    }
+  }
+
+  private static int encode(String str, byte[] arr, int pos) {
+    int len = str.length();
+    int i = 0;
+    // Most strings are ASCII, so copy as much of it as we can before dealing with anything else
+    while (i < len) {
+      char c = str.charAt(i);
+      if (c >= 0x80) {
+        break;
+      }
+      arr[pos++] = (byte)c;
+      i++;
+    }
+    for (; i < len; i++) {
+      char c = str.charAt(i);
+      if (c < 0x80) {
+        arr[pos++] = (byte)c;
+      } else if (c < 0x800) {
+        arr[pos++] = (byte)(0xC0 | c >> 6);
+        arr[pos++] = (byte)(0x80 | c & 0x3F);
+      } else if (!Character.isSurrogate(c)) {
+        arr[pos++] = (byte)(0xE0 | c >> 12);
+        arr[pos++] = (byte)(0x80 | c >> 6 & 0x3F);
+        arr[pos++] = (byte)(0x80 | c & 0x3F);
+      } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+        int cp = Character.toCodePoint(c, str.charAt(++i));
+        arr[pos++] = (byte)(0xF0 | cp >> 18);
+        arr[pos++] = (byte)(0x80 | cp >> 12 & 0x3F);
+        arr[pos++] = (byte)(0x80 | cp >> 6 & 0x3F);
+        arr[pos++] = (byte)(0x80 | cp & 0x3F);
+      } else {
+        arr[pos++] = '?';
+      }
+    }
+    return pos;
+  }
+
+  /**
+   * Decode {@code length} bytes of UTF-8 from {@code buff}, starting at {@code index}. The reader index isn't
+   * changed.
+   */
+  public static String decode(ChannelBuffer buff, int index, int length) {
+    if (index < 0 || length < 0 || index + length > buff.capacity()) {
+      throw new IndexOutOfBoundsException("Can't decode " + length + " bytes at " + index + " from a buffer of " +
+                                          "capacity " + buff.capacity());
+    }
+    if (buff.hasArray()) {
+      return new String(buff.array(), buff.arrayOffset() + index, length, CharsetUtil.UTF_8);
+    }
+    // Direct and composite buffers have no array to decode from, so read ASCII a byte at a time and leave anything
+    // else to the charset
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      byte b = buff.getByte(index + i);
+      if (b < 0) {
+        return buff.toString(index, length, CharsetUtil.UTF_8);
+      }
+      chars[i] = (char)b;
+    }
+    return new String(chars);
+  }
+}
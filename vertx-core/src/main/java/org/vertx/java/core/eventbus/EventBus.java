@@ -42,6 +42,14 @@ import org.vertx.java.core.json.JsonObject;
  * aim to fairly distribute messages in a round-robin way, but does not guarantee strict round-robin under all
  * circumstances.<p>
  *
+ * A handler can be registered against a pattern instead of a single address. Addresses are divided into segments by
+ * {@code .}, and in a pattern a segment of {@code *} matches any one segment and a segment of {@code #} matches any
+ * number of segments, including none. So a handler registered against {@code game.room.*.chat} receives the messages
+ * sent to {@code game.room.123.chat}, and one registered against {@code game.#} receives every message sent to an
+ * address under {@code game}. When clustered a pattern is shared with the other nodes once, however many addresses
+ * it matches. Handlers for patterns and for the address itself are treated alike when choosing which one a sent
+ * message goes to. {@link Message#address()} gives the address a message was actually sent to.<p>
+ *
  * All messages sent over the bus are transient. On event of failure of all or part of the event bus messages
  * may be lost. Applications should be coded to cope with lost messages, e.g. by resending them, and making application
  * services idempotent.<p>
@@ -49,6 +57,14 @@ import org.vertx.java.core.json.JsonObject;
  * The order of messages received by any specific handler from a specific sender should match the order of messages
  * sent from that sender.<p>
  *
+ * {@link Buffer}, {@link JsonObject} and {@link org.vertx.java.core.json.JsonArray} bodies are copied for each handler
+ * they are delivered to locally, so handlers can't interfere with each other or with the sender. Bodies which have
+ * been frozen with {@code freeze()} can't be modified, so they are delivered as they are without being copied.<p>
+ *
+ * Objects of other types can be sent with {@link #sendObject} and {@link #publishObject} once a {@link MessageCodec}
+ * has been registered for their class with {@link #registerCodec}. The codec encodes them for other nodes and copies
+ * them for local handlers.<p>
+ *
  * When sending a message, a reply handler can be provided. If so, it will be called when the reply from the receiver
  * has been received. Reply messages can also be replied to, etc, ad infinitum<p>
  *
@@ -468,6 +484,56 @@ public interface EventBus {
    */
   void publish(String address, Byte message);
 
+  /**
+   * Register a codec for message bodies of class {@code type}, so they can be sent with {@link #sendObject} and
+   * {@link #publishObject}. The codec is only used for bodies of exactly that class.<p>
+   * {@code typeId} identifies the type on the wire, so every node in the cluster that sends or receives the type must
+   * register a codec for it with the same id. Registering a type again with the same id replaces its codec.<p>
+   * A class with the same name loaded by another class loader, e.g. by another module, is treated as the same type and
+   * can be registered with the same id. A local handler gets what the sender's codec returns from
+   * {@link MessageCodec#copy}, so a handler that uses the body's class should share it with the sender.
+   * @param type The class of the message bodies
+   * @param typeId The id of the type, which must be unique to it
+   * @param codec The codec
+   * @throws IllegalStateException if the type is registered with a different id, or the id for another type
+   */
+  <T> void registerCodec(Class<T> type, int typeId, MessageCodec<T> codec);
+
+  /**
+   * Send an object of a type that has a codec registered with {@link #registerCodec} as a message
+   * @param address The address to send it to
+   * @param message The message
+   * @param replyHandler Reply handler will be called when any reply from the recipient is received
+   * @throws IllegalArgumentException if there's no codec registered for the class of the message
+   */
+  <T> void sendObject(String address, T message, Handler<Message<T>> replyHandler);
+
+  /**
+   * Send an object of a type that has a codec registered with {@link #registerCodec} as a message
+   * @param address The address to send it to
+   * @param message The message
+   * @param replyHandler Reply handler will be called when any reply from the recipient is received
+   * @param timeout Timeout in MS
+   * @throws IllegalArgumentException if there's no codec registered for the class of the message
+   */
+  <T> void sendObject(String address, T message, Handler<Message<T>> replyHandler, int timeout);
+
+  /**
+   * Send an object of a type that has a codec registered with {@link #registerCodec} as a message
+   * @param address The address to send it to
+   * @param message The message
+   * @throws IllegalArgumentException if there's no codec registered for the class of the message
+   */
+  void sendObject(String address, Object message);
+
+  /**
+   * Publish an object of a type that has a codec registered with {@link #registerCodec} as a message
+   * @param address The address to publish it to
+   * @param message The message
+   * @throws IllegalArgumentException if there's no codec registered for the class of the message
+   */
+  void publishObject(String address, Object message);
+
   /**
    * Unregisters a handler given the address and the handler
    * @param address The address the handler was registered at
@@ -502,6 +568,22 @@ public interface EventBus {
    */
   void registerHandler(String address, Handler<? extends Message> handler);
 
+  /**
+   * Registers a handler against the specified address, with a bounded mailbox.<p>
+   * Messages wait in the handler's mailbox until the handler gets to them. If the handler falls behind and
+   * {@code mailboxCapacity} messages are waiting, further messages are dealt with according to {@code overflowPolicy}.
+   * By default handlers have an unbounded mailbox, unless the {@code org.vertx.core-eventbus-mailboxCapacity} and
+   * {@code org.vertx.core-eventbus-mailboxOverflowPolicy} system properties say otherwise.
+   * @param address The address to register it at
+   * @param handler The handler
+   * @param mailboxCapacity The max number of messages waiting for the handler, or 0 for no limit
+   * @param overflowPolicy What to do with messages that arrive when the mailbox is full
+   * @param resultHandler Optional completion handler. If specified, when the register has been
+   * propagated to all nodes of the event bus, the handler will be called.
+   */
+  void registerHandler(String address, Handler<? extends Message> handler, int mailboxCapacity,
+                       OverflowPolicy overflowPolicy, AsyncResultHandler<Void> resultHandler);
+
   /**
    * Registers a local handler against the specified address. The handler info won't
    * be propagated across the cluster
@@ -509,5 +591,34 @@ public interface EventBus {
    * @param handler The handler
    */
   void registerLocalHandler(String address, Handler<? extends Message> handler);
-}
 
+  /**
+   * Returns the number of messages waiting to be handled by the handlers registered on this node at
+   * the specified address
+   * @param address The address
+   */
+  int getQueueDepth(String address);
+
+  /**
+   * Returns a snapshot of what this node's event bus is doing, as a {@link JsonObject} of the form:<p>
+   * <pre>
+   * {
+   *   "node": "host:port",
+   *   "repliesReceived": n,
+   *   "addresses": {
+   *     "some-address": {"handlers": n, "queued": n, "sent": n, "published": n, "received": n, "replied": n,
+   *                      "failed": n, "timedOut": n,
+   *                      "handlerTime": {"count": n, "meanMicros": n, "p50Micros": n, "p99Micros": n, "maxMicros": n}}
+   *   },
+   *   "nodes": {
+   *     "host:port": {"queued": n, "bytesOut": n, "bytesIn": n, "messagesOut": n, "messagesIn": n, "dropped": n}
+   *   }
+   * }
+   * </pre>
+   * The handler counts and queue sizes are always present. The counters are only collected if the
+   * {@code org.vertx.core-eventbus-metrics} system property is {@code true}, or if
+   * {@code org.vertx.core-eventbus-metricsAddress} is set, in which case the snapshot is also published to that
+   * address every {@code org.vertx.core-eventbus-metricsInterval} milliseconds.
+   */
+  JsonObject getMetrics();
+}
@@ -42,6 +42,12 @@ public abstract class Message<T>  {
    */
   public String replyAddress;
 
+  /**
+   * The address the message was sent to. For a handler registered against a pattern, this is the address which
+   * matched it
+   */
+  public abstract String address();
+
   /**
    * Same as {@code reply(T message)} but with an empty body
    */
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.eventbus;
+
+import org.vertx.java.core.buffer.Buffer;
+
+/**
+ * Encodes and decodes message bodies of a type of your own, so they can be sent on the event bus with
+ * {@link EventBus#sendObject} and {@link EventBus#publishObject} without converting them to JSON first.<p>
+ * A codec is registered for a type with {@link EventBus#registerCodec}. Codecs are called for every message, so they
+ * should write the fields of the body directly rather than use reflection.<p>
+ * Instances must be thread-safe, as they are called from whichever contexts send and receive the messages.
+ */
+public interface MessageCodec<T> {
+
+  /**
+   * Append the encoded form of {@code body} to {@code buff}. This is only called when the message is sent to another
+   * node.
+   */
+  void encode(T body, Buffer buff);
+
+  /**
+   * Decode a body from {@code buff}, which contains exactly what {@link #encode} wrote
+   */
+  T decode(Buffer buff);
+
+  /**
+   * Return a copy of {@code body} for a handler on this node, so the handler can't interfere with the sender or with
+   * other handlers. If the type is immutable the body can be returned as it is, so it isn't copied at all.
+   */
+  T copy(T body);
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2011-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.eventbus;
+
+/**
+ * What happens to a message sent to a handler whose mailbox is full
+ */
+public enum OverflowPolicy {
+
+  /**
+   * Drop the oldest message waiting in the mailbox to make room for the new one. If the dropped message expects a
+   * reply send back a {@link Failure} with code {@link Failure#SERVICE_UNAVAILABLE}
+   */
+  DROP_OLDEST,
+
+  /**
+   * Drop the new message
+   */
+  DROP_NEWEST,
+
+  /**
+   * Drop the new message, and if it expects a reply send back a {@link Failure} with code
+   * {@link Failure#SERVICE_UNAVAILABLE}
+   */
+  REJECT
+}
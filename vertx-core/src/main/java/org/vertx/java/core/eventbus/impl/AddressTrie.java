@@ -0,0 +1,175 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.eventbus.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds values against address patterns, and finds the values whose patterns match an address.<p>
+ * Addresses are split into segments at each {@code .}. In a pattern a segment of {@code *} matches exactly one
+ * segment, and a segment of {@code #} matches any number of segments, including none. So {@code game.room.*.chat}
+ * matches {@code game.room.123.chat}, and {@code game.#} matches {@code game}, {@code game.room} and
+ * {@code game.room.123.chat}.<p>
+ * Matching doesn't lock, so it can be done from any thread while patterns are being added or removed. Adding and
+ * removing are serialised.
+ */
+public class AddressTrie<T> {
+
+  private static final String ONE = "*";
+  private static final String ANY = "#";
+
+  private final Node<T> root = new Node<>();
+  private volatile int size;
+
+  /**
+   * @return true if the address has a wildcard segment
+   */
+  public static boolean isPattern(String address) {
+    int start = 0;
+    int len = address.length();
+    while (start <= len) {
+      int end = address.indexOf('.', start);
+      if (end == -1) {
+        end = len;
+      }
+      if (end - start == 1) {
+        char c = address.charAt(start);
+        if (c == '*' || c == '#') {
+          return true;
+        }
+      }
+      start = end + 1;
+    }
+    return false;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public T get(String pattern) {
+    Node<T> node = root;
+    for (String segment: split(pattern)) {
+      node = node.children.get(segment);
+      if (node == null) {
+        return null;
+      }
+    }
+    return node.value;
+  }
+
+  public synchronized void put(String pattern, T value) {
+    Node<T> node = root;
+    for (String segment: split(pattern)) {
+      Node<T> child = node.children.get(segment);
+      if (child == null) {
+        child = new Node<>();
+        node.children.put(segment, child);
+      }
+      node = child;
+    }
+    if (node.value == null) {
+      size++;
+    }
+    node.value = value;
+  }
+
+  public synchronized T remove(String pattern) {
+    List<String> segments = split(pattern);
+    List<Node<T>> path = new ArrayList<>(segments.size() + 1);
+    Node<T> node = root;
+    path.add(node);
+    for (String segment: segments) {
+      node = node.children.get(segment);
+      if (node == null) {
+        return null;
+      }
+      path.add(node);
+    }
+    T value = node.value;
+    if (value != null) {
+      node.value = null;
+      size--;
+      // Prune the nodes that no longer lead anywhere
+      for (int i = segments.size(); i > 0; i--) {
+        Node<T> n = path.get(i);
+        if (n.value != null || !n.children.isEmpty()) {
+          break;
+        }
+        path.get(i - 1).children.remove(segments.get(i - 1));
+      }
+    }
+    return value;
+  }
+
+  /**
+   * @return the values whose patterns match the address, each one once
+   */
+  public Set<T> match(String address) {
+    Set<T> matches = new LinkedHashSet<>();
+    if (size != 0) {
+      match(root, split(address), 0, matches);
+    }
+    return matches;
+  }
+
+  private static <T> void match(Node<T> node, List<String> segments, int pos, Set<T> matches) {
+    Node<T> any = node.children.get(ANY);
+    if (any != null) {
+      for (int i = pos; i <= segments.size(); i++) {
+        match(any, segments, i, matches);
+      }
+    }
+    if (pos == segments.size()) {
+      T value = node.value;
+      if (value != null) {
+        matches.add(value);
+      }
+      return;
+    }
+    Node<T> child = node.children.get(segments.get(pos));
+    if (child != null) {
+      match(child, segments, pos + 1, matches);
+    }
+    Node<T> one = node.children.get(ONE);
+    if (one != null && one != child) {
+      match(one, segments, pos + 1, matches);
+    }
+  }
+
+  private static List<String> split(String address) {
+    List<String> segments = new ArrayList<>();
+    int start = 0;
+    int end;
+    while ((end = address.indexOf('.', start)) != -1) {
+      segments.add(address.substring(start, end));
+      start = end + 1;
+    }
+    segments.add(address.substring(start));
+    return segments;
+  }
+
+  private static class Node<T> {
+    final ConcurrentMap<String, Node<T>> children = new ConcurrentHashMap<>();
+    volatile T value;
+  }
+}
@@ -16,9 +16,9 @@
 
 package org.vertx.java.core.eventbus.impl;
 
-import org.jboss.netty.util.CharsetUtil;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.buffer.impl.Utf8;
 import org.vertx.java.core.eventbus.Message;
 import org.vertx.java.core.logging.Logger;
 import org.vertx.java.core.logging.impl.LoggerFactory;
@@ -28,7 +28,7 @@ import org.vertx.java.core.net.impl.ServerID;
 /**
  * @author <a href="http://tfox.org">Tim Fox</a>
  */
-public abstract class BaseMessage<T> extends Message<T> {
+public abstract class BaseMessage<T> extends Message<T> implements Cloneable {
 
   private static final Logger log = LoggerFactory.getLogger(BaseMessage.class);
 
@@ -37,6 +37,19 @@ public abstract class BaseMessage<T> extends Message<T> {
   protected String address;
   boolean send; // Is it a send or a publish?
 
+  // The frame in each form it's been encoded in, see encode(boolean, boolean)
+  private Buffer frame;
+  private Buffer versionedFrame;
+  private Buffer binaryFrame;
+
+  // The buffer a message was read from and the position of its body, until the body has been decoded
+  private Buffer wireBuff;
+  private int bodyPos;
+
+  public String address() {
+    return address;
+  }
+
   protected BaseMessage(boolean send, String address, T body) {
     this.send = send;
     this.body = body;
@@ -50,65 +63,137 @@ public abstract class BaseMessage<T> extends Message<T> {
   public void reply(T message, Handler<Message<T>> replyHandler) {
     if (bus != null && replyAddress != null) {
       BaseMessage<T> replyMessage = createReplyMessage(message);
-      bus.sendReply(sender, replyMessage, replyHandler);
+      bus.sendReply(sender, this, replyMessage, replyHandler);
     }
   }
 
   protected BaseMessage(Buffer readBuff) {
-    int pos = 1;
+    int pos = MessageFactory.isVersioned(readBuff) ? 2 : 1;
     byte bsend = readBuff.getByte(pos);
     send = bsend == 0;
     pos += 1;
     int addressLength = readBuff.getInt(pos);
     pos += 4;
-    byte[] addressBytes = readBuff.getBytes(pos, pos + addressLength);
+    address = readBuff.getString(pos, pos + addressLength);
     pos += addressLength;
-    address = new String(addressBytes, CharsetUtil.UTF_8);
     int port = readBuff.getInt(pos);
     pos += 4;
     int hostLength = readBuff.getInt(pos);
     pos += 4;
-    byte[] hostBytes = readBuff.getBytes(pos, pos + hostLength);
+    String host = readBuff.getString(pos, pos + hostLength);
     pos += hostLength;
-    String host = new String(hostBytes, CharsetUtil.UTF_8);
     sender = new ServerID(port, host);
     int replyAddressLength = readBuff.getInt(pos);
     pos += 4;
     if (replyAddressLength > 0) {
-      byte[] replyAddressBytes = readBuff.getBytes(pos, pos + replyAddressLength);
+      replyAddress = readBuff.getString(pos, pos + replyAddressLength);
       pos += replyAddressLength;
-      replyAddress = new String(replyAddressBytes, CharsetUtil.UTF_8);
     } else {
       replyAddress = null;
     }
-    readBody(pos, readBuff);
+    // The body is decoded on the context of the handler it's delivered to, not on the thread that read it
+    wireBuff = readBuff;
+    bodyPos = pos;
   }
 
-  protected void write(NetSocket socket) {
-    int length = 1 + 1 + 4 + address.length() + 1 + 4 * sender.host.length() +
-        4 + (replyAddress == null ? 0 : replyAddress.length()) +
-        getBodyLength();
-    Buffer totBuff = new Buffer(length);
-    totBuff.appendInt(0);
-    totBuff.appendByte(type());
-    totBuff.appendByte(send ? (byte)0 : (byte)1);
-    writeString(totBuff, address);
-    totBuff.appendInt(sender.port);
-    writeString(totBuff, sender.host);
-    if (replyAddress != null) {
-      writeString(totBuff, replyAddress);
-    } else {
-      totBuff.appendInt(0);
+  /**
+   * Decode the body of a message read from the wire, if it hasn't been decoded yet. This must be called before the
+   * message is given to a handler.
+   */
+  void decodeBody() {
+    if (wireBuff != null) {
+      readBody(bodyPos, wireBuff);
+      wireBuff = null;
     }
-    writeBody(totBuff);
-    totBuff.setInt(0, totBuff.length() - 4);
-    socket.write(totBuff);
+  }
+
+  /**
+   * Copy the message for delivery to a handler. A message whose body hasn't been decoded yet is copied without
+   * decoding it, and each copy decodes its own body later. Otherwise it's copied by {@link #copy}.
+   */
+  @SuppressWarnings("unchecked")
+  Message<T> copyForDelivery() {
+    if (wireBuff != null) {
+      try {
+        return (Message<T>) clone();
+      } catch (CloneNotSupportedException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    return copy();
+  }
+
+  /**
+   * Encode the message in its legacy wire form, which every node can read. This is only done once per message,
+   * however many nodes it is written to, so it must not be called until the message is complete.
+   */
+  Buffer encode() {
+    return encode(false, false);
+  }
+
+  /**
+   * Encode the message, in a frame that starts with the wire version if {@code versioned} is true, and with a binary
+   * JSON body if it has one and {@code binaryJson} is true. Each of those should only be asked for if the node it's
+   * written to has said it can read it. A binary frame is always versioned. Each form is only encoded once per
+   * message.
+   */
+  Buffer encode(boolean versioned, boolean binaryJson) {
+    binaryJson &= this instanceof BinaryBody;
+    versioned |= binaryJson;
+    Buffer frame = binaryJson ? binaryFrame : versioned ? versionedFrame : this.frame;
+    if (frame == null) {
+      decodeBody();
+      int addressLength = Utf8.encodedLength(address);
+      byte[] senderBytes = MessageFactory.encodeServerID(sender);
+      int replyAddressLength = replyAddress == null ? 0 : Utf8.encodedLength(replyAddress);
+      int length = 4 + (versioned ? 1 : 0) + 1 + 1 + 4 + addressLength + senderBytes.length + 4 + replyAddressLength +
+          getBodyLength();
+      Buffer totBuff = new Buffer(length);
+      // Setting the length afterwards would copy a body that's been linked rather than appended
+      totBuff.appendInt(length - 4);
+      if (versioned) {
+        totBuff.appendByte(MessageFactory.WIRE_VERSION);
+      }
+      totBuff.appendByte(binaryJson ? ((BinaryBody)this).binaryType() : type());
+      totBuff.appendByte(send ? (byte)0 : (byte)1);
+      totBuff.appendInt(addressLength);
+      totBuff.appendString(address);
+      totBuff.appendBytes(senderBytes);
+      if (replyAddress != null) {
+        totBuff.appendInt(replyAddressLength);
+        totBuff.appendString(replyAddress);
+      } else {
+        totBuff.appendInt(0);
+      }
+      if (binaryJson) {
+        ((BinaryBody)this).writeBinaryBody(totBuff);
+      } else {
+        writeBody(totBuff);
+      }
+      if (totBuff.length() != length) {
+        totBuff.setInt(0, totBuff.length() - 4);
+      }
+      frame = totBuff;
+      if (binaryJson) {
+        binaryFrame = frame;
+      } else if (versioned) {
+        versionedFrame = frame;
+      } else {
+        this.frame = frame;
+      }
+    }
+    return frame;
+  }
+
+  protected void write(NetSocket socket) {
+    // Netty doesn't move the reader index of a buffer it writes, so the same encoded buffer can safely be
+    // written to several connections
+    socket.write(encode());
   }
 
   protected void writeString(Buffer buff, String str) {
-    byte[] strBytes = str.getBytes(CharsetUtil.UTF_8);
-    buff.appendInt(strBytes.length);
-    buff.appendBytes(strBytes);
+    buff.appendInt(Utf8.encodedLength(str));
+    buff.appendString(str);
   }
 
   protected abstract byte type();
@@ -119,8 +204,28 @@ public abstract class BaseMessage<T> extends Message<T> {
 
   protected abstract void writeBody(Buffer buff);
 
+  /**
+   * @return the length of the encoded body. If it isn't known until the body has been written, this is an estimate
+   * and {@link #encode} corrects the length of the frame afterwards
+   */
   protected abstract int getBodyLength();
 
   protected abstract BaseMessage createReplyMessage(T reply);
 
+  /**
+   * Implemented by messages whose body can also be written in binary JSON
+   */
+  interface BinaryBody {
+
+    /**
+     * @return the type of the message when its body is written in binary JSON
+     */
+    byte binaryType();
+
+    /**
+     * Write the body in binary JSON. Its length is corrected afterwards in the same way as for {@link BaseMessage#writeBody}.
+     */
+    void writeBinaryBody(Buffer buff);
+  }
+
 }
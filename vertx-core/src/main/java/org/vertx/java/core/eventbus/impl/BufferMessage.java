@@ -42,8 +42,8 @@ class BufferMessage extends BaseMessage<Buffer> {
       pos++;
       int buffLength = readBuff.getInt(pos);
       pos += 4;
-      byte[] bytes = readBuff.getBytes(pos, pos + buffLength);
-      body = new Buffer(bytes);
+      // The frame is only read from, so the body can share its bytes
+      body = readBuff.slice(pos, pos + buffLength);
     }
   }
 
@@ -53,7 +53,12 @@ class BufferMessage extends BaseMessage<Buffer> {
     } else {
       buff.appendByte((byte)1);
       buff.appendInt(body.length());
-      buff.appendBuffer(body);
+      if (body.isFrozen()) {
+        // It can't change, so the frame can share its bytes
+        buff.linkBuffer(body);
+      } else {
+        buff.appendBuffer(body);
+      }
     }
   }
 
@@ -62,7 +67,7 @@ class BufferMessage extends BaseMessage<Buffer> {
   }
 
   protected Message copy() {
-    BufferMessage copied = new BufferMessage(send, address, body == null ? null : body.copy());
+    BufferMessage copied = new BufferMessage(send, address, body == null || body.isFrozen() ? body : body.copy());
     copied.replyAddress = this.replyAddress;
     copied.bus = this.bus;
     copied.sender = this.sender;
@@ -21,6 +21,9 @@ import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.eventbus.EventBus;
 import org.vertx.java.core.eventbus.Failure;
 import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.eventbus.MessageCodec;
+import org.vertx.java.core.eventbus.OverflowPolicy;
+import org.vertx.java.core.eventbus.impl.gossip.GossipClusterManager;
 import org.vertx.java.core.eventbus.impl.hazelcast.HazelcastClusterManager;
 import org.vertx.java.core.impl.Context;
 import org.vertx.java.core.impl.VertxInternal;
@@ -36,10 +39,11 @@ import org.vertx.java.core.parsetools.RecordParser;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *
@@ -49,22 +53,85 @@ public class DefaultEventBus implements EventBus {
 
   private static final Logger log = LoggerFactory.getLogger(DefaultEventBus.class);
 
-  private static final Buffer PONG = new Buffer(new byte[] { (byte)1 });
+  /*
+   Pings are always sent in the legacy form, which every node can read, and older nodes take any byte as a pong, so
+   newer ones set flags in it to say what else they can read. Until a node has said so in a pong, everything is
+   written to it in the legacy form, so a cluster can be upgraded one node at a time.
+   */
+  private static final byte PONG_VERSIONED = 2;
+  private static final byte PONG_BINARY_JSON = 4;
+  private static final Buffer PONG = new Buffer(new byte[] { (byte)1 | PONG_VERSIONED });
+  private static final Buffer PONG_WITH_BINARY_JSON =
+      new Buffer(new byte[] { (byte)1 | PONG_VERSIONED | PONG_BINARY_JSON });
   private static final long PING_INTERVAL = 20000;
   private static final long PING_REPLY_INTERVAL = 20000;
   public static final int DEFAULT_CLUSTER_PORT = 2550;
   private static final int DEFAULT_REPLY_TIMEOUT = 0;
+  private static final int DEFAULT_REPLY_TABLE_SIZE = 16384;
+  private static final long REPLY_TIMEOUT_SWEEP_INTERVAL = 50;
+  private static final int DEFAULT_WRITE_BATCH_BYTES = 64 * 1024;
+  private static final int DEFAULT_WRITE_BATCH_MESSAGES = 256;
+  private static final int DEFAULT_MAX_PENDING_PER_CONNECTION = 65536;
+  private static final long DEFAULT_METRICS_INTERVAL = 10000;
+  private static final int DEFAULT_METRICS_MAX_ADDRESSES = 1024;
+  private static final int MAX_CACHED_PATTERN_MATCHES = 10000;
+  // Cached for an address that no pattern matches
+  private static final Handlers NO_PATTERN_MATCHES = new Handlers();
   private final VertxInternal vertx;
   private final ServerID serverID;
   private NetServer server;
   private SubsMap subs;
-  private final ConcurrentMap<ServerID, ConnectionHolder> connections = new ConcurrentHashMap<>();
+  // One map of connections per stripe - messages are spread over the stripes by address
+  private final ConcurrentMap<ServerID, ConnectionHolder>[] connections;
   private final ConcurrentMap<String, Handlers> handlerMap = new ConcurrentHashMap<>();
-  private final AtomicInteger seq = new AtomicInteger(0);
+  // The codecs registered for sendObject, by the id of their type, and the ids by the class of the bodies. Verticles
+  // with their own class loaders each register their own copy of a class, with the same name and id
+  private final ConcurrentMap<Integer, MessageCodec<?>> codecs = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Integer, String> codecTypeNames = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Class<?>, Integer> codecIDs = new ConcurrentHashMap<>();
+  // The addresses in handlerMap which are patterns
+  private final AddressTrie<String> patterns = new AddressTrie<>();
+  // Round robin position for sends to addresses that match patterns
+  private final AtomicInteger patternPos = new AtomicInteger(0);
+  // The handlers for an address combined with the handlers of the patterns it matches, until the handlers for the
+  // address or any pattern change
+  private final ConcurrentMap<String, Handlers> patternMatches = new ConcurrentHashMap<>();
+  private final AtomicLong patternGeneration = new AtomicLong();
+  // The close hook that has subscription changes for an address which haven't completed yet
+  private final ConcurrentMap<String, HandlerCloseHook> subsOwners = new ConcurrentHashMap<>();
+  private final ReplyTable replies = new ReplyTable(Integer.getInteger("org.vertx.core-eventbus-replyTableSize", DEFAULT_REPLY_TABLE_SIZE));
+  private final TargetPolicy targetPolicy;
+  private final AtomicBoolean replySweeperStarted = new AtomicBoolean();
   private final String prefix = UUID.randomUUID().toString();
   private final ClusterManager clusterMgr;
   private final int defaultReplyTimeout;
-  
+  private final boolean writeBatching = Boolean.getBoolean("org.vertx.core-eventbus-writeBatching");
+  private final int writeBatchBytes = Integer.getInteger("org.vertx.core-eventbus-writeBatchBytes", DEFAULT_WRITE_BATCH_BYTES);
+  private final int writeBatchMessages = Integer.getInteger("org.vertx.core-eventbus-writeBatchMessages", DEFAULT_WRITE_BATCH_MESSAGES);
+  private final long writeBatchDelay = Long.getLong("org.vertx.core-eventbus-writeBatchDelay", 0L);
+  // Whether JSON bodies are sent in binary form to nodes that can read it, and whether this node says it can
+  private final boolean binaryJson = !"false".equals(System.getProperty("org.vertx.core-eventbus-binaryJson"));
+  private final int connectionsPerPeer = Math.max(1, Integer.getInteger("org.vertx.core-eventbus-connectionsPerPeer", 1));
+  private final int mailboxCapacity = Integer.getInteger("org.vertx.core-eventbus-mailboxCapacity", 0);
+  private final OverflowPolicy mailboxOverflowPolicy =
+      OverflowPolicy.valueOf(System.getProperty("org.vertx.core-eventbus-mailboxOverflowPolicy", "REJECT").toUpperCase());
+  private final int maxPendingPerConnection = Integer.getInteger("org.vertx.core-eventbus-maxPendingPerConnection", DEFAULT_MAX_PENDING_PER_CONNECTION);
+  private final String metricsAddress = System.getProperty("org.vertx.core-eventbus-metricsAddress");
+  private final long metricsInterval = Long.getLong("org.vertx.core-eventbus-metricsInterval", DEFAULT_METRICS_INTERVAL);
+  // Null if metrics aren't enabled
+  private final EventBusMetrics metrics = Boolean.getBoolean("org.vertx.core-eventbus-metrics") || metricsAddress != null ?
+      new EventBusMetrics(Integer.getInteger("org.vertx.core-eventbus-metricsMaxAddresses", DEFAULT_METRICS_MAX_ADDRESSES)) : null;
+  private volatile long metricsTimerID = -1;
+  private volatile long replySweeperTimerID = -1;
+  private volatile boolean closed;
+
+  {
+    connections = new ConcurrentMap[connectionsPerPeer];
+    for (int i = 0; i < connectionsPerPeer; i++) {
+      connections[i] = new ConcurrentHashMap<>();
+    }
+  }
+
   public DefaultEventBus(VertxInternal vertx) {
     // Just some dummy server ID
     this.vertx = vertx;
@@ -72,7 +139,9 @@ public class DefaultEventBus implements EventBus {
     this.server = null;
     this.subs = null;
     this.clusterMgr = null;
+    this.targetPolicy = null;
     this.defaultReplyTimeout = getDefaultReplyTimeout();
+    startMetricsPublisher();
   }
 
   public DefaultEventBus(VertxInternal vertx, String hostname) {
@@ -84,8 +153,17 @@ public class DefaultEventBus implements EventBus {
     this.serverID = new ServerID(port, hostname);
     this.clusterMgr = createClusterManager(vertx);
     this.subs = clusterMgr.getSubsMap("subs");
+    this.targetPolicy = createTargetPolicy();
     this.server = setServer();
     this.defaultReplyTimeout = getDefaultReplyTimeout();
+    if (writeBatching) {
+      log.info("Cluster write batching enabled, max " + writeBatchMessages + " messages / " + writeBatchBytes +
+          " bytes" + (writeBatchDelay > 0 ? ", max delay " + writeBatchDelay + "ms" : ""));
+    }
+    if (connectionsPerPeer > 1) {
+      log.info("Using " + connectionsPerPeer + " connections per cluster node");
+    }
+    startMetricsPublisher();
   }
   
   protected int getDefaultReplyTimeout() {
@@ -100,9 +178,25 @@ public class DefaultEventBus implements EventBus {
   }
 
   protected ClusterManager createClusterManager(final VertxInternal vertx) {
-    return new HazelcastClusterManager(vertx);
+    String clusterManager = System.getProperty("org.vertx.core-eventbus-clusterManager", "hazelcast");
+    switch (clusterManager) {
+      case "hazelcast":
+        return new HazelcastClusterManager(vertx);
+      case "gossip":
+        return new GossipClusterManager(vertx, this, serverID);
+      default:
+        throw new IllegalArgumentException("Unknown cluster manager " + clusterManager);
+    }
   }
   
+  protected TargetPolicy createTargetPolicy() {
+    String policy = System.getProperty("org.vertx.core-eventbus-targetPolicy", "roundRobin");
+    if (!policy.equals("roundRobin")) {
+      log.info("Using " + policy + " target policy");
+    }
+    return TargetPolicies.create(policy, serverID, replies);
+  }
+
   public void send(String address, JsonObject message, final Handler<Message<JsonObject>> replyHandler) {
     sendOrPub(new JsonObjectMessage(true, address, message), replyHandler);
   }
@@ -311,17 +405,85 @@ public class DefaultEventBus implements EventBus {
     sendOrPub(new ByteMessage(false, address, message), null);
   }
 
+  public <T> void registerCodec(Class<T> type, int typeId, MessageCodec<T> codec) {
+    if (type == null || codec == null) {
+      throw new IllegalArgumentException("type and codec must be specified");
+    }
+    synchronized (codecIDs) {
+      Integer prevID = codecIDs.get(type);
+      if (prevID != null && prevID != typeId) {
+        throw new IllegalStateException(type.getName() + " is already registered with type id " + prevID);
+      }
+      String prevName = codecTypeNames.get(typeId);
+      if (prevName != null && !prevName.equals(type.getName())) {
+        throw new IllegalStateException("Type id " + typeId + " is already registered for " + prevName);
+      }
+      codecs.put(typeId, codec);
+      codecTypeNames.put(typeId, type.getName());
+      codecIDs.put(type, typeId);
+    }
+  }
+
+  public <T> void sendObject(String address, T message, Handler<Message<T>> replyHandler) {
+    sendOrPub(createObjectMessage(true, address, message), replyHandler);
+  }
+
+  public <T> void sendObject(String address, T message, Handler<Message<T>> replyHandler, int timeout) {
+    sendOrPub(createObjectMessage(true, address, message), replyHandler, timeout);
+  }
+
+  public void sendObject(String address, Object message) {
+    sendObject(address, message, null);
+  }
+
+  public void publishObject(String address, Object message) {
+    sendOrPub(createObjectMessage(false, address, message), null);
+  }
+
+  MessageCodec<?> codec(int typeId) {
+    return codecs.get(typeId);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> ObjectMessage<T> createObjectMessage(boolean send, String address, T message) {
+    // The codec is chosen by the class of the message, so it can't be null
+    if (message == null) {
+      throw new IllegalArgumentException("message must be specified");
+    }
+    Integer typeId = codecIDs.get(message.getClass());
+    if (typeId == null) {
+      throw new IllegalArgumentException("No codec registered for " + message.getClass().getName());
+    }
+    return new ObjectMessage<>(send, address, message, typeId, (MessageCodec<T>) codecs.get(typeId));
+  }
+
   public void registerHandler(String address, Handler<? extends Message> handler,
                               AsyncResultHandler<Void> completionHandler) {
-    registerHandler(address, handler, completionHandler, false, false, 0L);
+    registerHandler(address, handler, completionHandler, false);
   }
 
   public void registerHandler(String address, Handler<? extends Message> handler) {
     registerHandler(address, handler, null);
   }
 
+  public void registerHandler(String address, Handler<? extends Message> handler, int mailboxCapacity,
+                              OverflowPolicy overflowPolicy, AsyncResultHandler<Void> completionHandler) {
+    registerHandler(address, handler, completionHandler, false, mailboxCapacity, overflowPolicy);
+  }
+
   public void registerLocalHandler(String address, Handler<? extends Message> handler) {
-    registerHandler(address, handler, null, false, true, 0L);
+    registerHandler(address, handler, null, true);
+  }
+
+  public int getQueueDepth(String address) {
+    int depth = 0;
+    Handlers handlers = handlerMap.get(address);
+    if (handlers != null) {
+      for (HandlerHolder holder: handlers.list) {
+        depth += holder.mailbox.size();
+      }
+    }
+    return depth;
   }
 
   public void unregisterHandler(String address, Handler<? extends Message> handler,
@@ -337,15 +499,16 @@ public class DefaultEventBus implements EventBus {
           HandlerHolder holder = handlers.list.get(i);
           if (holder.handler == handler) {
             handlers.list.remove(i);
-            // Cancel timeout timer asap
-            if (holder.timeoutId>0L)
-              vertx.cancelTimer(holder.timeoutId);
+            handlersChanged(address);
             // PMCD: Should cleanup be done in the context?
             holder.removed = true;
             if (handlers.list.isEmpty()) {
               handlerMap.remove(address);
+              if (AddressTrie.isPattern(address)) {
+                patterns.remove(address);
+              }
               if (subs != null && !holder.localOnly) {
-                removeSub(address, serverID, completionHandler);
+                changeSub(context, address, completionHandler, false);
               } else if (completionHandler != null) {
                 callCompletionHandler(completionHandler);
               }
@@ -364,8 +527,75 @@ public class DefaultEventBus implements EventBus {
     unregisterHandler(address, handler, null);
   }
 
+  public JsonObject getMetrics() {
+    JsonObject addresses = new JsonObject();
+    for (Map.Entry<String, Handlers> entry: handlerMap.entrySet()) {
+      int queued = 0;
+      for (HandlerHolder holder: entry.getValue().list) {
+        queued += holder.mailbox.size();
+      }
+      addresses.putObject(entry.getKey(), new JsonObject()
+          .putNumber("handlers", entry.getValue().list.size())
+          .putNumber("queued", queued));
+    }
+    JsonObject nodes = new JsonObject();
+    for (ConcurrentMap<ServerID, ConnectionHolder> stripe: connections) {
+      for (ConnectionHolder holder: stripe.values()) {
+        String node = holder.theServerID.toString();
+        JsonObject json = nodes.getObject(node);
+        int queued = holder.queued() + (json == null ? 0 : json.getNumber("queued").intValue());
+        nodes.putObject(node, new JsonObject().putNumber("queued", queued));
+      }
+    }
+    JsonObject json = new JsonObject().putString("node", serverID.toString());
+    if (metrics != null) {
+      for (Map.Entry<String, EventBusMetrics.AddressMetrics> entry: metrics.getAddresses().entrySet()) {
+        entry.getValue().toJson(getOrCreate(addresses, entry.getKey()));
+      }
+      if (metrics.getOtherAddresses() != null) {
+        metrics.getOtherAddresses().toJson(getOrCreate(addresses, EventBusMetrics.OTHER_ADDRESSES));
+      }
+      for (Map.Entry<ServerID, EventBusMetrics.NodeMetrics> entry: metrics.getNodes().entrySet()) {
+        entry.getValue().toJson(getOrCreate(nodes, entry.getKey().toString()));
+      }
+      json.putNumber("repliesReceived", metrics.getRepliesReceived());
+    }
+    return json.putObject("addresses", addresses).putObject("nodes", nodes);
+  }
+
+  private static JsonObject getOrCreate(JsonObject parent, String field) {
+    JsonObject json = parent.getObject(field);
+    if (json == null) {
+      json = new JsonObject();
+      parent.putObject(field, json);
+    }
+    return json;
+  }
+
+  private void startMetricsPublisher() {
+    if (metricsAddress != null) {
+      log.info("Publishing event bus metrics to " + metricsAddress + " every " + metricsInterval + "ms");
+      vertx.startOnEventLoop(new Runnable() {
+        public void run() {
+          metricsTimerID = vertx.setPeriodic(metricsInterval, new Handler<Long>() {
+            public void handle(Long timerID) {
+              publish(metricsAddress, getMetrics());
+            }
+          });
+        }
+      });
+    }
+  }
+
   @Override
   public void close(Handler<Void> doneHandler) {
+    closed = true;
+    if (metricsTimerID != -1) {
+      vertx.cancelTimer(metricsTimerID);
+    }
+    if (replySweeperTimerID != -1) {
+      vertx.cancelTimer(replySweeperTimerID);
+    }
 		if (clusterMgr != null) {
 			clusterMgr.close();
 		}
@@ -375,18 +605,40 @@ public class DefaultEventBus implements EventBus {
 		}
   }
 
-  void sendReply(final ServerID dest, final BaseMessage message, final Handler replyHandler) {
+  /**
+   * Send a message to the handlers at an address on one node, without looking up who subscribes to it. This is
+   * for internal use, e.g. by cluster managers which run over the event bus.
+   */
+  public void sendDirect(ServerID dest, String address, JsonObject message,
+                         Handler<Message<JsonObject>> replyHandler, int timeout) {
+    sendOrPub(dest, new JsonObjectMessage(true, address, message), replyHandler, timeout);
+  }
+
+  void sendReply(final ServerID dest, final BaseMessage original, final BaseMessage message, final Handler replyHandler) {
+    if (metrics != null && !isReplyAddress(original.address)) {
+      metrics.address(original.address).replied.incrementAndGet();
+    }
     sendOrPub(dest, message, replyHandler, this.defaultReplyTimeout);
   }
 
-  void respondFailure(final ServerID dest, final Message src, final Failure f) {
+  void respondFailure(final ServerID dest, final BaseMessage src, final Failure f) {
+    if (metrics != null && !isReplyAddress(src.address)) {
+      metrics.address(src.address).failed.incrementAndGet();
+    }
     sendOrPub(dest, new FailureMessage(true, src.replyAddress, f), null, 0);
   }
 
+  // Replies are always sent to an address made from the prefix of the node that is waiting for them
+  private boolean isReplyAddress(String address) {
+    return address.startsWith(prefix);
+  }
+
   private NetServer setServer() {
     return vertx.createNetServer().connectHandler(new Handler<NetSocket>() {
       public void handle(final NetSocket socket) {
         final RecordParser parser = RecordParser.newFixed(4, null);
+        // The node at the other end, once it has written something
+        final ServerID[] sender = new ServerID[1];
         Handler<Buffer> handler = new Handler<Buffer>() {
           int size = -1;
           public void handle(Buffer buff) {
@@ -395,9 +647,15 @@ public class DefaultEventBus implements EventBus {
               parser.fixedSizeMode(size);
             } else {
               BaseMessage received = MessageFactory.read(buff);
+              if (metrics != null) {
+                sender[0] = received.sender;
+                EventBusMetrics.NodeMetrics node = metrics.node(received.sender);
+                node.bytesIn.addAndGet(4 + buff.length());
+                node.messagesIn.incrementAndGet();
+              }
               if (received.type() == MessageFactory.TYPE_PING) {
                 // Send back a pong - a byte will do
-                socket.write(PONG);
+                socket.write(binaryJson ? PONG_WITH_BINARY_JSON : PONG);
               } else {
                 receiveMessage(received);
               }
@@ -408,6 +666,15 @@ public class DefaultEventBus implements EventBus {
         };
         parser.setOutput(handler);
         socket.dataHandler(parser);
+        if (metrics != null) {
+          socket.closedHandler(new SimpleHandler() {
+            public void handle() {
+              if (sender[0] != null) {
+                nodeGone(sender[0]);
+              }
+            }
+          });
+        }
       }
     }).listen(serverID.port, serverID.host);
   }
@@ -415,8 +682,11 @@ public class DefaultEventBus implements EventBus {
   private void sendToSubs(ServerIDs subs, BaseMessage message) {
     if (message.send) {
       // Choose one
-      ServerID sid = subs.choose();
-      if (!sid.equals(serverID)) {  //We don't send to this node
+      ServerID sid = subs.choose(targetPolicy);
+      if (sid != null && !sid.equals(serverID)) {  //We don't send to this node
+        if (message.replyAddress != null && targetPolicy instanceof TargetPolicies.LeastOutstanding) {
+          replies.sentTo(parseReplyID(message.replyAddress), sid);
+        }
         sendRemote(sid, message);
       } else {
         receiveMessage(message);
@@ -446,9 +716,14 @@ public class DefaultEventBus implements EventBus {
     try {
       message.sender = serverID;
       if (replyHandler != null) {
-        //message.replyAddress = UUID.randomUUID().toString();
-        message.replyAddress = prefix + String.valueOf(seq.incrementAndGet());
-        registerHandler(message.replyAddress, replyHandler, null, true, true, timeout);
+        // Only requests have their address recorded - a reply's address is another node's reply address
+        long replyID = replies.register(replyHandler, context, timeout, replyDest == null ? message.address : null);
+        message.replyAddress = prefix + replyID;
+        if (timeout > 0) {
+          startReplySweeper();
+        }
+        // Make sure the context's replies are dropped when it closes
+        getHandlerCloseHook(context);
       }
       if (replyDest != null) {
         if (!replyDest.equals(this.serverID)) {
@@ -457,6 +732,10 @@ public class DefaultEventBus implements EventBus {
           receiveMessage(message);
         }
       } else {
+        if (metrics != null) {
+          EventBusMetrics.AddressMetrics addressMetrics = metrics.address(message.address);
+          (message.send ? addressMetrics.sent : addressMetrics.published).incrementAndGet();
+        }
         if (subs != null) {
           subs.get(message.address, new AsyncResultHandler<ServerIDs>() {
             public void handle(AsyncResult<ServerIDs> event) {
@@ -488,20 +767,36 @@ public class DefaultEventBus implements EventBus {
   }
 
   private void registerHandler(final String address, final Handler<? extends Message> handler,
-                               AsyncResultHandler<Void> completionHandler,
-                               boolean replyHandler, boolean localOnly, long timeout) {
+                               AsyncResultHandler<Void> completionHandler, boolean localOnly) {
+    registerHandler(address, handler, completionHandler, localOnly, mailboxCapacity, mailboxOverflowPolicy);
+  }
+
+  private void registerHandler(final String address, final Handler<? extends Message> handler,
+                               AsyncResultHandler<Void> completionHandler, boolean localOnly,
+                               int mailboxCapacity, OverflowPolicy overflowPolicy) {
     if (address == null) {
       throw new NullPointerException("address");
     }
+    if (overflowPolicy == null) {
+      throw new NullPointerException("overflowPolicy");
+    }
     Context context = vertx.getOrAssignContext();
     Handlers handlers = handlerMap.get(address);
-    final HandlerHolder holder=new HandlerHolder(handler, replyHandler, localOnly, context);
+    final HandlerHolder holder = new HandlerHolder(address, handler, localOnly, context);
+    holder.mailbox = new Mailbox(context, mailboxCapacity, overflowPolicy, new Handler<BaseMessage>() {
+      public void handle(BaseMessage message) {
+        deliver(holder, message);
+      }
+    });
     if (handlers == null) {
       handlers = new Handlers();
       Handlers prevHandlers = handlerMap.putIfAbsent(address, handlers);
       if (prevHandlers != null) {
         handlers = prevHandlers;
       }
+      if (AddressTrie.isPattern(address)) {
+        patterns.put(address, address);
+      }
       if (completionHandler == null) {
         completionHandler = new AsyncResultHandler<Void>() {
           public void handle(AsyncResult<Void> event) {
@@ -512,42 +807,63 @@ public class DefaultEventBus implements EventBus {
         };
       }
       handlers.list.add(holder);
-      if (subs != null && !replyHandler && !localOnly) {
+      handlersChanged(address);
+      if (subs != null && !localOnly) {
         // Propagate the information
-        subs.put(address, serverID, completionHandler);
+        changeSub(context, address, completionHandler, true);
       } else {
         callCompletionHandler(completionHandler);
       }
     } else {
       handlers.list.add(holder);
+      handlersChanged(address);
       if (completionHandler != null) {
         callCompletionHandler(completionHandler);
       }
     }
-    
-    // Timeout only supported for replyHandlers
-    if (timeout>0L && replyHandler) {
-      holder.timeoutId=vertx.setTimer(timeout,new Handler<Long>() {
-        public void handle(Long event) {
-          // Clear timer reference
-          holder.timeoutId=0L;
-          doTimeout(address,holder);
-        }
-      });
-    }
-    
+
     getHandlerCloseHook(context).entries.add(new HandlerEntry(address, handler));
   }
-  
+
   private HandlerCloseHook getHandlerCloseHook(Context context) {
     HandlerCloseHook hcl = (HandlerCloseHook)context.getCloseHook(this);
     if (hcl == null) {
-      hcl = new HandlerCloseHook();
+      hcl = new HandlerCloseHook(context);
       context.putCloseHook(this, hcl);
     }
     return hcl;
   }
 
+  // A change to an address's subscription goes through the hook of whichever context has changes to it that haven't
+  // completed yet, so that a register and an unregister made from different contexts reach the cluster in the order
+  // they were made
+  private void changeSub(final Context context, String address, final AsyncResultHandler<Void> completionHandler,
+                         boolean put) {
+    HandlerCloseHook hook = getHandlerCloseHook(context);
+    while (true) {
+      HandlerCloseHook owner = subsOwners.putIfAbsent(address, hook);
+      if (owner == null || owner == hook) {
+        if (hook.changeSub(address, completionHandler, put)) {
+          return;
+        }
+      } else {
+        AsyncResultHandler<Void> handler = completionHandler == null ? null : new AsyncResultHandler<Void>() {
+          public void handle(final AsyncResult<Void> result) {
+            context.execute(new Runnable() {
+              public void run() {
+                completionHandler.handle(result);
+              }
+            });
+          }
+        };
+        if (owner.changeSub(address, handler, put)) {
+          return;
+        }
+      }
+      // The owner finished with the address in the meantime, so try again
+    }
+  }
+
   private void callCompletionHandler(AsyncResultHandler<Void> completionHandler) {
     AsyncResult<Void> f = new AsyncResult<>((Void)null);
     completionHandler.handle(f);
@@ -579,80 +895,108 @@ public class DefaultEventBus implements EventBus {
     // The holder can be null or different if the target server is restarted with same serverid
     // before the cleanup for the previous one has been processed
     // So we only actually remove the entry if no new entry has been added
-    if (connections.remove(theServerID, holder)) {
+    if (connections[holder.stripe].remove(theServerID, holder)) {
       log.debug("Cluster connection closed: " + theServerID + " holder " + holder);
+      nodeGone(theServerID);
 
       if (failed) {
+        // The other stripes to the same server will almost certainly fail too, so close them now rather than
+        // clean the subs for each of them
+        for (int i = 0; i < connectionsPerPeer; i++) {
+          ConnectionHolder other = connections[i].get(theServerID);
+          if (other != null && i != holder.stripe) {
+            cleanupConnection(theServerID, other, false);
+          }
+        }
         cleanSubsForServerID(theServerID);
       }
     }
   }
 
+  // Drops a node's metrics once we have no connection to it, so nodes that come and go don't pile up in them. If the
+  // node is still there its counts start again from zero
+  private void nodeGone(ServerID theServerID) {
+    if (metrics == null) {
+      return;
+    }
+    for (int i = 0; i < connectionsPerPeer; i++) {
+      if (connections[i].containsKey(theServerID)) {
+        return;
+      }
+    }
+    metrics.removeNode(theServerID);
+  }
+
   private void sendRemote(final ServerID theServerID, final BaseMessage message) {
     // We need to deal with the fact that connecting can take some time and is async, and we cannot
     // block to wait for it. So we add any sends to a pending list if not connected yet.
     // Once we connect we send them.
     // This can also be invoked concurrently from different threads, so it gets a little
     // tricky
-    ConnectionHolder holder = connections.get(theServerID);
+    // Messages for the same address always use the same stripe so they stay in order
+    int stripe = connectionsPerPeer == 1 ? 0 : (message.address.hashCode() & Integer.MAX_VALUE) % connectionsPerPeer;
+    ConnectionHolder holder = connections[stripe].get(theServerID);
     if (holder == null) {
-      NetClient client = vertx.createNetClient();
-      // When process is creating a lot of connections this can take some time
-      // so increase the timeout
-      client.setConnectTimeout(60 * 1000);
-      holder = new ConnectionHolder(client);
-      ConnectionHolder prevHolder = connections.putIfAbsent(theServerID, holder);
+      holder = new ConnectionHolder(theServerID, stripe);
+      ConnectionHolder prevHolder = connections[stripe].putIfAbsent(theServerID, holder);
       if (prevHolder != null) {
         // Another one sneaked in
         holder = prevHolder;
       }
-      else {
-        holder.connect(client, theServerID);
+      else if (connectionsPerPeer == 1) {
+        holder.connect(createClusterClient(), theServerID);
+      } else {
+        // Each stripe gets its own event loop, so its I/O isn't serialised with the other stripes
+        final ConnectionHolder theHolder = holder;
+        vertx.startOnEventLoop(new Runnable() {
+          public void run() {
+            theHolder.connect(createClusterClient(), theServerID);
+          }
+        });
       }
     }
     holder.writeMessage(message);
   }
 
+  private NetClient createClusterClient() {
+    NetClient client = vertx.createNetClient();
+    // When process is creating a lot of connections this can take some time
+    // so increase the timeout
+    client.setConnectTimeout(60 * 1000);
+    return client;
+  }
+
   private void schedulePing(final ConnectionHolder holder) {
     holder.pingTimeoutID = vertx.setTimer(PING_INTERVAL, new Handler<Long>() {
       public void handle(Long ignore) {
-        // If we don't get a pong back in time we close the connection
-        holder.timeoutID = vertx.setTimer(PING_REPLY_INTERVAL, new Handler<Long>() {
-          public void handle(Long timerID) {
-            // Didn't get pong in time - consider connection dead
-            log.info("No pong from server " + serverID + " - will consider it dead, timerID: " + timerID + " holder " + holder);
-            cleanupConnection(holder.theServerID, holder, true);
-          }
-        });
-        new PingMessage(serverID).write(holder.socket);
+        ping(holder);
       }
     });
   }
 
-  private void removeSub(String subName, ServerID theServerID, final AsyncResultHandler<Void> completionHandler) {
-    subs.remove(subName, theServerID, new AsyncResultHandler<Boolean>() {
-      public void handle(AsyncResult<Boolean> event) {
-        if (completionHandler != null) {
-          AsyncResult<Void> result;
-          if (event.exception != null) {
-            result = new AsyncResult<>(event.exception);
-          } else {
-            result = new AsyncResult<>((Void)null);
-          }
-          completionHandler.handle(result);
-        } else {
-          if (event.exception != null) {
-            log.error("Failed to remove subscription", event.exception);
-          }
-        }
+  private void ping(final ConnectionHolder holder) {
+    // If we don't get a pong back in time we close the connection
+    holder.timeoutID = vertx.setTimer(PING_REPLY_INTERVAL, new Handler<Long>() {
+      public void handle(Long timerID) {
+        // Didn't get pong in time - consider connection dead
+        log.info("No pong from server " + serverID + " - will consider it dead, timerID: " + timerID + " holder " + holder);
+        cleanupConnection(holder.theServerID, holder, true);
       }
     });
+    new PingMessage(serverID).write(holder.socket);
   }
 
   // Called when a message is incoming
   private void receiveMessage(final BaseMessage msg) {
     msg.bus = this;
-    final Handlers handlers = handlerMap.get(msg.address);
+    if (msg.address.startsWith(prefix)) {
+      receiveReply(msg);
+      return;
+    }
+    Handlers handlers = handlerMap.get(msg.address);
+    if (!patterns.isEmpty()) {
+      handlers = matchPatterns(msg.address, handlers);
+    }
     if (handlers != null) {
       if (msg.send) {
         //Choose one
@@ -675,59 +1019,197 @@ public class DefaultEventBus implements EventBus {
     }
   }
 
-  private void doTimeout(final String address, final HandlerHolder holder) {
-    holder.context.execute(new Runnable() {
+  // Combine the handlers for an address with the handlers of the patterns it matches. The result is cached, so
+  // only the first message for an address has to match it against the patterns
+  private Handlers matchPatterns(String address, Handlers exact) {
+    Handlers combined = patternMatches.get(address);
+    if (combined != null) {
+      return combined == NO_PATTERN_MATCHES ? exact : combined;
+    }
+    long gen = patternGeneration.get();
+    List<HandlerHolder> all = new ArrayList<>();
+    for (String pattern: patterns.match(address)) {
+      Handlers handlers = handlerMap.get(pattern);
+      if (handlers != null) {
+        all.addAll(handlers.list);
+      }
+    }
+    if (all.isEmpty()) {
+      combined = NO_PATTERN_MATCHES;
+    } else {
+      if (exact != null) {
+        all.addAll(0, exact.list);
+      }
+      combined = new Handlers(all, patternPos);
+    }
+    if (patternMatches.size() < MAX_CACHED_PATTERN_MATCHES) {
+      patternMatches.put(address, combined);
+      // If anything changed while we were working it out, it may already be out of date
+      if (patternGeneration.get() != gen) {
+        patternMatches.remove(address, combined);
+      }
+    }
+    return combined == NO_PATTERN_MATCHES ? exact : combined;
+  }
+
+  // Must be called after the handlers for an address change
+  private void handlersChanged(String address) {
+    if (patterns.isEmpty() && patternMatches.isEmpty()) {
+      return;
+    }
+    patternGeneration.incrementAndGet();
+    if (AddressTrie.isPattern(address)) {
+      patternMatches.clear();
+    } else {
+      patternMatches.remove(address);
+    }
+  }
+
+  private void receiveReply(final BaseMessage msg) {
+    ReplyTable.Entry entry = replies.remove(parseReplyID(msg.address));
+    if (entry != null) {
+      if (metrics != null) {
+        metrics.replyReceived();
+      }
+      Handler handler = entry.handler();
+      Context context = entry.context();
+      replies.release(entry);
+      doReply(msg, handler, context);
+    } else if (msg.replyAddress != null) {
+      respondFailure(msg.sender, msg, new Failure(Failure.NOT_IMPLEMENTED, String.format("No handler registered for %s", msg.address)));
+    }
+  }
+
+  // Reply addresses are the prefix followed by the reply id - parse the id without creating a substring
+  private long parseReplyID(String address) {
+    long id = 0;
+    for (int i = prefix.length(); i < address.length(); i++) {
+      char c = address.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      id = id * 10 + (c - '0');
+    }
+    return id;
+  }
+
+  private void doReply(final BaseMessage msg, final Handler handler, Context context) {
+    final BaseMessage copied = (BaseMessage) msg.copyForDelivery();
+
+    context.execute(new Runnable() {
       public void run() {
-        // Check handler still valid
-        if (holder.removed)
-          return;
-        
-        log.debug("Request timeout on "+address+", failing");
-        
         try {
-          if (holder.handler instanceof ReplyHandler) {
-            ((ReplyHandler)holder.handler).fail(new Failure(Failure.REQUEST_TIMEOUT,"No response recieved"));
-            return;
+          copied.decodeBody();
+          if (copied instanceof FailureMessage) {
+            doFailure(handler, (FailureMessage) copied);
+          } else {
+            handler.handle(copied);
           }
         } catch (Throwable t) {
-          log.warn("Timeout failure handler failed (e="+t+") Ignoring");
+          // If the reply has a reply then try send a failure to the originator
+          if (copied.replyAddress != null)
+            respondFailure(msg.sender, copied, new Failure(Failure.INTERNAL_ERROR, t));
         }
-
-        // Unregister handler
-        unregisterHandler(address, holder.handler);
       }
     });
   }
-  
-  private void doReceive(final BaseMessage msg, final HandlerHolder holder) {
-    // Each handler gets a fresh copy
-    final Message copied = msg.copy();
 
-    holder.context.execute(new Runnable() {
+  private void startReplySweeper() {
+    if (replySweeperStarted.compareAndSet(false, true)) {
+      // The sweeper gets its own context so it isn't tied to the lifetime of whichever verticle sent first
+      vertx.startOnEventLoop(new Runnable() {
+        public void run() {
+          replySweeperTimerID = vertx.setPeriodic(REPLY_TIMEOUT_SWEEP_INTERVAL, new Handler<Long>() {
+            public void handle(Long timerID) {
+              List<ReplyTable.Entry> expired = replies.expire(System.currentTimeMillis());
+              if (expired != null) {
+                for (ReplyTable.Entry entry: expired) {
+                  doTimeout(entry);
+                  replies.release(entry);
+                }
+              }
+            }
+          });
+          // The bus may have been closed before the sweeper got started
+          if (closed) {
+            vertx.cancelTimer(replySweeperTimerID);
+          }
+        }
+      });
+    }
+  }
+
+  private void doTimeout(final ReplyTable.Entry entry) {
+    log.debug("Request timeout on reply " + entry.id() + ", failing");
+    if (metrics != null && entry.address() != null) {
+      metrics.address(entry.address()).timedOut.incrementAndGet();
+    }
+    failReply(entry.handler(), entry.context(), new Failure(Failure.REQUEST_TIMEOUT, "No response recieved"));
+  }
+
+  private void failReply(final Handler handler, Context context, final Failure failure) {
+    context.execute(new Runnable() {
       public void run() {
-        // Need to check handler is still there - the handler might have been removed after the message were sent but
-        // before it was received
         try {
-          if (!holder.removed) {
-            // Failure messages are reported to ReplyHandler or logged
-            if (copied instanceof FailureMessage) {
-              doFailure(holder.handler, (FailureMessage) copied);
-            } else {
-              holder.handler.handle(copied);
-            }
+          if (handler instanceof ReplyHandler) {
+            ((ReplyHandler)handler).fail(failure);
           }
         } catch (Throwable t) {
-          // If the message has a reply then try send a failure to the originator
-          if (copied.replyAddress != null)
-            respondFailure(msg.sender, copied, new Failure(Failure.INTERNAL_ERROR, t));
-        } finally {
-          if (holder.replyHandler) {
-            unregisterHandler(msg.address, holder.handler);
-          }
+          log.warn("Reply failure handler failed (e="+t+") Ignoring");
         }
       }
     });
   }
+
+  // A message sent from this node couldn't be sent, so fail its reply handler now rather than leave it to time out
+  private void failSend(BaseMessage message, Failure failure) {
+    if (message.replyAddress != null && isReplyAddress(message.replyAddress)) {
+      ReplyTable.Entry entry = replies.remove(parseReplyID(message.replyAddress));
+      if (entry != null) {
+        failReply(entry.handler(), entry.context(), failure);
+        replies.release(entry);
+      }
+    }
+  }
+
+  private void doReceive(final BaseMessage msg, final HandlerHolder holder) {
+    // Each handler gets a fresh copy
+    final BaseMessage copied = (BaseMessage) msg.copyForDelivery();
+
+    BaseMessage dropped = holder.mailbox.offer(copied);
+    // Tell the sender of a dropped message it won't get a reply, unless the policy is to drop it quietly
+    if (dropped != null && dropped.replyAddress != null && holder.mailbox.getPolicy() != OverflowPolicy.DROP_NEWEST) {
+      respondFailure(dropped.sender, dropped, new Failure(Failure.SERVICE_UNAVAILABLE,
+                                                          String.format("Mailbox full for %s", msg.address)));
+    }
+  }
+
+  // Called on the handler's context
+  private void deliver(HandlerHolder holder, BaseMessage copied) {
+    // Need to check handler is still there - the handler might have been removed after the message were sent but
+    // before it was received
+    try {
+      if (!holder.removed) {
+        long start = metrics == null ? 0 : System.nanoTime();
+        copied.decodeBody();
+        // Failure messages are reported to ReplyHandler or logged
+        if (copied instanceof FailureMessage) {
+          doFailure(holder.handler, (FailureMessage) copied);
+        } else {
+          holder.handler.handle(copied);
+        }
+        if (metrics != null) {
+          EventBusMetrics.AddressMetrics addressMetrics = metrics.address(holder.address);
+          addressMetrics.received.incrementAndGet();
+          addressMetrics.handlerTime.recordNanos(System.nanoTime() - start);
+        }
+      }
+    } catch (Throwable t) {
+      // If the message has a reply then try send a failure to the originator
+      if (copied.replyAddress != null)
+        respondFailure(copied.sender, copied, new Failure(Failure.INTERNAL_ERROR, t));
+    }
+  }
   
   private void doFailure(Handler handler, FailureMessage fm) {
     try {
@@ -744,19 +1226,18 @@ public class DefaultEventBus implements EventBus {
   }
 	
   private static class HandlerHolder {
+    final String address;
     final Context context;
     final Handler handler;
-    final boolean replyHandler;
     final boolean localOnly;
-    volatile long timeoutId;
+    Mailbox mailbox;
     volatile boolean removed;
 
-    HandlerHolder(Handler handler, boolean replyHandler, boolean localOnly, Context context) {
+    HandlerHolder(String address, Handler handler, boolean localOnly, Context context) {
+      this.address = address;
       this.context = context;
       this.handler = handler;
-      this.replyHandler = replyHandler;
       this.localOnly = localOnly;
-      this.timeoutId = 0L;
     }
 
     @Override
@@ -774,36 +1255,72 @@ public class DefaultEventBus implements EventBus {
   }
 
   private class ConnectionHolder {
-    final NetClient client;
+    final int stripe;
     volatile NetSocket socket;
-    final Queue<BaseMessage> pending = new ConcurrentLinkedQueue<>();
+    WriteCoalescer coalescer;
+    // Only accessed when synchronized on the holder
+    final Queue<BaseMessage> pending = new ArrayDeque<>();
     volatile boolean connected;
+    // Set once the node has said in a pong that it can read versioned frames, and binary JSON. Until then, messages
+    // are sent in the legacy form and JSON as text
+    volatile boolean peerVersioned;
+    volatile boolean peerBinaryJson;
     long timeoutID = -1;
     long pingTimeoutID = -1;
-    ServerID theServerID;
+    final ServerID theServerID;
 
-    private ConnectionHolder(NetClient client) {
-      this.client = client;
+    private ConnectionHolder(ServerID theServerID, int stripe) {
+      this.theServerID = theServerID;
+      this.stripe = stripe;
     }
 
     void writeMessage(BaseMessage message) {
       if (connected) {
-        message.write(socket);
+        doWrite(message);
       } else {
         synchronized (this) {
           if (connected) {
-            message.write(socket);
-          } else {
+            doWrite(message);
+          } else if (pending.size() < maxPendingPerConnection || maxPendingPerConnection <= 0) {
             pending.add(message);
+          } else {
+            log.warn("Too many messages waiting for connection to " + theServerID + ", dropping message for " +
+                     message.address);
+            if (metrics != null) {
+              metrics.node(theServerID).dropped.incrementAndGet();
+            }
+            failSend(message, new Failure(Failure.SERVICE_UNAVAILABLE, "Not connected to " + theServerID));
           }
         }
       }
     }
 
+    private void doWrite(BaseMessage message) {
+      Buffer frame = message.encode(peerVersioned, peerBinaryJson);
+      if (metrics != null) {
+        EventBusMetrics.NodeMetrics node = metrics.node(theServerID);
+        node.bytesOut.addAndGet(frame.length());
+        node.messagesOut.incrementAndGet();
+      }
+      // Netty doesn't move the reader index of a buffer it writes, so the same frame can be written to several nodes
+      if (coalescer != null) {
+        coalescer.write(frame);
+      } else {
+        socket.write(frame);
+      }
+    }
+
+    // The number of messages waiting to be written to the node
+    synchronized int queued() {
+      return pending.size() + (coalescer == null ? 0 : coalescer.size());
+    }
+
     synchronized void connected(final ServerID theServerID, NetSocket socket) {
       this.socket = socket;
-      this.theServerID = theServerID;
-      connected = true;
+      if (writeBatching) {
+        coalescer = new WriteCoalescer(vertx, vertx.getContext(), socket, writeBatchBytes, writeBatchMessages,
+                                       writeBatchDelay);
+      }
       socket.exceptionHandler(new Handler<Exception>() {
         public void handle(Exception e) {
           cleanupConnection(theServerID, ConnectionHolder.this, true);
@@ -817,36 +1334,53 @@ public class DefaultEventBus implements EventBus {
       socket.dataHandler(new Handler<Buffer>() {
         public void handle(Buffer data) {
           // Got a pong back
+          byte flags = data.getByte(data.length() - 1);
+          peerVersioned = (flags & PONG_VERSIONED) != 0;
+          peerBinaryJson = binaryJson && (flags & PONG_BINARY_JSON) != 0;
           vertx.cancelTimer(timeoutID);
           schedulePing(ConnectionHolder.this);
         }
       });
-      // Start a pinger
-      schedulePing(ConnectionHolder.this);
+      // Start a pinger. The first ping goes straight away, so we find out what the node can read from its pong
+      ping(ConnectionHolder.this);
       for (BaseMessage message : pending) {
-        message.write(socket);
+        doWrite(message);
       }
       pending.clear();
+      // Only now, as a message written without holding the lock mustn't overtake the pending ones. A stripe connects
+      // on its own event loop, so messages can be written from another thread while we're here
+      connected = true;
     }
 
     void connect(NetClient client, final ServerID theServerID) {
-      client.connect(theServerID.port, theServerID.host, new Handler<NetSocket>() {
-        public void handle(final NetSocket socket) {
-          connected(theServerID, socket);
-        }
-      });
+      // Set the exception handler first - a refused connection to localhost can fail before connect returns
       client.exceptionHandler(new Handler<Exception>() {
         public void handle(Exception e) {
           cleanupConnection(theServerID, ConnectionHolder.this, true);
         }
       });
+      client.connect(theServerID.port, theServerID.host, new Handler<NetSocket>() {
+        public void handle(final NetSocket socket) {
+          connected(theServerID, socket);
+        }
+      });
     }
   }
 
   private static class Handlers {
 
-    final List<HandlerHolder> list = new CopyOnWriteArrayList<>();
-    final AtomicInteger pos = new AtomicInteger(0);
+    final List<HandlerHolder> list;
+    final AtomicInteger pos;
+
+    Handlers() {
+      this(new CopyOnWriteArrayList<HandlerHolder>(), new AtomicInteger(0));
+    }
+
+    Handlers(List<HandlerHolder> list, AtomicInteger pos) {
+      this.list = list;
+      this.pos = pos;
+    }
+
     HandlerHolder choose() {
       while (true) {
         int size = list.size();
@@ -894,15 +1428,133 @@ public class DefaultEventBus implements EventBus {
     }
   }
 
+  /*
+  Keeps track of the handlers registered from a context, so they can be unregistered when it closes.
+  It also gathers the subscription changes made from the context and sends them to the cluster in one batch on the
+  next tick, so a verticle that registers many handlers when it starts, or whose handlers are all unregistered when
+  it's undeployed, doesn't make a round trip to the cluster for each one.
+   */
   private class HandlerCloseHook implements Runnable {
 
+    final Context context;
     final Set<HandlerEntry> entries = new HashSet<>();
-    
+
+    private Map<String, List<AsyncResultHandler<Void>>> puts = new LinkedHashMap<>();
+    private Map<String, List<AsyncResultHandler<Void>>> removes = new LinkedHashMap<>();
+    private List<AsyncResultHandler<Void>> cancelled = new ArrayList<>();
+    private boolean flushScheduled;
+    // The number of changes to each address that are waiting to be sent, or whose batch hasn't completed
+    private final Map<String, Integer> unfinished = new HashMap<>();
+
+    private final Runnable flushTask = new Runnable() {
+      public void run() {
+        flushSubs();
+      }
+    };
+
+    HandlerCloseHook(Context context) {
+      this.context = context;
+    }
+
     public void run() {
       for (HandlerEntry entry: new HashSet<>(entries)) {
         unregisterHandler(entry.address, entry.handler);
       }
+      // The context is closing so don't wait for the next tick
+      flushSubs();
+      replies.removeAll(context);
+    }
+
+    /**
+     * @return false if another hook has taken over the address's changes, as this one has none left
+     */
+    synchronized boolean changeSub(String address, AsyncResultHandler<Void> completionHandler, boolean put) {
+      if (subsOwners.get(address) != this) {
+        return false;
+      }
+      Map<String, List<AsyncResultHandler<Void>>> changes = put ? puts : removes;
+      Map<String, List<AsyncResultHandler<Void>>> opposites = put ? removes : puts;
+      List<AsyncResultHandler<Void>> handlers = opposites.remove(address);
+      if (handlers != null) {
+        // It cancels out a change that hasn't been sent yet, so there's nothing to send
+        cancelled.addAll(handlers);
+        handlers = cancelled;
+        finished(address);
+      } else {
+        handlers = changes.get(address);
+        if (handlers == null) {
+          handlers = new ArrayList<>(1);
+          changes.put(address, handlers);
+          Integer count = unfinished.get(address);
+          unfinished.put(address, count == null ? 1 : count + 1);
+        }
+      }
+      if (completionHandler != null) {
+        handlers.add(completionHandler);
+      }
+      if (!flushScheduled) {
+        flushScheduled = true;
+        context.execute(flushTask);
+      }
+      return true;
+    }
+
+    // Called when a change has been cancelled or its batch has completed
+    private void finished(String address) {
+      int count = unfinished.get(address) - 1;
+      if (count == 0) {
+        unfinished.remove(address);
+        subsOwners.remove(address, this);
+      } else {
+        unfinished.put(address, count);
+      }
+    }
+
+    void flushSubs() {
+      Map<String, List<AsyncResultHandler<Void>>> thePuts;
+      Map<String, List<AsyncResultHandler<Void>>> theRemoves;
+      List<AsyncResultHandler<Void>> theCancelled;
+      synchronized (this) {
+        flushScheduled = false;
+        thePuts = puts;
+        theRemoves = removes;
+        theCancelled = cancelled;
+        puts = new LinkedHashMap<>();
+        removes = new LinkedHashMap<>();
+        cancelled = new ArrayList<>();
+      }
+      if (!theRemoves.isEmpty()) {
+        subs.removeAll(new ArrayList<>(theRemoves.keySet()), serverID, subsCompletionHandler(theRemoves, "remove"));
+      }
+      if (!thePuts.isEmpty()) {
+        subs.putAll(new ArrayList<>(thePuts.keySet()), serverID, subsCompletionHandler(thePuts, "add"));
+      }
+      for (AsyncResultHandler<Void> handler: theCancelled) {
+        callCompletionHandler(handler);
+      }
+    }
+
+    private AsyncResultHandler<Void> subsCompletionHandler(final Map<String, List<AsyncResultHandler<Void>>> changes,
+                                                           final String action) {
+      return new AsyncResultHandler<Void>() {
+        public void handle(AsyncResult<Void> result) {
+          synchronized (HandlerCloseHook.this) {
+            for (String address: changes.keySet()) {
+              finished(address);
+            }
+          }
+          boolean handled = false;
+          for (List<AsyncResultHandler<Void>> handlers: changes.values()) {
+            for (AsyncResultHandler<Void> handler: handlers) {
+              handler.handle(result);
+              handled = true;
+            }
+          }
+          if (!handled && result.exception != null) {
+            log.error("Failed to " + action + " subscriptions", result.exception);
+          }
+        }
+      };
     }
   }
 }
-
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.eventbus.impl;
+
+import org.vertx.java.core.impl.Histogram;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.net.impl.ServerID;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the traffic through an event bus, per address and per cluster node.<p>
+ * Reply addresses are never used as keys - replies are counted against the address of the message they reply to.
+ * Once {@code maxAddresses} addresses have been seen, any further addresses are counted together under
+ * {@link #OTHER_ADDRESSES}, so applications that use short lived addresses can't make the metrics grow without limit.
+ * A node's metrics are removed when the bus no longer has a connection to it, so they don't grow with nodes that
+ * have left the cluster.
+ */
+class EventBusMetrics {
+
+  static final String OTHER_ADDRESSES = "*";
+
+  private final int maxAddresses;
+  private final ConcurrentMap<String, AddressMetrics> addresses = new ConcurrentHashMap<>();
+  private final AddressMetrics otherAddresses = new AddressMetrics();
+  private volatile boolean overflowed;
+  private final ConcurrentMap<ServerID, NodeMetrics> nodes = new ConcurrentHashMap<>();
+  private final AtomicLong repliesReceived = new AtomicLong();
+
+  EventBusMetrics(int maxAddresses) {
+    this.maxAddresses = maxAddresses;
+  }
+
+  AddressMetrics address(String address) {
+    AddressMetrics metrics = addresses.get(address);
+    if (metrics == null) {
+      if (addresses.size() >= maxAddresses) {
+        overflowed = true;
+        return otherAddresses;
+      }
+      metrics = new AddressMetrics();
+      AddressMetrics prev = addresses.putIfAbsent(address, metrics);
+      if (prev != null) {
+        metrics = prev;
+      }
+    }
+    return metrics;
+  }
+
+  NodeMetrics node(ServerID serverID) {
+    NodeMetrics metrics = nodes.get(serverID);
+    if (metrics == null) {
+      metrics = new NodeMetrics();
+      NodeMetrics prev = nodes.putIfAbsent(serverID, metrics);
+      if (prev != null) {
+        metrics = prev;
+      }
+    }
+    return metrics;
+  }
+
+  void removeNode(ServerID serverID) {
+    nodes.remove(serverID);
+  }
+
+  void replyReceived() {
+    repliesReceived.incrementAndGet();
+  }
+
+  long getRepliesReceived() {
+    return repliesReceived.get();
+  }
+
+  Map<String, AddressMetrics> getAddresses() {
+    return addresses;
+  }
+
+  /**
+   * @return the metrics of the addresses over the limit, or null if there haven't been any
+   */
+  AddressMetrics getOtherAddresses() {
+    return overflowed ? otherAddresses : null;
+  }
+
+  Map<ServerID, NodeMetrics> getNodes() {
+    return nodes;
+  }
+
+  static class AddressMetrics {
+    final AtomicLong sent = new AtomicLong();
+    final AtomicLong published = new AtomicLong();
+    final AtomicLong received = new AtomicLong();
+    final AtomicLong replied = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+    final AtomicLong timedOut = new AtomicLong();
+    final Histogram handlerTime = new Histogram();
+
+    void toJson(JsonObject json) {
+      json.putNumber("sent", sent.get())
+          .putNumber("published", published.get())
+          .putNumber("received", received.get())
+          .putNumber("replied", replied.get())
+          .putNumber("failed", failed.get())
+          .putNumber("timedOut", timedOut.get())
+          .putObject("handlerTime", handlerTime.toJson());
+    }
+  }
+
+  static class NodeMetrics {
+    final AtomicLong bytesOut = new AtomicLong();
+    final AtomicLong bytesIn = new AtomicLong();
+    final AtomicLong messagesOut = new AtomicLong();
+    final AtomicLong messagesIn = new AtomicLong();
+    final AtomicLong dropped = new AtomicLong();
+
+    void toJson(JsonObject json) {
+      json.putNumber("bytesOut", bytesOut.get())
+          .putNumber("bytesIn", bytesIn.get())
+          .putNumber("messagesOut", messagesOut.get())
+          .putNumber("messagesIn", messagesIn.get())
+          .putNumber("dropped", dropped.get());
+    }
+  }
+}
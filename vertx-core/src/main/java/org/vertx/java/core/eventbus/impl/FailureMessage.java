@@ -15,8 +15,8 @@
  */
 package org.vertx.java.core.eventbus.impl;
 
-import org.jboss.netty.util.CharsetUtil;
 import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.buffer.impl.Utf8;
 import org.vertx.java.core.eventbus.Failure;
 import org.vertx.java.core.eventbus.Message;
 
@@ -27,8 +27,8 @@ import org.vertx.java.core.eventbus.Message;
  */
 public class FailureMessage extends BaseMessage<Failure> {
 
-  private byte[] encReason;
-  private byte[] encTrace;
+  private int reasonLength;
+  private int traceLength;
 
   FailureMessage(boolean send, String address, Failure body) {
     super(send, address, body);
@@ -70,21 +70,22 @@ public class FailureMessage extends BaseMessage<Failure> {
     } else {
       buff.appendByte((byte) 1);
       buff.appendInt(body.code);
-      buff.appendInt(encReason.length);
-      buff.appendBytes(encReason);
-      buff.appendInt(encTrace.length);
-      buff.appendBytes(encTrace);
+      buff.appendInt(reasonLength);
+      buff.appendString(body.reason);
+      buff.appendInt(traceLength);
+      if (body.trace != null) {
+        buff.appendString(body.trace);
+      }
     }
-    encReason = encTrace = null;
   }
 
   protected int getBodyLength() {
     if (body == null) {
       return 1;
     } else {
-      encReason = body.reason.getBytes(CharsetUtil.UTF_8);
-      encTrace = (body.trace != null) ? body.trace.getBytes(CharsetUtil.UTF_8) : new byte[0];
-      return 1 + 4 + (4 + encReason.length) + (4 + encTrace.length);
+      reasonLength = Utf8.encodedLength(body.reason);
+      traceLength = body.trace != null ? Utf8.encodedLength(body.trace) : 0;
+      return 1 + 4 + (4 + reasonLength) + (4 + traceLength);
     }
   }
 
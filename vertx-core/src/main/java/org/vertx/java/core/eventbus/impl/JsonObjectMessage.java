@@ -16,28 +16,28 @@
 
 package org.vertx.java.core.eventbus.impl;
 
-import org.jboss.netty.util.CharsetUtil;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.eventbus.Message;
 import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.json.impl.BinaryJson;
 import org.vertx.java.core.logging.Logger;
 import org.vertx.java.core.logging.impl.LoggerFactory;
 
+import java.util.Map;
+
 /**
  * @author <a href="http://tfox.org">Tim Fox</a>
  */
-class JsonObjectMessage extends BaseMessage<JsonObject> {
+class JsonObjectMessage extends BaseMessage<JsonObject> implements BaseMessage.BinaryBody {
 
   private static final Logger log = LoggerFactory.getLogger(JsonObjectMessage.class);
 
-  private byte[] encoded;
-
   JsonObjectMessage(boolean send, String address, JsonObject body) {
     super(send, address, body);
   }
 
   private JsonObjectMessage(JsonObjectMessage other) {
-    super(other.send, other.address, other.body == null ? null : other.body.copy());
+    super(other.send, other.address, other.body == null || other.body.isFrozen() ? other.body : other.body.copy());
     this.replyAddress = other.replyAddress;
     this.bus = other.bus;
     this.sender = other.sender;
@@ -47,15 +47,18 @@ class JsonObjectMessage extends BaseMessage<JsonObject> {
     super(readBuff);
   }
 
+  @SuppressWarnings("unchecked")
   protected void readBody(int pos, Buffer readBuff) {
     boolean isNull = readBuff.getByte(pos) == (byte)0;
     if (!isNull) {
       pos++;
       int strLength = readBuff.getInt(pos);
       pos += 4;
-      byte[] bytes = readBuff.getBytes(pos, pos + strLength);
-      String str = new String(bytes, CharsetUtil.UTF_8);
-      body = new JsonObject(str);
+      if (MessageFactory.readType(readBuff) == MessageFactory.TYPE_BINARY_JSON_OBJECT) {
+        body = new JsonObject((Map<String, Object>) BinaryJson.decode(readBuff, pos, pos + strLength));
+      } else {
+        body = new JsonObject(readBuff.slice(pos, pos + strLength));
+      }
     }
   }
 
@@ -64,8 +67,23 @@ class JsonObjectMessage extends BaseMessage<JsonObject> {
       buff.appendByte((byte)0);
     } else {
       buff.appendByte((byte)1);
-      buff.appendInt(encoded.length);
-      buff.appendBytes(encoded);
+      // The body is encoded straight into the frame, so its length is filled in afterwards
+      int lengthPos = buff.length();
+      buff.appendInt(0);
+      body.encode(buff);
+      buff.setInt(lengthPos, buff.length() - lengthPos - 4);
+    }
+  }
+
+  public void writeBinaryBody(Buffer buff) {
+    if (body == null) {
+      buff.appendByte((byte)0);
+    } else {
+      buff.appendByte((byte)1);
+      int lengthPos = buff.length();
+      buff.appendInt(0);
+      body.encodeBinary(buff);
+      buff.setInt(lengthPos, buff.length() - lengthPos - 4);
     }
   }
 
@@ -73,9 +91,8 @@ class JsonObjectMessage extends BaseMessage<JsonObject> {
     if (body == null) {
       return 1;
     } else {
-      String strJson = body.encode();
-      encoded = strJson.getBytes(CharsetUtil.UTF_8);
-      return 1 + 4 + encoded.length;
+      // We don't know how long the JSON is until it's been encoded
+      return 1 + 4;
     }
   }
 
@@ -87,6 +104,10 @@ class JsonObjectMessage extends BaseMessage<JsonObject> {
     return MessageFactory.TYPE_JSON;
   }
 
+  public byte binaryType() {
+    return MessageFactory.TYPE_BINARY_JSON_OBJECT;
+  }
+
   protected BaseMessage createReplyMessage(JsonObject reply) {
     return new JsonObjectMessage(true, replyAddress, reply);
   }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2011-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.eventbus.impl;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.eventbus.OverflowPolicy;
+import org.vertx.java.core.impl.Context;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The messages waiting to be handled by a registered handler.<p>
+ * Rather than each message being a separate task on the handler's context, messages wait here and a single task
+ * delivers them, so a slow handler can't fill its context's task queue. If a capacity is set, messages that arrive
+ * when the mailbox is full are dealt with according to the {@link OverflowPolicy}.<p>
+ * Messages can be offered from any thread.
+ */
+class Mailbox {
+
+  // Max messages delivered by one task, so other tasks on the context get a look in
+  private static final int DRAIN_QUANTUM = 32;
+
+  private final Context context;
+  private final int capacity;
+  private final OverflowPolicy policy;
+  private final Handler<BaseMessage> deliverer;
+
+  private final Queue<BaseMessage> messages = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+  private final Runnable drainTask = new Runnable() {
+    public void run() {
+      drain();
+    }
+  };
+
+  /**
+   * @param capacity the max number of waiting messages, or 0 for no limit
+   */
+  Mailbox(Context context, int capacity, OverflowPolicy policy, Handler<BaseMessage> deliverer) {
+    this.context = context;
+    this.capacity = capacity;
+    this.policy = policy;
+    this.deliverer = deliverer;
+  }
+
+  /**
+   * Add a message to the mailbox
+   * @return the message that was dropped to keep within the capacity, which is either the new one or, with
+   * {@link OverflowPolicy#DROP_OLDEST}, the oldest one waiting. Null if nothing was dropped
+   */
+  BaseMessage offer(BaseMessage message) {
+    BaseMessage dropped = null;
+    if (size.incrementAndGet() > capacity && capacity > 0) {
+      if (policy == OverflowPolicy.DROP_OLDEST) {
+        dropped = messages.poll();
+        if (dropped != null) {
+          size.decrementAndGet();
+        }
+      } else {
+        size.decrementAndGet();
+        return message;
+      }
+    }
+    messages.add(message);
+    if (drainScheduled.compareAndSet(false, true)) {
+      context.execute(drainTask);
+    }
+    return dropped;
+  }
+
+  OverflowPolicy getPolicy() {
+    return policy;
+  }
+
+  int size() {
+    return size.get();
+  }
+
+  private void drain() {
+    for (int i = 0; i < DRAIN_QUANTUM; i++) {
+      BaseMessage message = messages.poll();
+      if (message == null) {
+        break;
+      }
+      size.decrementAndGet();
+      deliverer.handle(message);
+    }
+    // Reset after draining - a message added after the last poll either sees the flag still set, in which case
+    // we'll find it below, or schedules another drain itself
+    drainScheduled.set(false);
+    if (!messages.isEmpty() && drainScheduled.compareAndSet(false, true)) {
+      context.execute(drainTask);
+    }
+  }
+}
@@ -16,7 +16,12 @@
 
 package org.vertx.java.core.eventbus.impl;
 
+import org.jboss.netty.util.CharsetUtil;
 import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.net.impl.ServerID;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author <a href="http://tfox.org">Tim Fox</a>
@@ -37,9 +42,25 @@ public class MessageFactory {
   static final byte TYPE_STRING = 11;
   static final byte TYPE_JSON = 12;
   static final byte TYPE_FAILURE = 13;
+  // JSON bodies in binary form, which are only sent to nodes that have said they can read them
+  static final byte TYPE_BINARY_JSON_OBJECT = 14;
+  static final byte TYPE_BINARY_JSON_ARRAY = 15;
+  // Bodies encoded by a codec registered with the event bus
+  static final byte TYPE_OBJECT = 16;
+
+  /*
+  Versioned frames start with a version byte which has the top bit set. Legacy frames start directly with the
+  message type, which never has the top bit set, so we can read both. Older nodes can only read legacy frames, so
+  versioned ones are only written to nodes that have said in a pong that they can read them.
+   */
+  static final byte WIRE_VERSION = (byte)0x81;
+
+  // The encoded form of each node's ServerID (port, host length, host) - there are only as many of these as
+  // there are nodes in the cluster
+  private static final ConcurrentMap<ServerID, byte[]> serverIDBytes = new ConcurrentHashMap<>();
 
   static BaseMessage read(Buffer buff) {
-    byte type = buff.getByte(0);
+    byte type = readType(buff);
     switch (type) {
       case TYPE_PING:
         return new PingMessage(buff);
@@ -69,8 +90,44 @@ public class MessageFactory {
         return new JsonObjectMessage(buff);
       case TYPE_FAILURE:
         return new FailureMessage(buff);
+      case TYPE_BINARY_JSON_OBJECT:
+        return new JsonObjectMessage(buff);
+      case TYPE_BINARY_JSON_ARRAY:
+        return new JsonArrayMessage(buff);
+      case TYPE_OBJECT:
+        return new ObjectMessage(buff);
       default:
         throw new IllegalStateException("Invalid type " + type);
     }
   }
+
+  static boolean isVersioned(Buffer buff) {
+    return (buff.getByte(0) & 0x80) != 0;
+  }
+
+  static byte readType(Buffer buff) {
+    if (isVersioned(buff)) {
+      byte version = buff.getByte(0);
+      if (version != WIRE_VERSION) {
+        throw new IllegalStateException("Unsupported wire version " + (version & 0x7F));
+      }
+      return buff.getByte(1);
+    } else {
+      return buff.getByte(0);
+    }
+  }
+
+  static byte[] encodeServerID(ServerID serverID) {
+    byte[] bytes = serverIDBytes.get(serverID);
+    if (bytes == null) {
+      byte[] hostBytes = serverID.host.getBytes(CharsetUtil.UTF_8);
+      Buffer buff = new Buffer(4 + 4 + hostBytes.length);
+      buff.appendInt(serverID.port);
+      buff.appendInt(hostBytes.length);
+      buff.appendBytes(hostBytes);
+      bytes = buff.getBytes();
+      serverIDBytes.put(serverID, bytes);
+    }
+    return bytes;
+  }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.eventbus.impl;
+
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.eventbus.MessageCodec;
+
+/**
+ * A message whose body is encoded by a {@link MessageCodec} registered with the event bus
+ */
+class ObjectMessage<T> extends BaseMessage<T> {
+
+  private int typeId;
+  private MessageCodec<T> codec;
+
+  ObjectMessage(boolean send, String address, T body, int typeId, MessageCodec<T> codec) {
+    super(send, address, body);
+    this.typeId = typeId;
+    this.codec = codec;
+  }
+
+  private ObjectMessage(ObjectMessage<T> other) {
+    super(other.send, other.address, other.body == null ? null : other.codec.copy(other.body));
+    this.replyAddress = other.replyAddress;
+    this.bus = other.bus;
+    this.sender = other.sender;
+    this.typeId = other.typeId;
+    this.codec = other.codec;
+  }
+
+  public ObjectMessage(Buffer readBuff) {
+    super(readBuff);
+  }
+
+  @SuppressWarnings("unchecked")
+  protected void readBody(int pos, Buffer readBuff) {
+    typeId = readBuff.getInt(pos);
+    pos += 4;
+    codec = (MessageCodec<T>) bus.codec(typeId);
+    if (codec == null) {
+      throw new IllegalStateException("No codec registered for type id " + typeId);
+    }
+    boolean isNull = readBuff.getByte(pos) == (byte)0;
+    if (!isNull) {
+      pos++;
+      int length = readBuff.getInt(pos);
+      pos += 4;
+      body = codec.decode(readBuff.slice(pos, pos + length));
+    }
+  }
+
+  protected void writeBody(Buffer buff) {
+    buff.appendInt(typeId);
+    if (body == null) {
+      buff.appendByte((byte)0);
+    } else {
+      buff.appendByte((byte)1);
+      // We don't know how long the body is until the codec has written it, so its length is filled in afterwards
+      int lengthPos = buff.length();
+      buff.appendInt(0);
+      codec.encode(body, buff);
+      buff.setInt(lengthPos, buff.length() - lengthPos - 4);
+    }
+  }
+
+  protected int getBodyLength() {
+    return body == null ? 4 + 1 : 4 + 1 + 4;
+  }
+
+  protected Message<T> copy() {
+    return new ObjectMessage<>(this);
+  }
+
+  protected byte type() {
+    return MessageFactory.TYPE_OBJECT;
+  }
+
+  protected BaseMessage createReplyMessage(T reply) {
+    return new ObjectMessage<>(true, replyAddress, reply, typeId, codec);
+  }
+
+}
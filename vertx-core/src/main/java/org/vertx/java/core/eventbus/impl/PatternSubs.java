@@ -0,0 +1,117 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.eventbus.impl;
+
+import org.vertx.java.core.net.impl.ServerID;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The cluster's pattern subscriptions, for the subs maps.<p>
+ * A pattern subscription is held once, against its pattern, rather than against each address it matches. When the
+ * nodes for an address are looked up they are combined with the nodes of the patterns that match it. The combined
+ * IDs are cached per address, so round robin works across them, until the subscriptions for the address or any
+ * pattern change.
+ */
+public class PatternSubs {
+
+  private static final int MAX_CACHED = 10000;
+
+  private final AddressTrie<ServerIDs> trie = new AddressTrie<>();
+  private final ConcurrentMap<String, ServerIDs> matches = new ConcurrentHashMap<>();
+  private final AtomicLong generation = new AtomicLong();
+
+  public static boolean isPattern(String subName) {
+    return AddressTrie.isPattern(subName);
+  }
+
+  public synchronized void add(String pattern, ServerID serverID) {
+    ServerIDs ids = trie.get(pattern);
+    if (ids == null) {
+      ids = new ServerIDs();
+      ids.setInitialised();
+      trie.put(pattern, ids);
+    }
+    if (ids.add(serverID)) {
+      invalidateAll();
+    }
+  }
+
+  public synchronized void remove(String pattern, ServerID serverID) {
+    ServerIDs ids = trie.get(pattern);
+    if (ids != null) {
+      ids.remove(serverID);
+      if (ids.isEmpty()) {
+        trie.remove(pattern);
+      }
+      invalidateAll();
+    }
+  }
+
+  /**
+   * Must be called whenever the subscriptions for an address change
+   */
+  public void invalidate(String address) {
+    if (!trie.isEmpty()) {
+      generation.incrementAndGet();
+      matches.remove(address);
+    }
+  }
+
+  /**
+   * @param exact the IDs subscribed to the address itself, or null if there aren't any
+   * @return the IDs subscribed to the address itself or to a pattern which matches it
+   */
+  public ServerIDs resolve(String address, ServerIDs exact) {
+    if (trie.isEmpty()) {
+      return exact;
+    }
+    ServerIDs ids = matches.get(address);
+    if (ids != null) {
+      return ids;
+    }
+    long gen = generation.get();
+    Set<ServerIDs> matched = trie.match(address);
+    if (matched.isEmpty()) {
+      return exact;
+    }
+    ids = new ServerIDs();
+    if (exact != null) {
+      ids.merge(exact);
+    }
+    for (ServerIDs m: matched) {
+      ids.merge(m);
+    }
+    ids.setInitialised();
+    if (matches.size() < MAX_CACHED) {
+      matches.put(address, ids);
+      // If anything changed while we were working it out, it may already be out of date
+      if (generation.get() != gen) {
+        matches.remove(address, ids);
+      }
+    }
+    return ids;
+  }
+
+  private void invalidateAll() {
+    generation.incrementAndGet();
+    matches.clear();
+  }
+}
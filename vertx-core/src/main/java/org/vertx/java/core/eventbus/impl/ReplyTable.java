@@ -0,0 +1,331 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.eventbus.impl;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.impl.Context;
+import org.vertx.java.core.net.impl.ServerID;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Correlates replies with the handlers waiting for them.<p>
+ * Reply ids are allocated in sequence, so entries live in a ring indexed by the low bits of their id. The ring's
+ * entries are allocated up front and reused, so registering a handler doesn't allocate. An entry only goes into the
+ * overflow map if its slot is still held by a request that has been outstanding for a whole lap of the ring.<p>
+ * Whoever removes an entry owns it, and must {@link #release} it once it has read the handler and context, so it
+ * can be reused.<p>
+ * Reply timeouts are kept in the entries themselves and are found by {@link #expire}, which is called
+ * periodically, rather than each request having its own timer. The table remembers an id below which no request is
+ * still waiting, and one below which no request with a timeout is, so {@link #removeAll} and {@link #expire} only
+ * look at the slots of the requests made since then, and cost nothing when the table is idle. A request without a
+ * timeout that is never replied to holds up the first mark but not the second, so it makes {@link #removeAll} look
+ * at up to the whole ring, but not {@link #expire}.<p>
+ * If the node a request was sent to is recorded with {@link #sentTo}, the table also counts the requests each node
+ * hasn't replied to yet.
+ */
+class ReplyTable {
+
+  private final Entry[] slots;
+  private final int mask;
+  private final ConcurrentMap<Long, Entry> overflow = new ConcurrentHashMap<>();
+  private final AtomicLong seq = new AtomicLong(0);
+  // No request with an id up to this one is still in the ring
+  private final AtomicLong low = new AtomicLong(0);
+  // No request with an id up to this one and a timeout is still in the ring
+  private final AtomicLong timeoutLow = new AtomicLong(0);
+  private final ConcurrentMap<ServerID, AtomicInteger> outstanding = new ConcurrentHashMap<>();
+
+  ReplyTable(int capacity) {
+    int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    slots = new Entry[size];
+    for (int i = 0; i < size; i++) {
+      slots[i] = new Entry();
+    }
+    mask = size - 1;
+  }
+
+  /**
+   * Register a reply handler
+   * @param timeout the reply timeout in ms, or 0 for none
+   * @param address the address the request was sent to, if it's to be recorded against it
+   * @return the reply id
+   */
+  long register(Handler handler, Context context, long timeout, String address) {
+    long id = seq.incrementAndGet();
+    long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0L;
+    Entry entry = slots[(int)(id & mask)];
+    // A slot only ever holds increasing ids, which is what lets a scan tell which ids have gone
+    boolean claimed = entry.claim();
+    if (claimed && Math.abs(entry.id) < id) {
+      entry.set(id, handler, context, deadline, address);
+    } else {
+      if (claimed) {
+        entry.state = Entry.FREE;
+      }
+      Entry extra = new Entry();
+      extra.state = Entry.CLAIMED;
+      extra.set(id, handler, context, deadline, address);
+      overflow.put(id, extra);
+      entry.overflowed(id);
+    }
+    return id;
+  }
+
+  /**
+   * Remove the entry for a reply id. Only one caller can remove an entry, so whoever gets it owns the handler, and
+   * must {@link #release} the entry when it has finished with it.
+   * @return the entry, or null if it has already been removed
+   */
+  Entry remove(long id) {
+    Entry entry = slots[(int)(id & mask)];
+    if (entry.id == id) {
+      return entry.remove(id) ? removed(entry) : null;
+    }
+    if (!overflow.isEmpty()) {
+      entry = overflow.get(id);
+      if (entry != null && entry.remove(id)) {
+        overflow.remove(id);
+        return removed(entry);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Let a removed entry be reused for another request
+   */
+  void release(Entry entry) {
+    entry.handler = null;
+    entry.context = null;
+    entry.address = null;
+    entry.state = Entry.FREE;
+  }
+
+  /**
+   * Record the node a request was sent to, so it counts as outstanding for that node until the entry is removed
+   */
+  void sentTo(long id, ServerID target) {
+    Entry entry = slots[(int)(id & mask)];
+    if (entry.id != id) {
+      entry = overflow.get(id);
+    }
+    if (entry != null) {
+      // If the entry has already been removed it's too late to count it
+      synchronized (entry) {
+        if (entry.id == id && entry.target == null) {
+          entry.target = target;
+          counter(target).incrementAndGet();
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the number of requests sent to a node that are waiting for a reply
+   */
+  int outstanding(ServerID target) {
+    AtomicInteger count = outstanding.get(target);
+    return count == null ? 0 : count.get();
+  }
+
+  private AtomicInteger counter(ServerID target) {
+    AtomicInteger count = outstanding.get(target);
+    if (count == null) {
+      count = new AtomicInteger();
+      AtomicInteger prev = outstanding.putIfAbsent(target, count);
+      if (prev != null) {
+        count = prev;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Remove and return the entries whose timeout has passed. The caller must {@link #release} them.
+   */
+  List<Entry> expire(long now) {
+    return sweep(now, null);
+  }
+
+  /**
+   * Remove all the entries registered from a context, e.g. when the context is closed
+   */
+  void removeAll(Context context) {
+    List<Entry> removed = sweep(0, context);
+    if (removed != null) {
+      for (Entry entry: removed) {
+        release(entry);
+      }
+    }
+  }
+
+  /*
+   Look at the slots of the ids since the last one known to be gone, removing the entries which have expired or
+   belong to the context, and move the low marks up to the first id which may still be waiting.
+   An id has gone from the ring if its slot holds its removed id or any later id, as it can't be put there from then
+   on, or if it was put in the overflow map instead. Otherwise the request may not have been registered yet, so the
+   low mark stops there. An id that is still waiting but has no timeout only stops the first mark.
+   Expiry starts from the timeout mark, so it can only move the first mark if the two are the same.
+    */
+  private List<Entry> sweep(long now, Context context) {
+    List<Entry> swept = null;
+    long lowFrom = low.get();
+    long timeoutFrom = timeoutLow.get();
+    long from = context != null ? lowFrom : Math.max(lowFrom, timeoutFrom);
+    long to = seq.get();
+    long newLow = lowFrom;
+    long newTimeoutLow = timeoutFrom;
+    boolean gone = from == lowFrom;
+    boolean timeoutGone = from >= timeoutFrom;
+    for (long id = Math.max(from, to - slots.length) + 1; id <= to; id++) {
+      Entry entry = slots[(int)(id & mask)];
+      long held = entry.id;
+      if (held > 0 && held <= id) {
+        if (((now != 0 && entry.deadline != 0 && entry.deadline <= now) || (context != null && entry.context == context))
+            && entry.remove(held)) {
+          swept = add(swept, removed(entry));
+          // An entry from an earlier lap doesn't tell us anything about this id
+          gone &= held == id;
+          timeoutGone &= held == id;
+        } else {
+          gone = false;
+          // The deadline was set before the id was published
+          timeoutGone &= held == id && entry.deadline == 0;
+        }
+      } else {
+        boolean removed = Math.abs(held) >= id || entry.overflowed >= id;
+        gone &= removed;
+        timeoutGone &= removed;
+      }
+      if (gone) {
+        newLow = id;
+      }
+      if (timeoutGone) {
+        newTimeoutLow = id;
+      }
+    }
+    if (!overflow.isEmpty()) {
+      for (Entry entry: overflow.values()) {
+        long held = entry.id;
+        if (held > 0 && ((now != 0 && entry.deadline != 0 && entry.deadline <= now) ||
+            (context != null && entry.context == context)) && entry.remove(held)) {
+          overflow.remove(held);
+          swept = add(swept, removed(entry));
+        }
+      }
+    }
+    raise(low, newLow);
+    raise(timeoutLow, newTimeoutLow);
+    return swept;
+  }
+
+  // Any scan's low mark stays true, as an id that has gone never comes back, so just keep the highest
+  private static void raise(AtomicLong mark, long value) {
+    long current;
+    while (value > (current = mark.get()) && !mark.compareAndSet(current, value)) {
+    }
+  }
+
+  private Entry removed(Entry entry) {
+    ServerID target;
+    synchronized (entry) {
+      target = entry.target;
+      entry.target = null;
+    }
+    if (target != null) {
+      counter(target).decrementAndGet();
+    }
+    return entry;
+  }
+
+  private static List<Entry> add(List<Entry> list, Entry entry) {
+    if (list == null) {
+      list = new ArrayList<>();
+    }
+    list.add(entry);
+    return list;
+  }
+
+  static class Entry {
+    private static final int FREE = 0;
+    private static final int CLAIMED = 1;
+    private static final AtomicIntegerFieldUpdater<Entry> STATE =
+        AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+    private static final AtomicLongFieldUpdater<Entry> ID = AtomicLongFieldUpdater.newUpdater(Entry.class, "id");
+    private static final AtomicLongFieldUpdater<Entry> OVERFLOWED =
+        AtomicLongFieldUpdater.newUpdater(Entry.class, "overflowed");
+
+    // The request's id while it's waiting, then minus the id once it has been removed
+    private volatile long id;
+    // Whether the entry is in use, from being registered until it is released
+    private volatile int state;
+    // The highest id for this slot that had to go in the overflow map
+    private volatile long overflowed;
+    private Handler handler;
+    private Context context;
+    private long deadline;
+    private String address;
+    private ServerID target;
+
+    long id() {
+      return Math.abs(id);
+    }
+
+    Handler handler() {
+      return handler;
+    }
+
+    Context context() {
+      return context;
+    }
+
+    String address() {
+      return address;
+    }
+
+    private boolean claim() {
+      return state == FREE && STATE.compareAndSet(this, FREE, CLAIMED);
+    }
+
+    private void set(long id, Handler handler, Context context, long deadline, String address) {
+      this.handler = handler;
+      this.context = context;
+      this.deadline = deadline;
+      this.address = address;
+      // Publishes the fields above
+      this.id = id;
+    }
+
+    private void overflowed(long id) {
+      long current;
+      while (id > (current = overflowed) && !OVERFLOWED.compareAndSet(this, current, id)) {
+      }
+    }
+
+    private boolean remove(long id) {
+      return ID.compareAndSet(this, id, -id);
+    }
+  }
+}
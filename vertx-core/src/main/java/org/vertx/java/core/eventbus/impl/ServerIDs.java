@@ -16,25 +16,26 @@
 
 package org.vertx.java.core.eventbus.impl;
 
-import org.vertx.java.core.impl.ConcurrentHashSet;
 import org.vertx.java.core.net.impl.ServerID;
 
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.NoSuchElementException;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * The nodes that have a handler for an address.<p>
+ * The IDs are kept in an array which is replaced whenever one is added or removed, which is rare compared to the
+ * number of times one is chosen to send to, so choosing one doesn't need a lock.
+ *
  * @author <a href="http://tfox.org">Tim Fox</a>
  */
 public class ServerIDs implements Iterable<ServerID> {
 
-  private volatile boolean initialised;
-  private final Set<ServerID> ids;
-  private volatile Iterator<ServerID> iter;
+  private static final ServerID[] EMPTY = new ServerID[0];
 
-  public ServerIDs(int initialSize) {
-    ids = new ConcurrentHashSet<>(initialSize);
-  }
+  private volatile boolean initialised;
+  private volatile ServerID[] ids = EMPTY;
+  private final AtomicInteger seq = new AtomicInteger();
 
   public boolean isInitialised() {
     return initialised;
@@ -44,39 +45,76 @@ public class ServerIDs implements Iterable<ServerID> {
     this.initialised = true;
   }
 
-  public void add(ServerID id) {
-    ids.add(id);
+  public synchronized boolean add(ServerID id) {
+    if (indexOf(ids, id) == -1) {
+      ServerID[] newIDs = Arrays.copyOf(ids, ids.length + 1);
+      newIDs[ids.length] = id;
+      ids = newIDs;
+      return true;
+    }
+    return false;
   }
 
-  public void remove(ServerID id) {
-    ids.remove(id);
+  public synchronized void remove(ServerID id) {
+    int index = indexOf(ids, id);
+    if (index != -1) {
+      ServerID[] newIDs = new ServerID[ids.length - 1];
+      System.arraycopy(ids, 0, newIDs, 0, index);
+      System.arraycopy(ids, index + 1, newIDs, index, newIDs.length - index);
+      ids = newIDs;
+    }
   }
 
-  public void merge(ServerIDs toMerge) {
-    ids.addAll(toMerge.ids);
+  /**
+   * @return true if any IDs were added
+   */
+  public boolean merge(ServerIDs toMerge) {
+    boolean added = false;
+    for (ServerID id: toMerge.ids) {
+      added |= add(id);
+    }
+    return added;
   }
 
   public boolean isEmpty() {
-    return ids.isEmpty();
+    return ids.length == 0;
   }
 
   @Override
   public Iterator<ServerID> iterator() {
-    return ids.iterator();
+    return Arrays.asList(ids).iterator();
   }
 
-  public synchronized ServerID choose() {
-    if (!ids.isEmpty()) {
-      if (iter == null || !iter.hasNext()) {
-        iter = ids.iterator();
-      }
-      try {
-        return iter.next();
-      } catch (NoSuchElementException e) {
+  /**
+   * Choose one of the IDs round robin
+   * @return the ID, or null if there aren't any
+   */
+  public ServerID choose() {
+    return choose(TargetPolicies.ROUND_ROBIN);
+  }
+
+  /**
+   * Choose one of the IDs with a policy
+   * @return the ID, or null if there aren't any
+   */
+  public ServerID choose(TargetPolicy policy) {
+    ServerID[] candidates = ids;
+    switch (candidates.length) {
+      case 0:
         return null;
+      case 1:
+        return candidates[0];
+      default:
+        return policy.choose(candidates, seq.getAndIncrement() & Integer.MAX_VALUE);
+    }
+  }
+
+  private static int indexOf(ServerID[] ids, ServerID id) {
+    for (int i = 0; i < ids.length; i++) {
+      if (ids[i].equals(id)) {
+        return i;
       }
-    } else {
-      return null;
     }
+    return -1;
   }
 }
@@ -16,8 +16,8 @@
 
 package org.vertx.java.core.eventbus.impl;
 
-import org.jboss.netty.util.CharsetUtil;
 import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.buffer.impl.Utf8;
 import org.vertx.java.core.eventbus.Message;
 import org.vertx.java.core.logging.Logger;
 import org.vertx.java.core.logging.impl.LoggerFactory;
@@ -29,7 +29,7 @@ class StringMessage extends BaseMessage<String> {
 
   private static final Logger log = LoggerFactory.getLogger(StringMessage.class);
 
-  private byte[] encoded;
+  private int encodedLength;
 
   StringMessage(boolean send, String address, String body) {
     super(send, address, body);
@@ -45,8 +45,7 @@ class StringMessage extends BaseMessage<String> {
       pos++;
       int strLength = readBuff.getInt(pos);
       pos += 4;
-      byte[] bytes = readBuff.getBytes(pos, pos + strLength);
-      body = new String(bytes, CharsetUtil.UTF_8);
+      body = readBuff.getString(pos, pos + strLength);
     }
   }
 
@@ -55,18 +54,17 @@ class StringMessage extends BaseMessage<String> {
       buff.appendByte((byte)0);
     } else {
       buff.appendByte((byte)1);
-      buff.appendInt(encoded.length);
-      buff.appendBytes(encoded);
+      buff.appendInt(encodedLength);
+      buff.appendString(body);
     }
-    encoded = null;
   }
 
   protected int getBodyLength() {
     if (body == null) {
       return 1;
     } else {
-      encoded = body.getBytes(CharsetUtil.UTF_8);
-      return 1 + 4 + encoded.length;
+      encodedLength = Utf8.encodedLength(body);
+      return 1 + 4 + encodedLength;
     }
   }
 
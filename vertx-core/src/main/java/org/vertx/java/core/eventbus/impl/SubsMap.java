@@ -19,6 +19,8 @@ package org.vertx.java.core.eventbus.impl;
 import org.vertx.java.core.AsyncResultHandler;
 import org.vertx.java.core.net.impl.ServerID;
 
+import java.util.Collection;
+
 /**
  * @author <a href="http://tfox.org">Tim Fox</a>
  *
@@ -31,5 +33,15 @@ public interface SubsMap {
 
   void remove(String subName, ServerID serverID, AsyncResultHandler<Boolean> completionHandler);
 
+  /**
+   * Add a subscription for each of the names, for the same server, in one operation
+   */
+  void putAll(Collection<String> subNames, ServerID serverID, AsyncResultHandler<Void> completionHandler);
+
+  /**
+   * Remove the subscriptions for each of the names, for the same server, in one operation
+   */
+  void removeAll(Collection<String> subNames, ServerID serverID, AsyncResultHandler<Void> completionHandler);
+
   void removeAllForServerID(ServerID serverID, AsyncResultHandler<Void> completionHandler);
 }
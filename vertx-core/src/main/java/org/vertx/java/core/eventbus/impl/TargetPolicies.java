@@ -0,0 +1,170 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.eventbus.impl;
+
+import org.vertx.java.core.net.impl.ServerID;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The built in target policies
+ */
+class TargetPolicies {
+
+  /**
+   * Take each node in turn
+   */
+  static final TargetPolicy ROUND_ROBIN = new TargetPolicy() {
+    public ServerID choose(ServerID[] candidates, int seq) {
+      return candidates[seq % candidates.length];
+    }
+  };
+
+  /**
+   * Deliver locally if this node has a handler, so the message doesn't make a network round trip for nothing, and
+   * otherwise take each node in turn
+   */
+  static class PreferLocal implements TargetPolicy {
+
+    private final ServerID local;
+
+    PreferLocal(ServerID local) {
+      this.local = local;
+    }
+
+    public ServerID choose(ServerID[] candidates, int seq) {
+      for (ServerID candidate: candidates) {
+        if (candidate.equals(local)) {
+          return candidate;
+        }
+      }
+      return ROUND_ROBIN.choose(candidates, seq);
+    }
+  }
+
+  /**
+   * Send to the node with the fewest requests from this node still waiting for a reply. Ties are broken round robin.
+   * Messages sent without a reply handler aren't counted
+   */
+  static class LeastOutstanding implements TargetPolicy {
+
+    private final ReplyTable replies;
+
+    LeastOutstanding(ReplyTable replies) {
+      this.replies = replies;
+    }
+
+    public ServerID choose(ServerID[] candidates, int seq) {
+      ServerID best = null;
+      int bestCount = Integer.MAX_VALUE;
+      for (int i = 0; i < candidates.length; i++) {
+        ServerID candidate = candidates[(seq + i) % candidates.length];
+        int count = replies.outstanding(candidate);
+        if (count < bestCount) {
+          best = candidate;
+          bestCount = count;
+        }
+      }
+      return best;
+    }
+  }
+
+  /**
+   * Choose nodes round robin in proportion to their weights, which are set with the
+   * {@code org.vertx.core-eventbus-nodeWeights} system property as a comma separated list of
+   * {@code host:port=weight}. A node without a weight has a weight of 1, and one with a weight of 0 is only chosen
+   * if all the candidates have a weight of 0
+   */
+  static class Weighted implements TargetPolicy {
+
+    private final Map<ServerID, Integer> weights;
+
+    Weighted(Map<ServerID, Integer> weights) {
+      this.weights = weights;
+    }
+
+    public ServerID choose(ServerID[] candidates, int seq) {
+      int total = 0;
+      for (ServerID candidate: candidates) {
+        total += weight(candidate);
+      }
+      if (total == 0) {
+        return ROUND_ROBIN.choose(candidates, seq);
+      }
+      // With equal weights this is the same as round robin
+      int r = seq % total;
+      for (ServerID candidate: candidates) {
+        r -= weight(candidate);
+        if (r < 0) {
+          return candidate;
+        }
+      }
+      // Can't get here
+      return candidates[0];
+    }
+
+    private int weight(ServerID id) {
+      Integer weight = weights.get(id);
+      return weight == null ? 1 : weight;
+    }
+
+    static Map<ServerID, Integer> parseWeights(String spec) {
+      Map<ServerID, Integer> weights = new HashMap<>();
+      if (spec != null) {
+        for (String entry: spec.split(",")) {
+          entry = entry.trim();
+          if (entry.isEmpty()) {
+            continue;
+          }
+          int eq = entry.lastIndexOf('=');
+          int colon = entry.lastIndexOf(':', eq);
+          if (eq == -1 || colon == -1) {
+            throw new IllegalArgumentException("Invalid node weight " + entry + ", should be host:port=weight");
+          }
+          ServerID id = new ServerID(Integer.parseInt(entry.substring(colon + 1, eq).trim()),
+                                     entry.substring(0, colon).trim());
+          int weight = Integer.parseInt(entry.substring(eq + 1).trim());
+          if (weight < 0) {
+            throw new IllegalArgumentException("Invalid node weight " + entry + ", can't be negative");
+          }
+          weights.put(id, weight);
+        }
+      }
+      return weights;
+    }
+  }
+
+  static TargetPolicy create(String name, ServerID local, ReplyTable replies) {
+    switch (name) {
+      case "roundRobin":
+        return ROUND_ROBIN;
+      case "preferLocal":
+        return new PreferLocal(local);
+      case "leastOutstanding":
+        return new LeastOutstanding(replies);
+      case "weighted":
+        return new Weighted(Weighted.parseWeights(System.getProperty("org.vertx.core-eventbus-nodeWeights")));
+      default:
+        try {
+          return (TargetPolicy) Class.forName(name).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+          throw new IllegalArgumentException("Unknown target policy " + name, e);
+        }
+    }
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.eventbus.impl;
+
+import org.vertx.java.core.net.impl.ServerID;
+
+/**
+ * Chooses which node a point to point message is sent to when more than one node has a handler for its address.<p>
+ * Set the policy with the {@code org.vertx.core-eventbus-targetPolicy} system property, either to one of
+ * {@code roundRobin} (the default), {@code preferLocal}, {@code leastOutstanding} and {@code weighted}, which are
+ * described in {@link TargetPolicies}, or to the name of a class that implements this interface and has a no
+ * argument constructor.<p>
+ * A policy is called from every event loop at once so it must be thread safe, and it's called for every message
+ * sent so it shouldn't block.
+ */
+public interface TargetPolicy {
+
+  /**
+   * @param candidates the nodes with a handler for the address. There are always at least two. The array must not be
+   *                   modified
+   * @param seq a number which goes up by one each time a node is chosen for the address, for round robin
+   * @return one of the candidates
+   */
+  ServerID choose(ServerID[] candidates, int seq);
+}
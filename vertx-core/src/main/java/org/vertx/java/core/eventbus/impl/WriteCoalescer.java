@@ -0,0 +1,132 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.eventbus.impl;
+
+import org.vertx.java.core.Handler;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.impl.Context;
+import org.vertx.java.core.impl.VertxInternal;
+import org.vertx.java.core.net.NetSocket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gathers the frames written to a cluster connection and writes them to the socket in one go.<p>
+ * Frames queued during one tick of the connection's event loop are written together, unless the queue reaches
+ * {@code maxBytes} or {@code maxMessages} first, in which case it is written straight away. If {@code maxDelay}
+ * is greater than zero the queue is written after that many milliseconds instead of on the next tick.<p>
+ * A batch is a composite of the frames in it, so they're written with one gathering write and aren't copied.<p>
+ * Frames can be written from any thread.
+ */
+class WriteCoalescer {
+
+  private final VertxInternal vertx;
+  private final Context context;
+  private final NetSocket socket;
+  private final int maxBytes;
+  private final int maxMessages;
+  private final long maxDelay;
+
+  private final Queue<Buffer> frames = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queuedBytes = new AtomicInteger();
+  private final AtomicInteger queuedMessages = new AtomicInteger();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  // The timer that flushes the queue after maxDelay, or -1
+  private final AtomicLong delayTimerID = new AtomicLong(-1);
+
+  private final Runnable flushTask = new Runnable() {
+    public void run() {
+      flush();
+    }
+  };
+
+  WriteCoalescer(VertxInternal vertx, Context context, NetSocket socket, int maxBytes, int maxMessages,
+                 long maxDelay) {
+    this.vertx = vertx;
+    this.context = context;
+    this.socket = socket;
+    this.maxBytes = maxBytes;
+    this.maxMessages = maxMessages;
+    this.maxDelay = maxDelay;
+  }
+
+  void write(Buffer frame) {
+    frames.add(frame);
+    int bytes = queuedBytes.addAndGet(frame.length());
+    int messages = queuedMessages.incrementAndGet();
+    if (bytes >= maxBytes || messages >= maxMessages) {
+      flush();
+    } else if (flushScheduled.compareAndSet(false, true)) {
+      if (maxDelay > 0) {
+        delayTimerID.set(vertx.setTimer(maxDelay, new Handler<Long>() {
+          public void handle(Long timerID) {
+            delayTimerID.compareAndSet(timerID, -1);
+            flush();
+          }
+        }));
+      } else {
+        context.execute(flushTask);
+      }
+    }
+  }
+
+  int size() {
+    return queuedMessages.get();
+  }
+
+  // Flushes are serialised so frames can't be reordered by two threads draining the queue at the same time
+  synchronized void flush() {
+    // The frames the timer was waiting for are about to be written. It's cancelled before the reset, so it can't be
+    // the timer of a frame added after the drain
+    long timerID = delayTimerID.getAndSet(-1);
+    if (timerID != -1) {
+      vertx.cancelTimer(timerID);
+    }
+    // Reset before draining so a frame added after the drain schedules another flush
+    flushScheduled.set(false);
+    Buffer first = frames.poll();
+    if (first == null) {
+      return;
+    }
+    Buffer frame = first;
+    List<ChannelBuffer> batch = new ArrayList<>();
+    int bytes = 0;
+    do {
+      // Wrapping a frame doesn't move its indexes, so a frame that's also written to other nodes can be in a batch
+      batch.add(frame.getChannelBuffer());
+      bytes += frame.length();
+    } while (bytes < maxBytes && batch.size() < maxMessages && (frame = frames.poll()) != null);
+    queuedBytes.addAndGet(-bytes);
+    queuedMessages.addAndGet(-batch.size());
+    if (batch.size() == 1) {
+      socket.write(first);
+    } else {
+      socket.write(new Buffer(ChannelBuffers.wrappedBuffer(batch.toArray(new ChannelBuffer[batch.size()]))));
+    }
+    if (!frames.isEmpty() && flushScheduled.compareAndSet(false, true)) {
+      context.execute(flushTask);
+    }
+  }
+}
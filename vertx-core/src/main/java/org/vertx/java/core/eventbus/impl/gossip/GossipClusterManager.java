@@ -0,0 +1,78 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.eventbus.impl.gossip;
+
+import org.vertx.java.core.eventbus.impl.ClusterManager;
+import org.vertx.java.core.eventbus.impl.DefaultEventBus;
+import org.vertx.java.core.eventbus.impl.SubsMap;
+import org.vertx.java.core.impl.VertxInternal;
+import org.vertx.java.core.logging.Logger;
+import org.vertx.java.core.logging.impl.LoggerFactory;
+import org.vertx.java.core.net.impl.ServerID;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A cluster manager which needs nothing but the event bus itself.<p>
+ * Nodes find each other through a list of seed nodes, given as {@code host:port} pairs separated by commas in the
+ * {@code org.vertx.core-eventbus-gossipSeeds} system property, and replicate their subscriptions by gossiping over
+ * the event bus connections. Any node can be a seed, and a node that lists itself is ignored, so every node can be
+ * given the same list.<p>
+ * The gossip interval and the time after which a silent node is considered dead can be set with the
+ * {@code org.vertx.core-eventbus-gossipInterval} and {@code org.vertx.core-eventbus-gossipFailTimeout} system
+ * properties, in milliseconds.<p>
+ * There is only one subs map per event bus, whatever name it is asked for by.
+ */
+public class GossipClusterManager implements ClusterManager {
+
+  private static final Logger log = LoggerFactory.getLogger(GossipClusterManager.class);
+
+  private static final long DEFAULT_GOSSIP_INTERVAL = 1000;
+  private static final long DEFAULT_FAIL_TIMEOUT = 10000;
+
+  private final GossipSubsMap subsMap;
+
+  public GossipClusterManager(VertxInternal vertx, DefaultEventBus bus, ServerID serverID) {
+    List<ServerID> seeds = parseSeeds(System.getProperty("org.vertx.core-eventbus-gossipSeeds", ""));
+    long interval = Long.getLong("org.vertx.core-eventbus-gossipInterval", DEFAULT_GOSSIP_INTERVAL);
+    long failTimeout = Long.getLong("org.vertx.core-eventbus-gossipFailTimeout", DEFAULT_FAIL_TIMEOUT);
+    if (seeds.isEmpty()) {
+      log.warn("No gossip seeds configured - this node will only join a cluster if other nodes use it as a seed");
+    }
+    subsMap = new GossipSubsMap(vertx, bus, serverID, seeds, interval, failTimeout);
+    subsMap.start();
+  }
+
+  public SubsMap getSubsMap(String name) {
+    return subsMap;
+  }
+
+  public void close() {
+    subsMap.close();
+  }
+
+  private static List<ServerID> parseSeeds(String seeds) {
+    List<ServerID> list = new ArrayList<>();
+    for (String seed: seeds.split(",")) {
+      if (!seed.trim().isEmpty()) {
+        list.add(NodeState.parseServerID(seed.trim()));
+      }
+    }
+    return list;
+  }
+}
@@ -0,0 +1,523 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.eventbus.impl.gossip;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.ReplyHandler;
+import org.vertx.java.core.eventbus.Failure;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.eventbus.impl.DefaultEventBus;
+import org.vertx.java.core.eventbus.impl.PatternSubs;
+import org.vertx.java.core.eventbus.impl.ServerIDs;
+import org.vertx.java.core.eventbus.impl.SubsMap;
+import org.vertx.java.core.impl.Context;
+import org.vertx.java.core.impl.VertxInternal;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.logging.Logger;
+import org.vertx.java.core.logging.impl.LoggerFactory;
+import org.vertx.java.core.net.impl.ServerID;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A subs map which each node replicates to the others by gossiping over the event bus.<p>
+ * Each node only writes its own subscriptions. Changes are pushed straight to the nodes it knows about as deltas,
+ * and every gossip interval it swaps a digest of the versions it holds with one node, chosen at random, and they
+ * send each other whatever is newer. This repairs any deltas that were missed and is how new nodes find out about
+ * the cluster, starting from the seed nodes. A node whose heartbeat hasn't gone up for the fail timeout is
+ * considered dead.<p>
+ * Reads are served from a local copy and never block.
+ */
+class GossipSubsMap implements SubsMap {
+
+  private static final Logger log = LoggerFactory.getLogger(GossipSubsMap.class);
+
+  static final String GOSSIP_ADDRESS = "__vertx.gossip";
+
+  private final VertxInternal vertx;
+  private final DefaultEventBus bus;
+  private final ServerID serverID;
+  private final List<ServerID> seeds;
+  private final long interval;
+  private final long failTimeout;
+  private final Random random = new Random();
+
+  // The node states are guarded by this
+  private final NodeState self;
+  private final Map<ServerID, NodeState> nodes = new HashMap<>();
+  private final Map<ServerID, NodeState> dead = new HashMap<>();
+
+  private final ConcurrentMap<String, ServerIDs> cache = new ConcurrentHashMap<>();
+  private final PatternSubs patterns = new PatternSubs();
+  private volatile long timerID = -1;
+  // Gossip is sent from the map's own context, not from whichever context changed a subscription. That may be a
+  // verticle's context which is closing, and the connections and reply handlers a send sets up mustn't belong to it
+  private volatile Context context;
+
+  private final Handler<Message<JsonObject>> gossipHandler = new Handler<Message<JsonObject>>() {
+    public void handle(Message<JsonObject> msg) {
+      String type = msg.body.getString("type");
+      switch (type) {
+        case "digest":
+          msg.reply(exchange(msg.body.getObject("nodes")));
+          break;
+        case "states":
+          mergeStates(msg.body.getArray("states"));
+          break;
+        case "delta":
+          applyDelta(msg.body);
+          msg.reply(new JsonObject());
+          break;
+        case "leave":
+          leave(msg.body);
+          break;
+        default:
+          log.warn("Unknown gossip message " + type);
+      }
+    }
+  };
+
+  GossipSubsMap(VertxInternal vertx, DefaultEventBus bus, ServerID serverID, List<ServerID> seeds, long interval,
+                long failTimeout) {
+    this.vertx = vertx;
+    this.bus = bus;
+    this.serverID = serverID;
+    this.seeds = seeds;
+    this.interval = interval;
+    this.failTimeout = failTimeout;
+    this.self = new NodeState(serverID, System.currentTimeMillis(), 0, 0, new HashSet<String>());
+  }
+
+  void start() {
+    context = vertx.startOnEventLoop(new Runnable() {
+      public void run() {
+        bus.registerLocalHandler(GOSSIP_ADDRESS, gossipHandler);
+        timerID = vertx.setPeriodic(interval, new Handler<Long>() {
+          public void handle(Long timerID) {
+            gossip();
+          }
+        });
+      }
+    });
+  }
+
+  void close() {
+    if (timerID != -1) {
+      vertx.cancelTimer(timerID);
+    }
+    final List<ServerID> peers;
+    final JsonObject leave;
+    synchronized (this) {
+      peers = new ArrayList<>(nodes.keySet());
+      leave = self.toJson(false).putString("type", "leave");
+    }
+    context.execute(new Runnable() {
+      public void run() {
+        for (ServerID peer: peers) {
+          bus.sendDirect(peer, GOSSIP_ADDRESS, leave, null, 0);
+        }
+      }
+    });
+  }
+
+  public void put(String subName, ServerID serverID, AsyncResultHandler<Void> completionHandler) {
+    putAll(Collections.singleton(subName), serverID, completionHandler);
+  }
+
+  public void putAll(Collection<String> subNames, ServerID serverID, AsyncResultHandler<Void> completionHandler) {
+    checkLocal(serverID);
+    JsonObject delta = null;
+    synchronized (this) {
+      JsonArray added = new JsonArray();
+      for (String subName: subNames) {
+        if (self.subs.add(subName)) {
+          addEntry(subName, serverID);
+          added.addString(subName);
+        }
+      }
+      // However many subscriptions change it's one version, so one delta
+      if (added.size() > 0) {
+        self.version++;
+        delta = self.toJson(false).putString("type", "delta").putArray("add", added);
+      }
+    }
+    broadcast(delta, completionHandler, null);
+  }
+
+  public void get(String subName, AsyncResultHandler<ServerIDs> completionHandler) {
+    ServerIDs entries = patterns.resolve(subName, cache.get(subName));
+    completionHandler.handle(new AsyncResult<>(entries == null ? new ServerIDs() : entries));
+  }
+
+  public void remove(String subName, ServerID serverID, AsyncResultHandler<Boolean> completionHandler) {
+    JsonObject delta = removeSubs(Collections.singleton(subName), serverID);
+    broadcast(delta, completionHandler, delta != null);
+  }
+
+  public void removeAll(Collection<String> subNames, ServerID serverID, AsyncResultHandler<Void> completionHandler) {
+    broadcast(removeSubs(subNames, serverID), completionHandler, null);
+  }
+
+  private JsonObject removeSubs(Collection<String> subNames, ServerID serverID) {
+    checkLocal(serverID);
+    synchronized (this) {
+      JsonArray removed = new JsonArray();
+      for (String subName: subNames) {
+        if (self.subs.remove(subName)) {
+          removeEntry(subName, serverID);
+          removed.addString(subName);
+        }
+      }
+      if (removed.size() == 0) {
+        return null;
+      }
+      self.version++;
+      return self.toJson(false).putString("type", "delta").putArray("remove", removed);
+    }
+  }
+
+  public void removeAllForServerID(ServerID serverID, AsyncResultHandler<Void> completionHandler) {
+    // The event bus calls this when it loses its connection to a node
+    if (!serverID.equals(this.serverID)) {
+      synchronized (this) {
+        removeNode(serverID, System.currentTimeMillis());
+      }
+    }
+    completionHandler.handle(new AsyncResult<>((Void) null));
+  }
+
+  private void checkLocal(ServerID serverID) {
+    if (!serverID.equals(this.serverID)) {
+      throw new IllegalArgumentException("Can only change the subscriptions of this node");
+    }
+  }
+
+  // Send a delta to every node we know about, and complete when they have all acknowledged it or timed out, so
+  // the completion handler means what it does for the other subs maps - the change has reached the cluster. It's
+  // called on the caller's context
+  private <T> void broadcast(final JsonObject delta, final AsyncResultHandler<T> completionHandler, final T result) {
+    final List<ServerID> peers;
+    synchronized (this) {
+      peers = delta == null ? new ArrayList<ServerID>() : new ArrayList<>(nodes.keySet());
+    }
+    if (peers.isEmpty()) {
+      if (completionHandler != null) {
+        completionHandler.handle(new AsyncResult<>(result));
+      }
+      return;
+    }
+    final Context caller = vertx.getContext();
+    final AtomicInteger outstanding = new AtomicInteger(peers.size());
+    final ReplyHandler<Message<JsonObject>> ackHandler = new ReplyHandler<Message<JsonObject>>() {
+      public void handle(Message<JsonObject> ack) {
+        acked();
+      }
+      public void fail(Failure failure) {
+        // It'll catch up when we next gossip with it, or be declared dead
+        acked();
+      }
+      private void acked() {
+        if (outstanding.decrementAndGet() == 0 && completionHandler != null) {
+          if (caller == null) {
+            completionHandler.handle(new AsyncResult<>(result));
+          } else {
+            caller.execute(new Runnable() {
+              public void run() {
+                completionHandler.handle(new AsyncResult<>(result));
+              }
+            });
+          }
+        }
+      }
+    };
+    context.execute(new Runnable() {
+      public void run() {
+        for (ServerID peer: peers) {
+          bus.sendDirect(peer, GOSSIP_ADDRESS, delta, ackHandler, (int) failTimeout);
+        }
+      }
+    });
+  }
+
+  private void gossip() {
+    final ServerID target;
+    JsonObject digest = new JsonObject();
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      self.heartbeat++;
+      expire(now);
+      target = chooseTarget();
+      if (target == null) {
+        return;
+      }
+      digest.putObject(serverID.toString(), self.toJson(false));
+      for (NodeState state: nodes.values()) {
+        digest.putObject(state.serverID.toString(), state.toJson(false));
+      }
+    }
+    JsonObject msg = new JsonObject().putString("type", "digest").putObject("nodes", digest);
+    bus.sendDirect(target, GOSSIP_ADDRESS, msg, new Handler<Message<JsonObject>>() {
+      public void handle(Message<JsonObject> reply) {
+        mergeStates(reply.body.getArray("states"));
+        JsonArray wanted = reply.body.getArray("want");
+        if (wanted.size() > 0) {
+          JsonArray states = new JsonArray();
+          synchronized (GossipSubsMap.this) {
+            for (Object id: wanted) {
+              NodeState state = getState(NodeState.parseServerID((String) id));
+              if (state != null) {
+                states.addObject(state.toJson(true));
+              }
+            }
+          }
+          bus.sendDirect(target, GOSSIP_ADDRESS, new JsonObject().putString("type", "states").putArray("states", states),
+                         null, 0);
+        }
+      }
+    }, (int) failTimeout);
+  }
+
+  // Mostly gossip with a node we know, but sometimes with a seed, so a cluster that has been split in two can heal
+  private ServerID chooseTarget() {
+    List<ServerID> peers = new ArrayList<>(nodes.keySet());
+    if (peers.isEmpty() || random.nextInt(peers.size() + 1) == 0) {
+      List<ServerID> others = new ArrayList<>(seeds);
+      others.remove(serverID);
+      if (!others.isEmpty()) {
+        return others.get(random.nextInt(others.size()));
+      }
+    }
+    return peers.isEmpty() ? null : peers.get(random.nextInt(peers.size()));
+  }
+
+  private void expire(long now) {
+    for (NodeState state: new ArrayList<>(nodes.values())) {
+      if (now - state.lastUpdated > failTimeout) {
+        log.info("No heartbeat from cluster node " + state.serverID + " - will consider it dead");
+        removeNode(state.serverID, now);
+      }
+    }
+    // By the time a tombstone goes, every other node has timed out the dead node too, so it can't come back
+    for (Iterator<NodeState> iter = dead.values().iterator(); iter.hasNext(); ) {
+      if (now - iter.next().lastUpdated > 2 * failTimeout) {
+        iter.remove();
+      }
+    }
+  }
+
+  private NodeState getState(ServerID id) {
+    return id.equals(serverID) ? self : nodes.get(id);
+  }
+
+  // Compare a digest with what we have. Returns the states that are newer here and the nodes that are newer there
+  private synchronized JsonObject exchange(JsonObject digest) {
+    long now = System.currentTimeMillis();
+    JsonArray wanted = new JsonArray();
+    for (String id: digest.getFieldNames()) {
+      JsonObject theirs = digest.getObject(id);
+      ServerID serverID = NodeState.parseServerID(id);
+      long inc = theirs.getLong("inc");
+      NodeState state = getState(serverID);
+      if (state == null || state.isOlderThan(inc, theirs.getLong("ver"))) {
+        if (!isDead(serverID, inc, theirs.getLong("hb"))) {
+          wanted.addString(id);
+        }
+      } else if (state != self && state.incarnation == inc) {
+        updateHeartbeat(state, theirs.getLong("hb"), now);
+      }
+    }
+    JsonArray states = new JsonArray();
+    List<NodeState> all = new ArrayList<>(nodes.values());
+    all.add(self);
+    for (NodeState state: all) {
+      JsonObject theirs = digest.getObject(state.serverID.toString());
+      if (theirs == null || theirs.getLong("inc") < state.incarnation ||
+          (theirs.getLong("inc") == state.incarnation && theirs.getLong("ver") < state.version)) {
+        states.addObject(state.toJson(true));
+      } else if (theirs.getLong("inc") == state.incarnation && theirs.getLong("hb") < state.heartbeat) {
+        states.addObject(state.toJson(false));
+      }
+    }
+    return new JsonObject().putArray("states", states).putArray("want", wanted);
+  }
+
+  private synchronized void mergeStates(JsonArray states) {
+    long now = System.currentTimeMillis();
+    for (Object obj: states) {
+      JsonObject json = (JsonObject) obj;
+      ServerID id = NodeState.parseServerID(json.getString("id"));
+      if (id.equals(serverID)) {
+        // Nobody knows more about this node than it does
+        continue;
+      }
+      long inc = json.getLong("inc");
+      long ver = json.getLong("ver");
+      long hb = json.getLong("hb");
+      JsonArray subs = json.getArray("subs");
+      if (isDead(id, inc, hb)) {
+        continue;
+      }
+      NodeState state = nodes.get(id);
+      if (state == null || inc > state.incarnation) {
+        if (subs != null) {
+          if (state != null) {
+            removeEntries(id, state.subs);
+          }
+          dead.remove(id);
+          state = new NodeState(id, inc, ver, hb, NodeState.subsFromJson(subs));
+          state.lastUpdated = now;
+          nodes.put(id, state);
+          addEntries(id, state.subs);
+          log.debug("Cluster node " + id + " joined");
+        }
+        // Otherwise it's just a heartbeat, and we'll ask for the full state next time we gossip
+      } else if (inc == state.incarnation) {
+        updateHeartbeat(state, hb, now);
+        if (ver > state.version && subs != null) {
+          Set<String> newSubs = NodeState.subsFromJson(subs);
+          for (String sub: state.subs) {
+            if (!newSubs.contains(sub)) {
+              removeEntry(sub, id);
+            }
+          }
+          for (String sub: newSubs) {
+            if (!state.subs.contains(sub)) {
+              addEntry(sub, id);
+            }
+          }
+          state.subs = newSubs;
+          state.version = ver;
+        }
+      }
+    }
+  }
+
+  private synchronized void applyDelta(JsonObject delta) {
+    ServerID id = NodeState.parseServerID(delta.getString("id"));
+    NodeState state = nodes.get(id);
+    // Only apply the delta if it's the next change - if we've missed one the next gossip round will catch us up
+    if (state != null && state.incarnation == delta.getLong("inc") && state.version == delta.getLong("ver") - 1) {
+      JsonArray added = delta.getArray("add");
+      if (added != null) {
+        for (Object sub: added) {
+          state.subs.add((String) sub);
+          addEntry((String) sub, id);
+        }
+      }
+      JsonArray removed = delta.getArray("remove");
+      if (removed != null) {
+        for (Object sub: removed) {
+          state.subs.remove(sub);
+          removeEntry((String) sub, id);
+        }
+      }
+      state.version++;
+      updateHeartbeat(state, delta.getLong("hb"), System.currentTimeMillis());
+    }
+  }
+
+  private synchronized void leave(JsonObject json) {
+    ServerID id = NodeState.parseServerID(json.getString("id"));
+    NodeState state = nodes.get(id);
+    if (state != null && state.incarnation == json.getLong("inc")) {
+      log.debug("Cluster node " + id + " left");
+      removeNode(id, System.currentTimeMillis());
+    }
+  }
+
+  private void updateHeartbeat(NodeState state, long heartbeat, long now) {
+    if (heartbeat > state.heartbeat) {
+      state.heartbeat = heartbeat;
+      state.lastUpdated = now;
+    }
+  }
+
+  private boolean isDead(ServerID id, long incarnation, long heartbeat) {
+    NodeState tombstone = dead.get(id);
+    return tombstone != null && (incarnation < tombstone.incarnation ||
+        (incarnation == tombstone.incarnation && heartbeat <= tombstone.heartbeat));
+  }
+
+  private void removeNode(ServerID id, long now) {
+    NodeState state = nodes.remove(id);
+    if (state != null) {
+      removeEntries(id, state.subs);
+      state.lastUpdated = now;
+      dead.put(id, state);
+    }
+  }
+
+  private void addEntries(ServerID id, Set<String> subs) {
+    for (String sub: subs) {
+      addEntry(sub, id);
+    }
+  }
+
+  private void removeEntries(ServerID id, Set<String> subs) {
+    for (String sub: subs) {
+      removeEntry(sub, id);
+    }
+  }
+
+  private void addEntry(String key, ServerID value) {
+    if (PatternSubs.isPattern(key)) {
+      patterns.add(key, value);
+      return;
+    }
+    ServerIDs entries = cache.get(key);
+    if (entries == null) {
+      entries = new ServerIDs();
+      ServerIDs prev = cache.putIfAbsent(key, entries);
+      if (prev != null) {
+        entries = prev;
+      }
+    }
+    if (entries.add(value)) {
+      patterns.invalidate(key);
+    }
+  }
+
+  private void removeEntry(String key, ServerID value) {
+    if (PatternSubs.isPattern(key)) {
+      patterns.remove(key, value);
+      return;
+    }
+    ServerIDs entries = cache.get(key);
+    if (entries != null) {
+      entries.remove(value);
+      if (entries.isEmpty()) {
+        cache.remove(key);
+      }
+      patterns.invalidate(key);
+    }
+  }
+}
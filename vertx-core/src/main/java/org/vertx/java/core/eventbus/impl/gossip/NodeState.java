@@ -0,0 +1,86 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.eventbus.impl.gossip;
+
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.net.impl.ServerID;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * What a node knows about one member of the cluster.<p>
+ * Only the node itself changes its state. The incarnation is chosen when it starts, so a restarted node on the same
+ * host and port replaces its old state. The version goes up each time its subscriptions change and the heartbeat
+ * goes up on every gossip round, so other nodes can tell which state is newest and whether the node is still alive.
+ * Not thread safe - it's guarded by the subs map that holds it.
+ */
+class NodeState {
+
+  final ServerID serverID;
+  final long incarnation;
+  long version;
+  long heartbeat;
+  Set<String> subs;
+  // Local time the heartbeat last went up, or the node was declared dead
+  long lastUpdated;
+
+  NodeState(ServerID serverID, long incarnation, long version, long heartbeat, Set<String> subs) {
+    this.serverID = serverID;
+    this.incarnation = incarnation;
+    this.version = version;
+    this.heartbeat = heartbeat;
+    this.subs = subs;
+  }
+
+  boolean isOlderThan(long incarnation, long version) {
+    return incarnation > this.incarnation || (incarnation == this.incarnation && version > this.version);
+  }
+
+  JsonObject toJson(boolean withSubs) {
+    JsonObject json = new JsonObject()
+        .putString("id", serverID.toString())
+        .putNumber("inc", incarnation)
+        .putNumber("ver", version)
+        .putNumber("hb", heartbeat);
+    if (withSubs) {
+      JsonArray arr = new JsonArray();
+      for (String sub: subs) {
+        arr.addString(sub);
+      }
+      json.putArray("subs", arr);
+    }
+    return json;
+  }
+
+  static Set<String> subsFromJson(JsonArray arr) {
+    Set<String> subs = new HashSet<>();
+    for (Object sub: arr) {
+      subs.add((String) sub);
+    }
+    return subs;
+  }
+
+  static ServerID parseServerID(String str) {
+    int pos = str.lastIndexOf(':');
+    if (pos == -1) {
+      throw new IllegalArgumentException("Invalid node " + str + ", must be host:port");
+    }
+    return new ServerID(Integer.parseInt(str.substring(pos + 1).trim()), str.substring(0, pos).trim());
+  }
+}
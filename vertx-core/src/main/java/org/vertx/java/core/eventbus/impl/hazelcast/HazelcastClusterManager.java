@@ -119,7 +119,9 @@ public class HazelcastClusterManager implements ClusterManager {
 	 */
   public SubsMap getSubsMap(final String name) {
     MultiMap<String, HazelcastServerID> map = instance.getMultiMap(name);
-    return new HazelcastSubsMap(vertx, map);
+    MultiMap<HazelcastServerID, String> serverMap = instance.getMultiMap(name + ".servers");
+    MultiMap<String, HazelcastServerID> patternMap = instance.getMultiMap(name + ".patterns");
+    return new HazelcastSubsMap(vertx, map, serverMap, patternMap);
   }
 
   /**
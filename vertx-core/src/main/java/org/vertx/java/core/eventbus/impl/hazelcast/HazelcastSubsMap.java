@@ -20,8 +20,10 @@ import com.hazelcast.core.EntryEvent;
 import com.hazelcast.core.EntryListener;
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.eventbus.impl.PatternSubs;
 import org.vertx.java.core.eventbus.impl.ServerIDs;
 import org.vertx.java.core.eventbus.impl.SubsMap;
+import org.vertx.java.core.impl.BackgroundPool;
 import org.vertx.java.core.impl.BlockingAction;
 import org.vertx.java.core.impl.VertxInternal;
 import org.vertx.java.core.logging.Logger;
@@ -29,6 +31,7 @@ import org.vertx.java.core.logging.impl.LoggerFactory;
 import org.vertx.java.core.net.impl.ServerID;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -42,6 +45,11 @@ public class HazelcastSubsMap implements SubsMap, EntryListener<String, Hazelcas
 
   private final VertxInternal vertx;
   private final com.hazelcast.core.MultiMap<String, HazelcastServerID> map;
+  // The same entries indexed the other way round, so we can find a node's subscriptions without scanning the map
+  private final com.hazelcast.core.MultiMap<HazelcastServerID, String> serverMap;
+  // Pattern subscriptions are kept apart so each node can hold all of them locally and match addresses against them
+  private final com.hazelcast.core.MultiMap<String, HazelcastServerID> patternMap;
+  private final PatternSubs patterns = new PatternSubs();
 
   /*
    The Hazelcast near cache is very slow so we use our own one.
@@ -55,19 +63,50 @@ public class HazelcastSubsMap implements SubsMap, EntryListener<String, Hazelcas
     */
   private ConcurrentMap<String, ServerIDs> cache = new ConcurrentHashMap<>();
 
-  public HazelcastSubsMap(VertxInternal vertx, com.hazelcast.core.MultiMap<String, HazelcastServerID> map) {
+  public HazelcastSubsMap(VertxInternal vertx, com.hazelcast.core.MultiMap<String, HazelcastServerID> map,
+                          com.hazelcast.core.MultiMap<HazelcastServerID, String> serverMap,
+                          com.hazelcast.core.MultiMap<String, HazelcastServerID> patternMap) {
     this.vertx = vertx;
     this.map = map;
+    this.serverMap = serverMap;
+    this.patternMap = patternMap;
     map.addEntryListener(this, true);
+    // Listen before loading so we don't miss a change in between. Adding a pattern twice does no harm
+    patternMap.addEntryListener(new EntryListener<String, HazelcastServerID>() {
+      public void entryAdded(EntryEvent<String, HazelcastServerID> entry) {
+        patterns.add(entry.getKey(), entry.getValue().serverID);
+      }
+      public void entryRemoved(EntryEvent<String, HazelcastServerID> entry) {
+        patterns.remove(entry.getKey(), entry.getValue().serverID);
+      }
+      public void entryUpdated(EntryEvent<String, HazelcastServerID> entry) {
+        patterns.add(entry.getKey(), entry.getValue().serverID);
+      }
+      public void entryEvicted(EntryEvent<String, HazelcastServerID> entry) {
+        entryRemoved(entry);
+      }
+    }, true);
+    loadPatterns();
+  }
+
+  private void loadPatterns() {
+    for (Map.Entry<String, HazelcastServerID> entry: patternMap.entrySet()) {
+      patterns.add(entry.getKey(), entry.getValue().serverID);
+    }
+  }
+
+  private com.hazelcast.core.MultiMap<String, HazelcastServerID> mapFor(String subName) {
+    return PatternSubs.isPattern(subName) ? patternMap : map;
   }
 
   public void removeAllForServerID(final ServerID serverID, final AsyncResultHandler<Void> completionHandler) {
-    new BlockingAction<Void>(vertx, completionHandler) {
+    new BlockingAction<Void>(vertx, BackgroundPool.CLUSTER, completionHandler) {
       public Void action() throws Exception {
-        for (Map.Entry<String, HazelcastServerID> entry: map.entrySet()) {
-          HazelcastServerID hid = entry.getValue();
-          if (hid.serverID.equals(serverID)) {
-            map.remove(entry.getKey(), hid);
+        HazelcastServerID hid = new HazelcastServerID(serverID);
+        Collection<String> subNames = serverMap.remove(hid);
+        if (subNames != null) {
+          for (String subName: subNames) {
+            mapFor(subName).remove(subName, hid);
           }
         }
         return null;
@@ -77,9 +116,20 @@ public class HazelcastSubsMap implements SubsMap, EntryListener<String, Hazelcas
 
   @Override
   public void put(final String subName, final ServerID serverID, final AsyncResultHandler<Void> completionHandler) {
-    new BlockingAction<Void>(vertx, completionHandler) {
+    putAll(Collections.singleton(subName), serverID, completionHandler);
+  }
+
+  @Override
+  public void putAll(final Collection<String> subNames, final ServerID serverID,
+                     final AsyncResultHandler<Void> completionHandler) {
+    new BlockingAction<Void>(vertx, BackgroundPool.CLUSTER, completionHandler) {
       public Void action() throws Exception {
-        map.put(subName, new HazelcastServerID(serverID));
+        HazelcastServerID hid = new HazelcastServerID(serverID);
+        for (String subName: subNames) {
+          // Index first, so a node that dies part way through can't leave entries that removeAllForServerID misses
+          serverMap.put(hid, subName);
+          mapFor(subName).put(subName, hid);
+        }
         return null;
       }
     }.run();
@@ -89,30 +139,32 @@ public class HazelcastSubsMap implements SubsMap, EntryListener<String, Hazelcas
   public void get(final String subName, final AsyncResultHandler<ServerIDs> completionHandler) {
     ServerIDs entries = cache.get(subName);
     if (entries != null && entries.isInitialised()) {
-      completionHandler.handle(new AsyncResult<>(entries));
+      completionHandler.handle(new AsyncResult<>(patterns.resolve(subName, entries)));
     } else {
-      new BlockingAction<Collection<HazelcastServerID>>(vertx, new AsyncResultHandler<Collection<HazelcastServerID>>() {
+      new BlockingAction<Collection<HazelcastServerID>>(vertx, BackgroundPool.CLUSTER, new AsyncResultHandler<Collection<HazelcastServerID>>() {
         public void handle(AsyncResult<Collection<HazelcastServerID>> result) {
           AsyncResult<ServerIDs> sresult;
           if (result.succeeded()) {
             Collection<HazelcastServerID> entries = result.result;
             ServerIDs sids;
             if (entries != null) {
-              sids = new ServerIDs(entries.size());
+              sids = new ServerIDs();
               for (HazelcastServerID hid: entries) {
                 sids.add(hid.serverID);
               }
             } else {
-              sids = new ServerIDs(0);
+              sids = new ServerIDs();
             }
             ServerIDs prev = cache.putIfAbsent(subName, sids);
             if (prev != null) {
               // Merge them
-              prev.merge(sids);
+              if (prev.merge(sids)) {
+                patterns.invalidate(subName);
+              }
               sids = prev;
             }
             sids.setInitialised();
-            sresult = new AsyncResult<>(sids);
+            sresult = new AsyncResult<>(patterns.resolve(subName, sids));
           } else {
             sresult = new AsyncResult<>(result.exception);
           }
@@ -120,6 +172,9 @@ public class HazelcastSubsMap implements SubsMap, EntryListener<String, Hazelcas
         }
       }) {
         public Collection<HazelcastServerID> action() throws Exception {
+          // The pattern listener may not have heard of a pattern subscribed just before this send yet, so we catch
+          // up with the patterns here too, the same way we do for the address
+          loadPatterns();
           return map.get(subName);
         }
       }.run();
@@ -128,9 +183,27 @@ public class HazelcastSubsMap implements SubsMap, EntryListener<String, Hazelcas
 
   @Override
   public void remove(final String subName, final ServerID serverID, final AsyncResultHandler<Boolean> completionHandler) {
-    new BlockingAction<Boolean>(vertx, completionHandler) {
+    new BlockingAction<Boolean>(vertx, BackgroundPool.CLUSTER, completionHandler) {
       public Boolean action() throws Exception {
-        return map.remove(subName, new HazelcastServerID(serverID));
+        HazelcastServerID hid = new HazelcastServerID(serverID);
+        boolean removed = mapFor(subName).remove(subName, hid);
+        serverMap.remove(hid, subName);
+        return removed;
+      }
+    }.run();
+  }
+
+  @Override
+  public void removeAll(final Collection<String> subNames, final ServerID serverID,
+                        final AsyncResultHandler<Void> completionHandler) {
+    new BlockingAction<Void>(vertx, BackgroundPool.CLUSTER, completionHandler) {
+      public Void action() throws Exception {
+        HazelcastServerID hid = new HazelcastServerID(serverID);
+        for (String subName: subNames) {
+          mapFor(subName).remove(subName, hid);
+          serverMap.remove(hid, subName);
+        }
+        return null;
       }
     }.run();
   }
@@ -143,13 +216,15 @@ public class HazelcastSubsMap implements SubsMap, EntryListener<String, Hazelcas
   private void addEntry(String key, ServerID value) {
     ServerIDs entries = cache.get(key);
     if (entries == null) {
-      entries = new ServerIDs(1);
+      entries = new ServerIDs();
       ServerIDs prev = cache.putIfAbsent(key, entries);
       if (prev != null) {
         entries = prev;
       }
     }
-    entries.add(value);
+    if (entries.add(value)) {
+      patterns.invalidate(key);
+    }
   }
 
   @Override
@@ -164,6 +239,7 @@ public class HazelcastSubsMap implements SubsMap, EntryListener<String, Hazelcas
       if (entries.isEmpty()) {
         cache.remove(key);
       }
+      patterns.invalidate(key);
     }
   }
 
@@ -172,7 +248,9 @@ public class HazelcastSubsMap implements SubsMap, EntryListener<String, Hazelcas
     String key = entry.getKey();
     ServerIDs entries = cache.get(key);
     if (entries != null) {
-      entries.add(entry.getValue().serverID);
+      if (entries.add(entry.getValue().serverID)) {
+        patterns.invalidate(key);
+      }
     }
   }
 
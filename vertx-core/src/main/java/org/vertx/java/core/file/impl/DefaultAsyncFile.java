@@ -22,6 +22,7 @@ import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.file.AsyncFile;
 import org.vertx.java.core.file.FileSystemException;
+import org.vertx.java.core.impl.BackgroundPool;
 import org.vertx.java.core.impl.BlockingAction;
 import org.vertx.java.core.impl.Context;
 import org.vertx.java.core.impl.VertxInternal;
@@ -71,9 +72,9 @@ public class DefaultAsyncFile implements AsyncFile {
     if (flush) options.add(StandardOpenOption.DSYNC);
     if (perms != null) {
       FileAttribute<?> attrs = PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(perms));
-      ch = AsynchronousFileChannel.open(file, options, vertx.getBackgroundPool(), attrs);
+      ch = AsynchronousFileChannel.open(file, options, vertx.getBackgroundPool(BackgroundPool.FILE_SYSTEM).getExecutorService(), attrs);
     } else {
-      ch = AsynchronousFileChannel.open(file, options, vertx.getBackgroundPool());
+      ch = AsynchronousFileChannel.open(file, options, vertx.getBackgroundPool(BackgroundPool.FILE_SYSTEM).getExecutorService());
     }
     this.context = context;
   }
@@ -284,7 +285,7 @@ public class DefaultAsyncFile implements AsyncFile {
   private void doFlush(AsyncResultHandler handler) {
     checkClosed();
     checkContext();
-    new BlockingAction<Void>(vertx, handler) {
+    new BlockingAction<Void>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
       public Void action() throws Exception {
         ch.force(false);
         return null;
@@ -21,6 +21,7 @@ import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.file.*;
 import org.vertx.java.core.file.FileSystem;
 import org.vertx.java.core.file.FileSystemException;
+import org.vertx.java.core.impl.BackgroundPool;
 import org.vertx.java.core.impl.BlockingAction;
 import org.vertx.java.core.impl.Context;
 import org.vertx.java.core.impl.VertxInternal;
@@ -307,7 +308,7 @@ public class DefaultFileSystem implements FileSystem {
   private BlockingAction<Void> copyInternal(String from, String to, final boolean recursive, AsyncResultHandler<Void> handler) {
     final Path source = PathAdjuster.adjust(vertx, Paths.get(from));
     final Path target = PathAdjuster.adjust(vertx, Paths.get(to));
-    return new BlockingAction<Void>(vertx, handler) {
+    return new BlockingAction<Void>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
       public Void action() throws Exception {
         try {
           if (recursive) {
@@ -347,7 +348,7 @@ public class DefaultFileSystem implements FileSystem {
   private BlockingAction<Void> moveInternal(String from, String to, AsyncResultHandler<Void> handler) {
     final Path source = PathAdjuster.adjust(vertx, Paths.get(from));
     final Path target = PathAdjuster.adjust(vertx, Paths.get(to));
-    return new BlockingAction<Void>(vertx, handler) {
+    return new BlockingAction<Void>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
       public Void action() throws Exception {
         try {
           Files.move(source, target);
@@ -363,7 +364,7 @@ public class DefaultFileSystem implements FileSystem {
 
   private BlockingAction<Void> truncateInternal(String p, final long len, AsyncResultHandler<Void> handler) {
      final String path = PathAdjuster.adjust(vertx, p);
-     return new BlockingAction<Void>(vertx, handler) {
+     return new BlockingAction<Void>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
        public Void action() throws Exception {
          if (len < 0) {
            throw new FileSystemException("Cannot truncate file to size < 0");
@@ -394,7 +395,7 @@ public class DefaultFileSystem implements FileSystem {
     final Path target = PathAdjuster.adjust(vertx, Paths.get(path));
     final Set<PosixFilePermission> permissions = PosixFilePermissions.fromString(perms);
     final Set<PosixFilePermission> dirPermissions = dirPerms == null ? null : PosixFilePermissions.fromString(dirPerms);
-    return new BlockingAction<Void>(vertx, handler) {
+    return new BlockingAction<Void>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
       public Void action() throws Exception {
         try {
           if (dirPermissions != null) {
@@ -432,7 +433,7 @@ public class DefaultFileSystem implements FileSystem {
 
   private BlockingAction<FileProps> props(String path, final boolean followLinks, AsyncResultHandler<FileProps> handler) {
     final Path target = PathAdjuster.adjust(vertx, Paths.get(path));
-    return new BlockingAction<FileProps>(vertx, handler) {
+    return new BlockingAction<FileProps>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
       public FileProps action() throws Exception {
         try {
           BasicFileAttributes attrs;
@@ -460,7 +461,7 @@ public class DefaultFileSystem implements FileSystem {
   private BlockingAction<Void> link(String link, String existing, final boolean symbolic, AsyncResultHandler<Void> handler) {
     final Path source = PathAdjuster.adjust(vertx, Paths.get(link));
     final Path target = PathAdjuster.adjust(vertx, Paths.get(existing));
-    return new BlockingAction<Void>(vertx, handler) {
+    return new BlockingAction<Void>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
       public Void action() throws Exception {
         try {
           if (symbolic) {
@@ -482,7 +483,7 @@ public class DefaultFileSystem implements FileSystem {
 
   private BlockingAction<String> readSymlinkInternal(String link, AsyncResultHandler<String> handler) {
     final Path source = PathAdjuster.adjust(vertx, Paths.get(link));
-    return new BlockingAction<String>(vertx, handler) {
+    return new BlockingAction<String>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
       public String action() throws Exception {
         try {
           return Files.readSymbolicLink(source).toString();
@@ -499,7 +500,7 @@ public class DefaultFileSystem implements FileSystem {
 
   private BlockingAction<Void> deleteInternal(String path, final boolean recursive, AsyncResultHandler<Void> handler) {
     final Path source = PathAdjuster.adjust(vertx, Paths.get(path));
-    return new BlockingAction<Void>(vertx, handler) {
+    return new BlockingAction<Void>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
       public Void action() throws Exception {
         if (recursive) {
           Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
@@ -545,7 +546,7 @@ public class DefaultFileSystem implements FileSystem {
   protected BlockingAction<Void> mkdirInternal(String path, final String perms, final boolean createParents, AsyncResultHandler<Void> handler) {
     final Path source = PathAdjuster.adjust(vertx, Paths.get(path));
     final FileAttribute<?> attrs = perms == null ? null : PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(perms));
-    return new BlockingAction<Void>(vertx, handler) {
+    return new BlockingAction<Void>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
       public Void action() throws Exception {
         try {
           if (createParents) {
@@ -577,7 +578,7 @@ public class DefaultFileSystem implements FileSystem {
 
   private BlockingAction<String[]> readDirInternal(String p, final String filter, AsyncResultHandler<String[]> handler) {
     final String path = PathAdjuster.adjust(vertx, p);
-    return new BlockingAction<String[]>(vertx, handler) {
+    return new BlockingAction<String[]>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
       public String[] action() throws Exception {
         File file = new File(path);
         if (!file.exists()) {
@@ -615,7 +616,7 @@ public class DefaultFileSystem implements FileSystem {
 
   private BlockingAction<Buffer> readFileInternal(String path, AsyncResultHandler<Buffer> handler) {
     final Path target = PathAdjuster.adjust(vertx, Paths.get(path));
-    return new BlockingAction<Buffer>(vertx, handler) {
+    return new BlockingAction<Buffer>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
       public Buffer action() throws Exception {
         byte[] bytes = Files.readAllBytes(target);
         Buffer buff = new Buffer(bytes);
@@ -626,7 +627,7 @@ public class DefaultFileSystem implements FileSystem {
 
   private BlockingAction<Void> writeFileInternal(String path, final Buffer data, AsyncResultHandler<Void> handler) {
     final Path target = PathAdjuster.adjust(vertx, Paths.get(path));
-    return new BlockingAction<Void>(vertx, handler) {
+    return new BlockingAction<Void>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
       public Void action() throws Exception {
         Files.write(target, data.getBytes());
         return null;
@@ -653,7 +654,7 @@ public class DefaultFileSystem implements FileSystem {
   private BlockingAction<AsyncFile> openInternal(String p, final String perms, final boolean read, final boolean write, final boolean createNew,
                    final boolean flush, AsyncResultHandler<AsyncFile> handler) {
     final String path = PathAdjuster.adjust(vertx, p);
-    return new BlockingAction<AsyncFile>(vertx, handler) {
+    return new BlockingAction<AsyncFile>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
       public AsyncFile action() throws Exception {
         return doOpen(path, perms, read, write, createNew, flush, context);
       }
@@ -672,7 +673,7 @@ public class DefaultFileSystem implements FileSystem {
   protected BlockingAction<Void> createFileInternal(String p, final String perms, AsyncResultHandler<Void> handler) {
     final String path = PathAdjuster.adjust(vertx, p);
     final FileAttribute<?> attrs = perms == null ? null : PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(perms));
-    return new BlockingAction<Void>(vertx, handler) {
+    return new BlockingAction<Void>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
       public Void action() throws Exception {
         try {
           Path target = Paths.get(path);
@@ -691,7 +692,7 @@ public class DefaultFileSystem implements FileSystem {
 
   private BlockingAction<Boolean> existsInternal(String path, AsyncResultHandler<Boolean> handler) {
     final File file = new File(PathAdjuster.adjust(vertx, path));
-    return new BlockingAction<Boolean>(vertx, handler) {
+    return new BlockingAction<Boolean>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
       public Boolean action() throws Exception {
         return file.exists();
       }
@@ -700,7 +701,7 @@ public class DefaultFileSystem implements FileSystem {
 
   private BlockingAction<FileSystemProps> fsPropsInternal(String path, AsyncResultHandler<FileSystemProps> handler) {
     final Path target = PathAdjuster.adjust(vertx, Paths.get(path));
-    return new BlockingAction<FileSystemProps>(vertx, handler) {
+    return new BlockingAction<FileSystemProps>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
       public FileSystemProps action() throws Exception {
         FileStore fs = Files.getFileStore(target);
         return new FileSystemProps(fs.getTotalSpace(), fs.getUnallocatedSpace(), fs.getUsableSpace());
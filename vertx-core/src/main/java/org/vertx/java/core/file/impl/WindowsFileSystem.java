@@ -18,6 +18,7 @@ package org.vertx.java.core.file.impl;
 
 import org.vertx.java.core.AsyncResultHandler;
 import org.vertx.java.core.file.AsyncFile;
+import org.vertx.java.core.impl.BackgroundPool;
 import org.vertx.java.core.impl.BlockingAction;
 import org.vertx.java.core.impl.Context;
 import org.vertx.java.core.impl.VertxInternal;
@@ -47,7 +48,7 @@ public class WindowsFileSystem extends DefaultFileSystem {
 			AsyncResultHandler<Void> handler) {
 		logInternal(perms);
 		logInternal(dirPerms);
-		return new BlockingAction<Void>(vertx, handler) {
+		return new BlockingAction<Void>(vertx, BackgroundPool.FILE_SYSTEM, handler) {
 			@Override
 			public Void action() throws Exception {
 				return null;
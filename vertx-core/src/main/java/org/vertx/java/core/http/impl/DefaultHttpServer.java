@@ -29,6 +29,7 @@ import org.jboss.netty.channel.socket.nio.NioSocketChannel;
 import org.jboss.netty.handler.codec.http.*;
 import org.jboss.netty.handler.ssl.SslHandler;
 import org.jboss.netty.handler.stream.ChunkedWriteHandler;
+import org.jboss.netty.util.CharsetUtil;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.http.HttpServer;
 import org.vertx.java.core.http.HttpServerRequest;
@@ -49,7 +50,6 @@ import org.vertx.java.core.net.impl.*;
 
 import javax.net.ssl.SSLEngine;
 import java.net.*;
-import java.nio.charset.Charset;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
@@ -427,7 +427,7 @@ public class DefaultHttpServer implements HttpServer {
         resp.setHeader("allow", "GET");
       }
       if (err != null) {
-        ChannelBuffer buff = ChannelBuffers.copiedBuffer(err.getBytes(Charset.forName("UTF-8")));
+        ChannelBuffer buff = ChannelBuffers.copiedBuffer(err.getBytes(CharsetUtil.UTF_8));
         resp.setHeader("Content-Length", err.length());
         resp.setContent(buff);
       } else {
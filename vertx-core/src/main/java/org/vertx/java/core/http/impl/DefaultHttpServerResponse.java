@@ -23,6 +23,7 @@ import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.handler.codec.http.*;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.buffer.impl.BufferPool;
 import org.vertx.java.core.file.impl.PathAdjuster;
 import org.vertx.java.core.http.HttpServerResponse;
 import org.vertx.java.core.impl.LowerCaseKeyMap;
@@ -149,6 +150,16 @@ public class DefaultHttpServerResponse extends HttpServerResponse {
     return write(chunk.getChannelBuffer(), doneHandler);
   }
 
+  /**
+   * Write a direct Buffer, which is released once the write has completed whether it succeeded or not.<p>
+   * This method is meant for internal use only.
+   */
+  public DefaultHttpServerResponse writeAndRelease(Buffer chunk) {
+    write(chunk.getChannelBuffer(), null);
+    BufferPool.releaseWhenWritten(channelFuture, chunk.getChannelBuffer());
+    return this;
+  }
+
   public DefaultHttpServerResponse write(String chunk, String enc, Handler<Void> doneHandler) {
     return write(new Buffer(chunk, enc).getChannelBuffer(), doneHandler);
   }
@@ -20,7 +20,8 @@ package org.vertx.java.core.http.impl.ws;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
-import org.jboss.netty.util.CharsetUtil;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.buffer.impl.Utf8;
 
 /**
  * The default {@link WebSocketFrame} implementation.
@@ -49,7 +50,7 @@ public class DefaultWebSocketFrame implements WebSocketFrame {
    * Creates a new text frame from with the specified string.
    */
   public DefaultWebSocketFrame(String textData) {
-    this(FrameType.TEXT, ChannelBuffers.copiedBuffer(textData, CharsetUtil.UTF_8));
+    this(FrameType.TEXT, new Buffer(textData).getChannelBuffer());
   }
 
   /**
@@ -83,7 +84,7 @@ public class DefaultWebSocketFrame implements WebSocketFrame {
   }
 
   public String getTextData() {
-    return getBinaryData().toString(CharsetUtil.UTF_8);
+    return Utf8.decode(binaryData, binaryData.readerIndex(), binaryData.readableBytes());
   }
 
   public void setBinaryData(ChannelBuffer binaryData) {
@@ -91,7 +92,7 @@ public class DefaultWebSocketFrame implements WebSocketFrame {
   }
 
   public void setTextData(String textData) {
-    this.binaryData = ChannelBuffers.copiedBuffer(textData, CharsetUtil.UTF_8);
+    this.binaryData = new Buffer(textData).getChannelBuffer();
   }
 
   @Override
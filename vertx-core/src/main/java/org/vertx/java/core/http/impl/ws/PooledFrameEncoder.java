@@ -0,0 +1,57 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.vertx.java.core.http.impl.ws;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.handler.codec.oneone.OneToOneEncoder;
+import org.vertx.java.core.buffer.impl.BufferPool;
+
+/**
+ * Base class for the WebSocket frame encoders.<p>
+ * Frames are encoded into direct buffers from the {@link BufferPool}, if pooling is enabled, and each one goes back
+ * to the pool once it's been written.
+ */
+public abstract class PooledFrameEncoder extends OneToOneEncoder {
+
+  @Override
+  protected boolean doEncode(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    Object msg = e.getMessage();
+    Object encoded = encode(ctx, e.getChannel(), msg);
+    if (encoded == msg) {
+      return false;
+    }
+    if (encoded != null) {
+      if (encoded instanceof ChannelBuffer) {
+        BufferPool.releaseWhenWritten(e.getFuture(), (ChannelBuffer)encoded);
+      }
+      Channels.write(ctx, e.getFuture(), encoded, e.getRemoteAddress());
+    }
+    return true;
+  }
+
+  /**
+   * Allocate a buffer for an encoded frame of at most {@code size} bytes
+   */
+  protected ChannelBuffer allocate(Channel channel, int size) {
+    return BufferPool.isEnabled() ? BufferPool.allocate(size) : channel.getConfig().getBufferFactory().getBuffer(size);
+  }
+}
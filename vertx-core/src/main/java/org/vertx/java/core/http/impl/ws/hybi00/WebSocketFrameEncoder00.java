@@ -21,7 +21,7 @@ package org.vertx.java.core.http.impl.ws.hybi00;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.oneone.OneToOneEncoder;
+import org.vertx.java.core.http.impl.ws.PooledFrameEncoder;
 import org.vertx.java.core.http.impl.ws.WebSocketFrame;
 import org.vertx.java.core.logging.Logger;
 import org.vertx.java.core.logging.impl.LoggerFactory;
@@ -31,7 +31,7 @@ import static org.vertx.java.core.http.impl.ws.WebSocketFrame.FrameType;
 /**
  * @author <a href="http://tfox.org">Tim Fox</a>
  */
-public class WebSocketFrameEncoder00 extends OneToOneEncoder {
+public class WebSocketFrameEncoder00 extends PooledFrameEncoder {
 
   private static final Logger log = LoggerFactory.getLogger(WebSocketFrameDecoder00.class);
 
@@ -43,14 +43,14 @@ public class WebSocketFrameEncoder00 extends OneToOneEncoder {
 
       switch (frameType) {
         case CLOSE: {
-          ChannelBuffer encoded = channel.getConfig().getBufferFactory().getBuffer(2);
+          ChannelBuffer encoded = allocate(channel, 2);
           encoded.writeByte(0xFF);
           encoded.writeByte(0x00);
           return encoded;
         }
         case TEXT: {
           ChannelBuffer data = frame.getBinaryData();
-          ChannelBuffer encoded = channel.getConfig().getBufferFactory().getBuffer(data.order(), data.readableBytes() + 2);
+          ChannelBuffer encoded = allocate(channel, data.readableBytes() + 2);
           encoded.writeByte(0x00);
           encoded.writeBytes(data, data.readableBytes());
           encoded.writeByte((byte) 0xFF);
@@ -59,7 +59,7 @@ public class WebSocketFrameEncoder00 extends OneToOneEncoder {
         case BINARY: {
           ChannelBuffer data = frame.getBinaryData();
           int dataLen = data.readableBytes();
-          ChannelBuffer encoded = channel.getConfig().getBufferFactory().getBuffer(data.order(), dataLen + 5);
+          ChannelBuffer encoded = allocate(channel, dataLen + 5);
           encoded.writeByte((byte) 0x80);
           encoded.writeByte((byte) (dataLen >>> 28 & 0x7F | 0x80));
           encoded.writeByte((byte) (dataLen >>> 14 & 0x7F | 0x80));
@@ -19,20 +19,18 @@
 package org.vertx.java.core.http.impl.ws.hybi08;
 
 import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.oneone.OneToOneEncoder;
+import org.vertx.java.core.http.impl.ws.PooledFrameEncoder;
 import org.vertx.java.core.http.impl.ws.WebSocketFrame;
 import org.vertx.java.core.logging.Logger;
 import org.vertx.java.core.logging.impl.LoggerFactory;
 
-import java.nio.ByteOrder;
 import java.security.SecureRandom;
 
 import static org.vertx.java.core.http.impl.ws.WebSocketFrame.FrameType;
 
-public class WebSocketFrameEncoder08 extends OneToOneEncoder {
+public class WebSocketFrameEncoder08 extends PooledFrameEncoder {
 
   public WebSocketFrameEncoder08(boolean shouldMask) {
     if (shouldMask) {
@@ -51,7 +49,8 @@ public class WebSocketFrameEncoder08 extends OneToOneEncoder {
       ChannelBuffer data = frame.getBinaryData();
       int dataLen = data.readableBytes();
 
-      ChannelBuffer encoded = ChannelBuffers.dynamicBuffer(ByteOrder.BIG_ENDIAN, data.readableBytes() + 32);
+      // The header is at most 14 bytes - opcode, length, extended length and mask
+      ChannelBuffer encoded = allocate(channel, dataLen + 14);
 
       byte firstByte = (byte) opcode;
       firstByte = (byte) (firstByte | 0x80);
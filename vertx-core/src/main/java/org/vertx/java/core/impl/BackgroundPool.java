@@ -0,0 +1,269 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.vertx.java.core.impl;
+
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.logging.Logger;
+import org.vertx.java.core.logging.impl.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A named pool of threads for running blocking code.<p>
+ * The pool starts {@code min-size} threads and adds more, up to {@code max-size}, whenever a task is submitted and
+ * all the threads are busy. Threads over {@code min-size} stop after {@code keep-alive} ms idle.<p>
+ * Contexts submit tasks through the executors returned by {@link #createOrderedExecutor}, which are counted as
+ * queued until they start running. If {@code queue-size} is greater than zero and that many tasks are already
+ * queued, further blocking actions are rejected with {@code RejectedExecutionException}. A context's own tasks, e.g.
+ * a worker verticle's handlers, are never rejected, as there would be nobody to tell.<p>
+ * If {@code virtual-threads} is true and the JVM supports them, each task chain runs on a virtual thread of its own
+ * instead, and the sizes and keep-alive don't apply. On older JVMs the pool falls back to platform threads.
+ */
+public class BackgroundPool {
+
+  /**
+   * The pool for worker verticles that don't have one of their own
+   */
+  public static final String DEFAULT = "default";
+  /**
+   * The pool {@link BlockingAction} uses unless it is given another one
+   */
+  public static final String BLOCKING = "blocking";
+  /**
+   * The pool for file system operations
+   */
+  public static final String FILE_SYSTEM = "fs";
+  /**
+   * The pool for operations on the cluster manager
+   */
+  public static final String CLUSTER = "cluster";
+  /**
+   * A pool of virtual threads, for worker verticles that block a lot
+   */
+  public static final String VIRTUAL = "virtual";
+
+  private static final Logger log = LoggerFactory.getLogger(BackgroundPool.class);
+
+  private static final long DEFAULT_KEEP_ALIVE = 60000;
+
+  private final String name;
+  private final ExecutorService executor;
+  private final OrderedExecutorFactory orderedFact;
+  private final int queueSize;
+  private final AtomicInteger queued = new AtomicInteger();
+  private final AtomicLong rejected = new AtomicLong();
+  private final Histogram waitTime = new Histogram();
+
+  BackgroundPool(String name, String threadPrefix, int minSize, int maxSize, int queueSize, long keepAlive) {
+    this(name, queueSize, createThreadPool(name, threadPrefix, minSize, maxSize, keepAlive));
+  }
+
+  private BackgroundPool(String name, int queueSize, ExecutorService executor) {
+    this.name = name;
+    this.queueSize = queueSize;
+    this.executor = executor;
+    orderedFact = new OrderedExecutorFactory(executor);
+  }
+
+  private static ThreadPoolExecutor createThreadPool(String name, String threadPrefix, int minSize, int maxSize,
+                                                     long keepAlive) {
+    if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+      throw new IllegalArgumentException("Invalid sizes for background pool " + name + ": min-size " + minSize +
+                                         ", max-size " + maxSize);
+    }
+    TaskQueue queue = new TaskQueue();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(minSize, maxSize, keepAlive, TimeUnit.MILLISECONDS, queue,
+                                                         new VertxThreadFactory(threadPrefix), queue);
+    executor.prestartAllCoreThreads();
+    return executor;
+  }
+
+  /**
+   * Create a pool from its configuration, e.g. {@code {"min-size": 1, "max-size": 10, "queue-size": 1000,
+   * "keep-alive": 60000, "virtual-threads": false}}. Any field left out takes its default: no minimum,
+   * {@code defaultMaxSize} threads at most, an unbounded queue, 60 seconds keep-alive and platform threads.
+   */
+  static BackgroundPool create(String name, String threadPrefix, JsonObject config, int defaultMaxSize) {
+    int queueSize = config.getNumber("queue-size", 0).intValue();
+    if (config.getBoolean("virtual-threads", false)) {
+      VirtualThreadExecutor executor = VirtualThreadExecutor.create(threadPrefix);
+      if (executor != null) {
+        return new BackgroundPool(name, queueSize, executor);
+      }
+      log.warn("This JVM doesn't support virtual threads, so background pool " + name + " will use platform threads");
+    }
+    int maxSize = config.getNumber("max-size", defaultMaxSize).intValue();
+    return new BackgroundPool(name, threadPrefix, config.getNumber("min-size", 0).intValue(), maxSize, queueSize,
+                              config.getNumber("keep-alive", (int)DEFAULT_KEEP_ALIVE).longValue());
+  }
+
+  /**
+   * @return true if the pool runs its tasks on virtual threads
+   */
+  public boolean isVirtual() {
+    return executor instanceof VirtualThreadExecutor;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the pool as an executor service, for code that needs one, e.g. {@code AsynchronousFileChannel}. Tasks
+   * submitted to it directly aren't counted in the metrics or bounded by {@code queue-size}
+   */
+  public ExecutorService getExecutorService() {
+    return executor;
+  }
+
+  /**
+   * @return an executor that runs its tasks in order on this pool
+   */
+  public Executor createOrderedExecutor() {
+    return new PoolExecutor(orderedFact.getExecutor());
+  }
+
+  /**
+   * The executors a context submits its tasks through. {@link #execute} never rejects a task, {@link #executeBounded}
+   * rejects it if the pool's queue is full.
+   */
+  class PoolExecutor implements Executor {
+
+    private final Executor ordered;
+
+    private PoolExecutor(Executor ordered) {
+      this.ordered = ordered;
+    }
+
+    public void execute(Runnable task) {
+      queued.incrementAndGet();
+      submit(task);
+    }
+
+    /**
+     * @throws RejectedExecutionException if {@code queue-size} tasks are already queued on the pool
+     */
+    void executeBounded(Runnable task) {
+      int size = queued.incrementAndGet();
+      if (queueSize > 0 && size > queueSize) {
+        queued.decrementAndGet();
+        rejected.incrementAndGet();
+        throw new RejectedExecutionException("Background pool " + name + " has " + queueSize + " tasks queued");
+      }
+      submit(task);
+    }
+
+    private void submit(final Runnable task) {
+      final long submitted = System.nanoTime();
+      ordered.execute(new Runnable() {
+        public void run() {
+          queued.decrementAndGet();
+          waitTime.recordNanos(System.nanoTime() - submitted);
+          task.run();
+        }
+      });
+    }
+  }
+
+  /**
+   * Get the pool's metrics, as {@code {"name": name, "virtual": boolean, "threads": n, "active": n, "queued": n, "rejected": n,
+   * "waitTime": {...}}}
+   */
+  public JsonObject getMetrics() {
+    int threads, active;
+    if (executor instanceof ThreadPoolExecutor) {
+      ThreadPoolExecutor pool = (ThreadPoolExecutor)executor;
+      threads = pool.getPoolSize();
+      active = pool.getActiveCount();
+    } else {
+      // Virtual threads only exist while they have something to run
+      threads = active = ((VirtualThreadExecutor)executor).getLiveCount();
+    }
+    return new JsonObject()
+        .putString("name", name)
+        .putBoolean("virtual", isVirtual())
+        .putNumber("threads", threads)
+        .putNumber("active", active)
+        .putNumber("queued", queued.get())
+        .putNumber("rejected", rejected.get())
+        .putObject("waitTime", waitTime.toJson());
+  }
+
+  void shutdown() {
+    executor.shutdown();
+  }
+
+  boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return executor.awaitTermination(timeout, unit);
+  }
+
+  /*
+   ThreadPoolExecutor only adds threads over the core size when its queue is full, so to grow before tasks have to
+   wait, the queue turns tasks away while no thread is waiting on it and they go to a new thread instead.
+   Once the pool is at its maximum the executor rejects the task, and we queue it after all.
+   The threads waiting are counted here rather than asking the executor, which would take its lock on every task.
+   */
+  private static class TaskQueue extends LinkedBlockingQueue<Runnable> implements RejectedExecutionHandler {
+
+    private static final long serialVersionUID = 6412866423427329731L;
+
+    private final AtomicInteger idle = new AtomicInteger();
+
+    @Override
+    public boolean offer(Runnable task) {
+      if (idle.get() == 0) {
+        return false;
+      }
+      return super.offer(task);
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+      idle.incrementAndGet();
+      try {
+        return super.take();
+      } finally {
+        idle.decrementAndGet();
+      }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+      idle.incrementAndGet();
+      try {
+        return super.poll(timeout, unit);
+      } finally {
+        idle.decrementAndGet();
+      }
+    }
+
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+      if (executor.isShutdown() || !super.offer(task)) {
+        throw new RejectedExecutionException("Background pool has been shut down");
+      }
+    }
+  }
+}
@@ -19,8 +19,11 @@ package org.vertx.java.core.impl;
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.AsyncResultHandler;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
- * <p>Internal class used to run specific blocking actions on the worker pool.</p>
+ * <p>Internal class used to run specific blocking actions on a background pool, by default the
+ * {@link BackgroundPool#BLOCKING} pool.</p>
  *
  * <p>This class shouldn't be used directlty from user applications.</p>
  *
@@ -31,15 +34,22 @@ public abstract class BlockingAction<T>  {
   protected Context context;
 
   private final VertxInternal vertx;
+  private final String pool;
   private final AsyncResultHandler handler;
 
   public BlockingAction(VertxInternal vertx, AsyncResultHandler handler) {
+    this(vertx, BackgroundPool.BLOCKING, handler);
+  }
+
+  public BlockingAction(VertxInternal vertx, String pool, AsyncResultHandler handler) {
     this.vertx = vertx;
+    this.pool = pool;
     this.handler = handler;
   }
 
   /**
-   * Run the blocking action using a thread from the worker pool.
+   * Run the blocking action using a thread from the background pool. If the pool's queue is full the handler is
+   * called with a {@code RejectedExecutionException}.
    */
   public void run() {
     context = vertx.getOrAssignContext();
@@ -53,18 +63,25 @@ public abstract class BlockingAction<T>  {
         } catch (final Exception e) {
           res = new AsyncResult<>(e);
         }
-        if (handler != null) {
-          final AsyncResult<T> theRes = res;
-          context.execute(new Runnable() {
-            public void run() {
-              handler.handle(theRes);
-            }
-          });
-        }
+        complete(res);
       }
     };
 
-    context.executeOnWorker(runner);
+    try {
+      context.executeOnWorker(runner, pool);
+    } catch (RejectedExecutionException e) {
+      complete(new AsyncResult<T>(e));
+    }
+  }
+
+  private void complete(final AsyncResult<T> res) {
+    if (handler != null) {
+      context.execute(new Runnable() {
+        public void run() {
+          handler.handle(res);
+        }
+      });
+    }
   }
 
   public abstract T action() throws Exception;
@@ -39,6 +39,8 @@ public abstract class Context {
   private Map<Object, Runnable> closeHooks;
 
   private final Executor bgExec;
+  // The executors for the other background pools this context has used, so its tasks stay in order on each pool
+  private Map<String, Executor> poolExecs;
 
   private final ClassLoader tccl;
 
@@ -110,6 +112,36 @@ public abstract class Context {
     });
   }
 
+  /**
+   * Run a blocking task on a named background pool. Tasks run on the same pool from a context are run in order
+   * @throws java.util.concurrent.RejectedExecutionException if the pool's queue is full
+   */
+  public void executeOnWorker(final Runnable task, String pool) {
+    Runnable wrapped = new Runnable() {
+      public void run() {
+        wrapTask(task).run();
+      }
+    };
+    Executor exec = pool == null || BackgroundPool.DEFAULT.equals(pool) ? bgExec : getPoolExecutor(pool);
+    if (exec instanceof BackgroundPool.PoolExecutor) {
+      ((BackgroundPool.PoolExecutor)exec).executeBounded(wrapped);
+    } else {
+      exec.execute(wrapped);
+    }
+  }
+
+  private synchronized Executor getPoolExecutor(String pool) {
+    if (poolExecs == null) {
+      poolExecs = new HashMap<>();
+    }
+    Executor exec = poolExecs.get(pool);
+    if (exec == null) {
+      exec = vertx.getBackgroundPool(pool).createOrderedExecutor();
+      poolExecs.put(pool, exec);
+    }
+    return exec;
+  }
+
   protected Runnable wrapTask(final Runnable task) {
     return new Runnable() {
       public void run() {
@@ -32,6 +32,8 @@ import org.vertx.java.core.http.HttpClient;
 import org.vertx.java.core.http.HttpServer;
 import org.vertx.java.core.http.impl.DefaultHttpClient;
 import org.vertx.java.core.http.impl.DefaultHttpServer;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
 import org.vertx.java.core.logging.Logger;
 import org.vertx.java.core.logging.impl.LoggerFactory;
 import org.vertx.java.core.net.NetClient;
@@ -47,6 +49,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * @author <a href="http://tfox.org">Tim Fox</a>
@@ -63,8 +66,10 @@ public class DefaultVertx extends VertxInternal {
 
   private int backgroundPoolSize;
   private int corePoolSize = Runtime.getRuntime().availableProcessors();
-  private ExecutorService backgroundPool;
-  private OrderedExecutorFactory orderedFact;
+  private BackgroundPool backgroundPool;
+  private final ConcurrentMap<String, BackgroundPool> backgroundPools = new ConcurrentHashMap<>();
+  // How many users have created each pool and not released it yet, guarded by backgroundPools
+  private final Map<String, Integer> backgroundPoolUsers = new HashMap<>();
   private NioWorkerPool workerPool;
   private ExecutorService acceptorPool;
   private Map<ServerID, DefaultHttpServer> sharedHttpServers = new HashMap<>();
@@ -72,15 +77,21 @@ public class DefaultVertx extends VertxInternal {
 
   private final ThreadLocal<Context> contextTL = new ThreadLocal<>();
 
-  //For now we use a hashed wheel with it's own thread for timeouts - ideally the event loop would have
-  //it's own hashed wheel
+  // Each event loop has its own timer wheel, for the timers set from its contexts. This timer wakes the loops when
+  // their timers are due, runs the timers set from worker contexts, and is used by Netty for connect timeouts
   private HashedWheelTimer timer = new HashedWheelTimer(new VertxThreadFactory("vert.x-timer-thread"), 1,
       TimeUnit.MILLISECONDS, 8192);
   {
     timer.start();
   }
+  // The low bits of a timer ID are the index of its wheel, or 0 if it's on the shared timer
+  private static final int WHEEL_BITS = 12;
+  private static final int MAX_WHEELS = (1 << WHEEL_BITS) - 1;
   private final AtomicLong timeoutCounter = new AtomicLong(0);
   private final Map<Long, TimeoutHolder> timeouts = new ConcurrentHashMap<>();
+  private final ConcurrentMap<NioWorker, TimerWheel> wheelsByWorker = new ConcurrentHashMap<>();
+  private final AtomicReferenceArray<TimerWheel> wheels = new AtomicReferenceArray<>(MAX_WHEELS + 1);
+  private final EventLoopMonitor loopMonitor = new EventLoopMonitor(timer);
 
   public DefaultVertx() {
     configure();
@@ -115,6 +126,10 @@ public class DefaultVertx extends VertxInternal {
   	return timer;
   }
   
+  public JsonObject getEventLoopMetrics() {
+    return loopMonitor.getMetrics();
+  }
+
   public NetServer createNetServer() {
     return new DefaultNetServer(this);
   }
@@ -154,7 +169,11 @@ public class DefaultVertx extends VertxInternal {
   }
 
   public Context startInBackground(final Runnable runnable) {
-    Context context  = createWorkerContext();
+    return startInBackground(runnable, BackgroundPool.DEFAULT);
+  }
+
+  public Context startInBackground(final Runnable runnable, String poolName) {
+    Context context  = new WorkerContext(this, getBackgroundPool(poolName).createOrderedExecutor());
     context.execute(runnable);
     return context;
   }
@@ -194,20 +213,90 @@ public class DefaultVertx extends VertxInternal {
 
   //The worker pool is used for making blocking calls to legacy synchronous APIs
   public ExecutorService getBackgroundPool() {
+    return getDefaultBackgroundPool().getExecutorService();
+  }
+
+  private BackgroundPool getDefaultBackgroundPool() {
     //This is a correct implementation of double-checked locking idiom
-    ExecutorService result = backgroundPool;
+    BackgroundPool result = backgroundPool;
     if (result == null) {
       synchronized (this) {
         result = backgroundPool;
         if (result == null) {
-          backgroundPool = result = Executors.newFixedThreadPool(backgroundPoolSize, new VertxThreadFactory("vert.x-worker-thread-"));
-          orderedFact = new OrderedExecutorFactory(backgroundPool);
+          backgroundPool = result = new BackgroundPool(BackgroundPool.DEFAULT, "vert.x-worker-thread-",
+              backgroundPoolSize, backgroundPoolSize, 0, 0);
+          backgroundPools.put(BackgroundPool.DEFAULT, result);
         }
       }
     }
     return result;
   }
 
+  public BackgroundPool getBackgroundPool(String name) {
+    BackgroundPool pool = backgroundPools.get(name);
+    if (pool == null) {
+      if (BackgroundPool.DEFAULT.equals(name)) {
+        return getDefaultBackgroundPool();
+      }
+      JsonObject config = new JsonObject();
+      if (BackgroundPool.VIRTUAL.equals(name)) {
+        config.putBoolean("virtual-threads", true);
+      }
+      pool = getOrCreateBackgroundPool(name, config);
+    }
+    return pool;
+  }
+
+  public BackgroundPool createBackgroundPool(String name, JsonObject config) {
+    synchronized (backgroundPools) {
+      BackgroundPool pool = getOrCreateBackgroundPool(name, config);
+      Integer users = backgroundPoolUsers.get(name);
+      backgroundPoolUsers.put(name, users == null ? 1 : users + 1);
+      return pool;
+    }
+  }
+
+  public void releaseBackgroundPool(String name) {
+    BackgroundPool pool;
+    synchronized (backgroundPools) {
+      Integer users = backgroundPoolUsers.get(name);
+      if (users == null) {
+        return;
+      }
+      if (users > 1) {
+        backgroundPoolUsers.put(name, users - 1);
+        return;
+      }
+      backgroundPoolUsers.remove(name);
+      pool = backgroundPools.remove(name);
+    }
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  private BackgroundPool getOrCreateBackgroundPool(String name, JsonObject config) {
+    BackgroundPool pool = backgroundPools.get(name);
+    if (pool == null) {
+      synchronized (backgroundPools) {
+        pool = backgroundPools.get(name);
+        if (pool == null) {
+          pool = BackgroundPool.create(name, "vert.x-worker-thread-" + name + "-", config, backgroundPoolSize);
+          backgroundPools.put(name, pool);
+        }
+      }
+    }
+    return pool;
+  }
+
+  public JsonObject getBackgroundPoolMetrics() {
+    JsonArray pools = new JsonArray();
+    for (BackgroundPool pool: backgroundPools.values()) {
+      pools.addObject(pool.getMetrics());
+    }
+    return new JsonObject().putArray("pools", pools);
+  }
+
   public NioWorkerPool getWorkerPool() {
     //This is a correct implementation of double-checked locking idiom
     NioWorkerPool result = workerPool;
@@ -267,6 +356,14 @@ public class DefaultVertx extends VertxInternal {
 
   private long setTimeout(final long delay, boolean periodic, final Handler<Long> handler) {
     final Context context = getOrAssignContext();
+    if (context instanceof EventLoopContext) {
+      TimerWheel wheel = ((EventLoopContext) context).getTimerWheel();
+      if (wheel != null) {
+        long timerID = (timeoutCounter.getAndIncrement() << WHEEL_BITS) | wheel.index;
+        wheel.add(timerID, delay, periodic, context, handler);
+        return timerID;
+      }
+    }
 
     InternalTimerHandler myHandler;
     if (periodic) {
@@ -294,12 +391,36 @@ public class DefaultVertx extends VertxInternal {
   }
 
   public Context createEventLoopContext() {
-    getBackgroundPool();
     NioWorker worker = getWorkerPool().nextWorker();
-    return new EventLoopContext(this, orderedFact.getExecutor(), worker);
+    return new EventLoopContext(this, getDefaultBackgroundPool().createOrderedExecutor(), worker, getTimerWheel(worker),
+                                loopMonitor.getLoop(worker));
+  }
+
+  private TimerWheel getTimerWheel(NioWorker worker) {
+    TimerWheel wheel = wheelsByWorker.get(worker);
+    if (wheel == null) {
+      synchronized (wheelsByWorker) {
+        wheel = wheelsByWorker.get(worker);
+        int index = wheelsByWorker.size() + 1;
+        if (wheel == null && index <= MAX_WHEELS) {
+          wheel = new TimerWheel(index, worker, timer);
+          wheels.set(index, wheel);
+          wheelsByWorker.put(worker, wheel);
+        }
+      }
+    }
+    return wheel;
   }
 
   private boolean cancelTimeout(long id) {
+    if (id < 0) {
+      return false;
+    }
+    int index = (int)(id & MAX_WHEELS);
+    if (index != 0) {
+      TimerWheel wheel = wheels.get(index);
+      return wheel != null && wheel.cancel(id);
+    }
     TimeoutHolder holder = timeouts.remove(id);
     if (holder != null) {
       holder.timeout.cancel();
@@ -320,16 +441,11 @@ public class DefaultVertx extends VertxInternal {
       return -1;
     }
     Timeout timeout = timer.newTimeout(ttask, delay, TimeUnit.MILLISECONDS);
-    id = id != -1 ? id : timeoutCounter.getAndIncrement();
+    id = id != -1 ? id : timeoutCounter.getAndIncrement() << WHEEL_BITS;
     timeouts.put(id, new TimeoutHolder(timeout, context));
     return id;
   }
 
-  private Context createWorkerContext() {
-    getBackgroundPool();
-    return new WorkerContext(this, orderedFact.getExecutor());
-  }
-
   public void setContext(Context context) {
     contextTL.set(context);
     if (context != null) {
@@ -358,6 +474,8 @@ public class DefaultVertx extends VertxInternal {
 			sharedNetServers = null;
 		}
 
+		loopMonitor.stop();
+
 		if (timer != null) {
 			timer.stop();
 			timer = null;
@@ -367,8 +485,8 @@ public class DefaultVertx extends VertxInternal {
 			eventBus.close(null);
 		}
 
-		if (backgroundPool != null) {
-			backgroundPool.shutdown();
+		for (BackgroundPool pool: backgroundPools.values()) {
+			pool.shutdown();
 		}
 
 		if (acceptorPool != null) {
@@ -376,10 +494,11 @@ public class DefaultVertx extends VertxInternal {
 		}
 
 		try {
-			if (backgroundPool != null) {
-				backgroundPool.awaitTermination(20, TimeUnit.SECONDS);
-				backgroundPool = null;
+			for (BackgroundPool pool: backgroundPools.values()) {
+				pool.awaitTermination(20, TimeUnit.SECONDS);
 			}
+			backgroundPools.clear();
+			backgroundPool = null;
 		} catch (InterruptedException ex) {
 			// ignore
 		}
@@ -26,17 +26,36 @@ import java.util.concurrent.Executor;
 public class EventLoopContext extends Context {
 
   private final NioWorker worker;
+  private final TimerWheel timerWheel;
+  private final EventLoopMonitor.Loop loop;
 
   public EventLoopContext(VertxInternal vertx, Executor bgExec, NioWorker worker) {
+    this(vertx, bgExec, worker, null, null);
+  }
+
+  EventLoopContext(VertxInternal vertx, Executor bgExec, NioWorker worker, TimerWheel timerWheel,
+                   EventLoopMonitor.Loop loop) {
     super(vertx, bgExec);
     this.worker = worker;
+    this.timerWheel = timerWheel;
+    this.loop = loop;
   }
 
   public void execute(Runnable task) {
+    if (loop != null) {
+      loop.submitted.incrementAndGet();
+    }
     worker.executeInIoThread(wrapTask(task), true);
   }
 
   public NioWorker getWorker() {
     return worker;
   }
+
+  /**
+   * @return the timer wheel for the context's loop, or null if it doesn't have one
+   */
+  TimerWheel getTimerWheel() {
+    return timerWheel;
+  }
 }
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.impl;
+
+import org.jboss.netty.channel.socket.nio.NioWorker;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.logging.Logger;
+import org.vertx.java.core.logging.impl.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Watches the event loops for handlers that block them, and measures how busy they are.<p>
+ * Every {@code vertx.loopCheckInterval} ms (default 1000) each loop is sent a probe task, unless the last one hasn't
+ * run yet. If a probe has been waiting longer than {@code vertx.blockedLoopThreshold} ms (default 2000) the loop is
+ * blocked, and the stack trace of its thread is logged at each check until it frees up. Since the probe goes through
+ * the loop's task queue, this catches a loop blocked by anything, whether a task, a timer or a handler called for
+ * network I/O. A threshold of 0 turns the checks off.<p>
+ * The time each probe waited is recorded as the loop's queue latency. A loop's busy ratio is the CPU time its thread
+ * used over the last interval, so a handler blocked waiting for I/O or a lock doesn't count as busy - but it will be
+ * reported as blocked.
+ */
+class EventLoopMonitor {
+
+  private static final Logger log = LoggerFactory.getLogger(EventLoopMonitor.class);
+
+  private static final long DEFAULT_INTERVAL = 1000;
+  private static final long DEFAULT_THRESHOLD = 2000;
+
+  private final Timer timer;
+  private final long interval = Long.getLong("vertx.loopCheckInterval", DEFAULT_INTERVAL);
+  private final long thresholdNanos =
+      TimeUnit.MILLISECONDS.toNanos(Long.getLong("vertx.blockedLoopThreshold", DEFAULT_THRESHOLD));
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+  private final boolean cpuTime = threads.isThreadCpuTimeSupported();
+  private final Map<NioWorker, Loop> loops = new ConcurrentHashMap<>();
+  private volatile boolean stopped;
+
+  private final TimerTask checkTask = new TimerTask() {
+    public void run(Timeout timeout) {
+      check();
+      schedule();
+    }
+  };
+
+  EventLoopMonitor(Timer timer) {
+    this.timer = timer;
+  }
+
+  boolean isEnabled() {
+    return thresholdNanos > 0;
+  }
+
+  /**
+   * @return the loop for a worker, which is monitored from now on
+   */
+  Loop getLoop(NioWorker worker) {
+    Loop loop = loops.get(worker);
+    if (loop == null) {
+      synchronized (loops) {
+        loop = loops.get(worker);
+        if (loop == null) {
+          boolean first = loops.isEmpty();
+          loop = new Loop(worker);
+          loops.put(worker, loop);
+          // The first probe goes before anything else is run on the loop, so we know its thread if that blocks it
+          loop.probe(System.nanoTime());
+          if (first && isEnabled()) {
+            schedule();
+          }
+        }
+      }
+    }
+    return loop;
+  }
+
+  void stop() {
+    stopped = true;
+  }
+
+  JsonObject getMetrics() {
+    JsonArray json = new JsonArray();
+    for (Loop loop: loops.values()) {
+      Thread thread = loop.thread;
+      json.addObject(new JsonObject()
+          .putString("thread", thread == null ? null : thread.getName())
+          .putNumber("submitted", loop.submitted.get())
+          .putNumber("busy", loop.busy)
+          .putNumber("blockedMillis", TimeUnit.NANOSECONDS.toMillis(loop.blockedFor(System.nanoTime())))
+          .putObject("queueLatency", loop.queueLatency.toJson()));
+    }
+    return new JsonObject().putArray("loops", json);
+  }
+
+  private void schedule() {
+    if (!stopped) {
+      try {
+        timer.newTimeout(checkTask, interval, TimeUnit.MILLISECONDS);
+      } catch (IllegalStateException e) {
+        // The timer has been stopped, so vert.x is stopping
+      }
+    }
+  }
+
+  private void check() {
+    long now = System.nanoTime();
+    for (Loop loop: loops.values()) {
+      loop.updateBusy(now);
+      long blockedFor = loop.blockedFor(now);
+      if (blockedFor > thresholdNanos) {
+        Thread thread = loop.thread;
+        if (thread != null) {
+          BlockedLoopException e = new BlockedLoopException(thread, TimeUnit.NANOSECONDS.toMillis(blockedFor));
+          e.setStackTrace(thread.getStackTrace());
+          log.warn(e.getMessage(), e);
+        } else {
+          // The loop was blocked before even the first probe ran, by something that isn't ours
+          log.warn("An event loop has been blocked for " + TimeUnit.NANOSECONDS.toMillis(blockedFor) + " ms");
+        }
+      } else if (blockedFor == 0) {
+        loop.probe(now);
+      }
+    }
+  }
+
+  class Loop {
+
+    // The number of tasks contexts have submitted to the loop, whether they've run yet or not
+    final AtomicLong submitted = new AtomicLong();
+    final Histogram queueLatency = new Histogram();
+
+    private final NioWorker worker;
+    private volatile Thread thread;
+    // When the outstanding probe was sent, or 0 if there isn't one
+    private volatile long probeSent;
+    private volatile double busy;
+    // Only touched by the monitor
+    private long lastCheck;
+    private long lastCpu;
+
+    private final Runnable probeTask = new Runnable() {
+      public void run() {
+        thread = Thread.currentThread();
+        queueLatency.recordNanos(System.nanoTime() - probeSent);
+        probeSent = 0;
+      }
+    };
+
+    Loop(NioWorker worker) {
+      this.worker = worker;
+    }
+
+    private void probe(long now) {
+      probeSent = now;
+      worker.executeInIoThread(probeTask, true);
+    }
+
+    private long blockedFor(long now) {
+      long sent = probeSent;
+      return sent == 0 ? 0 : Math.max(now - sent, 1);
+    }
+
+    private void updateBusy(long now) {
+      Thread t = thread;
+      if (t == null || !cpuTime) {
+        return;
+      }
+      long cpu = threads.getThreadCpuTime(t.getId());
+      if (cpu == -1) {
+        return;
+      }
+      if (lastCheck != 0) {
+        busy = Math.min(1d, (double)(cpu - lastCpu) / (now - lastCheck));
+      }
+      lastCheck = now;
+      lastCpu = cpu;
+    }
+  }
+
+  /**
+   * Only used to log the stack trace of a blocked loop
+   */
+  private static class BlockedLoopException extends Exception {
+
+    private static final long serialVersionUID = -3528735474523409321L;
+
+    BlockedLoopException(Thread thread, long millis) {
+      super("Event loop thread " + thread.getName() + " has been blocked for " + millis + " ms");
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.impl;
+
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Internal class which records a distribution of durations.</p>
+ *
+ * <p>Durations are counted in buckets whose bounds are powers of two microseconds, so recording is a couple of atomic
+ * increments and percentiles are accurate to within a factor of two. It can be recorded to from any thread.</p>
+ */
+public class Histogram {
+
+  // Bucket i counts durations of less than 2^i micros, and the last one everything longer
+  private static final int BUCKETS = 32;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalMicros = new AtomicLong();
+  private final AtomicLong maxMicros = new AtomicLong();
+
+  public void recordNanos(long nanos) {
+    long micros = nanos / 1000;
+    int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    buckets.incrementAndGet(bucket);
+    count.incrementAndGet();
+    totalMicros.addAndGet(micros);
+    long max;
+    while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+    }
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Returns the upper bound of the bucket containing the given percentile, in micros
+   */
+  public long getPercentileMicros(double percentile) {
+    long total = count.get();
+    if (total == 0) {
+      return 0;
+    }
+    long target = (long) Math.ceil(total * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS - 1; i++) {
+      seen += buckets.get(i);
+      if (seen >= target) {
+        return Math.min(1L << i, maxMicros.get());
+      }
+    }
+    return maxMicros.get();
+  }
+
+  public JsonObject toJson() {
+    long total = count.get();
+    return new JsonObject()
+        .putNumber("count", total)
+        .putNumber("meanMicros", total == 0 ? 0 : totalMicros.get() / total)
+        .putNumber("p50Micros", getPercentileMicros(50))
+        .putNumber("p99Micros", getPercentileMicros(99))
+        .putNumber("maxMicros", maxMicros.get());
+  }
+}
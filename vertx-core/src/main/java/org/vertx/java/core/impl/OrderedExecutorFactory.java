@@ -18,11 +18,15 @@ package org.vertx.java.core.impl;
 import org.vertx.java.core.logging.Logger;
 import org.vertx.java.core.logging.impl.LoggerFactory;
 
-import java.util.LinkedList;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A factory for producing executors that run all tasks in order, which delegate to a single common executor instance.
+ * <p/>
+ * An executor runs at most {@code vertx.orderedExecutorQuantum} tasks (default 64) each time it gets a thread from
+ * the parent, then goes to the back of the parent's queue if it has more, so a busy executor can't starve the others.
  *
  * @author <a href="david.lloyd@jboss.com">David Lloyd</a>
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
@@ -31,7 +35,10 @@ import java.util.concurrent.Executor;
 public class OrderedExecutorFactory {
   private static final Logger log = LoggerFactory.getLogger(OrderedExecutorFactory.class);
 
+  private static final int DEFAULT_QUANTUM = 64;
+
   private final Executor parent;
+  private final int quantum;
 
   /**
    * Construct a new instance delegating to the given parent executor.
@@ -39,7 +46,21 @@ public class OrderedExecutorFactory {
    * @param parent the parent executor
    */
   public OrderedExecutorFactory(Executor parent) {
+    this(parent, Integer.getInteger("vertx.orderedExecutorQuantum", DEFAULT_QUANTUM));
+  }
+
+  /**
+   * Construct a new instance delegating to the given parent executor.
+   *
+   * @param parent the parent executor
+   * @param quantum the most tasks an executor runs before letting the others have the thread
+   */
+  public OrderedExecutorFactory(Executor parent, int quantum) {
+    if (quantum < 1) {
+      throw new IllegalArgumentException("quantum must be at least 1");
+    }
     this.parent = parent;
+    this.quantum = quantum;
   }
 
   /**
@@ -48,7 +69,7 @@ public class OrderedExecutorFactory {
    * @return an ordered executor
    */
   public Executor getExecutor() {
-    return new OrderedExecutor(parent);
+    return new OrderedExecutor(parent, quantum);
   }
 
   /**
@@ -56,35 +77,49 @@ public class OrderedExecutorFactory {
    * <p/>
    * More specifically, any call B to the {@link #execute(Runnable)} method that happens-after another call A to the
    * same method, will result in B's task running after A's.
+   * <p/>
+   * Tasks are queued on a lock free multi producer, single consumer queue. Only the thread running the tasks takes
+   * them off the queue, and there's only ever one, since the runner is only handed to the parent by whoever sets
+   * {@code running}.
    */
   private static final class OrderedExecutor implements Executor {
-    // @protectedby tasks
-    private final LinkedList<Runnable> tasks = new LinkedList<>();
 
-    // @protectedby tasks
-    private boolean running;
+    // Producers swap themselves in as the tail, then link the previous tail to themselves
+    private final AtomicReference<Node> tail;
+    // Only touched by the runner. Its task has already been run
+    private Node head;
+
+    private final AtomicBoolean running = new AtomicBoolean();
 
     private final Executor parent;
 
+    private final int quantum;
+
     private final Runnable runner;
 
     /**
      * Construct a new instance.
      *
      * @param parent the parent executor
+     * @param quantum the most tasks to run before going back to the parent
      */
-    public OrderedExecutor(Executor parent) {
+    public OrderedExecutor(Executor parent, final int quantum) {
       this.parent = parent;
+      this.quantum = quantum;
+      this.head = new Node(null);
+      this.tail = new AtomicReference<>(head);
       runner = new Runnable() {
         public void run() {
-          for (; ; ) {
-            final Runnable task;
-            synchronized (tasks) {
-              task = tasks.poll();
-              if (task == null) {
-                running = false;
+          for (int i = 0; i < quantum; i++) {
+            final Runnable task = poll();
+            if (task == null) {
+              running.set(false);
+              // A task may have been added after we looked but before we cleared the flag, in which case whoever
+              // added it didn't schedule us, so we have to carry on
+              if (isEmpty() || !running.compareAndSet(false, true)) {
                 return;
               }
+              continue;
             }
             try {
               task.run();
@@ -92,6 +127,14 @@ public class OrderedExecutorFactory {
               log.error("Caught unexpected Throwable", t);
             }
           }
+          if (isEmpty()) {
+            running.set(false);
+            if (isEmpty() || !running.compareAndSet(false, true)) {
+              return;
+            }
+          }
+          // Used up our quantum, so go to the back of the parent's queue and let the others have a go
+          OrderedExecutor.this.parent.execute(this);
         }
       };
     }
@@ -102,13 +145,41 @@ public class OrderedExecutorFactory {
      * @param command the task to run.
      */
     public void execute(Runnable command) {
-      synchronized (tasks) {
-        tasks.add(command);
-        if (!running) {
-          running = true;
-          parent.execute(runner);
+      Node node = new Node(command);
+      tail.getAndSet(node).next = node;
+      if (running.compareAndSet(false, true)) {
+        parent.execute(runner);
+      }
+    }
+
+    private boolean isEmpty() {
+      return tail.get() == head;
+    }
+
+    private Runnable poll() {
+      Node next = head.next;
+      if (next == null) {
+        if (tail.get() == head) {
+          return null;
+        }
+        // A producer has swapped in the tail but not linked it yet, it won't be long
+        while ((next = head.next) == null) {
+          Thread.yield();
         }
       }
+      Runnable task = next.task;
+      next.task = null;
+      head = next;
+      return task;
+    }
+
+    private static final class Node {
+      Runnable task;
+      volatile Node next;
+
+      Node(Runnable task) {
+        this.task = task;
+      }
     }
   }
 }
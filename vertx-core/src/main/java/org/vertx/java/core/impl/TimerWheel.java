@@ -0,0 +1,261 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.impl;
+
+import org.jboss.netty.channel.socket.nio.NioWorker;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+import org.vertx.java.core.Handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed timer wheel owned by one event loop, for the timers set from contexts on that loop.<p>
+ * The wheel itself is only touched on the loop's thread, so a timer set and fired on the loop doesn't hand off to
+ * another thread or contend with the other loops. Timers set from another thread are added on the loop.<p>
+ * Netty doesn't let us run anything as part of the loop's select cycle, so the loop is woken by the driver timer
+ * when the next bucket with timers in it is due. That's one hand off for all the timers due at once, rather than one
+ * for each timer, and the driver only has one timeout per loop.<p>
+ * Timers can be cancelled from any thread. A timer cancelled on the loop is taken out of the wheel straight away, and
+ * one cancelled from elsewhere is dropped when the loop next reaches its bucket.
+ */
+class TimerWheel {
+
+  private static final int WHEEL_SIZE = 8192;
+
+  final int index;
+  private final NioWorker worker;
+  private final Timer driver;
+
+  private final ConcurrentMap<Long, Entry> timers = new ConcurrentHashMap<>();
+
+  // Only touched on the loop
+  private final Entry[] wheel = new Entry[WHEEL_SIZE];
+  private final int mask = WHEEL_SIZE - 1;
+  private int size;
+  private long lastTick = -1;
+  private long wakeupTick = Long.MAX_VALUE;
+  private Timeout wakeup;
+  private volatile Thread loopThread;
+
+  private final Runnable advanceTask = new Runnable() {
+    public void run() {
+      advance();
+    }
+  };
+
+  private final TimerTask wakeupTask = new TimerTask() {
+    public void run(Timeout timeout) {
+      worker.executeInIoThread(advanceTask, true);
+    }
+  };
+
+  TimerWheel(int index, NioWorker worker, Timer driver) {
+    this.index = index;
+    this.worker = worker;
+    this.driver = driver;
+  }
+
+  /**
+   * Set a timer. Can be called from any thread
+   */
+  void add(long id, long delay, boolean periodic, Context context, Handler<Long> handler) {
+    final Entry entry = new Entry(id, Math.max(delay, 1), periodic, context, handler);
+    timers.put(id, entry);
+    // Runs straight away if we're on the loop
+    worker.executeInIoThread(new Runnable() {
+      public void run() {
+        schedule(entry, tick());
+      }
+    }, false);
+  }
+
+  /**
+   * Cancel a timer. Can be called from any thread
+   * @return true if the timer was found and hadn't fired, or was periodic
+   */
+  boolean cancel(long id) {
+    Entry entry = timers.remove(id);
+    if (entry == null) {
+      return false;
+    }
+    entry.cancelled = true;
+    if (Thread.currentThread() == loopThread && entry.bucket != -1) {
+      unlink(entry);
+    }
+    return true;
+  }
+
+  private static long tick() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+  }
+
+  private void schedule(Entry entry, long now) {
+    loopThread = Thread.currentThread();
+    if (entry.cancelled) {
+      return;
+    }
+    if (size == 0) {
+      lastTick = now;
+    }
+    entry.deadline = now + entry.delay;
+    link(entry, (int)(entry.deadline & mask));
+    if (entry.deadline < wakeupTick) {
+      wakeupAt(entry.deadline, now);
+    }
+  }
+
+  private void wakeupAt(long tick, long now) {
+    if (wakeup != null) {
+      wakeup.cancel();
+    }
+    wakeupTick = tick;
+    try {
+      wakeup = driver.newTimeout(wakeupTask, Math.max(tick - now, 1), TimeUnit.MILLISECONDS);
+    } catch (IllegalStateException e) {
+      // The driver has been stopped, so vert.x is stopping
+      wakeup = null;
+    }
+  }
+
+  private void advance() {
+    loopThread = Thread.currentThread();
+    long now = tick();
+    if (now < wakeupTick) {
+      // Woken early, or by a wakeup that was replaced but couldn't be cancelled in time
+      if (wakeupTick != Long.MAX_VALUE) {
+        wakeupAt(wakeupTick, now);
+      }
+      return;
+    }
+    wakeupTick = Long.MAX_VALUE;
+    wakeup = null;
+    List<Entry> due = null;
+    // If we've fallen more than a lap behind, every bucket has to be looked at, but only once
+    long from = Math.max(lastTick + 1, now - mask);
+    for (long t = from; t <= now && size > 0; t++) {
+      Entry entry = wheel[(int)(t & mask)];
+      while (entry != null) {
+        Entry next = entry.next;
+        if (entry.cancelled) {
+          unlink(entry);
+        } else if (entry.deadline <= now) {
+          unlink(entry);
+          if (due == null) {
+            due = new ArrayList<>();
+          }
+          due.add(entry);
+        }
+        entry = next;
+      }
+    }
+    lastTick = now;
+    // Set the next wakeup before firing, as a timer set by a handler only moves it earlier. Set after, it would be
+    // the handler's timer's wakeup, and the timers already in the wheel would wait for it
+    if (size > 0) {
+      wakeupAt(nextDue(now), now);
+    }
+    // Fire them after we've finished with the wheel, since a handler can set or cancel timers
+    if (due != null) {
+      for (Entry entry: due) {
+        fire(entry, now);
+      }
+    }
+  }
+
+  private void fire(Entry entry, long now) {
+    if (entry.cancelled) {
+      return;
+    }
+    if (!entry.periodic) {
+      timers.remove(entry.id, entry);
+    }
+    entry.context.wrapTask(entry).run();
+    if (entry.periodic) {
+      schedule(entry, now);
+    }
+  }
+
+  // The tick of the next bucket with anything in it. Its timers might not be due until a later lap, in which case
+  // we'll just look again when we get there
+  private long nextDue(long now) {
+    for (long t = now + 1; t <= now + WHEEL_SIZE; t++) {
+      if (wheel[(int)(t & mask)] != null) {
+        return t;
+      }
+    }
+    return now + WHEEL_SIZE;
+  }
+
+  private void link(Entry entry, int bucket) {
+    Entry head = wheel[bucket];
+    entry.bucket = bucket;
+    entry.prev = null;
+    entry.next = head;
+    if (head != null) {
+      head.prev = entry;
+    }
+    wheel[bucket] = entry;
+    size++;
+  }
+
+  private void unlink(Entry entry) {
+    if (entry.prev != null) {
+      entry.prev.next = entry.next;
+    } else {
+      wheel[entry.bucket] = entry.next;
+    }
+    if (entry.next != null) {
+      entry.next.prev = entry.prev;
+    }
+    entry.prev = entry.next = null;
+    entry.bucket = -1;
+    size--;
+  }
+
+  private static class Entry implements Runnable {
+    final long id;
+    final long delay;
+    final boolean periodic;
+    final Context context;
+    final Handler<Long> handler;
+    volatile boolean cancelled;
+
+    // Only touched on the loop
+    long deadline;
+    int bucket = -1;
+    Entry prev;
+    Entry next;
+
+    Entry(long id, long delay, boolean periodic, Context context, Handler<Long> handler) {
+      this.id = id;
+      this.delay = delay;
+      this.periodic = periodic;
+      this.context = context;
+      this.handler = handler;
+    }
+
+    public void run() {
+      handler.handle(id);
+    }
+  }
+}
@@ -20,6 +20,7 @@ package org.vertx.java.core.impl;
 import org.jboss.netty.util.Timer;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.http.impl.DefaultHttpServer;
+import org.vertx.java.core.json.JsonObject;
 import org.vertx.java.core.net.impl.DefaultNetServer;
 import org.vertx.java.core.net.impl.ServerID;
 
@@ -40,10 +41,38 @@ public abstract class VertxInternal extends Vertx {
 
   public abstract ExecutorService getBackgroundPool();
 
+  /**
+   * Get a named background pool, creating it with the default configuration if it doesn't exist yet
+   */
+  public abstract BackgroundPool getBackgroundPool(String name);
+
+  /**
+   * Create a named background pool, as described in {@link BackgroundPool#create}. If a pool with the name already
+   * exists, that pool is returned and the configuration is ignored. Each call must be matched by a call to
+   * {@link #releaseBackgroundPool} once the caller is done with the pool
+   */
+  public abstract BackgroundPool createBackgroundPool(String name, JsonObject config);
+
+  /**
+   * Release a pool got from {@link #createBackgroundPool}. The pool is shut down once everyone that created it has
+   * released it, and the tasks already submitted to it have run
+   */
+  public abstract void releaseBackgroundPool(String name);
+
+  /**
+   * Get the metrics of the background pools, as {@code {"pools": [{"name": name, ...}]}}
+   */
+  public abstract JsonObject getBackgroundPoolMetrics();
+
   public abstract Context startOnEventLoop(Runnable runnable);
 
   public abstract Context startInBackground(Runnable runnable);
 
+  /**
+   * Start a worker context whose tasks run on the named background pool
+   */
+  public abstract Context startInBackground(Runnable runnable, String poolName);
+
   public abstract Context getOrAssignContext();
 
   public abstract void reportException(Throwable t);
@@ -54,6 +83,12 @@ public abstract class VertxInternal extends Vertx {
 
   public abstract Timer getTimer();
 
+  /**
+   * Get the event loop metrics, as
+   * {@code {"loops": [{"thread": name, "submitted": n, "busy": ratio, "blockedMillis": ms, "queueLatency": {...}}]}}
+   */
+  public abstract JsonObject getEventLoopMetrics();
+
 	/**
 	 * Get the current context
 	 * @return
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.vertx.java.core.impl;
+
+import org.vertx.java.core.logging.Logger;
+import org.vertx.java.core.logging.impl.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs each task on a new virtual thread.<p>
+ * Virtual threads are created through reflection, since vert.x is built for JDK 7. If the JVM doesn't have them,
+ * {@link #create} returns null and the caller falls back to platform threads.
+ */
+class VirtualThreadExecutor extends AbstractExecutorService {
+
+  private static final Logger log = LoggerFactory.getLogger(VirtualThreadExecutor.class);
+
+  private final ThreadFactory factory;
+  // The number of threads that haven't finished yet. Guarded by this
+  private int live;
+  private boolean shutdown;
+
+  private VirtualThreadExecutor(ThreadFactory factory) {
+    this.factory = factory;
+  }
+
+  /**
+   * @return an executor whose threads are named with the prefix followed by a number, or null if the JVM doesn't
+   * support virtual threads
+   */
+  static VirtualThreadExecutor create(String threadPrefix) {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadPrefix, 0L);
+      Method factory = builderClass.getMethod("factory");
+      return new VirtualThreadExecutor((ThreadFactory)factory.invoke(builder));
+    } catch (Exception e) {
+      // Either they don't exist, or they're a preview feature which hasn't been enabled
+      log.debug("Virtual threads aren't available", e);
+      return null;
+    }
+  }
+
+  public void execute(final Runnable task) {
+    synchronized (this) {
+      if (shutdown) {
+        throw new RejectedExecutionException("Executor has been shut down");
+      }
+      live++;
+    }
+    factory.newThread(new Runnable() {
+      public void run() {
+        try {
+          task.run();
+        } finally {
+          finished();
+        }
+      }
+    }).start();
+  }
+
+  private synchronized void finished() {
+    if (--live == 0) {
+      notifyAll();
+    }
+  }
+
+  /**
+   * @return the number of threads running tasks
+   */
+  synchronized int getLiveCount() {
+    return live;
+  }
+
+  public synchronized void shutdown() {
+    shutdown = true;
+  }
+
+  public List<Runnable> shutdownNow() {
+    shutdown();
+    return Collections.emptyList();
+  }
+
+  public synchronized boolean isShutdown() {
+    return shutdown;
+  }
+
+  public synchronized boolean isTerminated() {
+    return shutdown && live == 0;
+  }
+
+  public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long end = System.nanoTime() + unit.toNanos(timeout);
+    while (!isTerminated()) {
+      long remaining = end - System.nanoTime();
+      if (remaining <= 0) {
+        return false;
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, remaining);
+    }
+    return true;
+  }
+}
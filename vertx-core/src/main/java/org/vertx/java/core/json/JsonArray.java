@@ -16,7 +16,9 @@
 
 package org.vertx.java.core.json;
 
+import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.http.impl.ws.Base64;
+import org.vertx.java.core.json.impl.BinaryJson;
 import org.vertx.java.core.json.impl.Json;
 
 import java.util.*;
@@ -28,37 +30,69 @@ import java.util.*;
  */
 public class JsonArray extends JsonElement implements Iterable<Object> {
 
-  final List<Object> list;
+  List<Object> list;
+  private final boolean frozen;
+  // The objects and arrays read from or put into this one, by their map or list
+  private Map<Object, JsonElement> children;
 
   public JsonArray(List<Object> array) {
+    this(array, false);
+  }
+
+  JsonArray(List<Object> array, boolean frozen) {
     this.list = array;
+    this.frozen = frozen;
   }
 
   public JsonArray(Object[] array) {
     this.list = Arrays.asList(array);
+    this.frozen = false;
   }
 
   public JsonArray() {
     this.list = new ArrayList<>();
+    this.frozen = false;
   }
 
+  /**
+   * Create a JSON array from a string form of a JSON array. The whole string is parsed straight away, including the
+   * objects and arrays nested in it
+   * @throws DecodeException if the string isn't a valid JSON array
+   */
   @SuppressWarnings("unchecked")
   public JsonArray(String jsonString) {
     list = (List<Object>) Json.decodeValue(jsonString, List.class);
+    frozen = false;
+  }
+
+  /**
+   * Create a JSON array from a JSON array encoded in UTF-8, which is decoded straight from the Buffer. The whole
+   * Buffer is parsed straight away, including the objects and arrays nested in it
+   * @throws DecodeException if the Buffer doesn't hold a valid JSON array
+   */
+  @SuppressWarnings("unchecked")
+  public JsonArray(Buffer jsonBuffer) {
+    list = (List<Object>) Json.decodeValue(jsonBuffer, List.class);
+    frozen = false;
   }
 
   public JsonArray addString(String str) {
+    writable();
     list.add(str);
     return this;
   }
 
   public JsonArray addObject(JsonObject value) {
+    writable();
     list.add(value.map);
+    putChild(value);
     return this;
   }
 
   public JsonArray addArray(JsonArray value) {
+    writable();
     list.add(value.list);
+    putChild(value);
     return this;
   }
 
@@ -71,28 +105,33 @@ public class JsonArray extends JsonElement implements Iterable<Object> {
   }
 
   public JsonArray addNumber(Number value) {
+    writable();
     list.add(value);
     return this;
   }
 
   public JsonArray addBoolean(Boolean value) {
+    writable();
     list.add(value);
     return this;
   }
 
   public JsonArray addBinary(byte[] value) {
+    writable();
     String encoded = Base64.encodeBytes(value);
     list.add(encoded);
     return this;
   }
 
   public JsonArray add(Object obj) {
-    if (obj instanceof JsonObject) {
-      obj = ((JsonObject) obj).map;
-    } else if (obj instanceof JsonArray) {
-      obj = ((JsonArray) obj).list;
+    writable();
+    if (obj instanceof JsonElement) {
+      JsonElement elem = (JsonElement) obj;
+      list.add(elem.container());
+      putChild(elem);
+    } else {
+      list.add(obj);
     }
-    list.add(obj);
     return this;
   }
 
@@ -108,22 +147,32 @@ public class JsonArray extends JsonElement implements Iterable<Object> {
   public Iterator<Object> iterator() {
     return new Iterator<Object>() {
 
-      Iterator<Object> iter = list.iterator();
+      // By index rather than with the list's own iterator, as remove() may replace the list with a copy
+      int index;
+      boolean removable;
 
       @Override
       public boolean hasNext() {
-        return iter.hasNext();
+        return index < list.size();
       }
 
-      @SuppressWarnings("unchecked")
       @Override
       public Object next() {
-        return convertObject(iter.next());
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        removable = true;
+        return convertObject(list.get(index++));
       }
 
       @Override
       public void remove() {
-        iter.remove();
+        if (!removable) {
+          throw new IllegalStateException();
+        }
+        writable();
+        list.remove(--index);
+        removable = false;
       }
     };
   }
@@ -136,8 +185,47 @@ public class JsonArray extends JsonElement implements Iterable<Object> {
     return Json.encode(this.list);
   }
 
+  /**
+   * Encode the array in UTF-8 and append it to {@code buff}, without building a {@code String} first
+   * @return {@code buff}
+   */
+  public Buffer encode(Buffer buff) throws EncodeException {
+    Json.encode(this.list, buff);
+    return buff;
+  }
+
+  /**
+   * Encode the array in the binary form of JSON that's used between cluster nodes, and append it to {@code buff}.<p>
+   * This method is meant for internal use only.
+   * @return {@code buff}
+   */
+  public Buffer encodeBinary(Buffer buff) throws EncodeException {
+    BinaryJson.encode(this.list, buff);
+    return buff;
+  }
+
+  /**
+   * Returns a copy of this array. Like {@link JsonObject#copy}, nothing is copied until either of them is changed.
+   */
   public JsonArray copy() {
-    return new JsonArray(encode());
+    shared();
+    JsonArray copy = new JsonArray(list, false);
+    copy.owned = ownedSet();
+    return copy;
+  }
+
+  /**
+   * Returns a frozen copy of this array, which can't be modified. Any attempt to modify it, or any object or array
+   * inside it, throws {@code UnsupportedOperationException}.<p>
+   * A frozen array is safe to share between contexts, so the event bus passes frozen bodies to each handler as they
+   * are instead of copying them. {@link #copy} still returns an ordinary, modifiable copy.
+   */
+  public JsonArray freeze() {
+    return frozen ? this : new JsonArray(freezeList(list), true);
+  }
+
+  public boolean isFrozen() {
+    return frozen;
   }
 
   @Override
@@ -184,17 +272,90 @@ public class JsonArray extends JsonElement implements Iterable<Object> {
     return arr;
   }
 
-  private static Object convertObject(final Object obj) {
-    Object retVal = obj;
+  static List<Object> freezeList(List<?> list) {
+    List<Object> frozen = new ArrayList<>(list.size());
+    for (Object obj : list) {
+      frozen.add(freezeValue(obj));
+    }
+    return Collections.unmodifiableList(frozen);
+  }
 
-    if (obj != null) {
+  @SuppressWarnings("unchecked")
+  static Object freezeValue(Object obj) {
+    if (obj instanceof Map) {
+      return JsonObject.freezeMap((Map<String, Object>) obj);
+    } else if (obj instanceof JsonObject) {
+      return JsonObject.freezeMap(((JsonObject) obj).map);
+    } else if (obj instanceof List) {
+      return freezeList((List<?>) obj);
+    } else if (obj instanceof JsonArray) {
+      return freezeList(((JsonArray) obj).list);
+    } else {
+      return obj;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object convertObject(final Object obj) {
+    if (!(obj instanceof List) && !(obj instanceof Map)) {
+      return obj;
+    }
+    JsonElement child = children == null ? null : children.get(obj);
+    if (child == null || child.parent != this) {
       if (obj instanceof List) {
-        retVal = new JsonArray((List<Object>) obj);
-      } else if (obj instanceof Map) {
-        retVal = new JsonObject((Map<String, Object>) obj);
+        child = new JsonArray((List<Object>) obj, frozen);
+      } else {
+        child = new JsonObject((Map<String, Object>) obj, frozen);
+      }
+      if (frozen) {
+        // Frozen arrays are read from more than one context at once, so we don't cache anything in them
+        return child;
+      }
+      child.parent = this;
+      if (children == null) {
+        children = new IdentityHashMap<>();
+      }
+      children.put(obj, child);
+    }
+    return child;
+  }
+
+  private void putChild(JsonElement child) {
+    adopt(child, null);
+    if (child.parent == this) {
+      if (children == null) {
+        children = new IdentityHashMap<>();
       }
+      children.put(child.container(), child);
     }
+  }
+
+  Object container() {
+    return list;
+  }
+
+  @SuppressWarnings("unchecked")
+  void setContainer(Object container) {
+    list = (List<Object>) container;
+  }
+
+  Object copyContainer() {
+    return new ArrayList<>(list);
+  }
 
-    return retVal;
+  boolean replaceChild(String field, Object old, Object copy) {
+    for (int i = 0; i < list.size(); i++) {
+      if (list.get(i) == old) {
+        list.set(i, copy);
+        if (children != null) {
+          JsonElement child = children.remove(old);
+          if (child != null) {
+            children.put(copy, child);
+          }
+        }
+        return true;
+      }
+    }
+    return false;
   }
 }
@@ -1,6 +1,24 @@
 package org.vertx.java.core.json;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
 public abstract class JsonElement {
+
+  /*
+   Copies share the maps and lists they are made of, so copy() doesn't have to copy anything. Once a tree has been
+   copied, each side copies a map or list the first time it changes it, along with the path to it from the root, and
+   leaves the rest shared.
+   An object or array read from another one, or put into it, has that one as its parent, which is how it finds the
+   path to the root. The root keeps the set of maps and lists it has copied since it was last copied, which are the
+   only ones it may change in place. If the set is null nothing is shared and everything may be changed in place.
+    */
+  JsonElement parent;
+  // The field in the parent object, or null if the parent is an array
+  String field;
+  Set<Object> owned;
+
   public boolean isArray() {
     return this instanceof JsonArray;
   }
@@ -16,4 +34,99 @@ public abstract class JsonElement {
   public JsonObject asObject() {
     return (JsonObject) this;
   }
-}
\ No newline at end of file
+
+  public abstract boolean isFrozen();
+
+  /**
+   * The map or list this element wraps
+   */
+  abstract Object container();
+
+  abstract void setContainer(Object container);
+
+  abstract Object copyContainer();
+
+  /**
+   * Replace a child's map or list, if it's still where the child was read from or put
+   */
+  abstract boolean replaceChild(String field, Object old, Object copy);
+
+  /**
+   * Called before each change, to copy the map or list and the path to it if they're shared with a copy
+   */
+  void writable() {
+    if (isFrozen()) {
+      throw new UnsupportedOperationException();
+    }
+    JsonElement root = root();
+    if (root.owned != null && !root.owned.contains(container())) {
+      Object old = container();
+      Object copy = copyContainer();
+      if (parent != null) {
+        parent.writable();
+      }
+      if (parent != null && parent.replaceChild(field, old, copy)) {
+        root().owned.add(copy);
+      } else {
+        // It's been removed from the tree it came from, so it's the root of a tree of its own now
+        parent = null;
+        field = null;
+        owned = ownedSet();
+        owned.add(copy);
+      }
+      setContainer(copy);
+    }
+  }
+
+  /**
+   * Called by copy(), as everything in the tree is shared with the copy from now on
+   */
+  void shared() {
+    if (!isFrozen()) {
+      root().owned = ownedSet();
+    }
+  }
+
+  /**
+   * Make a child that's been put into this element part of its tree
+   */
+  void adopt(JsonElement child, String field) {
+    if (child.isFrozen()) {
+      // Frozen elements are shared between contexts as they are, and are never changed anyway
+      return;
+    }
+    for (JsonElement elem = this; elem != null; elem = elem.parent) {
+      if (elem == child) {
+        return;
+      }
+    }
+    if (child.parent != null) {
+      // The child is still in the tree it was read from or put into before, so its map or list is in two trees now,
+      // and neither of them may change it, or anything in it, in place
+      child.shared();
+      shared();
+    }
+    JsonElement oldRoot = child.root();
+    if (oldRoot.owned != null && !oldRoot.owned.contains(child.container())) {
+      // The child's map or list may be shared with a copy, so make sure this tree doesn't change it in place either
+      JsonElement root = root();
+      if (root.owned == null) {
+        root.owned = ownedSet();
+      }
+    }
+    child.parent = this;
+    child.field = field;
+  }
+
+  JsonElement root() {
+    JsonElement root = this;
+    while (root.parent != null) {
+      root = root.parent;
+    }
+    return root;
+  }
+
+  static Set<Object> ownedSet() {
+    return Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+  }
+}
@@ -16,9 +16,13 @@
 
 package org.vertx.java.core.json;
 
+import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.http.impl.ws.Base64;
+import org.vertx.java.core.json.impl.BinaryJson;
 import org.vertx.java.core.json.impl.Json;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,7 +36,10 @@ import java.util.Set;
  */
 public class JsonObject extends JsonElement {
 
-  final Map<String, Object> map;
+  Map<String, Object> map;
+  private final boolean frozen;
+  // The objects and arrays read from or put into this one, so they aren't wrapped again each time they're read
+  private Map<String, JsonElement> children;
 
   /**
    * Create a JSON object based on the specified Map
@@ -40,7 +47,12 @@ public class JsonObject extends JsonElement {
    * @param map
    */
   public JsonObject(Map<String, Object> map) {
+    this(map, false);
+  }
+
+  JsonObject(Map<String, Object> map, boolean frozen) {
     this.map = map;
+    this.frozen = frozen;
   }
 
   /**
@@ -48,31 +60,56 @@ public class JsonObject extends JsonElement {
    */
   public JsonObject() {
     this.map = new LinkedHashMap<>();
+    this.frozen = false;
   }
 
   /**
-   * Create a JSON object from a string form of a JSON object
+   * Create a JSON object from a string form of a JSON object. The whole string is parsed straight away, including
+   * the objects and arrays nested in it
    * 
    * @param jsonString
    *          The string form of a JSON object
+   * @throws DecodeException if the string isn't a valid JSON object
    */
   @SuppressWarnings("unchecked")
   public JsonObject(String jsonString) {
     map = (Map<String, Object>) Json.decodeValue(jsonString, Map.class);
+    frozen = false;
+  }
+
+  /**
+   * Create a JSON object from a JSON object encoded in UTF-8, which is decoded straight from the Buffer. The whole
+   * Buffer is parsed straight away, including the objects and arrays nested in it
+   *
+   * @param jsonBuffer
+   *          The encoded JSON object
+   * @throws DecodeException if the Buffer doesn't hold a valid JSON object
+   */
+  @SuppressWarnings("unchecked")
+  public JsonObject(Buffer jsonBuffer) {
+    map = (Map<String, Object>) Json.decodeValue(jsonBuffer, Map.class);
+    frozen = false;
   }
 
   public JsonObject putString(String fieldName, String value) {
+    writable();
     map.put(fieldName, value);
     return this;
   }
 
   public JsonObject putObject(String fieldName, JsonObject value) {
+    writable();
     map.put(fieldName, value == null ? null : value.map);
+    if (value != null) {
+      putChild(fieldName, value);
+    }
     return this;
   }
 
   public JsonObject putArray(String fieldName, JsonArray value) {
+    writable();
     map.put(fieldName, value.list);
+    putChild(fieldName, value);
     return this;
   }
 
@@ -85,16 +122,19 @@ public class JsonObject extends JsonElement {
   }
 
   public JsonObject putNumber(String fieldName, Number value) {
+    writable();
     map.put(fieldName, value);
     return this;
   }
 
   public JsonObject putBoolean(String fieldName, Boolean value) {
+    writable();
     map.put(fieldName, value);
     return this;
   }
 
   public JsonObject putBinary(String fieldName, byte[] binary) {
+    writable();
     map.put(fieldName, Base64.encodeBytes(binary));
     return this;
   }
@@ -103,16 +143,14 @@ public class JsonObject extends JsonElement {
     return (String) map.get(fieldName);
   }
 
-  @SuppressWarnings("unchecked")
   public JsonObject getObject(String fieldName) {
-    Map<String, Object> m = (Map<String, Object>) map.get(fieldName);
-    return m == null ? null : new JsonObject(m);
+    Map<?, ?> m = (Map<?, ?>) map.get(fieldName);
+    return m == null ? null : (JsonObject) getChild(fieldName, m);
   }
 
-  @SuppressWarnings("unchecked")
   public JsonArray getArray(String fieldName) {
-    List<Object> l = (List<Object>) map.get(fieldName);
-    return l == null ? null : new JsonArray(l);
+    List<?> l = (List<?>) map.get(fieldName);
+    return l == null ? null : (JsonArray) getChild(fieldName, l);
   }
 
   public JsonElement getElement(String fieldName) {
@@ -188,19 +226,17 @@ public class JsonObject extends JsonElement {
     return map.keySet();
   }
 
-  @SuppressWarnings("unchecked")
   public Object getField(String fieldName) {
     Object obj = map.get(fieldName);
-    if (obj instanceof Map) {
-      return new JsonObject((Map<String, Object>) obj);
-    } else if (obj instanceof List) {
-      return new JsonArray((List<Object>) obj);
+    if (obj instanceof Map || obj instanceof List) {
+      return getChild(fieldName, obj);
     } else {
       return obj;
     }
   }
 
   public Object removeField(String fieldName) {
+    writable();
     return map.remove(fieldName) != null;
   }
 
@@ -209,7 +245,11 @@ public class JsonObject extends JsonElement {
   }
 
   public JsonObject mergeIn(JsonObject other) {
+    writable();
     map.putAll(other.map);
+    // The objects and arrays in other are in both now
+    other.shared();
+    shared();
     return this;
   }
 
@@ -217,8 +257,49 @@ public class JsonObject extends JsonElement {
     return Json.encode(this.map);
   }
 
+  /**
+   * Encode the object in UTF-8 and append it to {@code buff}, without building a {@code String} first
+   * @return {@code buff}
+   */
+  public Buffer encode(Buffer buff) {
+    Json.encode(this.map, buff);
+    return buff;
+  }
+
+  /**
+   * Encode the object in the binary form of JSON that's used between cluster nodes, and append it to {@code buff}.<p>
+   * This method is meant for internal use only.
+   * @return {@code buff}
+   */
+  public Buffer encodeBinary(Buffer buff) throws EncodeException {
+    BinaryJson.encode(this.map, buff);
+    return buff;
+  }
+
+  /**
+   * Returns a copy of this object. Nothing is copied straight away, the copy shares everything with this object and
+   * each of them copies only the parts it changes, when it changes them, so copying is cheap whatever the size of the
+   * object.
+   */
   public JsonObject copy() {
-    return new JsonObject(encode());
+    shared();
+    JsonObject copy = new JsonObject(map, false);
+    copy.owned = ownedSet();
+    return copy;
+  }
+
+  /**
+   * Returns a frozen copy of this object, which can't be modified. Any attempt to modify it, or any object or array
+   * inside it, throws {@code UnsupportedOperationException}.<p>
+   * A frozen object is safe to share between contexts, so the event bus passes frozen bodies to each handler as they
+   * are instead of copying them. {@link #copy} still returns an ordinary, modifiable copy.
+   */
+  public JsonObject freeze() {
+    return frozen ? this : new JsonObject(freezeMap(map), true);
+  }
+
+  public boolean isFrozen() {
+    return frozen;
   }
 
   @Override
@@ -258,6 +339,69 @@ public class JsonObject extends JsonElement {
     return convertMap(map);
   }
 
+  @SuppressWarnings("unchecked")
+  private JsonElement getChild(String fieldName, Object container) {
+    JsonElement child = children == null ? null : children.get(fieldName);
+    if (child == null || child.container() != container || child.parent != this) {
+      if (container instanceof Map) {
+        child = new JsonObject((Map<String, Object>) container, frozen);
+      } else {
+        child = new JsonArray((List<Object>) container, frozen);
+      }
+      if (frozen) {
+        // Frozen objects are read from more than one context at once, so we don't cache anything in them
+        return child;
+      }
+      child.parent = this;
+      child.field = fieldName;
+      if (children == null) {
+        children = new HashMap<>();
+      }
+      children.put(fieldName, child);
+    }
+    return child;
+  }
+
+  private void putChild(String fieldName, JsonElement child) {
+    adopt(child, fieldName);
+    if (child.parent == this) {
+      if (children == null) {
+        children = new HashMap<>();
+      }
+      children.put(fieldName, child);
+    }
+  }
+
+  Object container() {
+    return map;
+  }
+
+  @SuppressWarnings("unchecked")
+  void setContainer(Object container) {
+    map = (Map<String, Object>) container;
+  }
+
+  Object copyContainer() {
+    return new LinkedHashMap<>(map);
+  }
+
+  boolean replaceChild(String field, Object old, Object copy) {
+    if (field != null && map.get(field) == old) {
+      map.put(field, copy);
+      return true;
+    }
+    return false;
+  }
+
+  @SuppressWarnings("unchecked")
+  static Map<String, Object> freezeMap(Map<String, Object> map) {
+    Map<String, Object> frozen = new LinkedHashMap<>(map.size());
+    for (Map.Entry<String, Object> entry : map.entrySet()) {
+      frozen.put(entry.getKey(), JsonArray.freezeValue(entry.getValue()));
+    }
+    return Collections.unmodifiableMap(frozen);
+  }
+
   @SuppressWarnings("unchecked")
   static Map<String, Object> convertMap(Map<String, Object> map) {
     Map<String, Object> converted = new LinkedHashMap<>(map.size());
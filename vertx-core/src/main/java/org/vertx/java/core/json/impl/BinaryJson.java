@@ -0,0 +1,307 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.core.json.impl;
+
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.buffer.impl.Utf8;
+import org.vertx.java.core.json.DecodeException;
+import org.vertx.java.core.json.EncodeException;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary form of JSON, used for JSON messages between cluster nodes that both support it.<p>
+ * Each value starts with a type byte. Integers are written as zig-zag varints and doubles as 8 bytes. Field names
+ * are written once per encoding and referred to by index after that, as are short string values, so the repetitive
+ * JSON that's typical of messages encodes to much less than its text, and decodes without any parsing.<p>
+ * Values are decoded to the same types that Jackson would decode the text form to.
+ */
+public class BinaryJson {
+
+  private static final byte VERSION = 1;
+
+  private static final byte NULL = 0;
+  private static final byte FALSE = 1;
+  private static final byte TRUE = 2;
+  private static final byte INT = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte BIG_INTEGER = 5;
+  private static final byte STRING = 6;
+  private static final byte STRING_REF = 7;
+  private static final byte OBJECT = 8;
+  private static final byte ARRAY = 9;
+
+  // The most field names and string values that can be referred to back, as in Smile
+  private static final int MAX_REFS = 1024;
+  // Longer string values aren't likely to be repeated
+  private static final int MAX_SHARED_STRING = 64;
+
+  /**
+   * Encode a value, which is normally a {@code Map} or {@code List} from a JSON object or array, and append it to
+   * {@code buff}
+   */
+  public static void encode(Object value, Buffer buff) throws EncodeException {
+    buff.appendByte(VERSION);
+    new Encoder(buff).write(value);
+  }
+
+  /**
+   * Decode a value encoded by {@link #encode} from the bytes of {@code buff} between {@code start} and {@code end}.
+   * Objects are decoded to a {@code Map} and arrays to a {@code List}.
+   */
+  public static Object decode(Buffer buff, int start, int end) throws DecodeException {
+    try {
+      if (buff.getByte(start) != VERSION) {
+        throw new DecodeException("Unsupported binary JSON version " + buff.getByte(start));
+      }
+      Decoder decoder = new Decoder(buff, start + 1);
+      Object value = decoder.read();
+      if (decoder.pos != end) {
+        throw new DecodeException("Failed to decode binary JSON: " + (end - decoder.pos) + " bytes left over");
+      }
+      return value;
+    } catch (DecodeException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      throw new DecodeException("Failed to decode binary JSON: " + e);
+    }
+  }
+
+  private static class Encoder {
+
+    private final Buffer buff;
+    private Map<String, Integer> fields;
+    private Map<String, Integer> strings;
+
+    Encoder(Buffer buff) {
+      this.buff = buff;
+    }
+
+    @SuppressWarnings("unchecked")
+    void write(Object value) {
+      if (value == null) {
+        buff.appendByte(NULL);
+      } else if (value instanceof String) {
+        writeString((String) value);
+      } else if (value instanceof Map) {
+        Map<String, Object> map = (Map<String, Object>) value;
+        buff.appendByte(OBJECT);
+        writeVarint(map.size());
+        for (Map.Entry<String, Object> entry: map.entrySet()) {
+          writeField(entry.getKey());
+          write(entry.getValue());
+        }
+      } else if (value instanceof List) {
+        List<Object> list = (List<Object>) value;
+        buff.appendByte(ARRAY);
+        writeVarint(list.size());
+        for (Object elem: list) {
+          write(elem);
+        }
+      } else if (value instanceof Boolean) {
+        buff.appendByte((Boolean) value ? TRUE : FALSE);
+      } else if (value instanceof Integer || value instanceof Long || value instanceof Short ||
+                 value instanceof Byte) {
+        buff.appendByte(INT);
+        long l = ((Number) value).longValue();
+        writeVarint((l << 1) ^ (l >> 63));
+      } else if (value instanceof Double || value instanceof BigDecimal) {
+        buff.appendByte(DOUBLE);
+        buff.appendDouble(((Number) value).doubleValue());
+      } else if (value instanceof Float) {
+        // The text form of a float decodes to the double with the same digits, not to the float's exact value
+        buff.appendByte(DOUBLE);
+        buff.appendDouble(Double.parseDouble(value.toString()));
+      } else if (value instanceof BigInteger) {
+        buff.appendByte(BIG_INTEGER);
+        writeUtf8(value.toString());
+      } else if (value instanceof JsonObject) {
+        write(((JsonObject) value).toMap());
+      } else if (value instanceof JsonArray) {
+        write(Arrays.asList(((JsonArray) value).toArray()));
+      } else if (value instanceof Object[]) {
+        write(Arrays.asList((Object[]) value));
+      } else {
+        // Anything else is written as whatever Jackson would make of it
+        write(Json.convertValue(value));
+      }
+    }
+
+    private void writeField(String field) {
+      Integer ref = fields == null ? null : fields.get(field);
+      if (ref != null) {
+        writeVarint(((long) ref << 1) | 1);
+      } else {
+        if (fields == null) {
+          fields = new HashMap<>();
+        }
+        if (fields.size() < MAX_REFS) {
+          fields.put(field, fields.size());
+        }
+        writeVarint((long) Utf8.encodedLength(field) << 1);
+        buff.appendString(field);
+      }
+    }
+
+    private void writeString(String str) {
+      Integer ref = strings == null ? null : strings.get(str);
+      if (ref != null) {
+        buff.appendByte(STRING_REF);
+        writeVarint(ref);
+      } else {
+        buff.appendByte(STRING);
+        int len = writeUtf8(str);
+        if (len <= MAX_SHARED_STRING) {
+          if (strings == null) {
+            strings = new HashMap<>();
+          }
+          if (strings.size() < MAX_REFS) {
+            strings.put(str, strings.size());
+          }
+        }
+      }
+    }
+
+    private int writeUtf8(String str) {
+      int len = Utf8.encodedLength(str);
+      writeVarint(len);
+      buff.appendString(str);
+      return len;
+    }
+
+    private void writeVarint(long l) {
+      while ((l & ~0x7FL) != 0) {
+        buff.appendByte((byte) ((l & 0x7F) | 0x80));
+        l >>>= 7;
+      }
+      buff.appendByte((byte) l);
+    }
+  }
+
+  private static class Decoder {
+
+    private final Buffer buff;
+    int pos;
+    private List<String> fields;
+    private List<String> strings;
+
+    Decoder(Buffer buff, int pos) {
+      this.buff = buff;
+      this.pos = pos;
+    }
+
+    Object read() {
+      byte type = buff.getByte(pos++);
+      switch (type) {
+        case NULL:
+          return null;
+        case FALSE:
+          return Boolean.FALSE;
+        case TRUE:
+          return Boolean.TRUE;
+        case INT: {
+          long zz = readVarint();
+          long l = (zz >>> 1) ^ -(zz & 1);
+          return l == (int) l ? (Object) (int) l : (Object) l;
+        }
+        case DOUBLE: {
+          double d = buff.getDouble(pos);
+          pos += 8;
+          return d;
+        }
+        case BIG_INTEGER:
+          return new BigInteger(readUtf8((int) readVarint()));
+        case STRING: {
+          int len = (int) readVarint();
+          String str = readUtf8(len);
+          if (len <= MAX_SHARED_STRING) {
+            if (strings == null) {
+              strings = new ArrayList<>();
+            }
+            if (strings.size() < MAX_REFS) {
+              strings.add(str);
+            }
+          }
+          return str;
+        }
+        case STRING_REF:
+          return strings.get((int) readVarint());
+        case OBJECT: {
+          int size = (int) readVarint();
+          Map<String, Object> map = new LinkedHashMap<>(Math.min(size, buff.length() - pos) * 4 / 3 + 1);
+          for (int i = 0; i < size; i++) {
+            String field = readField();
+            map.put(field, read());
+          }
+          return map;
+        }
+        case ARRAY: {
+          int size = (int) readVarint();
+          List<Object> list = new ArrayList<>(Math.min(size, buff.length() - pos));
+          for (int i = 0; i < size; i++) {
+            list.add(read());
+          }
+          return list;
+        }
+        default:
+          throw new DecodeException("Failed to decode binary JSON: invalid type " + type + " at " + (pos - 1));
+      }
+    }
+
+    private String readField() {
+      long l = readVarint();
+      if ((l & 1) != 0) {
+        return fields.get((int) (l >>> 1));
+      }
+      String field = readUtf8((int) (l >>> 1));
+      if (fields == null) {
+        fields = new ArrayList<>();
+      }
+      if (fields.size() < MAX_REFS) {
+        fields.add(field);
+      }
+      return field;
+    }
+
+    private String readUtf8(int len) {
+      String str = buff.getString(pos, pos + len);
+      pos += len;
+      return str;
+    }
+
+    private long readVarint() {
+      long l = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        byte b = buff.getByte(pos++);
+        l |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return l;
+        }
+      }
+      throw new DecodeException("Failed to decode binary JSON: malformed varint at " + pos);
+    }
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.vertx.java.core.json.impl;
+
+import org.vertx.java.core.buffer.Buffer;
+
+import java.io.OutputStream;
+
+/**
+ * An {@code OutputStream} that appends everything written to it to a {@link Buffer}
+ */
+class BufferOutputStream extends OutputStream {
+
+  private final Buffer buff;
+
+  BufferOutputStream(Buffer buff) {
+    this.buff = buff;
+  }
+
+  @Override
+  public void write(int b) {
+    buff.appendByte((byte)b);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int len) {
+    buff.appendBytes(bytes, offset, len);
+  }
+}
@@ -18,6 +18,9 @@ package org.vertx.java.core.json.impl;
 
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.SerializationConfig;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.json.DecodeException;
 import org.vertx.java.core.json.EncodeException;
 import org.vertx.java.core.logging.Logger;
@@ -42,6 +45,18 @@ public class Json {
     }
   }
 
+  /**
+   * Encode as JSON in UTF-8, appending it to {@code buff} as it's generated instead of building a {@code String}
+   */
+  public static void encode(Object obj, Buffer buff) throws EncodeException {
+    try {
+      mapper.writeValue(new BufferOutputStream(buff), obj);
+    }
+    catch (Exception e) {
+      throw new EncodeException("Failed to encode as JSON: " + e.getMessage());
+    }
+  }
+
   public static String encodePrettily(Object obj) throws EncodeException {
     try {
       return prettyMapper.writeValueAsString(obj);
@@ -59,6 +74,36 @@ public class Json {
     }
   }
 
+  /**
+   * Decode UTF-8 JSON straight from the bytes of {@code buff}, without building a {@code String}
+   */
+  public static Object decodeValue(Buffer buff, Class<?> clazz) throws DecodeException {
+    try {
+      ChannelBuffer cb = buff.getChannelBuffer();
+      if (cb.hasArray()) {
+        return mapper.readValue(cb.array(), cb.arrayOffset(), buff.length(), clazz);
+      } else {
+        // A slice, so reading it doesn't move the reader index of the buffer
+        return mapper.readValue(new ChannelBufferInputStream(cb.slice(0, buff.length())), clazz);
+      }
+    }
+    catch (Exception e) {
+      throw new DecodeException("Failed to decode:" + e.getMessage());
+    }
+  }
+
+  /**
+   * Convert a value to the maps, lists and simple values it would decode to if it were encoded as JSON
+   */
+  static Object convertValue(Object obj) throws EncodeException {
+    try {
+      return mapper.convertValue(obj, Object.class);
+    }
+    catch (Exception e) {
+      throw new EncodeException("Failed to encode as JSON: " + e.getMessage());
+    }
+  }
+
   static {
  	 	prettyMapper.configure(SerializationConfig.Feature.INDENT_OUTPUT, true);
   }
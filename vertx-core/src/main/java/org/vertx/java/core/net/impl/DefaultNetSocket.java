@@ -17,10 +17,8 @@
 package org.vertx.java.core.net.impl;
 
 import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
-import org.jboss.netty.util.CharsetUtil;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.SimpleHandler;
 import org.vertx.java.core.buffer.Buffer;
@@ -33,7 +31,6 @@ import org.vertx.java.core.logging.impl.LoggerFactory;
 import org.vertx.java.core.net.NetSocket;
 
 import java.io.File;
-import java.nio.charset.Charset;
 import java.util.UUID;
 
 public class DefaultNetSocket extends NetSocket {
@@ -66,7 +63,7 @@ public class DefaultNetSocket extends NetSocket {
   }
 
   public NetSocket write(String str) {
-    doWrite(ChannelBuffers.copiedBuffer(str, CharsetUtil.UTF_8));
+    doWrite(new Buffer(str).getChannelBuffer());
     return this;
   }
 
@@ -74,7 +71,7 @@ public class DefaultNetSocket extends NetSocket {
     if (enc == null) {
       write(str);
     } else {
-      doWrite(ChannelBuffers.copiedBuffer(str, Charset.forName(enc)));
+      doWrite(new Buffer(str, enc).getChannelBuffer());
     }
     return this;
   }
@@ -85,7 +82,7 @@ public class DefaultNetSocket extends NetSocket {
   }
 
   public NetSocket write(String str, Handler<Void> doneHandler) {
-    addFuture(doneHandler, doWrite(ChannelBuffers.copiedBuffer(str, CharsetUtil.UTF_8)));
+    addFuture(doneHandler, doWrite(new Buffer(str).getChannelBuffer()));
     return this;
   }
 
@@ -93,7 +90,7 @@ public class DefaultNetSocket extends NetSocket {
     if (enc == null) {
       write(str, enc);
     } else {
-      addFuture(doneHandler, doWrite(ChannelBuffers.copiedBuffer(str, Charset.forName(enc))));
+      addFuture(doneHandler, doWrite(new Buffer(str, enc).getChannelBuffer()));
     }
     return this;
   }
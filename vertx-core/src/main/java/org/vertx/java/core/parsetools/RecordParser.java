@@ -42,12 +42,17 @@ import org.vertx.java.core.buffer.Buffer;
  * size records.<p>
  * Instances of this class can't currently be used for protocols where the text is encoded with something other than
  * a 1-1 byte-char mapping. TODO extend this class to cope with arbitrary character encodings<p>
+ * Records are slices of the buffers passed in rather than copies, and a record that spans two buffers is sliced from
+ * the two linked together, so a handler that keeps a record after it returns should copy it if the buffers it came
+ * from may be changed. The parser copies the bytes of an unfinished record before {@link #handle} returns, so the
+ * caller is free to change or reuse a buffer once it has passed it in.<p>
  *
  * @author <a href="http://tfox.org">Tim Fox</a>
  */
 public class RecordParser implements Handler<Buffer> {
 
   private Buffer buff;
+  private Buffer rest;        // A copy of the bytes left over from the last buffer, which the parser owns
   private int pos;            // Current position in buffer
   private int start;          // Position of beginning of current record
   private int delimPos;       // Position of current match in delimeter array
@@ -159,12 +164,17 @@ public class RecordParser implements Handler<Buffer> {
 
     if (start == len) {
       //Nothing left
-      buff = null;
+      rest = null;
       pos = 0;
+    } else if (start == 0 && rest != null) {
+      // Still the same record, so add the new bytes to the ones we already have instead of copying them all again
+      rest.appendBuffer(buff.slice(rest.length(), len));
+      pos = rest.length();
     } else {
-      buff = buff.getBuffer(start, len);
-      pos = buff.length();
+      rest = buff.getBuffer(start, len);
+      pos = rest.length();
     }
+    buff = null;
     start = 0;
   }
 
@@ -174,7 +184,7 @@ public class RecordParser implements Handler<Buffer> {
       if (buff.getByte(pos) == delim[delimPos]) {
         delimPos++;
         if (delimPos == delim.length) {
-          Buffer ret = buff.getBuffer(start, pos - delim.length + 1);
+          Buffer ret = buff.slice(start, pos - delim.length + 1);
           start = pos + 1;
           delimPos = 0;
           output.handle(ret);
@@ -192,7 +202,7 @@ public class RecordParser implements Handler<Buffer> {
     int len = buff.length();
     while (len - start >= recordSize && !reset) {
       int end = start + recordSize;
-      Buffer ret = buff.getBuffer(start, end);
+      Buffer ret = buff.slice(start, end);
       start = end;
       pos = start - 1;
       output.handle(ret);
@@ -204,10 +214,11 @@ public class RecordParser implements Handler<Buffer> {
    * @param buffer
    */
   public void handle(Buffer buffer) {
-    if (buff == null) {
+    if (rest == null) {
       buff = buffer;
     } else {
-      buff.appendBuffer(buffer);
+      // Link to the new bytes through a slice, so the copy we own is left as it is
+      buff = rest.slice(0, rest.length()).linkBuffer(buffer);
     }
     handleParsing();
   }
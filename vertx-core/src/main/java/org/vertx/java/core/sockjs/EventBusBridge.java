@@ -113,7 +113,7 @@ public class EventBusBridge implements Handler<SockJSSocket> {
   }
 
   private void handleSocketData(SockJSSocket sock, Buffer data, Map<String, Handler<Message<JsonObject>>> handlers) {
-    JsonObject msg = new JsonObject(data.toString());
+    JsonObject msg = new JsonObject(data);
 
     String type = getMandatoryString(msg, "type");
     String address = getMandatoryString(msg, "address");
@@ -229,7 +229,7 @@ public class EventBusBridge implements Handler<SockJSSocket> {
     if (jsonMessage.replyAddress != null) {
       envelope.putString("replyAddress", jsonMessage.replyAddress);
     }
-    sock.writeBuffer(new Buffer(envelope.encode()));
+    sock.writeBuffer(envelope.encode(new Buffer()));
   }
 
   private void doSendOrPub(final boolean send, final SockJSSocket sock, final String address,
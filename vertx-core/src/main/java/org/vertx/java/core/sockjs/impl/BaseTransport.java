@@ -18,8 +18,12 @@ package org.vertx.java.core.sockjs.impl;
 
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.SimpleHandler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.buffer.impl.BufferPool;
+import org.vertx.java.core.buffer.impl.Utf8;
 import org.vertx.java.core.http.HttpServerRequest;
 import org.vertx.java.core.http.HttpServerResponse;
+import org.vertx.java.core.http.impl.DefaultHttpServerResponse;
 import org.vertx.java.core.impl.StringEscapeUtils;
 import org.vertx.java.core.impl.VertxInternal;
 import org.vertx.java.core.json.JsonArray;
@@ -96,6 +100,24 @@ class BaseTransport {
 
     public void sessionClosed() {
     }
+
+    /**
+     * Write a frame to a streaming response. The frame is written from pooled memory if we can, which goes back to
+     * the pool once it's been written
+     * @return the number of bytes written
+     */
+    protected int writeFrame(HttpServerResponse resp, String frame) {
+      if (BufferPool.isEnabled() && resp instanceof DefaultHttpServerResponse) {
+        Buffer buff = Buffer.direct(Utf8.encodedLength(frame)).appendString(frame);
+        int length = buff.length();
+        ((DefaultHttpServerResponse)resp).writeAndRelease(buff);
+        return length;
+      } else {
+        Buffer buff = new Buffer(frame);
+        resp.write(buff);
+        return buff.length();
+      }
+    }
   }
 
   static void setJSESSIONID(JsonObject config, HttpServerRequest req) {
@@ -148,7 +170,7 @@ class BaseTransport {
         // the result is not negative
         json.putNumber("entropy", RAND_OFFSET + new Random().nextInt());
         setCORS(req);
-        req.response.end(json.encode());
+        req.response.end(json.encode(new Buffer()));
       }
     };
   }
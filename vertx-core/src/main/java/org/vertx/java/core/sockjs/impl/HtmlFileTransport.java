@@ -17,7 +17,6 @@
 package org.vertx.java.core.sockjs.impl;
 
 import org.vertx.java.core.Handler;
-import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.http.HttpServerRequest;
 import org.vertx.java.core.http.RouteMatcher;
 import org.vertx.java.core.impl.VertxInternal;
@@ -121,9 +120,7 @@ class HtmlFileTransport extends BaseTransport {
       sb.append("<script>\np(\"");
       sb.append(body);
       sb.append("\");\n</script>\r\n");
-      Buffer buff = new Buffer(sb.toString());
-      req.response.write(buff);
-      bytesSent += buff.length();
+      bytesSent += writeFrame(req.response, sb.toString());
       if (bytesSent >= maxBytesStreaming) {
         if (log.isTraceEnabled()) log.trace("More than maxBytes sent so closing connection");
         // Reset and close the connection
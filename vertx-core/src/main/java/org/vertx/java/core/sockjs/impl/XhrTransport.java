@@ -195,10 +195,7 @@ class XhrTransport extends BaseTransport {
       if (!hr) {
         req.response.write(H_BLOCK);
       }
-      String sbody = body + "\n";
-      Buffer buff = new Buffer(sbody);
-      req.response.write(buff);
-      bytesSent += buff.length();
+      bytesSent += writeFrame(req.response, body + "\n");
       if (bytesSent >= maxBytesStreaming) {
         close();
       }
@@ -17,6 +17,7 @@
 package org.vertx.java.deploy;
 
 import org.vertx.java.core.Handler;
+import org.vertx.java.core.impl.BackgroundPool;
 import org.vertx.java.core.json.JsonObject;
 import org.vertx.java.core.logging.Logger;
 import org.vertx.java.deploy.impl.VerticleManager;
@@ -92,6 +93,23 @@ public class Container {
     mgr.deployVerticle(true, main, config, currURLs, instances, modDir, null, doneHandler);
   }
 
+  /**
+   * Deploy a worker verticle programmatically
+   * @param main The main of the verticle
+   * @param config JSON config to provide to the verticle
+   * @param instances The number of instances to deploy (defaults to 1)
+   * @param virtualThreads If true, and the JVM supports them, the verticle runs on virtual threads instead of the
+   * background pool, so it can block without tying up a platform thread
+   * @param doneHandler The handler will be called passing in the unique deployment id when  deployment is complete
+   */
+  public void deployWorkerVerticle(String main, JsonObject config, int instances, boolean virtualThreads,
+                                   Handler<String> doneHandler) {
+    URL[] currURLs = mgr.getDeploymentURLs();
+    File modDir = mgr.getDeploymentModDir();
+    mgr.deployVerticle(true, virtualThreads ? BackgroundPool.VIRTUAL : null, main, config, currURLs, instances, modDir,
+                       null, doneHandler);
+  }
+
   /**
    * Deploy a module programmatically
    * @param moduleName The main of the module to deploy
@@ -37,6 +37,8 @@ public class Deployment {
   public final List<String> childDeployments = new CopyOnWriteArrayList<>();
   public final String parentDeploymentName;
   public final boolean autoRedeploy;
+  // The background pool created for the deployment, if it has one of its own
+  public volatile String workerPool;
 
   public Deployment(String name, String modName, int instances, JsonObject config,
              URL[] urls, File modDir, String parentDeploymentName,
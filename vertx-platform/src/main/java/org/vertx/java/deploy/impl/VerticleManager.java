@@ -24,6 +24,7 @@ import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.http.HttpClient;
 import org.vertx.java.core.http.HttpClientRequest;
 import org.vertx.java.core.http.HttpClientResponse;
+import org.vertx.java.core.impl.BackgroundPool;
 import org.vertx.java.core.impl.BlockingAction;
 import org.vertx.java.core.impl.Context;
 import org.vertx.java.core.impl.VertxInternal;
@@ -182,11 +183,22 @@ public class VerticleManager implements ModuleReloader {
                              final int instances, final File currentModDir,
                              final String includes,
                              final Handler<String> doneHandler) {
+    deployVerticle(worker, null, main, config, urls, instances, currentModDir, includes, doneHandler);
+  }
+
+  /**
+   * Deploy a verticle whose instances run on the named background pool, if it's a worker
+   */
+  public void deployVerticle(final boolean worker, final String workerPool, final String main,
+                             final JsonObject config, final URL[] urls,
+                             final int instances, final File currentModDir,
+                             final String includes,
+                             final Handler<String> doneHandler) {
 
     BlockingAction<Void> deployModuleAction = new BlockingAction<Void>(vertx, null) {
       @Override
       public Void action() throws Exception {
-        doDeployVerticle(worker, main, config, urls, instances, currentModDir,
+        doDeployVerticle(worker, workerPool, main, config, urls, instances, currentModDir,
             includes, wrapDoneHandler(doneHandler));
         return null;
       }
@@ -216,7 +228,7 @@ public class VerticleManager implements ModuleReloader {
     };
   }
 
-  private void doDeployVerticle(boolean worker, final String main,
+  private void doDeployVerticle(boolean worker, String workerPool, final String main,
                                    final JsonObject config, final URL[] urls,
                                    int instances, File currentModDir,
                                    String includes, Handler<String> doneHandler)
@@ -251,7 +263,7 @@ public class VerticleManager implements ModuleReloader {
     } else {
       theURLs = urls;
     }
-    doDeploy(null, false, worker, main, null, config, theURLs, instances, currentModDir, doneHandler);
+    doDeploy(null, false, worker, workerPool, null, main, null, config, theURLs, instances, currentModDir, doneHandler);
   }
 
   public synchronized void undeployAll(final Handler<Void> doneHandler) {
@@ -387,7 +399,22 @@ public class VerticleManager implements ModuleReloader {
       Boolean ar = conf.getBoolean("auto-redeploy");
       final boolean autoRedeploy = ar == null ? false : ar;
 
-      doDeploy(depName, autoRedeploy, worker, main, modName, config,
+      // A worker module can have a pool of its own, so its blocking code can't hold up everyone else's, or it can
+      // run on virtual threads
+      String workerPool = null;
+      JsonObject poolConf = conf.getObject("worker-pool");
+      if (poolConf != null) {
+        if (!worker) {
+          log.warn("Module " + modName + " declares a \"worker-pool\" but isn't a worker, so it won't be used");
+          poolConf = null;
+        } else {
+          workerPool = poolConf.getString("name", modName);
+        }
+      } else if (worker && conf.getBoolean("virtual-threads", false)) {
+        workerPool = BackgroundPool.VIRTUAL;
+      }
+
+      doDeploy(depName, autoRedeploy, worker, workerPool, poolConf, main, modName, config,
                urls.toArray(new URL[urls.size()]), instances, modDirToUse, new Handler<String>() {
         @Override
         public void handle(String deploymentID) {
@@ -672,7 +699,7 @@ public class VerticleManager implements ModuleReloader {
 
   private void doDeploy(String depName,
                           boolean autoRedeploy,
-                          boolean worker, final String main,
+                          boolean worker, String workerPool, JsonObject workerPoolConf, final String main,
                           final String modName,
                           final JsonObject config, final URL[] urls,
                           int instances,
@@ -724,6 +751,11 @@ public class VerticleManager implements ModuleReloader {
     final Deployment deployment = new Deployment(deploymentName, modName, instances,
         config == null ? new JsonObject() : config.copy(), urls, modDir, parentDeploymentName,
         autoRedeploy);
+    if (workerPoolConf != null) {
+      // The pool is the deployment's own, and is released when it's undeployed
+      vertx.createBackgroundPool(workerPool, workerPoolConf);
+      deployment.workerPool = workerPool;
+    }
     deployments.put(deploymentName, deployment);
     if (parentDeploymentName != null) {
       Deployment parent = deployments.get(parentDeploymentName);
@@ -816,7 +848,7 @@ public class VerticleManager implements ModuleReloader {
       };
 
       if (worker) {
-        vertx.startInBackground(runner);
+        vertx.startInBackground(runner, workerPool == null ? BackgroundPool.DEFAULT : workerPool);
       } else {
         vertx.startOnEventLoop(runner);
       }
@@ -864,6 +896,7 @@ public class VerticleManager implements ModuleReloader {
     }
 
     if (!deployment.verticles.isEmpty()) {
+      final AtomicInteger stopping = new AtomicInteger(deployment.verticles.size());
       for (final VerticleHolder holder: deployment.verticles) {
         count.incRequired();
         holder.context.execute(new Runnable() {
@@ -875,10 +908,15 @@ public class VerticleManager implements ModuleReloader {
             }
             LoggerFactory.removeLogger(holder.loggerName);
             holder.context.runCloseHooks();
+            if (stopping.decrementAndGet() == 0) {
+              releaseWorkerPool(deployment);
+            }
             count.complete();
           }
         });
       }
+    } else {
+      releaseWorkerPool(deployment);
     }
 
     if (deployment.parentDeploymentName != null) {
@@ -889,6 +927,12 @@ public class VerticleManager implements ModuleReloader {
     }
   }
 
+  private void releaseWorkerPool(Deployment deployment) {
+    if (deployment.workerPool != null) {
+      vertx.releaseBackgroundPool(deployment.workerPool);
+    }
+  }
+
   public void reloadModules(final Set<Deployment> deps) {
     for (final Deployment deployment: deps) {
       if (deployments.containsKey(deployment.name)) {
@@ -41,5 +41,35 @@ public class JavaBlockingActionTest extends TestBase {
     startTest(getMethodName());
   }
 
+  @Test
+  public void testBlockingActionPools() throws Exception {
+    startApp(TestClient.class.getName());
+    startTest(getMethodName());
+  }
+
+  @Test
+  public void testBoundedPool() throws Exception {
+    startApp(TestClient.class.getName());
+    startTest(getMethodName());
+  }
+
+  @Test
+  public void testBoundedPoolWorkerContext() throws Exception {
+    startApp(TestClient.class.getName());
+    startTest(getMethodName());
+  }
+
+  @Test
+  public void testReleasePool() throws Exception {
+    startApp(TestClient.class.getName());
+    startTest(getMethodName());
+  }
+
+  @Test
+  public void testVirtualPool() throws Exception {
+    startApp(TestClient.class.getName());
+    startTest(getMethodName());
+  }
+
 
 }
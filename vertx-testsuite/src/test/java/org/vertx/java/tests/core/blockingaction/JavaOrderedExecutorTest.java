@@ -0,0 +1,193 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.tests.core.blockingaction;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.vertx.java.core.impl.OrderedExecutorFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The ordered executors are used directly here, without vert.x, so the tests can control the parent's threads
+ */
+public class JavaOrderedExecutorTest extends TestCase {
+
+  private ExecutorService parent;
+
+  @Override
+  protected void tearDown() throws Exception {
+    if (parent != null) {
+      parent.shutdownNow();
+    }
+    super.tearDown();
+  }
+
+  @Test
+  public void testOrderPerExecutor() throws Exception {
+    parent = Executors.newFixedThreadPool(4);
+    OrderedExecutorFactory factory = new OrderedExecutorFactory(parent, 8);
+    final int numExecutors = 10;
+    final int numProducers = 4;
+    final int numTasks = 5000;
+    final CountDownLatch done = new CountDownLatch(numExecutors * numProducers * numTasks);
+    final AtomicReference<String> failure = new AtomicReference<>();
+    final Executor[] executors = new Executor[numExecutors];
+    final AtomicInteger[] running = new AtomicInteger[numExecutors];
+    for (int i = 0; i < numExecutors; i++) {
+      executors[i] = factory.getExecutor();
+      running[i] = new AtomicInteger();
+    }
+
+    List<Thread> producers = new ArrayList<>();
+    for (int p = 0; p < numProducers; p++) {
+      final int producer = p;
+      producers.add(new Thread() {
+        public void run() {
+          // The last of this producer's tasks run by each executor
+          final int[] last = new int[numExecutors];
+          for (int i = 0; i < numTasks; i++) {
+            for (int e = 0; e < numExecutors; e++) {
+              final int seq = i;
+              final int ex = e;
+              executors[e].execute(new Runnable() {
+                public void run() {
+                  // Tasks from the same executor never overlap, and a producer's tasks run in the order it added them
+                  if (running[ex].incrementAndGet() != 1) {
+                    failure.compareAndSet(null, "Tasks ran at the same time");
+                  }
+                  if (last[ex] != seq) {
+                    failure.compareAndSet(null, "Producer " + producer + " task " + seq + " ran after " + (last[ex] - 1));
+                  }
+                  last[ex] = seq + 1;
+                  running[ex].decrementAndGet();
+                  done.countDown();
+                }
+              });
+            }
+          }
+        }
+      });
+    }
+    for (Thread producer: producers) {
+      producer.start();
+    }
+    assertTrue(done.await(30, TimeUnit.SECONDS));
+    assertNull(failure.get(), failure.get());
+  }
+
+  @Test
+  public void testQuantumYield() throws Exception {
+    // One parent thread, so the executors have to take turns on it
+    parent = Executors.newSingleThreadExecutor();
+    OrderedExecutorFactory factory = new OrderedExecutorFactory(parent, 4);
+    Executor busy = factory.getExecutor();
+    Executor other = factory.getExecutor();
+    final List<String> ran = new ArrayList<>();
+    final CountDownLatch gate = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(11);
+
+    busy.execute(new Runnable() {
+      public void run() {
+        try {
+          gate.await();
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        ran.add("busy0");
+        done.countDown();
+      }
+    });
+    for (int i = 1; i < 10; i++) {
+      final int num = i;
+      busy.execute(new Runnable() {
+        public void run() {
+          ran.add("busy" + num);
+          done.countDown();
+        }
+      });
+    }
+    // Queued on the parent while the busy executor has the thread
+    other.execute(new Runnable() {
+      public void run() {
+        ran.add("other");
+        done.countDown();
+      }
+    });
+    gate.countDown();
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    // The busy executor gives the thread up after its quantum, rather than running all its tasks first
+    assertEquals("[busy0, busy1, busy2, busy3, other, busy4, busy5, busy6, busy7, busy8, busy9]", ran.toString());
+  }
+
+  @Test
+  public void testNoLostWakeup() throws Exception {
+    // A task added just after the runner finds the queue empty, and before it clears the flag, doesn't schedule the
+    // runner, so the runner has to notice it. Each producer adds its next task as soon as it sees the last one run,
+    // which is when the runner is about to look at the queue, so the two keep meeting there. The producer waits for
+    // each task before adding the next, so a lost task is never rescued by a later one
+    for (int quantum: new int[] {1, 64}) {
+      parent = Executors.newFixedThreadPool(2);
+      final OrderedExecutorFactory factory = new OrderedExecutorFactory(parent, quantum);
+      final int numProducers = 4;
+      final int numTasks = 50000;
+      final AtomicReference<String> failure = new AtomicReference<>();
+      List<Thread> producers = new ArrayList<>();
+      for (int p = 0; p < numProducers; p++) {
+        producers.add(new Thread() {
+          public void run() {
+            Executor executor = factory.getExecutor();
+            final AtomicInteger ran = new AtomicInteger();
+            Runnable task = new Runnable() {
+              public void run() {
+                ran.incrementAndGet();
+              }
+            };
+            for (int i = 1; i <= numTasks && failure.get() == null; i++) {
+              executor.execute(task);
+              long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+              while (ran.get() != i) {
+                if (System.nanoTime() > deadline) {
+                  failure.compareAndSet(null, "Task " + i + " was never run");
+                  return;
+                }
+                Thread.yield();
+              }
+            }
+          }
+        });
+      }
+      for (Thread producer: producers) {
+        producer.start();
+      }
+      for (Thread producer: producers) {
+        producer.join();
+      }
+      assertNull("Quantum " + quantum + ": " + failure.get(), failure.get());
+      parent.shutdownNow();
+    }
+  }
+}
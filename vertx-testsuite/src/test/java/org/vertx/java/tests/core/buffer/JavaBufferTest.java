@@ -17,10 +17,15 @@
 package org.vertx.java.tests.core.buffer;
 
 import junit.framework.TestCase;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.junit.Test;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.testframework.TestUtils;
 
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
 
 /**
  * @author <a href="http://tfox.org">Tim Fox</a>
@@ -622,4 +627,291 @@ public class JavaBufferTest extends TestCase {
 
   }
 
+  @Test
+  public void testFreeze() throws Exception {
+    byte[] bytes = TestUtils.generateRandomByteArray(100);
+    Buffer buff = new Buffer(bytes);
+    Buffer frozen = buff.freeze();
+    assertTrue(frozen.isFrozen());
+    assertFalse(buff.isFrozen());
+    assertSame(frozen, frozen.freeze());
+    assertTrue(TestUtils.buffersEqual(buff, frozen));
+
+    buff.setInt(0, 1);
+    assertTrue(TestUtils.byteArraysEqual(bytes, frozen.getBytes()));
+
+    try {
+      frozen.appendInt(1);
+      fail("Should throw exception");
+    } catch (IllegalStateException e) {
+      // OK
+    }
+    try {
+      frozen.setBytes(0, new byte[] { 1, 2 });
+      fail("Should throw exception");
+    } catch (IllegalStateException e) {
+      // OK
+    }
+    assertEquals(100, frozen.length());
+
+    // Frozen buffers can still be read from and appended to other buffers
+    Buffer other = new Buffer().appendBuffer(frozen).appendBuffer(frozen);
+    assertEquals(200, other.length());
+    Buffer copy = frozen.copy();
+    assertFalse(copy.isFrozen());
+    copy.appendInt(1);
+    assertEquals(104, copy.length());
+  }
+
+  @Test
+  public void testWrapChannelBuffer() throws Exception {
+    byte[] bytes = TestUtils.generateRandomByteArray(100);
+    ChannelBuffer heap = ChannelBuffers.wrappedBuffer(bytes);
+    Buffer buff = new Buffer(heap);
+    // Wrapped, not copied
+    assertSame(heap, buff.getChannelBuffer());
+    assertEquals(100, buff.length());
+    assertTrue(TestUtils.byteArraysEqual(bytes, buff.getBytes()));
+    assertEquals(heap.getInt(4), buff.getInt(4));
+
+    // The first write copies it, so the wrapped buffer isn't changed
+    buff.appendInt(123);
+    assertNotSame(heap, buff.getChannelBuffer());
+    assertEquals(104, buff.length());
+    assertEquals(123, buff.getInt(100));
+    assertTrue(TestUtils.byteArraysEqual(bytes, buff.getBytes(0, 100)));
+    buff.setByte(0, (byte)(bytes[0] + 1));
+    assertEquals(bytes[0], heap.getByte(0));
+  }
+
+  @Test
+  public void testWrapChannelBufferSetWithinLength() throws Exception {
+    byte[] bytes = TestUtils.generateRandomByteArray(100);
+    byte[] original = bytes.clone();
+    Buffer buff = new Buffer(ChannelBuffers.wrappedBuffer(bytes));
+    buff.setInt(0, 123);
+    assertEquals(100, buff.length());
+    assertEquals(123, buff.getInt(0));
+    assertEquals(bytes[4], buff.getByte(4));
+    assertTrue(TestUtils.byteArraysEqual(original, bytes));
+  }
+
+  @Test
+  public void testWrapReadChannelBuffer() throws Exception {
+    byte[] bytes = TestUtils.generateRandomByteArray(100);
+    ChannelBuffer heap = ChannelBuffers.wrappedBuffer(bytes);
+    heap.readerIndex(10);
+    // Positions start at the reader index
+    Buffer buff = new Buffer(heap);
+    assertEquals(90, buff.length());
+    assertTrue(TestUtils.byteArraysEqual(Arrays.copyOfRange(bytes, 10, 100), buff.getBytes()));
+    assertEquals(bytes[10], buff.getByte(0));
+  }
+
+  @Test
+  public void testWrapDirectAndCompositeChannelBuffers() throws Exception {
+    byte[] bytes = TestUtils.generateRandomByteArray(100);
+    ChannelBuffer direct = ChannelBuffers.directBuffer(100);
+    direct.writeBytes(bytes);
+    Buffer buff = new Buffer(direct);
+    assertSame(direct, buff.getChannelBuffer());
+    assertTrue(TestUtils.byteArraysEqual(bytes, buff.getBytes()));
+
+    ChannelBuffer composite = ChannelBuffers.wrappedBuffer(ChannelBuffers.wrappedBuffer(bytes, 0, 50),
+                                                           ChannelBuffers.wrappedBuffer(bytes, 50, 50));
+    buff = new Buffer(composite);
+    assertSame(composite, buff.getChannelBuffer());
+    assertTrue(TestUtils.byteArraysEqual(bytes, buff.getBytes()));
+    assertEquals(ChannelBuffers.wrappedBuffer(bytes).getLong(46), buff.getLong(46));
+    buff.appendBuffer(buff);
+    assertEquals(200, buff.length());
+    assertTrue(TestUtils.byteArraysEqual(bytes, buff.getBytes(100, 200)));
+  }
+
+  @Test
+  public void testWrapLittleEndianChannelBuffer() throws Exception {
+    ChannelBuffer little = ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, 4);
+    little.writeInt(1);
+    // Numbers are always big endian, so the bytes are the same but the int isn't
+    Buffer buff = new Buffer(little);
+    assertEquals(4, buff.length());
+    assertEquals(1, buff.getByte(0));
+    assertEquals(1 << 24, buff.getInt(0));
+  }
+
+  @Test
+  public void testSlice() throws Exception {
+    byte[] bytes = TestUtils.generateRandomByteArray(100);
+    Buffer buff = new Buffer(bytes);
+    Buffer slice = buff.slice(10, 30);
+    assertEquals(20, slice.length());
+    assertTrue(TestUtils.byteArraysEqual(Arrays.copyOfRange(bytes, 10, 30), slice.getBytes()));
+    assertTrue(TestUtils.buffersEqual(buff.getBuffer(10, 30), slice));
+    assertEquals(0, buff.slice(50, 50).length());
+
+    // Writing to the slice doesn't change the buffer
+    slice.setByte(0, (byte)(bytes[10] + 1));
+    slice.appendInt(1);
+    assertEquals(24, slice.length());
+    assertEquals(bytes[10], buff.getByte(10));
+    assertEquals(100, buff.length());
+
+    // Nor does appending to the buffer change the slice
+    Buffer other = buff.slice(0, 10);
+    buff.appendBytes(TestUtils.generateRandomByteArray(1000));
+    assertTrue(TestUtils.byteArraysEqual(Arrays.copyOfRange(bytes, 0, 10), other.getBytes()));
+
+    try {
+      buff.slice(10, 2000);
+      fail("Should throw exception");
+    } catch (IndexOutOfBoundsException e) {
+      // OK
+    }
+
+    // A slice of a frozen buffer is frozen too
+    assertTrue(buff.freeze().slice(0, 10).isFrozen());
+  }
+
+  @Test
+  public void testLinkBuffer() throws Exception {
+    byte[] bytes1 = TestUtils.generateRandomByteArray(100);
+    byte[] bytes2 = TestUtils.generateRandomByteArray(100);
+    Buffer buff1 = new Buffer(bytes1);
+    Buffer buff2 = new Buffer(bytes2);
+
+    Buffer linked = new Buffer().linkBuffer(buff1).linkBuffer(new Buffer()).linkBuffer(buff2);
+    assertEquals(200, linked.length());
+    Buffer expected = new Buffer().appendBytes(bytes1).appendBytes(bytes2);
+    assertTrue(TestUtils.buffersEqual(expected, linked));
+    assertEquals(expected.getLong(96), linked.getLong(96));
+
+    // Slices across the links, and links of slices, read the same as the copied buffer
+    assertTrue(TestUtils.buffersEqual(expected.getBuffer(50, 150), linked.slice(50, 150)));
+    Buffer relinked = linked.slice(50, 150).linkBuffer(linked.slice(150, 200)).linkBuffer(linked.slice(0, 50));
+    assertTrue(TestUtils.buffersEqual(expected.getBuffer(50, 200).appendBuffer(expected.getBuffer(0, 50)), relinked));
+
+    // Appending copies it back into one buffer, without changing the buffers it was linked to
+    linked.appendInt(123);
+    linked.setByte(0, (byte)(bytes1[0] + 1));
+    assertEquals(204, linked.length());
+    assertEquals(123, linked.getInt(200));
+    assertEquals(bytes1[0], buff1.getByte(0));
+    assertTrue(TestUtils.byteArraysEqual(bytes2, buff2.getBytes()));
+
+    try {
+      buff1.freeze().linkBuffer(buff2);
+      fail("Should throw exception");
+    } catch (IllegalStateException e) {
+      // OK
+    }
+  }
+
+  public void testDirect() throws Exception {
+    byte[] bytes = TestUtils.generateRandomByteArray(1000);
+    Buffer direct = Buffer.direct(10);
+    assertTrue(direct.isDirect());
+    assertTrue(direct.getChannelBuffer().isDirect());
+    assertEquals(0, direct.length());
+
+    // It grows past its size like any other buffer
+    direct.appendInt(123).appendBytes(bytes).appendString("foo");
+    direct.setLong(2000, 456L);
+    assertEquals(2008, direct.length());
+    assertTrue(direct.isDirect());
+    assertEquals(123, direct.getInt(0));
+    assertTrue(TestUtils.byteArraysEqual(bytes, direct.getBytes(4, 1004)));
+    assertEquals("foo", direct.getString(1004, 1007));
+    assertEquals(456L, direct.getLong(2000));
+
+    Buffer copy = direct.copy();
+    assertFalse(copy.isDirect());
+    assertTrue(TestUtils.buffersEqual(direct, copy));
+
+    direct.release();
+    assertFalse(direct.isDirect());
+    assertEquals(0, direct.length());
+    // A released buffer can still be used as an ordinary one
+    direct.appendInt(789);
+    assertEquals(789, direct.getInt(0));
+    // Releasing again, or releasing a buffer that isn't direct, does nothing
+    direct.release();
+    copy.release();
+    assertEquals(789, direct.getInt(0));
+    assertEquals(123, copy.getInt(0));
+  }
+
+  public void testDirectLarge() throws Exception {
+    // Buffers too large to pool are on the heap, whether they start out large or grow
+    byte[] bytes = TestUtils.generateRandomByteArray(100 * 1024);
+    Buffer large = Buffer.direct(bytes.length);
+    assertTrue(large.isDirect());
+    assertFalse(large.getChannelBuffer().isDirect());
+    large.appendBytes(bytes);
+    assertTrue(TestUtils.byteArraysEqual(bytes, large.getBytes()));
+    large.release();
+
+    Buffer grown = Buffer.direct(10);
+    grown.appendBytes(bytes);
+    assertTrue(grown.isDirect());
+    assertFalse(grown.getChannelBuffer().isDirect());
+    assertTrue(TestUtils.byteArraysEqual(bytes, grown.getBytes()));
+    grown.release();
+  }
+
+  public void testDirectReleaseReuse() throws Exception {
+    // Buffers allocated after a release get its memory, and must start out empty
+    for (int i = 0; i < 100; i++) {
+      Buffer direct = Buffer.direct(300);
+      assertEquals(0, direct.length());
+      direct.appendInt(i).appendBytes(TestUtils.generateRandomByteArray(i * 10));
+      assertEquals(i, direct.getInt(0));
+      Buffer slice = direct.slice(0, 4);
+      assertEquals(i, slice.getInt(0));
+      direct.release();
+    }
+  }
+
+  public void testUtf8Strings() throws Exception {
+    String[] strs = { "", "ascii only", "caf\u00e9 \u20ac \u4e2d\u6587", "emoji \ud83d\ude00 end",
+                      "lone \ud83d high", "lone \ude00 low", "ends high \ud83d", TestUtils.randomUnicodeString(1000) };
+    for (String str: strs) {
+      byte[] expected = str.getBytes("UTF-8");
+      assertTrue(TestUtils.byteArraysEqual(expected, new Buffer(str).getBytes()));
+      assertTrue(TestUtils.byteArraysEqual(expected, new Buffer(str, "utf-8").getBytes()));
+      assertTrue(TestUtils.byteArraysEqual(expected, new Buffer().appendString(str).getBytes()));
+      assertTrue(TestUtils.byteArraysEqual(expected, Buffer.direct(1).appendString(str).getBytes()));
+      Buffer set = new Buffer().appendInt(0).setString(2, str);
+      assertTrue(TestUtils.byteArraysEqual(expected, set.getBytes(2, 2 + expected.length)));
+
+      String decoded = new String(expected, "UTF-8");
+      assertEquals(decoded, new Buffer(expected).toString());
+      assertEquals(decoded, new Buffer(expected).toString("UTF-8"));
+      Buffer framed = new Buffer().appendInt(1).appendBytes(expected).appendInt(2);
+      assertEquals(decoded, framed.getString(4, 4 + expected.length));
+      assertEquals(decoded, framed.getString(4, 4 + expected.length, "UTF-8"));
+      // Buffers without an array behind them
+      assertEquals(decoded, Buffer.direct(1).appendBytes(expected).toString());
+      Buffer linked = new Buffer().linkBuffer(new Buffer(expected)).linkBuffer(new Buffer("x"));
+      assertEquals(decoded + "x", linked.toString());
+    }
+
+    // Malformed input is replaced the same way the charset does it
+    byte[] malformed = { 'a', (byte)0xC3, 'b', (byte)0xE2, (byte)0x82, 'c', (byte)0xFF };
+    assertEquals(new String(malformed, "UTF-8"), new Buffer(malformed).toString());
+    assertEquals(new String(malformed, "UTF-8"), Buffer.direct(1).appendBytes(malformed).toString());
+
+    // Other charsets still work
+    String str = "caf\u00e9 \u20ac";
+    Buffer utf16 = new Buffer(str, "UTF-16BE").appendString(str, "UTF-16BE");
+    assertTrue(TestUtils.byteArraysEqual((str + str).getBytes("UTF-16BE"), utf16.getBytes()));
+    assertEquals(str + str, utf16.toString("UTF-16BE"));
+    assertEquals(str, utf16.getString(utf16.length() / 2, utf16.length(), "UTF-16BE"));
+
+    try {
+      new Buffer("foo").getString(2, 1);
+      fail("Should throw exception");
+    } catch (IndexOutOfBoundsException e) {
+      // OK
+    }
+  }
 }
@@ -34,6 +34,10 @@ public class JavaEchoTest extends TestBase {
 
   @Override
   protected void setUp() throws Exception {
+    String[] props = getBusProperties();
+    for (int i = 0; i < props.length; i += 2) {
+      System.setProperty(props[i], props[i + 1]);
+    }
     super.setUp();
     startApp(getPeerClassName());
     startApp(getClientClassName());
@@ -47,9 +51,20 @@ public class JavaEchoTest extends TestBase {
     return LocalEchoClient.class.getName();
   }
 
+  /**
+   * System properties to start the buses with, as name/value pairs
+   */
+  protected String[] getBusProperties() {
+    return new String[0];
+  }
+
   @Override
   protected void tearDown() throws Exception {
     super.tearDown();
+    String[] props = getBusProperties();
+    for (int i = 0; i < props.length; i += 2) {
+      System.clearProperty(props[i]);
+    }
   }
 
   private void runPeerTest(String testName) {
@@ -181,4 +196,9 @@ public class JavaEchoTest extends TestBase {
   public void testEchoNullShort() {
     runPeerTest(getMethodName());
   }
+
+  @Test
+  public void testEchoObject() {
+    runPeerTest(getMethodName());
+  }
 }
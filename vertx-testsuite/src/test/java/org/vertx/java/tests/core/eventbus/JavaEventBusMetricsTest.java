@@ -0,0 +1,104 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.tests.core.eventbus;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.eventbus.EventBus;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.impl.DefaultVertx;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The metrics are configured when the event bus is created, so these tests use their own vert.x instance
+ */
+public class JavaEventBusMetricsTest extends TestCase {
+
+  private DefaultVertx vertx;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    System.setProperty("org.vertx.core-eventbus-metricsAddress", "vertx.eventbus.metrics");
+    System.setProperty("org.vertx.core-eventbus-metricsInterval", "100");
+    vertx = new DefaultVertx();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    vertx.stop();
+    System.clearProperty("org.vertx.core-eventbus-metricsAddress");
+    System.clearProperty("org.vertx.core-eventbus-metricsInterval");
+    super.tearDown();
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    final EventBus eb = vertx.eventBus();
+    final int numMessages = 3;
+    final CountDownLatch repliesLatch = new CountDownLatch(numMessages);
+    eb.registerHandler("some-address", new Handler<Message<String>>() {
+      public void handle(Message<String> msg) {
+        msg.reply(msg.body);
+      }
+    });
+    for (int i = 0; i < numMessages; i++) {
+      eb.send("some-address", "foo", new Handler<Message<String>>() {
+        public void handle(Message<String> reply) {
+          repliesLatch.countDown();
+        }
+      });
+    }
+    assertTrue(repliesLatch.await(5, TimeUnit.SECONDS));
+
+    // A handler's time is recorded when it returns, which can be after its reply has arrived
+    JsonObject metrics = eb.getMetrics();
+    long end = System.currentTimeMillis() + 5000;
+    while (handlerCount(metrics) < numMessages && System.currentTimeMillis() < end) {
+      Thread.sleep(10);
+      metrics = eb.getMetrics();
+    }
+    JsonObject addressMetrics = metrics.getObject("addresses").getObject("some-address");
+    assertEquals(1, addressMetrics.getNumber("handlers").intValue());
+    assertEquals(0, addressMetrics.getNumber("queued").intValue());
+    assertEquals(numMessages, addressMetrics.getNumber("sent").intValue());
+    assertEquals(numMessages, addressMetrics.getNumber("received").intValue());
+    assertEquals(numMessages, addressMetrics.getNumber("replied").intValue());
+    assertEquals(numMessages, addressMetrics.getObject("handlerTime").getNumber("count").intValue());
+    assertEquals(numMessages, metrics.getNumber("repliesReceived").intValue());
+    // Replies are counted against the address they reply to, not their own
+    assertEquals(1, metrics.getObject("addresses").getFieldNames().size());
+
+    final CountDownLatch publishedLatch = new CountDownLatch(1);
+    eb.registerHandler("vertx.eventbus.metrics", new Handler<Message<JsonObject>>() {
+      public void handle(Message<JsonObject> msg) {
+        if (msg.body.getObject("addresses").getObject("some-address") != null) {
+          publishedLatch.countDown();
+        }
+      }
+    });
+    assertTrue(publishedLatch.await(5, TimeUnit.SECONDS));
+  }
+
+  private static int handlerCount(JsonObject metrics) {
+    return metrics.getObject("addresses").getObject("some-address").getObject("handlerTime").getNumber("count").intValue();
+  }
+}
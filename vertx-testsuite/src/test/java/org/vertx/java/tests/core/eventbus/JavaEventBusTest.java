@@ -39,12 +39,17 @@ public class JavaEventBusTest extends TestBase {
 
   private static final Logger log = LoggerFactory.getLogger(JavaEventBusTest.class);
 
-  private int numPeers = 4;
+  protected int numPeers = 4;
 
   @Override
   protected void setUp() throws Exception {
+    String[] props = getBusProperties();
+    for (int i = 0; i < props.length; i += 2) {
+      System.setProperty(props[i], props[i + 1]);
+    }
     super.setUp();
     vertx.sharedData().getSet("addresses").clear();
+    vertx.sharedData().getSet("nodes").clear();
     for (int i = 0; i < numPeers; i++) {
       startApp(getPeerClassName());
     }
@@ -59,9 +64,20 @@ public class JavaEventBusTest extends TestBase {
     return LocalClient.class.getName();
   }
 
+  /**
+   * System properties to start the buses with, as name/value pairs
+   */
+  protected String[] getBusProperties() {
+    return new String[0];
+  }
+
   @Override
   protected void tearDown() throws Exception {
     super.tearDown();
+    String[] props = getBusProperties();
+    for (int i = 0; i < props.length; i += 2) {
+      System.clearProperty(props[i]);
+    }
   }
 
   private void runPeerTest(String testName) {
@@ -99,6 +115,21 @@ public class JavaEventBusTest extends TestBase {
     runPeerTest(getMethodName());
   }
 
+  @Test
+  public void testPubSubPattern() {
+    runPeerTest(getMethodName());
+  }
+
+  @Test
+  public void testPatternHandlersChange() {
+    startTest(getMethodName());
+  }
+
+  @Test
+  public void testPointToPointPattern() {
+    runPeerTest(getMethodName());
+  }
+
   @Test
   public void testReply() {
     runPeerTest(getMethodName());
@@ -134,6 +165,31 @@ public class JavaEventBusTest extends TestBase {
     startTest(getMethodName());
   }
 
+  @Test
+  public void testReplyTimeouts() {
+    startTest(getMethodName());
+  }
+
+  @Test
+  public void testReplyTimeoutsBehindRequestWithoutTimeout() {
+    startTest(getMethodName());
+  }
+
+  @Test
+  public void testRepliesRemovedOnContextClose() {
+    startTest(getMethodName());
+  }
+
+  @Test
+  public void testMailboxReject() {
+    startTest(getMethodName());
+  }
+
+  @Test
+  public void testMailboxDropOldest() {
+    startTest(getMethodName());
+  }
+
   public void testNoContext() throws Exception {
     Vertx vertx = Vertx.newVertx();
     final EventBus eb = vertx.eventBus();
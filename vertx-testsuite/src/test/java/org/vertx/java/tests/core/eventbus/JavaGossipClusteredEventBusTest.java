@@ -0,0 +1,40 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.tests.core.eventbus;
+
+/**
+ * Runs the clustered event bus tests with the gossip cluster manager instead of Hazelcast
+ */
+public class JavaGossipClusteredEventBusTest extends JavaClusteredEventBusTest {
+
+  protected String[] getBusProperties() {
+    // The first peer to start is the seed
+    return new String[] { "org.vertx.core-eventbus-clusterManager", "gossip",
+                          "org.vertx.core-eventbus-gossipSeeds", "localhost:" + Counter.portCounter.get(),
+                          "org.vertx.core-eventbus-gossipInterval", "50" };
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    // The nodes find each other in the background, so wait until every node can reach the rest
+    startTest("testClusterFormed", false);
+    for (int i = 0; i < numPeers + 1; i++) {
+      waitTestComplete();
+    }
+  }
+}
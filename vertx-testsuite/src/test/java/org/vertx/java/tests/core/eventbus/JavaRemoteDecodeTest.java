@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vertx.java.tests.core.eventbus;
+
+import org.junit.Test;
+import org.vertx.java.testframework.TestBase;
+import vertx.tests.core.eventbus.RemoteDecodeClient;
+
+public class JavaRemoteDecodeTest extends TestBase {
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    startApp(RemoteDecodeClient.class.getName());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    super.tearDown();
+  }
+
+  @Test
+  public void testNotDecodedWithoutHandler() {
+    startTest(getMethodName());
+  }
+
+  @Test
+  public void testDecodeFailureSentToRequester() {
+    startTest(getMethodName());
+  }
+
+  @Test
+  public void testDecodedOnDelivery() {
+    startTest(getMethodName());
+  }
+
+  @Test
+  public void testNotDecodedUntilDelivered() {
+    startTest(getMethodName());
+  }
+}
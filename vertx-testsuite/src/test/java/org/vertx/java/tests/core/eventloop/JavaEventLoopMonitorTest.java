@@ -0,0 +1,146 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.vertx.java.tests.core.eventloop;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.vertx.java.core.impl.DefaultVertx;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * The monitor is configured when vert.x is created, so these tests use their own vert.x instance
+ */
+public class JavaEventLoopMonitorTest extends TestCase {
+
+  // Held on to, as the log manager only keeps weak references to loggers
+  private final Logger monitorLogger = Logger.getLogger("org.vertx.java.core.impl.EventLoopMonitor");
+  private DefaultVertx vertx;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    System.setProperty("vertx.loopCheckInterval", "50");
+    System.setProperty("vertx.blockedLoopThreshold", "200");
+    vertx = new DefaultVertx();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    vertx.stop();
+    System.clearProperty("vertx.loopCheckInterval");
+    System.clearProperty("vertx.blockedLoopThreshold");
+    super.tearDown();
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    vertx.startOnEventLoop(new Runnable() {
+      public void run() {
+        latch.countDown();
+      }
+    });
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+    // The loop's thread is only known once a probe has run on it
+    JsonObject loop = firstLoop();
+    long end = System.currentTimeMillis() + 5000;
+    while (loop.getString("thread") == null && System.currentTimeMillis() < end) {
+      Thread.sleep(10);
+      loop = firstLoop();
+    }
+    assertNotNull(loop.getString("thread"));
+    assertTrue(loop.getLong("submitted") >= 1);
+    assertEquals(0l, loop.getLong("blockedMillis").longValue());
+    assertTrue(loop.getObject("queueLatency").getLong("count") >= 1);
+  }
+
+  @Test
+  public void testBlockedLoop() throws Exception {
+    final List<LogRecord> warnings = new CopyOnWriteArrayList<>();
+    Handler logHandler = new Handler() {
+      public void publish(LogRecord record) {
+        if (record.getLevel() == Level.WARNING) {
+          warnings.add(record);
+        }
+      }
+      public void flush() {
+      }
+      public void close() {
+      }
+    };
+    monitorLogger.addHandler(logHandler);
+
+    // The very first thing run on the loop blocks it, e.g. a verticle that blocks in start()
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    vertx.startOnEventLoop(new Runnable() {
+      public void run() {
+        blocked.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ignore) {
+        }
+      }
+    });
+    assertTrue(blocked.await(5, TimeUnit.SECONDS));
+    try {
+      long end = System.currentTimeMillis() + 5000;
+      while ((firstLoop().getLong("blockedMillis") < 200 || warnings.isEmpty()) && System.currentTimeMillis() < end) {
+        Thread.sleep(10);
+      }
+      assertTrue(firstLoop().getLong("blockedMillis") >= 200);
+    } finally {
+      release.countDown();
+      monitorLogger.removeHandler(logHandler);
+    }
+
+    // The warning has the stack of the blocked thread, which is waiting in the task above
+    assertFalse(warnings.isEmpty());
+    Throwable stack = warnings.get(0).getThrown();
+    assertNotNull(stack);
+    boolean inTask = false;
+    for (StackTraceElement elem: stack.getStackTrace()) {
+      inTask |= elem.getClassName().startsWith(JavaEventLoopMonitorTest.class.getName());
+    }
+    assertTrue(inTask);
+
+    // Once the loop is free the probe runs and it's no longer blocked
+    long end = System.currentTimeMillis() + 5000;
+    while (firstLoop().getLong("blockedMillis") > 0 && System.currentTimeMillis() < end) {
+      Thread.sleep(10);
+    }
+    assertEquals(0l, firstLoop().getLong("blockedMillis").longValue());
+  }
+
+  private JsonObject firstLoop() {
+    JsonArray loops = vertx.getEventLoopMetrics().getArray("loops");
+    assertEquals(1, loops.size());
+    return (JsonObject)loops.get(0);
+  }
+}
@@ -17,13 +17,20 @@
 package org.vertx.java.tests.core.json;
 
 import org.junit.Test;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.DecodeException;
 import org.vertx.java.core.json.JsonArray;
 import org.vertx.java.core.json.JsonElement;
 import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.json.impl.BinaryJson;
 import org.vertx.java.core.logging.Logger;
 import org.vertx.java.core.logging.impl.LoggerFactory;
 import org.vertx.java.testframework.TestBase;
 
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
 /**
  *
  * TODO complete testing!!
@@ -253,4 +260,240 @@ public class JavaJsonTest extends TestBase {
 
     assertEquals(array1, array2);
   }
+
+  @Test
+  public void testFreezeJsonObject() {
+    JsonObject obj = new JsonObject().putString("foo", "bar")
+        .putObject("nested", new JsonObject().putNumber("num", 1))
+        .putArray("array", new JsonArray().addObject(new JsonObject().putString("a", "b")));
+    JsonObject frozen = obj.freeze();
+    assertTrue(frozen.isFrozen());
+    assertFalse(obj.isFrozen());
+    assertEquals(obj, frozen);
+    assertSame(frozen, frozen.freeze());
+
+    // Changes to the original aren't seen by the frozen copy
+    obj.putString("foo", "quux");
+    obj.getObject("nested").putNumber("num", 2);
+    assertEquals("bar", frozen.getString("foo"));
+    assertEquals(1, frozen.getObject("nested").getNumber("num"));
+
+    assertTrue(frozen.getObject("nested").isFrozen());
+    assertTrue(frozen.getArray("array").isFrozen());
+    try {
+      frozen.putString("foo", "quux");
+      fail("Should throw exception");
+    } catch (UnsupportedOperationException e) {
+      // OK
+    }
+    try {
+      frozen.getObject("nested").putNumber("num", 2);
+      fail("Should throw exception");
+    } catch (UnsupportedOperationException e) {
+      // OK
+    }
+    try {
+      ((JsonObject) frozen.getArray("array").get(0)).putString("a", "c");
+      fail("Should throw exception");
+    } catch (UnsupportedOperationException e) {
+      // OK
+    }
+
+    // A copy of a frozen object can be modified
+    JsonObject copy = frozen.copy();
+    assertFalse(copy.isFrozen());
+    copy.putString("foo", "quux");
+    assertEquals("quux", copy.getString("foo"));
+    assertEquals(new JsonObject(frozen.encode()), frozen);
+  }
+
+  @Test
+  public void testFreezeJsonArray() {
+    JsonArray arr = new JsonArray().addString("foo").addArray(new JsonArray().addNumber(1));
+    JsonArray frozen = arr.freeze();
+    assertTrue(frozen.isFrozen());
+    assertEquals(arr, frozen);
+    try {
+      frozen.addString("bar");
+      fail("Should throw exception");
+    } catch (UnsupportedOperationException e) {
+      // OK
+    }
+    for (Object element: frozen) {
+      if (element instanceof JsonArray) {
+        assertTrue(((JsonArray) element).isFrozen());
+      }
+    }
+    JsonArray copy = frozen.copy();
+    copy.addString("bar");
+    assertEquals(3, copy.size());
+  }
+
+  @Test
+  public void testJsonBuffer() throws Exception {
+    JsonObject obj = new JsonObject().putString("foo", "caf\u00e9 \u20ac \ud83d\ude00").putNumber("num", 123)
+        .putArray("arr", new JsonArray().addBoolean(true).addObject(new JsonObject().putString("x", "y")));
+
+    // Encoding appends to what's already in the buffer
+    Buffer buff = new Buffer("prefix");
+    assertSame(buff, obj.encode(buff));
+    assertTrue(buff.toString().startsWith("prefix{"));
+    assertEquals(obj, new JsonObject(buff.slice(6, buff.length())));
+
+    // Decoding from buffers that aren't backed by an array
+    Buffer json = obj.encode(new Buffer());
+    assertEquals(obj, new JsonObject(Buffer.direct(1).appendBuffer(json)));
+    Buffer linked = new Buffer().linkBuffer(json.slice(0, 10)).linkBuffer(json.slice(10, json.length()));
+    assertEquals(obj, new JsonObject(linked));
+    // And the buffer is unchanged, so it can be decoded again
+    assertEquals(obj, new JsonObject(linked));
+
+    JsonArray arr = new JsonArray().addString("\u4e2d\u6587").addNumber(1.5).addObject(obj);
+    assertEquals(arr, new JsonArray(arr.encode(new Buffer()).toString()));
+    assertEquals(arr, new JsonArray(arr.encode(new Buffer())));
+
+    try {
+      new JsonObject(new Buffer("{\"foo\":"));
+      fail("Should throw exception");
+    } catch (DecodeException e) {
+      // OK
+    }
+  }
+
+  @Test
+  public void testCopySharesStructure() {
+    JsonObject obj = new JsonObject().putString("foo", "bar")
+        .putObject("nested", new JsonObject().putObject("deeper", new JsonObject().putNumber("x", 1)))
+        .putArray("arr", new JsonArray().addObject(new JsonObject().putNumber("y", 2)));
+    JsonObject deeper = obj.getObject("nested").getObject("deeper");
+    JsonArray arr = obj.getArray("arr");
+    // Wrappers are reused while what they wrap is unchanged
+    assertSame(arr, obj.getArray("arr"));
+    assertSame(deeper, obj.getObject("nested").getObject("deeper"));
+
+    JsonObject copy = obj.copy();
+    assertEquals(obj, copy);
+    String encoded = obj.encode();
+
+    // Changes to the copy, however deep, don't show up in the original
+    copy.getObject("nested").getObject("deeper").putNumber("x", 10);
+    ((JsonObject) copy.getArray("arr").get(0)).putNumber("y", 20);
+    copy.putString("foo", "quux");
+    assertEquals(encoded, obj.encode());
+    assertEquals(10, copy.getObject("nested").getObject("deeper").getInteger("x").intValue());
+    assertEquals(20, ((JsonObject) copy.getArray("arr").get(0)).getInteger("y").intValue());
+
+    // And the other way round, including through wrappers obtained before the copy was made
+    JsonObject copy2 = obj.copy();
+    String encoded2 = copy2.encode();
+    deeper.putNumber("x", 100);
+    arr.addString("more");
+    assertEquals(encoded2, copy2.encode());
+    assertEquals(100, obj.getObject("nested").getObject("deeper").getInteger("x").intValue());
+    assertEquals(2, obj.getArray("arr").size());
+    assertSame(deeper, obj.getObject("nested").getObject("deeper"));
+
+    // Objects put into another one still change it when they're changed
+    JsonObject child = new JsonObject();
+    JsonObject parent = new JsonObject().putObject("child", child);
+    JsonObject parentCopy = parent.copy();
+    child.putString("name", "value");
+    assertEquals("value", parent.getObject("child").getString("name"));
+    assertNull(parentCopy.getObject("child").getString("name"));
+
+    // Removing through an iterator after a copy
+    JsonArray list = new JsonArray().addString("a").addString("b").addString("c");
+    JsonArray listCopy = list.copy();
+    Iterator<Object> iter = list.iterator();
+    iter.next();
+    iter.remove();
+    assertEquals("b", iter.next());
+    assertEquals(2, list.size());
+    assertEquals(3, listCopy.size());
+
+    // Copying a frozen object gives one that can be changed
+    JsonObject frozen = obj.freeze();
+    JsonObject unfrozen = frozen.copy();
+    unfrozen.getObject("nested").putString("new", "field");
+    assertEquals("field", unfrozen.getObject("nested").getString("new"));
+    assertNull(frozen.getObject("nested").getString("new"));
+  }
+
+  @Test
+  public void testCopyIsolationWithSharedChildren() {
+    // An object put into two parents, then one of them copied
+    JsonObject child = new JsonObject().putObject("nested", new JsonObject().putNumber("x", 1));
+    JsonObject first = new JsonObject().putObject("child", child);
+    JsonObject second = new JsonObject().putObject("child", child);
+    JsonObject firstCopy = first.copy();
+    String encoded = firstCopy.encode();
+    child.putString("name", "value");
+    child.getObject("nested").putNumber("x", 2);
+    second.getObject("child").getObject("nested").putNumber("y", 3);
+    assertEquals(encoded, firstCopy.encode());
+    assertEquals(2, second.getObject("child").getObject("nested").getInteger("x").intValue());
+
+    // And changed through the first parent after the second one has been copied
+    JsonObject secondCopy = second.copy();
+    encoded = secondCopy.encode();
+    first.getObject("child").putString("other", "value");
+    first.getObject("child").getObject("nested").putNumber("x", 4);
+    assertEquals(encoded, secondCopy.encode());
+
+    // An object read from one tree and put into another
+    JsonObject source = new JsonObject().putObject("inner", new JsonObject().putNumber("z", 1));
+    JsonObject target = new JsonObject().putObject("inner", source.getObject("inner"));
+    JsonObject sourceCopy = source.copy();
+    target.getObject("inner").putNumber("z", 2);
+    assertEquals(1, sourceCopy.getObject("inner").getInteger("z").intValue());
+    source.getObject("inner").putNumber("z", 3);
+    assertEquals(2, target.getObject("inner").getInteger("z").intValue());
+
+    // Objects merged into another one
+    JsonObject merged = new JsonObject().putString("foo", "bar");
+    JsonObject from = new JsonObject().putObject("nested", new JsonObject().putNumber("x", 1));
+    merged.mergeIn(from);
+    JsonObject fromCopy = from.copy();
+    merged.getObject("nested").putNumber("x", 2);
+    assertEquals(1, fromCopy.getObject("nested").getInteger("x").intValue());
+    assertEquals(1, from.getObject("nested").getInteger("x").intValue());
+    JsonObject mergedCopy = merged.copy();
+    from.getObject("nested").putNumber("x", 3);
+    assertEquals(2, mergedCopy.getObject("nested").getInteger("x").intValue());
+    assertEquals(2, merged.getObject("nested").getInteger("x").intValue());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testBinaryJson() throws Exception {
+    JsonArray items = new JsonArray();
+    for (int i = 0; i < 20; i++) {
+      items.addObject(new JsonObject().putString("status", "ok").putNumber("id", i * 1000000000L)
+          .putNumber("score", i / 3.0).putBoolean("active", i % 2 == 0).putString("name", "item-" + i)
+          .putString("unicode", "caf\u00e9 \ud83d\ude00").putObject("none", null));
+    }
+    JsonObject obj = new JsonObject().putArray("items", items).putNumber("small", -5).putNumber("float", 1.1f)
+        .putNumber("big", new java.math.BigInteger("123456789012345678901234567890"))
+        .putArray("empty", new JsonArray()).putObject("nested", new JsonObject().putObject("x", new JsonObject()));
+
+    Buffer buff = obj.encodeBinary(new Buffer("prefix"));
+    JsonObject decoded = new JsonObject((Map<String, Object>) BinaryJson.decode(buff, 6, buff.length()));
+    // Decodes to just what the text form does
+    assertEquals(new JsonObject(obj.encode()), decoded);
+    assertEquals(obj.encode(), decoded.encode());
+    // Repeated field names and values are only written once
+    assertTrue(buff.length() - 6 < obj.encode(new Buffer()).length() / 2);
+
+    JsonArray arr = new JsonArray().addString("a").addNumber(Long.MIN_VALUE).addNumber(Integer.MAX_VALUE)
+        .addArray(new JsonArray().addBoolean(false));
+    Buffer arrBuff = arr.encodeBinary(new Buffer());
+    assertEquals(arr, new JsonArray((List<Object>) BinaryJson.decode(arrBuff, 0, arrBuff.length())));
+
+    try {
+      BinaryJson.decode(buff, 6, buff.length() - 1);
+      fail("Should throw exception");
+    } catch (DecodeException e) {
+      // OK
+    }
+  }
 }
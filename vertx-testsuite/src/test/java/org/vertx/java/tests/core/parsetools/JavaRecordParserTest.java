@@ -75,6 +75,68 @@ public class JavaRecordParserTest extends TestCase {
     }
   }
 
+  @Test
+  /*
+  Test records that span several buffers, where the caller reuses its buffer once the parser has been given it
+   */
+  public void testSpanningRecords() {
+    final List<String> records = new ArrayList<>();
+    RecordParser parser = RecordParser.newDelimited("\n", new Handler<Buffer>() {
+      public void handle(Buffer buff) {
+        records.add(buff.toString());
+      }
+    });
+    for (String chunk: new String[] {"HEL", "LO", " WOR", "LD\nHOW", " ARE", " YOU?\n"}) {
+      Buffer buff = new Buffer(chunk);
+      parser.handle(buff);
+      parser.handle(new Buffer());
+      // Overwrite what was passed in, the parser mustn't have kept it
+      buff.setBytes(0, new byte[buff.length()]);
+    }
+    assertEquals(2, records.size());
+    assertEquals("HELLO WORLD", records.get(0));
+    assertEquals("HOW ARE YOU?", records.get(1));
+
+    // A fixed size record spanning many buffers
+    final List<Buffer> fixed = new ArrayList<>();
+    parser = RecordParser.newFixed(1000, new Handler<Buffer>() {
+      public void handle(Buffer buff) {
+        // Records share bytes with the buffers passed in, so one that's kept once the handler returns is copied
+        fixed.add(buff.copy());
+      }
+    });
+    Buffer input = TestUtils.generateRandomBuffer(2500);
+    for (int i = 0; i < input.length(); i += 7) {
+      Buffer chunk = input.getBuffer(i, Math.min(i + 7, input.length()));
+      parser.handle(chunk);
+      chunk.setBytes(0, new byte[chunk.length()]);
+    }
+    assertEquals(2, fixed.size());
+    assertTrue(TestUtils.buffersEqual(input.getBuffer(0, 1000), fixed.get(0)));
+    assertTrue(TestUtils.buffersEqual(input.getBuffer(1000, 2000), fixed.get(1)));
+  }
+
+  @Test
+  /*
+  Test frozen buffers, which the parser can't change
+   */
+  public void testFrozenInput() {
+    final List<String> records = new ArrayList<>();
+    RecordParser parser = RecordParser.newDelimited("\n", new Handler<Buffer>() {
+      public void handle(Buffer buff) {
+        records.add(buff.toString());
+      }
+    });
+    parser.handle(new Buffer("HEL").freeze());
+    parser.handle(new Buffer("LO\nWOR"));
+    parser.handle(new Buffer("LD").freeze());
+    parser.handle(new Buffer("\nAGAIN\n").freeze());
+    assertEquals(3, records.size());
+    assertEquals("HELLO", records.get(0));
+    assertEquals("WORLD", records.get(1));
+    assertEquals("AGAIN", records.get(2));
+  }
+
   @Test
   /*
   Test mixture of fixed and delimited
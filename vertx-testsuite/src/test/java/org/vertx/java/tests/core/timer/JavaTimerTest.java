@@ -55,4 +55,19 @@ private static final Logger log = LoggerFactory.getLogger(JavaTimerTest.class);
     startTest(getMethodName());
   }
 
+  @Test
+  public void testCancel() throws Exception {
+    startTest(getMethodName());
+  }
+
+  @Test
+  public void testManyTimers() throws Exception {
+    startTest(getMethodName());
+  }
+
+  @Test
+  public void testTimerSetWhileOthersFire() throws Exception {
+    startTest(getMethodName());
+  }
+
 }
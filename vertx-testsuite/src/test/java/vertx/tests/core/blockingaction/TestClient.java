@@ -18,10 +18,17 @@ package vertx.tests.core.blockingaction;
 
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.impl.BackgroundPool;
 import org.vertx.java.core.impl.BlockingAction;
 import org.vertx.java.core.impl.VertxInternal;
+import org.vertx.java.core.json.JsonObject;
 import org.vertx.java.testframework.TestClientBase;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  *
  * @author <a href="http://tfox.org">Tim Fox</a>
@@ -83,5 +90,163 @@ public class TestClient extends TestClientBase {
     }
   }
 
+  public void testBlockingActionPools() {
+    // Blocking actions run on their own pool unless they're given one
+    new BlockingAction<String>((VertxInternal)vertx, new AsyncResultHandler<String>() {
+      public void handle(AsyncResult<String> event) {
+        tu.azzert(event.succeeded());
+        tu.azzert(event.result.startsWith("vert.x-worker-thread-blocking-"), event.result);
+        new BlockingAction<String>((VertxInternal)vertx, "test-pool", new AsyncResultHandler<String>() {
+          public void handle(AsyncResult<String> event) {
+            tu.azzert(event.succeeded());
+            tu.azzert(event.result.startsWith("vert.x-worker-thread-test-pool-"), event.result);
+            tu.testComplete();
+          }
+        }) {
+          public String action() throws Exception {
+            return Thread.currentThread().getName();
+          }
+        }.run();
+      }
+    }) {
+      public String action() throws Exception {
+        return Thread.currentThread().getName();
+      }
+    }.run();
+  }
+
+  public void testBoundedPool() throws Exception {
+    final VertxInternal vertxi = (VertxInternal)vertx;
+    vertxi.createBackgroundPool("bounded", new JsonObject().putNumber("max-size", 1).putNumber("queue-size", 1));
+
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger completed = new AtomicInteger();
+    class Action extends BlockingAction<Void> {
+      Action() {
+        super(vertxi, "bounded", new AsyncResultHandler<Void>() {
+          public void handle(AsyncResult<Void> event) {
+            tu.azzert(event.succeeded());
+            if (completed.incrementAndGet() == 2) {
+              JsonObject metrics = vertxi.getBackgroundPoolMetrics();
+              for (Object pool: metrics.getArray("pools")) {
+                JsonObject json = (JsonObject)pool;
+                if ("bounded".equals(json.getString("name"))) {
+                  tu.azzert(json.getLong("rejected") == 1);
+                  tu.azzert(json.getLong("queued") == 0);
+                  tu.azzert(json.getObject("waitTime").getLong("count") == 2);
+                  vertxi.releaseBackgroundPool("bounded");
+                  tu.testComplete();
+                }
+              }
+            }
+          }
+        });
+      }
+      public Void action() throws Exception {
+        started.countDown();
+        release.await(10, TimeUnit.SECONDS);
+        return null;
+      }
+    }
+
+    // The first one takes the only thread, the second one waits in the queue, and the third one doesn't fit
+    new Action().run();
+    tu.azzert(started.await(10, TimeUnit.SECONDS));
+    new Action().run();
+    new BlockingAction<Void>(vertxi, "bounded", new AsyncResultHandler<Void>() {
+      public void handle(AsyncResult<Void> event) {
+        tu.azzert(!event.succeeded());
+        tu.azzert(event.exception instanceof RejectedExecutionException);
+        release.countDown();
+      }
+    }) {
+      public Void action() throws Exception {
+        return null;
+      }
+    }.run();
+  }
+
+  public void testBoundedPoolWorkerContext() throws Exception {
+    final VertxInternal vertxi = (VertxInternal)vertx;
+    vertxi.createBackgroundPool("bounded-worker", new JsonObject().putNumber("max-size", 1).putNumber("queue-size", 1));
 
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    new BlockingAction<Void>(vertxi, "bounded-worker", null) {
+      public Void action() throws Exception {
+        started.countDown();
+        release.await(10, TimeUnit.SECONDS);
+        return null;
+      }
+    }.run();
+    tu.azzert(started.await(10, TimeUnit.SECONDS));
+    new BlockingAction<Void>(vertxi, "bounded-worker", null) {
+      public Void action() throws Exception {
+        return null;
+      }
+    }.run();
+
+    // The queue is full, but a worker context's own tasks mustn't be turned away, as nobody would hear about it
+    vertxi.startInBackground(new Runnable() {
+      public void run() {
+        tu.azzert(vertxi.isWorker());
+        tu.azzert(Thread.currentThread().getName().startsWith("vert.x-worker-thread-bounded-worker-"));
+        vertxi.releaseBackgroundPool("bounded-worker");
+        tu.testComplete();
+      }
+    }, "bounded-worker");
+    release.countDown();
+  }
+
+  public void testReleasePool() {
+    final VertxInternal vertxi = (VertxInternal)vertx;
+    JsonObject config = new JsonObject().putNumber("max-size", 1);
+    final BackgroundPool pool = vertxi.createBackgroundPool("released", config);
+    tu.azzert(vertxi.createBackgroundPool("released", config) == pool);
+
+    // The pool stays up until both its users have released it
+    vertxi.releaseBackgroundPool("released");
+    tu.azzert(!pool.getExecutorService().isShutdown());
+    tu.azzert(vertxi.getBackgroundPool("released") == pool);
+    vertxi.releaseBackgroundPool("released");
+    tu.azzert(pool.getExecutorService().isShutdown());
+    for (Object json: vertxi.getBackgroundPoolMetrics().getArray("pools")) {
+      tu.azzert(!"released".equals(((JsonObject)json).getString("name")));
+    }
+    tu.testComplete();
+  }
+
+  public void testVirtualPool() {
+    final VertxInternal vertxi = (VertxInternal)vertx;
+    final int numActions = 100;
+    final AtomicInteger next = new AtomicInteger();
+    final AtomicInteger completed = new AtomicInteger();
+    // The virtual pool falls back to platform threads on a JVM without virtual threads, either way the actions from a
+    // context must run and complete in order
+    for (int i = 0; i < numActions; i++) {
+      final int num = i;
+      new BlockingAction<String>(vertxi, BackgroundPool.VIRTUAL, new AsyncResultHandler<String>() {
+        public void handle(AsyncResult<String> event) {
+          tu.azzert(event.succeeded());
+          tu.azzert(event.result.startsWith("vert.x-worker-thread-virtual-"), event.result);
+          if (completed.incrementAndGet() == numActions) {
+            boolean supported = true;
+            try {
+              Thread.class.getMethod("ofVirtual");
+            } catch (NoSuchMethodException e) {
+              supported = false;
+            }
+            tu.azzert(vertxi.getBackgroundPool(BackgroundPool.VIRTUAL).isVirtual() == supported);
+            tu.testComplete();
+          }
+        }
+      }) {
+        public String action() throws Exception {
+          tu.azzert(next.getAndIncrement() == num);
+          return Thread.currentThread().getName();
+        }
+      }.run();
+    }
+  }
 }
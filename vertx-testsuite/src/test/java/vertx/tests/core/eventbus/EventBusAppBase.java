@@ -16,7 +16,13 @@
 
 package vertx.tests.core.eventbus;
 
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.ReplyHandler;
 import org.vertx.java.core.SimpleHandler;
+import org.vertx.java.core.eventbus.Failure;
+import org.vertx.java.core.eventbus.Message;
 import org.vertx.java.core.eventbus.impl.DefaultEventBus;
 import org.vertx.java.core.impl.VertxInternal;
 import org.vertx.java.core.logging.Logger;
@@ -24,6 +30,8 @@ import org.vertx.java.core.logging.impl.LoggerFactory;
 import org.vertx.java.testframework.TestClientBase;
 import org.vertx.java.tests.core.eventbus.Counter;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -35,6 +43,7 @@ public abstract class EventBusAppBase extends TestClientBase {
 
   protected Map<String, Object> data;
   protected DefaultEventBus eb;
+  private int port;
 
   @Override
   public void start() {
@@ -45,9 +54,10 @@ public abstract class EventBusAppBase extends TestClientBase {
     if (isLocal()) {
       eb = (DefaultEventBus)vertx.eventBus();
     } else {
-      int port = Counter.portCounter.getAndIncrement();
+      port = Counter.portCounter.getAndIncrement();
       log.info("Start DefaultEventBus: Port=" + port);
       eb = new DefaultEventBus((VertxInternal)vertx, port, "localhost");
+      vertx.sharedData().getSet("nodes").add(port);
     }
 
     tu.appReady();
@@ -68,4 +78,43 @@ public abstract class EventBusAppBase extends TestClientBase {
 
   protected abstract boolean isLocal();
 
+  /*
+  Completes once this node can send to a handler on every node in the cluster, so tests can wait for a cluster
+  whose nodes find each other in the background to form
+   */
+  public void testClusterFormed() {
+    final List<Integer> waiting = new ArrayList<>(vertx.sharedData().<Integer>getSet("nodes"));
+    eb.registerHandler("probe." + port, new Handler<Message<String>>() {
+      public void handle(Message<String> msg) {
+        msg.reply("");
+      }
+    }, new AsyncResultHandler<Void>() {
+      public void handle(AsyncResult<Void> result) {
+        tu.azzert(result.succeeded());
+        probe(waiting);
+      }
+    });
+  }
+
+  private void probe(final List<Integer> waiting) {
+    if (waiting.isEmpty()) {
+      tu.testComplete();
+      return;
+    }
+    eb.send("probe." + waiting.get(0), "", new ReplyHandler<Message<String>>() {
+      public void handle(Message<String> reply) {
+        waiting.remove(0);
+        probe(waiting);
+      }
+      public void fail(Failure failure) {
+        // Not there yet
+        vertx.setTimer(50, new Handler<Long>() {
+          public void handle(Long timerID) {
+            probe(waiting);
+          }
+        });
+      }
+    }, 1000);
+  }
+
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package vertx.tests.core.eventbus;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.net.NetServer;
+import org.vertx.java.core.net.NetSocket;
+import org.vertx.java.core.net.impl.ServerID;
+import org.vertx.java.core.parsetools.RecordParser;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A cluster node faked with a net server, for checking what a bus writes to other nodes. It answers pings with the
+ * pong it's given and passes every other frame written to it to a handler. Frames can also be written by hand, as a
+ * node of any version would write them
+ */
+class FakeNode {
+
+  // The wire constants aren't public, and a node of another version has its own copy of them anyway
+  static final byte TYPE_PING = 0;
+  static final byte TYPE_STRING = 11;
+  static final byte TYPE_JSON = 12;
+  static final byte TYPE_FAILURE = 13;
+  static final byte WIRE_VERSION = (byte)0x81;
+  // Older nodes take any byte as a pong, and newer ones set flags in it to say what they can read
+  static final byte PONG = 1;
+  static final byte PONG_VERSIONED = 1 | 2;
+
+  final ServerID id;
+  private final NetServer server;
+  private int connections;
+  int pings;
+  int versionedPings;
+
+  FakeNode(Vertx vertx, int port, final byte pong, final Handler<Frame> frameHandler) {
+    id = new ServerID(port, "localhost");
+    server = vertx.createNetServer().connectHandler(new Handler<NetSocket>() {
+      public void handle(final NetSocket socket) {
+        final int connection = connections++;
+        final RecordParser parser = RecordParser.newFixed(4, null);
+        final int[] reads = new int[1];
+        parser.setOutput(new Handler<Buffer>() {
+          int size = -1;
+          public void handle(Buffer buff) {
+            if (size == -1) {
+              size = buff.getInt(0);
+              parser.fixedSizeMode(size);
+            } else {
+              Frame frame = new Frame(connection, reads[0], buff);
+              if (frame.type == TYPE_PING) {
+                pings++;
+                if (frame.versioned) {
+                  versionedPings++;
+                }
+                socket.write(new Buffer(new byte[] { pong }));
+              } else {
+                frameHandler.handle(frame);
+              }
+              parser.fixedSizeMode(4);
+              size = -1;
+            }
+          }
+        });
+        socket.dataHandler(new Handler<Buffer>() {
+          public void handle(Buffer data) {
+            reads[0]++;
+            parser.handle(data);
+          }
+        });
+      }
+    }).listen(port, "localhost");
+  }
+
+  void close() {
+    server.close();
+  }
+
+  /**
+   * A message frame as a node would write it, with or without the version byte in front. The body is written as a
+   * string, which is also how JSON bodies are written
+   */
+  static Buffer frame(boolean versioned, byte type, String address, ServerID sender, String replyAddress,
+                      String body) {
+    Buffer buff = new Buffer();
+    buff.appendInt(0);
+    if (versioned) {
+      buff.appendByte(WIRE_VERSION);
+    }
+    buff.appendByte(type);
+    buff.appendByte((byte)0);
+    appendString(buff, address);
+    buff.appendInt(sender.port);
+    appendString(buff, sender.host);
+    if (replyAddress == null) {
+      buff.appendInt(0);
+    } else {
+      appendString(buff, replyAddress);
+    }
+    buff.appendByte((byte)1);
+    appendString(buff, body);
+    buff.setInt(0, buff.length() - 4);
+    return buff;
+  }
+
+  private static void appendString(Buffer buff, String str) {
+    byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+    buff.appendInt(bytes.length);
+    buff.appendBytes(bytes);
+  }
+
+  /**
+   * A frame read by a fake node
+   */
+  static class Frame {
+    // Which of the connections to the node it came on, in the order they were made
+    final int connection;
+    // Which read from the connection completed it, so frames that were written together usually share it
+    final int read;
+    final boolean versioned;
+    final byte type;
+    final String address;
+    // The body, if it's a string
+    final String body;
+
+    private Frame(int connection, int read, Buffer buff) {
+      this.connection = connection;
+      this.read = read;
+      versioned = buff.getByte(0) == WIRE_VERSION;
+      int pos = versioned ? 1 : 0;
+      type = buff.getByte(pos);
+      pos += 2;
+      int length = buff.getInt(pos);
+      pos += 4;
+      address = buff.getString(pos, pos + length);
+      pos += length;
+      // The sender's port and host, and the reply address
+      pos += 4;
+      pos += 4 + buff.getInt(pos);
+      pos += 4 + buff.getInt(pos);
+      if (type == TYPE_STRING && buff.getByte(pos) != 0) {
+        length = buff.getInt(pos + 1);
+        body = buff.getString(pos + 5, pos + 5 + length);
+      } else {
+        body = null;
+      }
+    }
+  }
+}
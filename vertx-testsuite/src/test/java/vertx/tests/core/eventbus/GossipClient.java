@@ -0,0 +1,214 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package vertx.tests.core.eventbus;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.eventbus.impl.ClusterManager;
+import org.vertx.java.core.eventbus.impl.DefaultEventBus;
+import org.vertx.java.core.eventbus.impl.ServerIDs;
+import org.vertx.java.core.eventbus.impl.SubsMap;
+import org.vertx.java.core.eventbus.impl.gossip.GossipClusterManager;
+import org.vertx.java.core.impl.VertxInternal;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.net.impl.ServerID;
+import org.vertx.java.testframework.TestClientBase;
+
+/**
+ * Checks what a node of the gossip cluster manager makes of the gossip it's sent. The node is on its own bus, and
+ * another bus plays a second node, by sending it states and deltas by hand and answering its gossip with whatever
+ * state the test has set
+ */
+public class GossipClient extends TestClientBase {
+
+  private static final int BUS_PORT = 25510;
+  private static final int GOSSIP_PORT = 25511;
+  private static final String GOSSIP_ADDRESS = "__vertx.gossip";
+  private static final long FAIL_TIMEOUT = 1000;
+
+  private DefaultEventBus bus;
+  private DefaultEventBus gossipBus;
+  private SubsMap gossipSubs;
+  private final ServerID other = new ServerID(BUS_PORT, "localhost");
+  private JsonObject otherState;
+  private long otherHeartbeat = 100;
+
+  @Override
+  public void start() {
+    super.start();
+    tu.appReady();
+  }
+
+  @Override
+  public void stop() {
+    if (gossipBus != null) {
+      gossipBus.close(null);
+    }
+    if (bus != null) {
+      bus.close(null);
+    }
+    super.stop();
+  }
+
+  public void testGossipDeltaRepair() {
+    otherState = state(1, 1, "a");
+    startGossip();
+    sendGossip(otherState);
+    awaitSubscribed("a", true, new Runnable() {
+      public void run() {
+        // The delta for version 3 arrives first, so it's held back rather than applied over a missing version 2
+        sendGossip(delta(1, 3, "c"));
+        sendGossip(delta(1, 2, "b"));
+        awaitSubscribed("b", true, new Runnable() {
+          public void run() {
+            tu.azzert(!isSubscribed("c"));
+            // The node picks up the missed change the next time it gossips with us
+            otherState = state(1, 3, "a", "b", "c");
+            awaitSubscribed("c", true, new Runnable() {
+              public void run() {
+                tu.testComplete();
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  public void testGossipNodeDeath() {
+    // Say nothing when the node gossips with us, so our heartbeat stops
+    otherState = null;
+    startGossip();
+    final JsonObject stale = state(1, 1, "a");
+    sendGossip(stale);
+    awaitSubscribed("a", true, new Runnable() {
+      public void run() {
+        awaitSubscribed("a", false, new Runnable() {
+          public void run() {
+            // Gossip about the dead node that's no newer than its tombstone doesn't bring it back. The node answers
+            // the digest after it has handled the state, so by then it's made up its mind
+            sendGossip(stale);
+            JsonObject digest = new JsonObject().putString("type", "digest").putObject("nodes", new JsonObject());
+            bus.sendDirect(new ServerID(GOSSIP_PORT, "localhost"), GOSSIP_ADDRESS, digest,
+                           new Handler<Message<JsonObject>>() {
+              public void handle(Message<JsonObject> reply) {
+                tu.azzert(!isSubscribed("a"));
+                // But a restart does
+                sendGossip(state(2, 1, "b"));
+                awaitSubscribed("b", true, new Runnable() {
+                  public void run() {
+                    tu.testComplete();
+                  }
+                });
+              }
+            }, 0);
+          }
+        });
+      }
+    });
+  }
+
+  private void startGossip() {
+    bus = new InMemorySubsMap().createBus((VertxInternal)vertx, BUS_PORT);
+    bus.registerLocalHandler(GOSSIP_ADDRESS, new Handler<Message<JsonObject>>() {
+      public void handle(Message<JsonObject> msg) {
+        switch (msg.body.getString("type")) {
+          case "digest":
+            JsonArray states = new JsonArray();
+            if (otherState != null) {
+              states.addObject(otherState.copy().putNumber("hb", ++otherHeartbeat));
+            }
+            msg.reply(new JsonObject().putArray("states", states).putArray("want", new JsonArray()));
+            break;
+          case "delta":
+            msg.reply(new JsonObject());
+            break;
+        }
+      }
+    });
+    System.setProperty("org.vertx.core-eventbus-gossipInterval", "50");
+    System.setProperty("org.vertx.core-eventbus-gossipFailTimeout", String.valueOf(FAIL_TIMEOUT));
+    try {
+      gossipBus = new DefaultEventBus((VertxInternal)vertx, GOSSIP_PORT, "localhost") {
+        protected ClusterManager createClusterManager(VertxInternal vertx) {
+          GossipClusterManager mgr = new GossipClusterManager(vertx, this, new ServerID(GOSSIP_PORT, "localhost"));
+          gossipSubs = mgr.getSubsMap("subs");
+          return mgr;
+        }
+      };
+    } finally {
+      System.clearProperty("org.vertx.core-eventbus-gossipInterval");
+      System.clearProperty("org.vertx.core-eventbus-gossipFailTimeout");
+    }
+  }
+
+  private JsonObject state(long incarnation, long version, String... subs) {
+    JsonArray arr = new JsonArray();
+    for (String sub: subs) {
+      arr.addString(sub);
+    }
+    return new JsonObject().putString("id", other.toString()).putNumber("inc", incarnation)
+        .putNumber("ver", version).putNumber("hb", ++otherHeartbeat).putArray("subs", arr);
+  }
+
+  private JsonObject delta(long incarnation, long version, String added) {
+    return new JsonObject().putString("type", "delta").putString("id", other.toString())
+        .putNumber("inc", incarnation).putNumber("ver", version).putNumber("hb", ++otherHeartbeat)
+        .putArray("add", new JsonArray().addString(added));
+  }
+
+  // Messages from one node to another arrive in the order they were sent, so the node handles each of these after
+  // the ones sent before it
+  private void sendGossip(JsonObject msg) {
+    if (msg.getString("type") == null) {
+      msg = new JsonObject().putString("type", "states").putArray("states", new JsonArray().addObject(msg.copy()));
+    }
+    bus.sendDirect(new ServerID(GOSSIP_PORT, "localhost"), GOSSIP_ADDRESS, msg, null, 0);
+  }
+
+  private boolean isSubscribed(String address) {
+    final boolean[] subscribed = new boolean[1];
+    // The gossip subs map answers from its own copy, so this completes straight away
+    gossipSubs.get(address, new AsyncResultHandler<ServerIDs>() {
+      public void handle(AsyncResult<ServerIDs> result) {
+        for (ServerID sid: result.result) {
+          subscribed[0] |= sid.equals(other);
+        }
+      }
+    });
+    return subscribed[0];
+  }
+
+  private void awaitSubscribed(final String address, final boolean subscribed, final Runnable then) {
+    final long deadline = System.currentTimeMillis() + 5 * FAIL_TIMEOUT;
+    vertx.setPeriodic(20, new Handler<Long>() {
+      public void handle(Long timerID) {
+        if (isSubscribed(address) == subscribed) {
+          vertx.cancelTimer(timerID);
+          then.run();
+        } else if (System.currentTimeMillis() > deadline) {
+          vertx.cancelTimer(timerID);
+          tu.azzert(false, "Timed out waiting for " + address + (subscribed ? " to be added" : " to be removed"));
+        }
+      }
+    });
+  }
+}
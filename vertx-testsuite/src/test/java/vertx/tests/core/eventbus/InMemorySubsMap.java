@@ -0,0 +1,100 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package vertx.tests.core.eventbus;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.eventbus.impl.ClusterManager;
+import org.vertx.java.core.eventbus.impl.DefaultEventBus;
+import org.vertx.java.core.eventbus.impl.ServerIDs;
+import org.vertx.java.core.eventbus.impl.SubsMap;
+import org.vertx.java.core.impl.VertxInternal;
+import org.vertx.java.core.net.impl.ServerID;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Subscriptions kept in memory, for a cluster of buses in one verticle. Like the real subs maps it hands out the
+ * same ServerIDs for an address each time, so a target policy's sequence carries on from one send to the next
+ */
+class InMemorySubsMap implements SubsMap {
+
+  private final ConcurrentMap<String, ServerIDs> map = new ConcurrentHashMap<>();
+
+  /**
+   * Start a bus which shares its subscriptions through this map
+   */
+  DefaultEventBus createBus(VertxInternal vertx, int port) {
+    return new DefaultEventBus(vertx, port, "localhost") {
+      protected ClusterManager createClusterManager(VertxInternal vertx) {
+        return new ClusterManager() {
+          public SubsMap getSubsMap(String name) {
+            return InMemorySubsMap.this;
+          }
+          public void close() {
+          }
+        };
+      }
+    };
+  }
+
+  public void put(String subName, ServerID serverID, AsyncResultHandler<Void> completionHandler) {
+    putAll(Collections.singleton(subName), serverID, completionHandler);
+  }
+
+  public void get(String subName, AsyncResultHandler<ServerIDs> completionHandler) {
+    ServerIDs sids = map.get(subName);
+    completionHandler.handle(new AsyncResult<>(sids == null ? new ServerIDs() : sids));
+  }
+
+  public void remove(String subName, ServerID serverID, AsyncResultHandler<Boolean> completionHandler) {
+    ServerIDs sids = map.get(subName);
+    if (sids != null) {
+      sids.remove(serverID);
+    }
+    completionHandler.handle(new AsyncResult<>(sids != null));
+  }
+
+  public void putAll(Collection<String> subNames, ServerID serverID, AsyncResultHandler<Void> completionHandler) {
+    for (String subName: subNames) {
+      ServerIDs sids = new ServerIDs();
+      ServerIDs prev = map.putIfAbsent(subName, sids);
+      (prev == null ? sids : prev).add(serverID);
+    }
+    completionHandler.handle(new AsyncResult<>((Void)null));
+  }
+
+  public void removeAll(Collection<String> subNames, ServerID serverID, AsyncResultHandler<Void> completionHandler) {
+    for (String subName: subNames) {
+      ServerIDs sids = map.get(subName);
+      if (sids != null) {
+        sids.remove(serverID);
+      }
+    }
+    completionHandler.handle(new AsyncResult<>((Void)null));
+  }
+
+  public void removeAllForServerID(ServerID serverID, AsyncResultHandler<Void> completionHandler) {
+    for (ServerIDs sids: map.values()) {
+      sids.remove(serverID);
+    }
+    completionHandler.handle(new AsyncResult<>((Void)null));
+  }
+}
@@ -16,17 +16,27 @@
 
 package vertx.tests.core.eventbus;
 
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.AsyncResultHandler;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.ReplyHandler;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.eventbus.Failure;
 import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.eventbus.OverflowPolicy;
+import org.vertx.java.core.impl.Context;
+import org.vertx.java.core.impl.VertxInternal;
 import org.vertx.java.core.logging.Logger;
 import org.vertx.java.core.logging.impl.LoggerFactory;
 import org.vertx.java.testframework.TestUtils;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -59,11 +69,87 @@ public class LocalClient extends EventBusAppBase {
 
   public void testPubSubMultipleHandlers() {
     Buffer buff = TestUtils.generateRandomBuffer(1000);
-    eb.send("some-address", buff);
+    // The peers compare what they get with the shared buffer, so it has to be there before anything is sent
     data.put("buffer", buff);
+    eb.send("some-address", buff);
     eb.publish("some-address", buff);
   }
 
+  public void testPatternHandlersChange() {
+    final String address = "pattern-cache.a";
+    final Set<String> got = new HashSet<>();
+    final Handler<Message<String>> exact = recorder(got, "exact");
+    final Handler<Message<String>> one = recorder(got, "one");
+    final Handler<Message<String>> any = recorder(got, "any");
+    // Each change to the handlers of the address or of a pattern that matches it changes who gets the next message
+    eb.registerHandler("pattern-cache.*", one, then(new Runnable() {
+      public void run() {
+        publishAndExpect(address, "1", got, new Runnable() {
+          public void run() {
+            eb.registerHandler(address, exact, then(new Runnable() {
+              public void run() {
+                publishAndExpect(address, "2", got, new Runnable() {
+                  public void run() {
+                    eb.unregisterHandler("pattern-cache.*", one, then(new Runnable() {
+                      public void run() {
+                        publishAndExpect(address, "3", got, new Runnable() {
+                          public void run() {
+                            eb.registerHandler("pattern-cache.#", any, then(new Runnable() {
+                              public void run() {
+                                publishAndExpect(address, "4", got, new Runnable() {
+                                  public void run() {
+                                    eb.unregisterHandler(address, exact);
+                                    eb.unregisterHandler("pattern-cache.#", any);
+                                    tu.testComplete();
+                                  }
+                                }, "exact:4", "any:4");
+                              }
+                            }));
+                          }
+                        }, "exact:3");
+                      }
+                    }));
+                  }
+                }, "one:2", "exact:2");
+              }
+            }));
+          }
+        }, "one:1");
+      }
+    }));
+  }
+
+  private Handler<Message<String>> recorder(final Set<String> got, final String name) {
+    return new Handler<Message<String>>() {
+      public void handle(Message<String> msg) {
+        got.add(name + ":" + msg.body);
+      }
+    };
+  }
+
+  private AsyncResultHandler<Void> then(final Runnable next) {
+    return new AsyncResultHandler<Void>() {
+      public void handle(AsyncResult<Void> result) {
+        tu.azzert(result.succeeded());
+        next.run();
+      }
+    };
+  }
+
+  private void publishAndExpect(String address, String body, final Set<String> got, final Runnable next,
+                                final String... expected) {
+    eb.publish(address, body);
+    vertx.setTimer(100, new Handler<Long>() {
+      public void handle(Long timerID) {
+        Set<String> expectedSet = new HashSet<>();
+        Collections.addAll(expectedSet, expected);
+        tu.azzert(expectedSet.equals(got), "got " + got + " expected " + expectedSet);
+        got.clear();
+        next.run();
+      }
+    });
+  }
+
   public void testPointToPoint() {
     Buffer buff = TestUtils.generateRandomBuffer(1000);
     data.put("buffer", buff);
@@ -82,6 +168,24 @@ public class LocalClient extends EventBusAppBase {
     }
   }
 
+  public void testPubSubPattern() {
+    Buffer buff = TestUtils.generateRandomBuffer(1000);
+    data.put("buffer", buff);
+    // Neither of these match the pattern
+    eb.publish("some.pattern.other.address", TestUtils.generateRandomBuffer(1000));
+    eb.publish("some.address", TestUtils.generateRandomBuffer(1000));
+    eb.publish("some.pattern.address", buff);
+  }
+
+  public void testPointToPointPattern() {
+    final Buffer buff = TestUtils.generateRandomBuffer(1000);
+    data.put("buffer", buff);
+    //Each peer should get two messages
+    for (int i = 0; i < 8; i++) {
+      eb.send("some.pattern.address", buff);
+    }
+  }
+
   public void testReply() {
     Buffer buff = TestUtils.generateRandomBuffer(1000);
     data.put("buffer", buff);
@@ -228,4 +332,231 @@ public class LocalClient extends EventBusAppBase {
     }
   }
 
+  public void testMailboxReject() {
+    testMailbox(OverflowPolicy.REJECT, 5, 3);
+  }
+
+  public void testMailboxDropOldest() {
+    testMailbox(OverflowPolicy.DROP_OLDEST, 4, 2);
+  }
+
+  /*
+   The handler is registered from a worker context which is kept busy until every message has either been taken into
+   the mailbox or failed, so the test doesn't depend on when messages arrive, which for a clustered bus is whenever
+   the subscription lookups complete.
+    */
+  private void testMailbox(final OverflowPolicy policy, final int numMessages, final int numDropped) {
+    final String address = UUID.randomUUID().toString();
+    final VertxInternal vertxi = (VertxInternal)vertx;
+    final Context testContext = vertxi.getContext();
+    final CountDownLatch gate = new CountDownLatch(1);
+    final Set<Integer> failed = Collections.synchronizedSet(new HashSet<Integer>());
+    final Set<Integer> handled = Collections.synchronizedSet(new HashSet<Integer>());
+    final AtomicInteger replies = new AtomicInteger(0);
+    vertxi.startInBackground(new Runnable() {
+      public void run() {
+        eb.registerHandler(address, new Handler<Message<Integer>>() {
+          public void handle(Message<Integer> msg) {
+            handled.add(msg.body);
+            msg.reply(msg.body);
+          }
+        }, 2, policy, new AsyncResultHandler<Void>() {
+          public void handle(AsyncResult<Void> event) {
+            tu.azzert(event.succeeded());
+            // Hold up the handler's context so the mailbox fills
+            vertxi.getContext().execute(new Runnable() {
+              public void run() {
+                try {
+                  tu.azzert(gate.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                  tu.azzert(false);
+                }
+              }
+            });
+            testContext.execute(new Runnable() {
+              public void run() {
+                sendToMailbox(address, numMessages, numDropped, gate, failed, handled, replies);
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  private void sendToMailbox(final String address, final int numMessages, final int numDropped,
+                             final CountDownLatch gate, final Set<Integer> failed, final Set<Integer> handled,
+                             final AtomicInteger replies) {
+    for (int i = 0; i < numMessages; i++) {
+      final int num = i;
+      eb.send(address, i, new ReplyHandler<Message<Integer>>() {
+        public void handle(Message<Integer> reply) {
+          tu.checkContext();
+          tu.azzert(reply.body == num);
+          replies.incrementAndGet();
+          checkDone();
+        }
+        public void fail(Failure fail) {
+          tu.checkContext();
+          tu.azzert(fail.code == Failure.SERVICE_UNAVAILABLE);
+          failed.add(num);
+          if (failed.size() == numDropped) {
+            tu.azzert(eb.getQueueDepth(address) == 2);
+            gate.countDown();
+          }
+          checkDone();
+        }
+        void checkDone() {
+          if (replies.get() + failed.size() == numMessages) {
+            tu.azzert(replies.get() == numMessages - numDropped);
+            // Every message was either handled or failed, never both
+            tu.azzert(handled.size() == replies.get());
+            for (Integer body: handled) {
+              tu.azzert(!failed.contains(body));
+            }
+            tu.azzert(eb.getQueueDepth(address) == 0);
+            tu.testComplete();
+          }
+        }
+      });
+    }
+  }
+
+  public void testReplyTimeouts() {
+    final String address = UUID.randomUUID().toString();
+    final int numRequests = 20;
+    final AtomicInteger failures = new AtomicInteger(0);
+    final long start = System.currentTimeMillis();
+    eb.registerHandler(address, new Handler<Message<Integer>>() {
+      public void handle(Message<Integer> msg) {
+        // Never reply
+      }
+    });
+    for (int i = 0; i < numRequests; i++) {
+      eb.send(address, i, new ReplyHandler<Message<Integer>>() {
+        public void handle(Message<Integer> reply) {
+          tu.azzert(false);
+        }
+        public void fail(Failure fail) {
+          tu.checkContext();
+          tu.azzert(fail.code == Failure.REQUEST_TIMEOUT);
+          tu.azzert(System.currentTimeMillis() - start >= 100);
+          if (failures.incrementAndGet() == numRequests) {
+            // The timed out requests are gone, so a request that is answered gets its reply
+            final String echo = UUID.randomUUID().toString();
+            eb.registerHandler(echo, new Handler<Message<String>>() {
+              public void handle(Message<String> msg) {
+                msg.reply(msg.body);
+              }
+            });
+            eb.send(echo, "foo", new ReplyHandler<Message<String>>() {
+              public void handle(Message<String> reply) {
+                tu.azzert("foo".equals(reply.body));
+                tu.testComplete();
+              }
+              public void fail(Failure fail) {
+                tu.azzert(false);
+              }
+            }, 1000);
+          }
+        }
+      }, 100);
+    }
+  }
+
+  public void testReplyTimeoutsBehindRequestWithoutTimeout() {
+    final String address = UUID.randomUUID().toString();
+    final int numRounds = 2;
+    final int numRequests = 20;
+    final AtomicReference<Message<String>> waiting = new AtomicReference<>();
+    eb.registerHandler(address, new Handler<Message<String>>() {
+      public void handle(Message<String> msg) {
+        // Only answer the request without a timeout, and only once the others have timed out
+        if (msg.body.equals("wait")) {
+          waiting.set(msg);
+        }
+      }
+    });
+    eb.send(address, "wait", new Handler<Message<String>>() {
+      public void handle(Message<String> reply) {
+        tu.azzert("done".equals(reply.body));
+        tu.testComplete();
+      }
+    });
+    // The requests with timeouts are made in rounds, so the later ones are made after the earlier ones have expired
+    final Handler<Integer> round = new Handler<Integer>() {
+      public void handle(final Integer roundNum) {
+        final AtomicInteger failures = new AtomicInteger(0);
+        final Handler<Integer> next = this;
+        for (int i = 0; i < numRequests; i++) {
+          eb.send(address, "timeout", new ReplyHandler<Message<String>>() {
+            public void handle(Message<String> reply) {
+              tu.azzert(false);
+            }
+            public void fail(Failure fail) {
+              tu.azzert(fail.code == Failure.REQUEST_TIMEOUT);
+              if (failures.incrementAndGet() == numRequests) {
+                if (roundNum < numRounds) {
+                  next.handle(roundNum + 1);
+                } else {
+                  waiting.get().reply("done");
+                }
+              }
+            }
+          }, 100);
+        }
+      }
+    };
+    round.handle(1);
+  }
+
+  public void testRepliesRemovedOnContextClose() {
+    final String address = UUID.randomUUID().toString();
+    final VertxInternal vertxi = (VertxInternal)vertx;
+    final Context testContext = vertxi.getContext();
+    final AtomicReference<Message<String>> request = new AtomicReference<>();
+    final AtomicBoolean closed = new AtomicBoolean();
+    // Reply once the requester's context has closed, and expect to be told nobody is waiting for it
+    final Runnable reply = new Runnable() {
+      public void run() {
+        request.get().reply("bar", new ReplyHandler<Message<String>>() {
+          public void handle(Message<String> msg) {
+            tu.azzert(false);
+          }
+          public void fail(Failure fail) {
+            tu.azzert(fail.code == Failure.NOT_IMPLEMENTED);
+            tu.testComplete();
+          }
+        });
+      }
+    };
+    eb.registerHandler(address, new Handler<Message<String>>() {
+      public void handle(Message<String> msg) {
+        request.set(msg);
+        if (closed.get()) {
+          reply.run();
+        }
+      }
+    });
+    vertxi.startOnEventLoop(new Runnable() {
+      public void run() {
+        eb.send(address, "foo", new Handler<Message<String>>() {
+          public void handle(Message<String> msg) {
+            // The context has closed so the reply must not be delivered
+            tu.azzert(false);
+          }
+        });
+        vertxi.getContext().runCloseHooks();
+        testContext.execute(new Runnable() {
+          public void run() {
+            closed.set(true);
+            if (request.get() != null) {
+              reply.run();
+            }
+          }
+        });
+      }
+    });
+  }
+
 }
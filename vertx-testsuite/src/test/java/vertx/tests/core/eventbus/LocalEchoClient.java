@@ -19,6 +19,7 @@ package vertx.tests.core.eventbus;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.eventbus.MessageCodec;
 import org.vertx.java.core.json.JsonObject;
 import org.vertx.java.testframework.TestUtils;
 
@@ -207,6 +208,13 @@ public class LocalEchoClient extends EventBusAppBase {
     eb.send(ECHO_ADDRESS, chr, handler);
   }
 
+  public void testEchoObject() {
+    eb.registerCodec(Point.class, Point.TYPE_ID, Point.CODEC);
+    Point point = new Point(new Random().nextInt(), new Random().nextDouble(), TestUtils.randomAlphaString(100));
+    Handler<Message<Point>> handler = echoHandler(point);
+    eb.sendObject(ECHO_ADDRESS, point, handler);
+  }
+
   private <T> Handler<Message<T>> echoHandler(final Object msg) {
     Handler<Message<T>> handler = new Handler<Message<T>>() {
       public void handle(Message reply) {
@@ -235,4 +243,58 @@ public class LocalEchoClient extends EventBusAppBase {
     return handler;
   }
 
+  public static class Point {
+
+    public static final int TYPE_ID = 1;
+
+    // Points are immutable, so they're passed to local handlers without being copied
+    public static final MessageCodec<Point> CODEC = new MessageCodec<Point>() {
+      public void encode(Point point, Buffer buff) {
+        buff.appendInt(point.x);
+        buff.appendDouble(point.y);
+        Buffer label = new Buffer(point.label);
+        buff.appendInt(label.length());
+        buff.appendBuffer(label);
+      }
+
+      public Point decode(Buffer buff) {
+        int labelLength = buff.getInt(12);
+        return new Point(buff.getInt(0), buff.getDouble(4), buff.getString(16, 16 + labelLength));
+      }
+
+      public Point copy(Point point) {
+        return point;
+      }
+    };
+
+    final int x;
+    final double y;
+    final String label;
+
+    public Point(int x, double y, String label) {
+      this.x = x;
+      this.y = y;
+      this.label = label;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Point)) {
+        return false;
+      }
+      Point other = (Point) o;
+      return x == other.x && y == other.y && label.equals(other.label);
+    }
+
+    @Override
+    public int hashCode() {
+      return x;
+    }
+
+    @Override
+    public String toString() {
+      return "(" + x + ", " + y + ", " + label + ")";
+    }
+  }
+
 }
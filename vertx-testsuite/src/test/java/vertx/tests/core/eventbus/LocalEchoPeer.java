@@ -140,6 +140,11 @@ public class LocalEchoPeer extends EventBusAppBase {
     echoInitialise();
   }
 
+  public void testEchoObjectInitialise() {
+    eb.registerCodec(LocalEchoClient.Point.class, LocalEchoClient.Point.TYPE_ID, LocalEchoClient.Point.CODEC);
+    echoInitialise();
+  }
+
   private void echoInitialise() {
     eb.registerHandler(LocalEchoClient.ECHO_ADDRESS, new Handler<Message>() {
           boolean handled = false;
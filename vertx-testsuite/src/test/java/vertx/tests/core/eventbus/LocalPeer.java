@@ -186,6 +186,75 @@ public class LocalPeer extends EventBusAppBase {
 
   }
 
+  public void testPubSubPatternInitialise() {
+    final String pattern = "some.*.address";
+    eb.registerHandler(pattern, new Handler<Message<Buffer>>() {
+          public void handle(Message<Buffer> msg) {
+            tu.checkContext();
+            tu.azzert("some.pattern.address".equals(msg.address()));
+            tu.azzert(TestUtils.buffersEqual((Buffer) data.get("buffer"), msg.body));
+            eb.unregisterHandler(pattern, this, new AsyncResultHandler<Void>() {
+              public void handle(AsyncResult<Void> event) {
+                if (event.exception == null) {
+                  tu.testComplete();
+                } else {
+                  tu.azzert(false, "Failed to unregister");
+                }
+              }
+            });
+          }
+        }, new AsyncResultHandler<Void>() {
+      public void handle(AsyncResult<Void> event) {
+        if (event.exception == null) {
+          tu.testComplete();
+        } else {
+          tu.azzert(false, "Failed to register");
+        }
+      }
+    }
+    );
+  }
+
+  public void testPointToPointPatternInitialise() {
+    final String pattern = "some.#";
+    eb.registerHandler(pattern, new Handler<Message<Buffer>>() {
+          int count;
+          public void handle(Message<Buffer> msg) {
+            tu.checkContext();
+            tu.azzert(TestUtils.buffersEqual((Buffer) data.get("buffer"), msg.body));
+            count++;
+            if (count == 2) {
+              final Handler<Message<Buffer>> hndlr = this;
+              //Finish on a timer to allow any more messages to arrive
+              vertx.setTimer(200, new Handler<Long>() {
+                public void handle(Long id) {
+                  eb.unregisterHandler(pattern, hndlr, new AsyncResultHandler<Void>() {
+                    public void handle(AsyncResult<Void> event) {
+                      if (event.exception == null) {
+                        tu.testComplete();
+                      } else {
+                        tu.azzert(false, "Failed to unregister");
+                      }
+                    }
+                  });
+                }
+              });
+            } else if (count > 2) {
+              tu.azzert(false, "Too many messages");
+            }
+          }
+        }, new AsyncResultHandler<Void>() {
+      public void handle(AsyncResult<Void> event) {
+        if (event.exception == null) {
+          tu.testComplete();
+        } else {
+          tu.azzert(false, "Failed to register");
+        }
+      }
+    }
+    );
+  }
+
   public void testReplyInitialise() {
     final String address = UUID.randomUUID().toString();
     Set<String> addresses = vertx.sharedData().getSet("addresses");
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package vertx.tests.core.eventbus;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.eventbus.impl.DefaultEventBus;
+import org.vertx.java.core.impl.VertxInternal;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.net.NetSocket;
+import org.vertx.java.core.net.impl.ServerID;
+import org.vertx.java.testframework.TestClientBase;
+
+/**
+ * Checks that a bus's metrics forget the nodes it's no longer connected to
+ */
+public class NodeMetricsClient extends TestClientBase {
+
+  private static final int BUS_PORT = 25580;
+  private static final int NODE_PORT = 25581;
+  private static final String ADDRESS = "node-metrics-test";
+
+  private final InMemorySubsMap subs = new InMemorySubsMap();
+  private DefaultEventBus bus;
+  private FakeNode node;
+
+  @Override
+  public void start() {
+    super.start();
+    // The bus reads its settings when it's created
+    System.setProperty("org.vertx.core-eventbus-metrics", "true");
+    try {
+      bus = subs.createBus((VertxInternal)vertx, BUS_PORT);
+    } finally {
+      System.clearProperty("org.vertx.core-eventbus-metrics");
+    }
+    tu.appReady();
+  }
+
+  @Override
+  public void stop() {
+    bus.close(null);
+    if (node != null) {
+      node.close();
+    }
+    super.stop();
+  }
+
+  public void testNodeWrittenToRemoved() {
+    node = new FakeNode(vertx, NODE_PORT, FakeNode.PONG_VERSIONED, new Handler<FakeNode.Frame>() {
+      public void handle(FakeNode.Frame frame) {
+        ServerID id = node.id;
+        JsonObject metrics = nodeMetrics(id);
+        tu.azzert(metrics != null && metrics.getNumber("messagesOut").intValue() == 1);
+        // Closing the node's server closes the bus's connection to it
+        node.close();
+        node = null;
+        awaitRemoved(id);
+      }
+    });
+    subs.put(ADDRESS, node.id, new AsyncResultHandler<Void>() {
+      public void handle(AsyncResult<Void> result) {
+        bus.send(ADDRESS, "foo");
+      }
+    });
+  }
+
+  public void testNodeReadFromRemoved() {
+    final ServerID sender = new ServerID(NODE_PORT, "localhost");
+    vertx.createNetClient().connect(BUS_PORT, "localhost", new Handler<NetSocket>() {
+      public void handle(final NetSocket socket) {
+        socket.write(FakeNode.frame(true, FakeNode.TYPE_STRING, ADDRESS, sender, null, "foo"));
+        vertx.setPeriodic(10, new Handler<Long>() {
+          public void handle(Long timerID) {
+            JsonObject metrics = nodeMetrics(sender);
+            if (metrics != null) {
+              vertx.cancelTimer(timerID);
+              tu.azzert(metrics.getNumber("messagesIn").intValue() == 1);
+              socket.close();
+              awaitRemoved(sender);
+            }
+          }
+        });
+      }
+    });
+  }
+
+  private JsonObject nodeMetrics(ServerID serverID) {
+    return bus.getMetrics().getObject("nodes").getObject(serverID.toString());
+  }
+
+  private void awaitRemoved(final ServerID serverID) {
+    vertx.setPeriodic(10, new Handler<Long>() {
+      public void handle(Long timerID) {
+        if (nodeMetrics(serverID) == null) {
+          vertx.cancelTimer(timerID);
+          tu.testComplete();
+        }
+      }
+    });
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package vertx.tests.core.eventbus;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.eventbus.MessageCodec;
+import org.vertx.java.core.eventbus.OverflowPolicy;
+import org.vertx.java.core.eventbus.impl.DefaultEventBus;
+import org.vertx.java.core.impl.VertxInternal;
+import org.vertx.java.core.net.NetSocket;
+import org.vertx.java.core.net.impl.ServerID;
+import org.vertx.java.testframework.TestClientBase;
+import vertx.tests.core.eventbus.LocalEchoClient.Point;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks when the body of a message from another node is decoded. Some of the messages are written by hand, so they
+ * can have bodies that fail to decode, and the others are sent with a codec that counts its calls
+ */
+public class RemoteDecodeClient extends TestClientBase {
+
+  private static final int SENDER_PORT = 25540;
+  private static final int RECEIVER_PORT = 25541;
+  private static final int FAKE_NODE_PORT = 25542;
+  private static final String ADDRESS = "decode-test";
+  private static final String MARKER_ADDRESS = "decode-test-marker";
+  private static final String BAD_JSON = "{\"not\": json";
+  private static final ServerID FAKE_NODE_ID = new ServerID(FAKE_NODE_PORT, "localhost");
+
+  private DefaultEventBus sender;
+  private DefaultEventBus receiver;
+  private FakeNode fakeNode;
+
+  private final AtomicInteger decodes = new AtomicInteger();
+  private volatile Thread decodeThread;
+
+  private final MessageCodec<Point> countingCodec = new MessageCodec<Point>() {
+    public void encode(Point point, Buffer buff) {
+      Point.CODEC.encode(point, buff);
+    }
+    public Point decode(Buffer buff) {
+      decodes.incrementAndGet();
+      decodeThread = Thread.currentThread();
+      return Point.CODEC.decode(buff);
+    }
+    public Point copy(Point point) {
+      return point;
+    }
+  };
+
+  @Override
+  public void start() {
+    super.start();
+    InMemorySubsMap subs = new InMemorySubsMap();
+    sender = subs.createBus((VertxInternal)vertx, SENDER_PORT);
+    receiver = subs.createBus((VertxInternal)vertx, RECEIVER_PORT);
+    sender.registerCodec(Point.class, Point.TYPE_ID, countingCodec);
+    receiver.registerCodec(Point.class, Point.TYPE_ID, countingCodec);
+    tu.appReady();
+  }
+
+  @Override
+  public void stop() {
+    sender.close(null);
+    receiver.close(null);
+    if (fakeNode != null) {
+      fakeNode.close();
+    }
+    super.stop();
+  }
+
+  public void testNotDecodedWithoutHandler() {
+    // Nobody is listening at the address of the first message, so its body is never decoded and can't get in the
+    // way of the next one
+    receiver.registerHandler(ADDRESS, new Handler<Message<String>>() {
+      public void handle(Message<String> msg) {
+        tu.azzert("foo".equals(msg.body));
+        tu.testComplete();
+      }
+    }, new AsyncResultHandler<Void>() {
+      public void handle(AsyncResult<Void> result) {
+        tu.azzert(result.succeeded());
+        write(FakeNode.frame(true, FakeNode.TYPE_JSON, "decode-test-nobody", FAKE_NODE_ID, null, BAD_JSON),
+              FakeNode.frame(true, FakeNode.TYPE_STRING, ADDRESS, FAKE_NODE_ID, null, "foo"));
+      }
+    });
+  }
+
+  public void testDecodeFailureSentToRequester() {
+    // The body is decoded when the message is delivered, so a body that can't be decoded fails the request
+    fakeNode = new FakeNode(vertx, FAKE_NODE_PORT, FakeNode.PONG, new Handler<FakeNode.Frame>() {
+      public void handle(FakeNode.Frame frame) {
+        tu.azzert(frame.type == FakeNode.TYPE_FAILURE, "type " + frame.type);
+        tu.azzert("decode-test-reply".equals(frame.address));
+        tu.testComplete();
+      }
+    });
+    receiver.registerHandler(ADDRESS, new Handler<Message<String>>() {
+      public void handle(Message<String> msg) {
+        tu.azzert(false, "delivered");
+      }
+    }, new AsyncResultHandler<Void>() {
+      public void handle(AsyncResult<Void> result) {
+        tu.azzert(result.succeeded());
+        write(FakeNode.frame(true, FakeNode.TYPE_JSON, ADDRESS, FAKE_NODE_ID, "decode-test-reply", BAD_JSON));
+      }
+    });
+  }
+
+  private void write(final Buffer... frames) {
+    vertx.createNetClient().connect(RECEIVER_PORT, "localhost", new Handler<NetSocket>() {
+      public void handle(NetSocket socket) {
+        for (Buffer frame: frames) {
+          socket.write(frame);
+        }
+      }
+    });
+  }
+
+  public void testDecodedOnDelivery() {
+    final Point point = new Point(1, 2.0, "label");
+    // The handler runs on a worker, so a body decoded on the thread that read the message would be on another thread
+    ((VertxInternal)vertx).startInBackground(new Runnable() {
+      public void run() {
+        receiver.registerHandler(ADDRESS, new Handler<Message<Point>>() {
+          int received;
+          public void handle(Message<Point> msg) {
+            received++;
+            tu.azzert(decodes.get() == received, "decodes " + decodes.get());
+            tu.azzert(decodeThread == Thread.currentThread());
+            tu.azzert(point.equals(msg.body));
+            // It's decoded once, however often the handler reads it
+            tu.azzert(point.equals(msg.body));
+            tu.azzert(decodes.get() == received, "decodes " + decodes.get());
+            if (received == 3) {
+              tu.testComplete();
+            }
+          }
+        }, new AsyncResultHandler<Void>() {
+          public void handle(AsyncResult<Void> result) {
+            tu.azzert(result.succeeded());
+            ((VertxInternal)vertx).startOnEventLoop(new Runnable() {
+              public void run() {
+                for (int i = 0; i < 3; i++) {
+                  sender.sendObject(ADDRESS, point);
+                }
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  public void testNotDecodedUntilDelivered() {
+    final Point point = new Point(1, 2.0, "label");
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch gate = new CountDownLatch(1);
+    // The marker handler is told the messages sent before it have all been received
+    receiver.registerHandler(MARKER_ADDRESS, new Handler<Message<String>>() {
+      public void handle(Message<String> msg) {
+        // The first message is being handled, the second is waiting in the mailbox and the rest were dropped, and
+        // only the first has been decoded
+        tu.azzert(decodes.get() == 1, "decodes " + decodes.get());
+        gate.countDown();
+        msg.reply();
+      }
+    });
+    ((VertxInternal)vertx).startInBackground(new Runnable() {
+      public void run() {
+        receiver.registerHandler(ADDRESS, new Handler<Message<Point>>() {
+          int received;
+          public void handle(Message<Point> msg) {
+            received++;
+            tu.azzert(decodes.get() == received, "decodes " + decodes.get());
+            if (received == 1) {
+              started.countDown();
+              try {
+                tu.azzert(gate.await(10, TimeUnit.SECONDS));
+              } catch (InterruptedException e) {
+                tu.azzert(false);
+              }
+            } else {
+              tu.testComplete();
+            }
+          }
+        }, 1, OverflowPolicy.DROP_NEWEST, new AsyncResultHandler<Void>() {
+          public void handle(AsyncResult<Void> result) {
+            tu.azzert(result.succeeded());
+            ((VertxInternal)vertx).startOnEventLoop(new Runnable() {
+              public void run() {
+                sender.publishObject(ADDRESS, point);
+                awaitStarted(started, point);
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  private void awaitStarted(final CountDownLatch started, final Point point) {
+    vertx.setPeriodic(10, new Handler<Long>() {
+      public void handle(Long timerID) {
+        if (started.getCount() == 0) {
+          vertx.cancelTimer(timerID);
+          for (int i = 0; i < 3; i++) {
+            sender.publishObject(ADDRESS, point);
+          }
+          // Both addresses go over the same connection, so the marker arrives after the messages
+          sender.send(MARKER_ADDRESS, "");
+        }
+      }
+    });
+  }
+}
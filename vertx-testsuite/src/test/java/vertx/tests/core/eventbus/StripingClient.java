@@ -0,0 +1,109 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package vertx.tests.core.eventbus;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.eventbus.impl.DefaultEventBus;
+import org.vertx.java.core.impl.VertxInternal;
+import org.vertx.java.testframework.TestClientBase;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks which of the connections to a fake node a bus with several connections per node writes each address to
+ */
+public class StripingClient extends TestClientBase {
+
+  private static final int BUS_PORT = 25570;
+  private static final int NODE_PORT = 25571;
+  private static final int CONNECTIONS = 3;
+
+  private final InMemorySubsMap subs = new InMemorySubsMap();
+  private DefaultEventBus bus;
+  private FakeNode node;
+
+  @Override
+  public void start() {
+    super.start();
+    // The bus reads its settings when it's created
+    System.setProperty("org.vertx.core-eventbus-connectionsPerPeer", String.valueOf(CONNECTIONS));
+    try {
+      bus = subs.createBus((VertxInternal)vertx, BUS_PORT);
+    } finally {
+      System.clearProperty("org.vertx.core-eventbus-connectionsPerPeer");
+    }
+    tu.appReady();
+  }
+
+  @Override
+  public void stop() {
+    bus.close(null);
+    if (node != null) {
+      node.close();
+    }
+    super.stop();
+  }
+
+  public void testAddressesStayOnOneConnection() {
+    final int numAddresses = 10;
+    final int numMessages = 100;
+    final Map<String, Integer> connections = new HashMap<>();
+    final Map<String, Integer> received = new HashMap<>();
+    final Set<Integer> used = new HashSet<>();
+    node = new FakeNode(vertx, NODE_PORT, FakeNode.PONG_VERSIONED, new Handler<FakeNode.Frame>() {
+      int total;
+      public void handle(FakeNode.Frame frame) {
+        // Every message for an address comes on the same connection, in the order it was sent
+        Integer connection = connections.get(frame.address);
+        if (connection == null) {
+          connections.put(frame.address, frame.connection);
+          received.put(frame.address, 0);
+        } else {
+          tu.azzert(connection == frame.connection, frame.address + " moved to another connection");
+        }
+        int expected = received.get(frame.address);
+        tu.azzert(String.valueOf(expected).equals(frame.body), "got " + frame.body + " expected " + expected);
+        received.put(frame.address, expected + 1);
+        tu.azzert(frame.connection < CONNECTIONS, "more than " + CONNECTIONS + " connections");
+        used.add(frame.connection);
+        if (++total == numAddresses * numMessages) {
+          // And the addresses are spread over the connections
+          tu.azzert(used.size() > 1, "only used " + used.size() + " connection");
+          tu.testComplete();
+        }
+      }
+    });
+    final Set<String> addresses = new HashSet<>();
+    for (int i = 0; i < numAddresses; i++) {
+      addresses.add("stripe-test-" + i);
+    }
+    subs.putAll(addresses, node.id, new AsyncResultHandler<Void>() {
+      public void handle(AsyncResult<Void> result) {
+        for (int i = 0; i < numMessages; i++) {
+          for (String address: addresses) {
+            bus.send(address, String.valueOf(i));
+          }
+        }
+      }
+    });
+  }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package vertx.tests.core.eventbus;
+
+import com.hazelcast.core.MultiMap;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.eventbus.impl.ClusterManager;
+import org.vertx.java.core.eventbus.impl.DefaultEventBus;
+import org.vertx.java.core.eventbus.impl.ServerIDs;
+import org.vertx.java.core.eventbus.impl.SubsMap;
+import org.vertx.java.core.eventbus.impl.hazelcast.HazelcastClusterManager;
+import org.vertx.java.core.eventbus.impl.hazelcast.HazelcastServerID;
+import org.vertx.java.core.impl.VertxInternal;
+import org.vertx.java.core.net.impl.ServerID;
+import org.vertx.java.testframework.TestClientBase;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SubsMapClient extends TestClientBase {
+
+  private static final int BUS_PORT = 25510;
+
+  private DefaultEventBus bus;
+
+  @Override
+  public void start() {
+    super.start();
+    tu.appReady();
+  }
+
+  @Override
+  public void stop() {
+    if (bus != null) {
+      bus.close(null);
+    }
+    super.stop();
+  }
+
+  public void testHazelcastSubsMap() {
+    // Joining the cluster blocks, so keep it off the event loop
+    ((VertxInternal)vertx).startInBackground(new Runnable() {
+      public void run() {
+        testHazelcastSubsMap(new HazelcastClusterManager((VertxInternal)vertx));
+      }
+    });
+  }
+
+  private void testHazelcastSubsMap(HazelcastClusterManager mgr) {
+    String name = "subs-" + UUID.randomUUID().toString();
+    final SubsMap subs = mgr.getSubsMap(name);
+    final MultiMap<String, HazelcastServerID> map = mgr.getInstance().getMultiMap(name);
+    final MultiMap<HazelcastServerID, String> serverMap = mgr.getInstance().getMultiMap(name + ".servers");
+    final MultiMap<String, HazelcastServerID> patternMap = mgr.getInstance().getMultiMap(name + ".patterns");
+    final ServerID sid = new ServerID(1234, "somehost");
+    final HazelcastServerID hid = new HazelcastServerID(sid);
+
+    subs.putAll(Arrays.asList("a", "b", "c.*"), sid, new AsyncResultHandler<Void>() {
+      public void handle(AsyncResult<Void> result) {
+        tu.azzert(result.succeeded());
+        tu.azzert(map.get("a").contains(hid));
+        tu.azzert(map.get("b").contains(hid));
+        tu.azzert(patternMap.get("c.*").contains(hid));
+        // The reverse index holds every subscription of the node, patterns too
+        tu.azzert(new HashSet<>(serverMap.get(hid)).equals(new HashSet<>(Arrays.asList("a", "b", "c.*"))));
+
+        subs.removeAll(Arrays.asList("a"), sid, new AsyncResultHandler<Void>() {
+          public void handle(AsyncResult<Void> result) {
+            tu.azzert(result.succeeded());
+            tu.azzert(!map.get("a").contains(hid));
+            tu.azzert(map.get("b").contains(hid));
+            tu.azzert(new HashSet<>(serverMap.get(hid)).equals(new HashSet<>(Arrays.asList("b", "c.*"))));
+
+            // A dead node's subscriptions are found from the reverse index
+            subs.removeAllForServerID(sid, new AsyncResultHandler<Void>() {
+              public void handle(AsyncResult<Void> result) {
+                tu.azzert(result.succeeded());
+                tu.azzert(map.get("b").isEmpty());
+                tu.azzert(patternMap.get("c.*").isEmpty());
+                tu.azzert(serverMap.get(hid).isEmpty());
+                tu.testComplete();
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  public void testSubsBatching() {
+    final RecordingSubsMap subs = new RecordingSubsMap();
+    bus = createBus(subs);
+    final Handler<Message<String>> handler = new Handler<Message<String>>() {
+      public void handle(Message<String> msg) {
+      }
+    };
+    final AtomicInteger registered = new AtomicInteger();
+    AsyncResultHandler<Void> registerDone = new AsyncResultHandler<Void>() {
+      public void handle(AsyncResult<Void> result) {
+        tu.checkContext();
+        tu.azzert(result.succeeded());
+        if (registered.incrementAndGet() == 3) {
+          // The handlers registered in one tick are added in one operation
+          tu.azzert(subs.calls.equals(Arrays.asList("putAll [a, b, c]")), subs.calls.toString());
+          unregister(subs, handler);
+        }
+      }
+    };
+    bus.registerHandler("a", handler, registerDone);
+    bus.registerHandler("b", handler, registerDone);
+    bus.registerHandler("c", handler, registerDone);
+    // Nothing is sent until the next tick
+    tu.azzert(subs.calls.isEmpty());
+  }
+
+  private void unregister(final RecordingSubsMap subs, final Handler<Message<String>> handler) {
+    final AtomicInteger unregistered = new AtomicInteger();
+    AsyncResultHandler<Void> unregisterDone = new AsyncResultHandler<Void>() {
+      public void handle(AsyncResult<Void> result) {
+        tu.checkContext();
+        tu.azzert(result.succeeded());
+        if (unregistered.incrementAndGet() == 4) {
+          // d was registered and unregistered in the same tick, so the cluster never hears of it
+          tu.azzert(subs.calls.equals(Arrays.asList("putAll [a, b, c]", "removeAll [a, b]")), subs.calls.toString());
+          tu.testComplete();
+        }
+      }
+    };
+    bus.unregisterHandler("a", handler, unregisterDone);
+    bus.unregisterHandler("b", handler, unregisterDone);
+    bus.registerHandler("d", handler, unregisterDone);
+    bus.unregisterHandler("d", handler, unregisterDone);
+  }
+
+  public void testSubsOrderAcrossContexts() {
+    final RecordingSubsMap subs = new RecordingSubsMap();
+    bus = createBus(subs);
+    final VertxInternal vertxi = (VertxInternal)vertx;
+    final Handler<Message<String>> handler = new Handler<Message<String>>() {
+      public void handle(Message<String> msg) {
+      }
+    };
+    final AtomicInteger completed = new AtomicInteger();
+    final AsyncResultHandler<Void> done = new AsyncResultHandler<Void>() {
+      public void handle(AsyncResult<Void> result) {
+        tu.azzert(result.succeeded());
+        if (completed.incrementAndGet() == 2) {
+          // The handler is gone, so the subscription must be too, whichever order the changes were made in
+          tu.azzert(!subs.subs.containsKey("x"), subs.calls.toString());
+          tu.testComplete();
+        }
+      }
+    };
+    // Register from a worker context, which we can hold up while another context unregisters the handler, so the
+    // other context gets to send its change first if it can
+    vertxi.startInBackground(new Runnable() {
+      public void run() {
+        bus.registerHandler("x", handler, done);
+        vertxi.startOnEventLoop(new Runnable() {
+          public void run() {
+            bus.unregisterHandler("x", handler, done);
+          }
+        });
+        try {
+          subs.removed.await(500, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          tu.azzert(false);
+        }
+      }
+    });
+  }
+
+  private DefaultEventBus createBus(final SubsMap subs) {
+    final ClusterManager clusterManager = new ClusterManager() {
+      public SubsMap getSubsMap(String name) {
+        return subs;
+      }
+      public void close() {
+      }
+    };
+    return new DefaultEventBus((VertxInternal)vertx, BUS_PORT, "localhost") {
+      protected ClusterManager createClusterManager(VertxInternal vertx) {
+        return clusterManager;
+      }
+    };
+  }
+
+  /*
+   Keeps the subscriptions in memory and records the calls made to it
+    */
+  private static class RecordingSubsMap implements SubsMap {
+
+    final List<String> calls = new CopyOnWriteArrayList<>();
+    final Map<String, Set<ServerID>> subs = new ConcurrentHashMap<>();
+    final CountDownLatch removed = new CountDownLatch(1);
+
+    public void put(String subName, ServerID serverID, AsyncResultHandler<Void> completionHandler) {
+      putAll(Arrays.asList(subName), serverID, completionHandler);
+    }
+
+    public void get(String subName, AsyncResultHandler<ServerIDs> completionHandler) {
+      ServerIDs sids = new ServerIDs();
+      Set<ServerID> ids = subs.get(subName);
+      if (ids != null) {
+        for (ServerID id: ids) {
+          sids.add(id);
+        }
+      }
+      completionHandler.handle(new AsyncResult<>(sids));
+    }
+
+    public void remove(String subName, ServerID serverID, AsyncResultHandler<Boolean> completionHandler) {
+      calls.add("remove " + subName);
+      Set<ServerID> ids = subs.get(subName);
+      boolean found = ids != null && ids.remove(serverID);
+      if (ids != null && ids.isEmpty()) {
+        subs.remove(subName);
+      }
+      completionHandler.handle(new AsyncResult<>(found));
+    }
+
+    public synchronized void putAll(Collection<String> subNames, ServerID serverID,
+                                    AsyncResultHandler<Void> completionHandler) {
+      calls.add("putAll " + subNames);
+      for (String subName: subNames) {
+        Set<ServerID> ids = subs.get(subName);
+        if (ids == null) {
+          ids = new HashSet<>();
+          subs.put(subName, ids);
+        }
+        ids.add(serverID);
+      }
+      completionHandler.handle(new AsyncResult<>((Void)null));
+    }
+
+    public synchronized void removeAll(Collection<String> subNames, ServerID serverID,
+                                       AsyncResultHandler<Void> completionHandler) {
+      calls.add("removeAll " + subNames);
+      for (String subName: subNames) {
+        Set<ServerID> ids = subs.get(subName);
+        if (ids != null) {
+          ids.remove(serverID);
+          if (ids.isEmpty()) {
+            subs.remove(subName);
+          }
+        }
+      }
+      removed.countDown();
+      completionHandler.handle(new AsyncResult<>((Void)null));
+    }
+
+    public synchronized void removeAllForServerID(ServerID serverID, AsyncResultHandler<Void> completionHandler) {
+      calls.add("removeAllForServerID " + serverID);
+      for (Set<ServerID> ids: subs.values()) {
+        ids.remove(serverID);
+      }
+      completionHandler.handle(new AsyncResult<>((Void)null));
+    }
+  }
+}
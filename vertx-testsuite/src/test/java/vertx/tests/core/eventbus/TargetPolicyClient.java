@@ -0,0 +1,185 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package vertx.tests.core.eventbus;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.eventbus.impl.DefaultEventBus;
+import org.vertx.java.core.impl.VertxInternal;
+import org.vertx.java.testframework.TestClientBase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Each test starts a small cluster of buses in this verticle, which share their subscriptions through an
+ * {@link InMemorySubsMap}, and checks which of them a policy sends to
+ */
+public class TargetPolicyClient extends TestClientBase {
+
+  private static final int FIRST_PORT = 25530;
+  private static final String ADDRESS = "policy-test";
+
+  private final List<DefaultEventBus> buses = new ArrayList<>();
+  private final InMemorySubsMap subs = new InMemorySubsMap();
+
+  @Override
+  public void start() {
+    super.start();
+    tu.appReady();
+  }
+
+  @Override
+  public void stop() {
+    for (DefaultEventBus bus: buses) {
+      bus.close(null);
+    }
+    super.stop();
+  }
+
+  public void testPreferLocal() {
+    startBuses("preferLocal", 2);
+    final int[] received = new int[2];
+    subscribe(received, new int[] {0, 1}, true, new Runnable() {
+      public void run() {
+        // Both nodes have a handler, so the sender's own one always gets the message
+        sendRequests(10, new Runnable() {
+          public void run() {
+            tu.azzert(received[0] == 10, "local " + received[0]);
+            tu.azzert(received[1] == 0, "remote " + received[1]);
+            tu.testComplete();
+          }
+        });
+      }
+    });
+  }
+
+  public void testWeighted() {
+    System.setProperty("org.vertx.core-eventbus-nodeWeights",
+                       "localhost:" + (FIRST_PORT + 1) + "=3,localhost:" + (FIRST_PORT + 2) + "=1");
+    try {
+      startBuses("weighted", 3);
+    } finally {
+      System.clearProperty("org.vertx.core-eventbus-nodeWeights");
+    }
+    final int[] received = new int[3];
+    subscribe(received, new int[] {1, 2}, true, new Runnable() {
+      public void run() {
+        sendRequests(40, new Runnable() {
+          public void run() {
+            tu.azzert(received[1] == 30, "weight 3 " + received[1]);
+            tu.azzert(received[2] == 10, "weight 1 " + received[2]);
+            tu.testComplete();
+          }
+        });
+      }
+    });
+  }
+
+  public void testLeastOutstanding() {
+    startBuses("leastOutstanding", 3);
+    final int[] received = new int[3];
+    // Node 1 sits on its requests and node 2 answers at once, so once node 1 has one it gets no more
+    subscribe(received, new int[] {1}, false, new Runnable() {
+      public void run() {
+        subscribe(received, new int[] {2}, true, new Runnable() {
+          public void run() {
+            sendUntilReceived(received, 10, new Runnable() {
+              public void run() {
+                tu.azzert(received[1] == 1, "no replies " + received[1]);
+                tu.azzert(received[2] == 9, "replies " + received[2]);
+                tu.testComplete();
+              }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  private void startBuses(String policy, int num) {
+    System.setProperty("org.vertx.core-eventbus-targetPolicy", policy);
+    try {
+      for (int i = 0; i < num; i++) {
+        buses.add(subs.createBus((VertxInternal)vertx, FIRST_PORT + i));
+      }
+    } finally {
+      System.clearProperty("org.vertx.core-eventbus-targetPolicy");
+    }
+  }
+
+  // Register a handler on each of the nodes, which counts what it receives and replies if asked to
+  private void subscribe(final int[] received, int[] nodes, final boolean reply, final Runnable then) {
+    final AtomicInteger registered = new AtomicInteger(nodes.length);
+    for (final int node: nodes) {
+      buses.get(node).registerHandler(ADDRESS, new Handler<Message<String>>() {
+        public void handle(Message<String> msg) {
+          received[node]++;
+          if (reply) {
+            msg.reply("");
+          }
+        }
+      }, new AsyncResultHandler<Void>() {
+        public void handle(AsyncResult<Void> result) {
+          tu.azzert(result.succeeded());
+          if (registered.decrementAndGet() == 0) {
+            then.run();
+          }
+        }
+      });
+    }
+  }
+
+  // Send from node 0, one at a time, waiting for each reply
+  private void sendRequests(final int num, final Runnable then) {
+    if (num == 0) {
+      then.run();
+      return;
+    }
+    buses.get(0).send(ADDRESS, "", new Handler<Message<String>>() {
+      public void handle(Message<String> reply) {
+        sendRequests(num - 1, then);
+      }
+    });
+  }
+
+  // Send from node 0, one at a time, waiting for each to be replied to or, if it won't be, received
+  private void sendUntilReceived(final int[] received, final int num, final Runnable then) {
+    if (num == 0) {
+      then.run();
+      return;
+    }
+    final int before = received[1];
+    final long timerID = vertx.setPeriodic(10, new Handler<Long>() {
+      public void handle(Long timerID) {
+        if (received[1] != before) {
+          vertx.cancelTimer(timerID);
+          sendUntilReceived(received, num - 1, then);
+        }
+      }
+    });
+    buses.get(0).send(ADDRESS, "", new Handler<Message<String>>() {
+      public void handle(Message<String> reply) {
+        vertx.cancelTimer(timerID);
+        sendUntilReceived(received, num - 1, then);
+      }
+    });
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package vertx.tests.core.eventbus;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.eventbus.impl.DefaultEventBus;
+import org.vertx.java.core.impl.VertxInternal;
+import org.vertx.java.core.net.NetSocket;
+import org.vertx.java.core.net.impl.ServerID;
+import org.vertx.java.testframework.TestClientBase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the frames a bus reads and writes, against fake nodes some of which can only read the legacy form
+ */
+public class WireFormatClient extends TestClientBase {
+
+  private static final int BUS_PORT = 25550;
+  private static final int FIRST_NODE_PORT = 25551;
+
+  private final InMemorySubsMap subs = new InMemorySubsMap();
+  private final List<FakeNode> nodes = new ArrayList<>();
+  private DefaultEventBus bus;
+
+  @Override
+  public void start() {
+    super.start();
+    bus = subs.createBus((VertxInternal)vertx, BUS_PORT);
+    tu.appReady();
+  }
+
+  @Override
+  public void stop() {
+    bus.close(null);
+    for (FakeNode node: nodes) {
+      node.close();
+    }
+    super.stop();
+  }
+
+  public void testReadLegacyFrame() {
+    testReadFrame(false);
+  }
+
+  public void testReadVersionedFrame() {
+    testReadFrame(true);
+  }
+
+  private void testReadFrame(final boolean versioned) {
+    final String address = "wire-read";
+    bus.registerHandler(address, new Handler<Message<String>>() {
+      public void handle(Message<String> msg) {
+        tu.azzert("foo".equals(msg.body));
+        tu.azzert(msg.replyAddress == null);
+        tu.testComplete();
+      }
+    }, new AsyncResultHandler<Void>() {
+      public void handle(AsyncResult<Void> result) {
+        vertx.createNetClient().connect(BUS_PORT, "localhost", new Handler<NetSocket>() {
+          public void handle(NetSocket socket) {
+            ServerID sender = new ServerID(FIRST_NODE_PORT, "localhost");
+            socket.write(FakeNode.frame(versioned, FakeNode.TYPE_STRING, address, sender, null, "foo"));
+          }
+        });
+      }
+    });
+  }
+
+  public void testWriteToLegacyNode() {
+    final int[] legacyMessages = new int[1];
+    final int[] currentVersioned = new int[1];
+    final FakeNode legacy = startNode(FIRST_NODE_PORT, FakeNode.PONG, new Handler<FakeNode.Frame>() {
+      public void handle(FakeNode.Frame frame) {
+        // Nothing but legacy frames for a node that hasn't said it can read versioned ones
+        tu.azzert(!frame.versioned);
+        tu.azzert("foo".equals(frame.body));
+        legacyMessages[0]++;
+      }
+    });
+    final FakeNode current = startNode(FIRST_NODE_PORT + 1, FakeNode.PONG_VERSIONED, new Handler<FakeNode.Frame>() {
+      public void handle(FakeNode.Frame frame) {
+        tu.azzert("foo".equals(frame.body));
+        if (frame.versioned) {
+          currentVersioned[0]++;
+        }
+      }
+    });
+    AsyncResultHandler<Void> ignore = new AsyncResultHandler<Void>() {
+      public void handle(AsyncResult<Void> result) {
+      }
+    };
+    subs.put("legacy-node", legacy.id, ignore);
+    subs.put("current-node", current.id, ignore);
+    // Keep sending to both until the node that can read versioned frames gets them, and a little longer
+    vertx.setPeriodic(10, new Handler<Long>() {
+      int after;
+      public void handle(Long timerID) {
+        bus.send("legacy-node", "foo");
+        bus.send("current-node", "foo");
+        if (currentVersioned[0] > 0 && ++after == 10) {
+          vertx.cancelTimer(timerID);
+          tu.azzert(legacyMessages[0] > 10, "messages " + legacyMessages[0]);
+          // Pings are always legacy
+          tu.azzert(legacy.pings > 0 && legacy.versionedPings == 0);
+          tu.azzert(current.pings > 0 && current.versionedPings == 0);
+          tu.testComplete();
+        }
+      }
+    });
+  }
+
+  private FakeNode startNode(int port, byte pong, Handler<FakeNode.Frame> frameHandler) {
+    FakeNode node = new FakeNode(vertx, port, pong, frameHandler);
+    nodes.add(node);
+    return node;
+  }
+}
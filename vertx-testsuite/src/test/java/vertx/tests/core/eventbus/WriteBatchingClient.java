@@ -0,0 +1,169 @@
+/*
+ * Copyright 2011-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package vertx.tests.core.eventbus;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.eventbus.impl.DefaultEventBus;
+import org.vertx.java.core.impl.VertxInternal;
+import org.vertx.java.testframework.TestClientBase;
+
+/**
+ * Checks the batches a bus with write batching enabled writes to a fake node
+ */
+public class WriteBatchingClient extends TestClientBase {
+
+  private static final int BUS_PORT = 25560;
+  private static final int NODE_PORT = 25561;
+  private static final String ADDRESS = "batch-test";
+  private static final long DELAY = 200;
+
+  private final InMemorySubsMap subs = new InMemorySubsMap();
+  private DefaultEventBus bus;
+  private FakeNode node;
+  private Runnable onConnected;
+
+  @Override
+  public void start() {
+    super.start();
+    tu.appReady();
+  }
+
+  @Override
+  public void stop() {
+    if (bus != null) {
+      bus.close(null);
+    }
+    if (node != null) {
+      node.close();
+    }
+    super.stop();
+  }
+
+  public void testBurstBatchedInOrder() {
+    startBus(256);
+    final int count = 10;
+    final long[] sent = new long[count];
+    startNode(new Handler<FakeNode.Frame>() {
+      int received;
+      int read;
+      public void handle(FakeNode.Frame frame) {
+        tu.azzert(String.valueOf(received).equals(frame.body), "got " + frame.body + " expected " + received);
+        // The frames were sent over longer than a TCP read could wait, so frames that share a read were written
+        // together
+        if (received == 0) {
+          read = frame.read;
+        } else {
+          tu.azzert(frame.read == read, "frame " + received + " in a read of its own");
+        }
+        // Nothing is written until the delay after the first frame is up
+        tu.azzert(System.currentTimeMillis() - sent[0] >= DELAY - 10);
+        if (++received == count) {
+          tu.testComplete();
+        }
+      }
+    });
+    connect(new Runnable() {
+      public void run() {
+        vertx.setPeriodic(10, new Handler<Long>() {
+          int i;
+          public void handle(Long timerID) {
+            sent[i] = System.currentTimeMillis();
+            bus.send(ADDRESS, String.valueOf(i));
+            if (++i == count) {
+              vertx.cancelTimer(timerID);
+            }
+          }
+        });
+      }
+    });
+  }
+
+  public void testDelayCancelledByFullBatch() {
+    final int batch = 10;
+    startBus(batch);
+    final long[] lastSent = new long[1];
+    startNode(new Handler<FakeNode.Frame>() {
+      int received;
+      public void handle(FakeNode.Frame frame) {
+        tu.azzert(String.valueOf(received).equals(frame.body), "got " + frame.body + " expected " + received);
+        if (received == batch) {
+          // The timer started by the full batch's first frame was cancelled when the batch was written, so it
+          // couldn't write this frame early
+          long waited = System.currentTimeMillis() - lastSent[0];
+          tu.azzert(waited >= DELAY - 10, "written after " + waited + "ms");
+          tu.testComplete();
+        }
+        received++;
+      }
+    });
+    connect(new Runnable() {
+      public void run() {
+        // A full batch is written straight away
+        for (int i = 0; i < batch; i++) {
+          bus.send(ADDRESS, String.valueOf(i));
+        }
+        vertx.setTimer(DELAY / 2, new Handler<Long>() {
+          public void handle(Long timerID) {
+            lastSent[0] = System.currentTimeMillis();
+            bus.send(ADDRESS, String.valueOf(batch));
+          }
+        });
+      }
+    });
+  }
+
+  private void startBus(int batchMessages) {
+    // The bus reads its settings when it's created
+    System.setProperty("org.vertx.core-eventbus-writeBatching", "true");
+    System.setProperty("org.vertx.core-eventbus-writeBatchMessages", String.valueOf(batchMessages));
+    System.setProperty("org.vertx.core-eventbus-writeBatchDelay", String.valueOf(DELAY));
+    try {
+      bus = subs.createBus((VertxInternal)vertx, BUS_PORT);
+    } finally {
+      System.clearProperty("org.vertx.core-eventbus-writeBatching");
+      System.clearProperty("org.vertx.core-eventbus-writeBatchMessages");
+      System.clearProperty("org.vertx.core-eventbus-writeBatchDelay");
+    }
+  }
+
+  private void startNode(final Handler<FakeNode.Frame> frameHandler) {
+    node = new FakeNode(vertx, NODE_PORT, FakeNode.PONG_VERSIONED, new Handler<FakeNode.Frame>() {
+      boolean connected;
+      public void handle(FakeNode.Frame frame) {
+        // The first frame only opens the connection
+        if (connected) {
+          frameHandler.handle(frame);
+        } else {
+          connected = true;
+          onConnected.run();
+        }
+      }
+    });
+  }
+
+  // Opens the connection to the node before the test's frames are sent, so they aren't held up waiting for it
+  private void connect(Runnable andThen) {
+    onConnected = andThen;
+    subs.put(ADDRESS, node.id, new AsyncResultHandler<Void>() {
+      public void handle(AsyncResult<Void> result) {
+        bus.send(ADDRESS, "connect");
+      }
+    });
+  }
+}
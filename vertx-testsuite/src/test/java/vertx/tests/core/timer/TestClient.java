@@ -19,6 +19,7 @@ package vertx.tests.core.timer;
 import org.vertx.java.core.Handler;
 import org.vertx.java.testframework.TestClientBase;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -101,4 +102,72 @@ public class TestClient extends TestClientBase {
       }
     });
   }
+
+  public void testCancel() throws Exception {
+    final long id = vertx.setTimer(100, new Handler<Long>() {
+      public void handle(Long timerID) {
+        tu.azzert(false, "Cancelled timer fired");
+      }
+    });
+    // Cancel it from a thread that isn't the event loop
+    Thread thread = new Thread() {
+      public void run() {
+        tu.azzert(vertx.cancelTimer(id));
+        tu.azzert(!vertx.cancelTimer(id));
+      }
+    };
+    thread.start();
+    thread.join();
+    vertx.setTimer(200, new Handler<Long>() {
+      public void handle(Long timerID) {
+        tu.checkContext();
+        tu.testComplete();
+      }
+    });
+  }
+
+  public void testManyTimers() throws Exception {
+    final int numTimers = 1000;
+    final AtomicInteger fired = new AtomicInteger(0);
+    for (int i = 0; i < numTimers; i++) {
+      final long delay = 1 + i % 50;
+      final long start = System.currentTimeMillis();
+      final long id = vertx.setTimer(delay, new Handler<Long>() {
+        boolean handled;
+        public void handle(Long timerID) {
+          tu.checkContext();
+          tu.azzert(!handled);
+          handled = true;
+          tu.azzert(System.currentTimeMillis() - start >= delay);
+          if (fired.incrementAndGet() == numTimers / 2) {
+            setEndTimer();
+          }
+        }
+      });
+      // Cancel every other one
+      if (i % 2 == 1) {
+        tu.azzert(vertx.cancelTimer(id));
+      }
+    }
+  }
+
+  public void testTimerSetWhileOthersFire() throws Exception {
+    final long start = System.currentTimeMillis();
+    vertx.setTimer(200, new Handler<Long>() {
+      public void handle(Long timerID) {
+        long late = System.currentTimeMillis() - start - 200;
+        tu.azzert(late < 50, "fired " + late + "ms late");
+        tu.testComplete();
+      }
+    });
+    // A timer set by a handler doesn't hold up the timers that were already due before it
+    vertx.setTimer(100, new Handler<Long>() {
+      public void handle(Long timerID) {
+        vertx.setTimer(1000, new Handler<Long>() {
+          public void handle(Long timerID) {
+          }
+        });
+      }
+    });
+  }
 }